@@ -1,21 +1,26 @@
 package com.marklogic.appdeployer;
 
+import com.marklogic.appdeployer.command.modules.ContentHashModuleManager;
+import com.marklogic.appdeployer.command.modules.ModulesManifestStore;
+import com.marklogic.appdeployer.command.modules.ParallelAssetLoader;
+import com.marklogic.appdeployer.util.CompiledModuleTokenReplacer;
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.DatabaseClientFactory;
 import com.marklogic.client.DatabaseClientFactory.Authentication;
 import com.marklogic.client.DatabaseClientFactory.SSLHostnameVerifier;
+import com.marklogic.client.modulesloader.ModulesManager;
+import com.marklogic.client.modulesloader.impl.PropertiesModuleManager;
 import com.marklogic.client.modulesloader.impl.StaticChecker;
 import com.marklogic.client.modulesloader.impl.XccAssetLoader;
 import com.marklogic.client.modulesloader.impl.XccStaticChecker;
 import com.marklogic.client.modulesloader.ssl.SimpleX509TrustManager;
-import com.marklogic.client.modulesloader.tokenreplacer.DefaultModuleTokenReplacer;
 import com.marklogic.client.modulesloader.tokenreplacer.ModuleTokenReplacer;
 import com.marklogic.client.modulesloader.tokenreplacer.PropertiesSource;
-import com.marklogic.client.modulesloader.tokenreplacer.RoxyModuleTokenReplacer;
 import com.marklogic.client.modulesloader.xcc.DefaultDocumentFormatGetter;
 import com.marklogic.xcc.template.XccTemplate;
 
 import javax.net.ssl.SSLContext;
+import java.io.File;
 import java.io.FileFilter;
 import java.util.*;
 
@@ -87,12 +92,25 @@ public class AppConfig {
 	private boolean staticCheckLibraryAssets = false;
 	private boolean bulkLoadAssets = true;
 	private String moduleTimestampsPath;
+	// When set, modules are compared by content hash via a ContentHashModuleManager instead of by timestamp
+	private String moduleHashesPath;
+	// When true, asset modules are compared with a manifest stored in the modules database so only changed ones are loaded
+	private boolean diffModulesWithServer = false;
+	private boolean deleteModulesMissingLocally = false;
+	private String modulesManifestUri = ModulesManifestStore.DEFAULT_MANIFEST_URI;
+	// When greater than 1, asset modules are loaded in batches by a ParallelAssetLoader using this many threads
+	private int assetLoadThreadCount = 1;
+	private int assetLoadBatchSize = 200;
+	// Whether test server modules are loaded while the main server's non-asset modules are being loaded
+	private boolean loadTestModulesConcurrently = true;
 
     private String schemasPath;
     private ConfigDir configDir;
 
     // Passed into the TokenReplacer that subclasses of AbstractCommand use
     private Map<String, String> customTokens = new HashMap<>();
+    // Incremented whenever a custom token is added via addCustomToken or the custom tokens are replaced
+    private volatile int customTokensVersion = 0;
 
     // Allows for creating a triggers database without a config file for one
     private boolean createTriggersDatabase = true;
@@ -141,6 +159,49 @@ public class AppConfig {
 
 	private String[] resourceFilenamesToIgnore;
 
+	// Whether AbstractAppDeployer caches the list of resources of each type while deploying or undeploying
+	private boolean cacheResourceInventory = true;
+
+	// Whether existing resources are compared with their payloads before being updated
+	private boolean compareResourcesBeforeUpdate = false;
+	private boolean updateChangedPropertiesOnly = false;
+
+	// Controls whether resources that are unchanged since the last deploy are skipped
+	private boolean skipUnchangedResources = false;
+	private String resourceFingerprintsPath = "build/ml-resource-fingerprints.properties";
+	private boolean forceDeployResources = false;
+	private boolean verifyUnchangedResources = false;
+
+	// Number of threads AbstractAppDeployer uses for executing commands that don't depend on each other
+	private int commandThreadCount = 1;
+
+	// Whether a command waits once for MarkLogic to restart after all of its actions instead of after each action
+	private boolean batchRestarts = false;
+
+	// Whether waiting for MarkLogic to restart checks every host in the cluster instead of just the configured host
+	private boolean checkAllHostsAfterRestart = false;
+
+	// Number of threads each resource command uses for saving or deleting the resources in a directory
+	private int resourceThreadCount = 1;
+
+	// Number of threads for creating forests - DeployForestsCommand uses one per host, and
+	// ConfigureForestReplicasCommand uses them for fetching forest status and creating replicas
+	private int forestThreadCount = 1;
+
+	// Whether new forests and replicas are placed by a ForestPlacementPlanner instead of round-robin by host
+	private boolean balanceForestPlacement = false;
+
+	// Weights for the ForestPlacementPlanner, keyed by host name
+	private Map<String, Double> forestPlacementHostWeights = new HashMap<>();
+
+	// Whether the config dir is scanned once per deploy into a ConfigDirCatalog that commands list and read files from
+	private boolean catalogConfigDir = false;
+
+	// Whether each deploy and undeploy records timings via a DeployProfiler and reports them when finished
+	private boolean profileDeploy = false;
+	private String profileReportPath = "build/ml-deploy-profile.json";
+	private int profileSummaryCount = 10;
+
 	public AppConfig() {
         this(DEFAULT_MODULES_PATH, DEFAULT_SCHEMAS_PATH);
     }
@@ -205,6 +266,20 @@ public class AppConfig {
 		return null;
 	}
 
+	/**
+	 * @return a ContentHashModuleManager if moduleHashesPath is set, else a PropertiesModuleManager if
+	 *         moduleTimestampsPath is set, else null
+	 */
+	public ModulesManager newModulesManager() {
+		if (getModuleHashesPath() != null) {
+			return new ContentHashModuleManager(new File(getModuleHashesPath()));
+		}
+		if (getModuleTimestampsPath() != null) {
+			return new PropertiesModuleManager(new File(getModuleTimestampsPath()));
+		}
+		return null;
+	}
+
 	/**
      * @return an XccAssetLoader based on the configuration properties in this class
      */
@@ -244,14 +319,54 @@ public class AppConfig {
         return l;
     }
 
+	/**
+	 * @return a ParallelAssetLoader with the same connection, permission, format, filter, and token replacement
+	 *         settings as the XccAssetLoader returned by newXccAssetLoader
+	 */
+	public ParallelAssetLoader newParallelAssetLoader() {
+		ParallelAssetLoader l = new ParallelAssetLoader();
+		l.setHost(getHost());
+		l.setUsername(getRestAdminUsername());
+		l.setPassword(getRestAdminPassword());
+		l.setDatabaseName(getModulesDatabaseName());
+		if (getAppServicesPort() != null) {
+			l.setPort(getAppServicesPort());
+		}
+		if (getModulePermissions() != null) {
+			l.setPermissions(getModulePermissions());
+		}
+		String[] extensions = getAdditionalBinaryExtensions();
+		if (extensions != null) {
+			DefaultDocumentFormatGetter getter = new DefaultDocumentFormatGetter();
+			for (String ext : extensions) {
+				getter.getBinaryExtensions().add(ext);
+			}
+			l.setDocumentFormatGetter(getter);
+		}
+		if (assetFileFilter != null) {
+			l.setFileFilter(assetFileFilter);
+		}
+		if (isReplaceTokensInModules()) {
+			l.setModuleTokenReplacer(buildModuleTokenReplacer());
+		}
+		l.setThreadCount(getAssetLoadThreadCount());
+		l.setBatchSize(getAssetLoadBatchSize());
+		return l;
+	}
+
     protected ModuleTokenReplacer buildModuleTokenReplacer() {
-        DefaultModuleTokenReplacer r = isUseRoxyTokenPrefix() ? new RoxyModuleTokenReplacer() : new DefaultModuleTokenReplacer();
+        CompiledModuleTokenReplacer r = new CompiledModuleTokenReplacer();
+        if (isUseRoxyTokenPrefix()) {
+            r.setPropertyPrefix("@ml.");
+        }
         if (customTokens != null && !customTokens.isEmpty()) {
             r.addPropertiesSource(new PropertiesSource() {
                 @Override
                 public Properties getProperties() {
                     Properties p = new Properties();
-                    p.putAll(customTokens);
+                    synchronized (customTokens) {
+                        p.putAll(customTokens);
+                    }
                     return p;
                 }
             });
@@ -483,13 +598,39 @@ public class AppConfig {
      * @return a map of tokens that are intended to be replaced with their associated values in configuration files.
      * This map allows for externalized properties to be passed into configuration files - e.g. Gradle
      * properties can be swapped in for tokens in configuration files at deploy time.
+     * <p>
+     * When commands run on more than one thread, a command may add a token via addCustomToken while other commands are
+     * reading the tokens, so synchronize on this map when iterating over it during a deployment.
      */
     public Map<String, String> getCustomTokens() {
         return customTokens;
     }
 
+    /**
+     * Adds a custom token while synchronized on the map of custom tokens, so that it's safe to call while commands on
+     * other threads are reading the tokens.
+     *
+     * @param token
+     * @param value
+     */
+    public void addCustomToken(String token, String value) {
+        synchronized (customTokens) {
+            customTokens.put(token, value);
+            customTokensVersion++;
+        }
+    }
+
     public void setCustomTokens(Map<String, String> customTokens) {
         this.customTokens = customTokens;
+        customTokensVersion++;
+    }
+
+    /**
+     * @return a number that changes whenever a custom token is added via addCustomToken or the custom tokens are
+     *         replaced via setCustomTokens, which allows a TokenReplacer to cache what it builds from the tokens
+     */
+    public int getCustomTokensVersion() {
+        return customTokensVersion;
     }
 
     /**
@@ -705,6 +846,62 @@ public class AppConfig {
 		this.moduleTimestampsPath = moduleTimestampsPath;
 	}
 
+	public String getModuleHashesPath() {
+		return moduleHashesPath;
+	}
+
+	public void setModuleHashesPath(String moduleHashesPath) {
+		this.moduleHashesPath = moduleHashesPath;
+	}
+
+	public boolean isDiffModulesWithServer() {
+		return diffModulesWithServer;
+	}
+
+	public void setDiffModulesWithServer(boolean diffModulesWithServer) {
+		this.diffModulesWithServer = diffModulesWithServer;
+	}
+
+	public boolean isDeleteModulesMissingLocally() {
+		return deleteModulesMissingLocally;
+	}
+
+	public void setDeleteModulesMissingLocally(boolean deleteModulesMissingLocally) {
+		this.deleteModulesMissingLocally = deleteModulesMissingLocally;
+	}
+
+	public String getModulesManifestUri() {
+		return modulesManifestUri;
+	}
+
+	public void setModulesManifestUri(String modulesManifestUri) {
+		this.modulesManifestUri = modulesManifestUri;
+	}
+
+	public int getAssetLoadThreadCount() {
+		return assetLoadThreadCount;
+	}
+
+	public void setAssetLoadThreadCount(int assetLoadThreadCount) {
+		this.assetLoadThreadCount = assetLoadThreadCount;
+	}
+
+	public int getAssetLoadBatchSize() {
+		return assetLoadBatchSize;
+	}
+
+	public void setAssetLoadBatchSize(int assetLoadBatchSize) {
+		this.assetLoadBatchSize = assetLoadBatchSize;
+	}
+
+	public boolean isLoadTestModulesConcurrently() {
+		return loadTestModulesConcurrently;
+	}
+
+	public void setLoadTestModulesConcurrently(boolean loadTestModulesConcurrently) {
+		this.loadTestModulesConcurrently = loadTestModulesConcurrently;
+	}
+
 	public String[] getResourceFilenamesToIgnore() {
 		return resourceFilenamesToIgnore;
 	}
@@ -713,6 +910,150 @@ public class AppConfig {
 		this.resourceFilenamesToIgnore = resourceFilenamesToIgnore;
 	}
 
+	public boolean isCacheResourceInventory() {
+		return cacheResourceInventory;
+	}
+
+	public void setCacheResourceInventory(boolean cacheResourceInventory) {
+		this.cacheResourceInventory = cacheResourceInventory;
+	}
+
+	public boolean isCompareResourcesBeforeUpdate() {
+		return compareResourcesBeforeUpdate;
+	}
+
+	public void setCompareResourcesBeforeUpdate(boolean compareResourcesBeforeUpdate) {
+		this.compareResourcesBeforeUpdate = compareResourcesBeforeUpdate;
+	}
+
+	public boolean isUpdateChangedPropertiesOnly() {
+		return updateChangedPropertiesOnly;
+	}
+
+	public void setUpdateChangedPropertiesOnly(boolean updateChangedPropertiesOnly) {
+		this.updateChangedPropertiesOnly = updateChangedPropertiesOnly;
+	}
+
+	public boolean isSkipUnchangedResources() {
+		return skipUnchangedResources;
+	}
+
+	public void setSkipUnchangedResources(boolean skipUnchangedResources) {
+		this.skipUnchangedResources = skipUnchangedResources;
+	}
+
+	public String getResourceFingerprintsPath() {
+		return resourceFingerprintsPath;
+	}
+
+	public void setResourceFingerprintsPath(String resourceFingerprintsPath) {
+		this.resourceFingerprintsPath = resourceFingerprintsPath;
+	}
+
+	public boolean isForceDeployResources() {
+		return forceDeployResources;
+	}
+
+	public void setForceDeployResources(boolean forceDeployResources) {
+		this.forceDeployResources = forceDeployResources;
+	}
+
+	public boolean isVerifyUnchangedResources() {
+		return verifyUnchangedResources;
+	}
+
+	public void setVerifyUnchangedResources(boolean verifyUnchangedResources) {
+		this.verifyUnchangedResources = verifyUnchangedResources;
+	}
+
+	public int getCommandThreadCount() {
+		return commandThreadCount;
+	}
+
+	public void setCommandThreadCount(int commandThreadCount) {
+		this.commandThreadCount = commandThreadCount;
+	}
+
+	public boolean isBatchRestarts() {
+		return batchRestarts;
+	}
+
+	public void setBatchRestarts(boolean batchRestarts) {
+		this.batchRestarts = batchRestarts;
+	}
+
+	public boolean isCheckAllHostsAfterRestart() {
+		return checkAllHostsAfterRestart;
+	}
+
+	public void setCheckAllHostsAfterRestart(boolean checkAllHostsAfterRestart) {
+		this.checkAllHostsAfterRestart = checkAllHostsAfterRestart;
+	}
+
+	public int getResourceThreadCount() {
+		return resourceThreadCount;
+	}
+
+	public void setResourceThreadCount(int resourceThreadCount) {
+		this.resourceThreadCount = resourceThreadCount;
+	}
+
+	public int getForestThreadCount() {
+		return forestThreadCount;
+	}
+
+	public void setForestThreadCount(int forestThreadCount) {
+		this.forestThreadCount = forestThreadCount;
+	}
+
+	public boolean isBalanceForestPlacement() {
+		return balanceForestPlacement;
+	}
+
+	public void setBalanceForestPlacement(boolean balanceForestPlacement) {
+		this.balanceForestPlacement = balanceForestPlacement;
+	}
+
+	public Map<String, Double> getForestPlacementHostWeights() {
+		return forestPlacementHostWeights;
+	}
+
+	public void setForestPlacementHostWeights(Map<String, Double> forestPlacementHostWeights) {
+		this.forestPlacementHostWeights = forestPlacementHostWeights;
+	}
+
+	public boolean isCatalogConfigDir() {
+		return catalogConfigDir;
+	}
+
+	public void setCatalogConfigDir(boolean catalogConfigDir) {
+		this.catalogConfigDir = catalogConfigDir;
+	}
+
+	public boolean isProfileDeploy() {
+		return profileDeploy;
+	}
+
+	public void setProfileDeploy(boolean profileDeploy) {
+		this.profileDeploy = profileDeploy;
+	}
+
+	public String getProfileReportPath() {
+		return profileReportPath;
+	}
+
+	public void setProfileReportPath(String profileReportPath) {
+		this.profileReportPath = profileReportPath;
+	}
+
+	public int getProfileSummaryCount() {
+		return profileSummaryCount;
+	}
+
+	public void setProfileSummaryCount(int profileSummaryCount) {
+		this.profileSummaryCount = profileSummaryCount;
+	}
+
     public boolean isDeleteReplicas() {
         return deleteReplicas;
     }
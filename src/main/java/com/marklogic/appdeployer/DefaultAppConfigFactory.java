@@ -6,7 +6,9 @@ import com.marklogic.mgmt.util.PropertySourceFactory;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class DefaultAppConfigFactory extends PropertySourceFactory implements AppConfigFactory {
 
@@ -275,6 +277,66 @@ public class DefaultAppConfigFactory extends PropertySourceFactory implements Ap
 			c.setModuleTimestampsPath(prop);
 		}
 
+		/**
+		 * When set, modules are compared with the ones last loaded by a hash of their content, stored at this path,
+		 * instead of by their timestamps; takes precedence over mlModuleTimestampsPath.
+		 */
+		prop = getProperty("mlModuleHashesPath");
+		if (prop != null) {
+			logger.info("Module hashes path: " + prop);
+			c.setModuleHashesPath(prop);
+		}
+
+		/**
+		 * When true, a manifest of the URI and content hash of every asset module is stored in the modules database at
+		 * mlModulesManifestUri, and it's fetched before loading modules so that only asset modules that are missing or
+		 * have changed are loaded. When mlDeleteModulesMissingLocally is also true, modules that were loaded before but
+		 * no longer exist locally are deleted.
+		 */
+		prop = getProperty("mlDiffModulesWithServer");
+		if (prop != null) {
+			logger.info("Diff modules with server: " + prop);
+			c.setDiffModulesWithServer(Boolean.parseBoolean(prop));
+		}
+
+		prop = getProperty("mlDeleteModulesMissingLocally");
+		if (prop != null) {
+			logger.info("Delete modules missing locally: " + prop);
+			c.setDeleteModulesMissingLocally(Boolean.parseBoolean(prop));
+		}
+
+		prop = getProperty("mlModulesManifestUri");
+		if (prop != null) {
+			logger.info("Modules manifest URI: " + prop);
+			c.setModulesManifestUri(prop);
+		}
+
+		/**
+		 * When greater than 1, asset modules are loaded via XCC in batches of mlAssetLoadBatchSize modules, with this
+		 * many batches being loaded at once, each in its own transaction. Not used when mlStaticCheckAssets is true.
+		 */
+		prop = getProperty("mlAssetLoadThreadCount");
+		if (prop != null) {
+			logger.info("Asset load thread count: " + prop);
+			c.setAssetLoadThreadCount(Integer.parseInt(prop));
+		}
+
+		prop = getProperty("mlAssetLoadBatchSize");
+		if (prop != null) {
+			logger.info("Asset load batch size: " + prop);
+			c.setAssetLoadBatchSize(Integer.parseInt(prop));
+		}
+
+		/**
+		 * Whether modules are loaded into the test server - when mlTestRestPort is set - at the same time as the main
+		 * server's non-asset modules, once the main server's asset modules have been loaded. Defaults to true.
+		 */
+		prop = getProperty("mlLoadTestModulesConcurrently");
+		if (prop != null) {
+			logger.info("Load test modules concurrently: " + prop);
+			c.setLoadTestModulesConcurrently(Boolean.parseBoolean(prop));
+		}
+
 		/**
 		 * Whether or not to load asset modules in bulk - i.e. in one transaction. Defaults to true.
 		 */
@@ -359,6 +421,188 @@ public class DefaultAppConfigFactory extends PropertySourceFactory implements Ap
 			c.setResourceFilenamesToIgnore(values);
 		}
 
+		/**
+		 * When deploying or undeploying via a subclass of AbstractAppDeployer, the list of resources of each type - e.g.
+		 * roles - is fetched once and then kept up to date as resources are created and deleted, instead of being
+		 * fetched for every resource that's saved or deleted. Set this to false to always fetch the list.
+		 */
+		prop = getProperty("mlCacheResourceInventory");
+		if (prop != null) {
+			logger.info("Cache resource inventory: " + prop);
+			c.setCacheResourceInventory(Boolean.parseBoolean(prop));
+		}
+
+		/**
+		 * When a JSON resource payload is saved and the resource already exists, its current properties are first
+		 * retrieved and compared with the payload, and no update is sent if they match. This avoids needless
+		 * configuration changes - and possibly restarts - when redeploying an app server or database that hasn't changed.
+		 */
+		prop = getProperty("mlCompareResourcesBeforeUpdate");
+		if (prop != null) {
+			logger.info("Compare resources before update: " + prop);
+			c.setCompareResourcesBeforeUpdate(Boolean.parseBoolean(prop));
+		}
+
+		/**
+		 * Like mlCompareResourcesBeforeUpdate, but when the resource does differ from the payload, only the top-level
+		 * properties that differ are sent.
+		 */
+		prop = getProperty("mlUpdateChangedPropertiesOnly");
+		if (prop != null) {
+			logger.info("Update changed properties only: " + prop);
+			c.setUpdateChangedPropertiesOnly(Boolean.parseBoolean(prop));
+		}
+
+		/**
+		 * When deploying via a subclass of AbstractAppDeployer, a fingerprint of each resource payload - after tokens
+		 * are replaced - is stored in the file at mlResourceFingerprintsPath. On the next deploy to the same host, a
+		 * resource whose fingerprint hasn't changed is not sent to MarkLogic. Set mlForceDeployResources to true to send
+		 * every resource regardless, or mlVerifyUnchangedResources to true to still send an unchanged resource if it no
+		 * longer exists or - for a JSON payload - if its current properties no longer match the payload. Undeploying an app deletes the fingerprints file.
+		 */
+		prop = getProperty("mlSkipUnchangedResources");
+		if (prop != null) {
+			logger.info("Skip unchanged resources: " + prop);
+			c.setSkipUnchangedResources(Boolean.parseBoolean(prop));
+		}
+
+		prop = getProperty("mlResourceFingerprintsPath");
+		if (prop != null) {
+			logger.info("Resource fingerprints path: " + prop);
+			c.setResourceFingerprintsPath(prop);
+		}
+
+		prop = getProperty("mlForceDeployResources");
+		if (prop != null) {
+			logger.info("Force deploy resources: " + prop);
+			c.setForceDeployResources(Boolean.parseBoolean(prop));
+		}
+
+		prop = getProperty("mlVerifyUnchangedResources");
+		if (prop != null) {
+			logger.info("Verify unchanged resources: " + prop);
+			c.setVerifyUnchangedResources(Boolean.parseBoolean(prop));
+		}
+
+		/**
+		 * When greater than 1, commands that don't depend on each other are executed at the same time, using up to this
+		 * many threads.
+		 */
+		prop = getProperty("mlCommandThreadCount");
+		if (prop != null) {
+			logger.info("Command thread count: " + prop);
+			c.setCommandThreadCount(Integer.parseInt(prop));
+		}
+
+		/**
+		 * When true, a command that performs several actions requiring MarkLogic to restart - e.g. saving mimetypes or
+		 * deleting app servers - performs all of them and then waits once for MarkLogic to restart.
+		 */
+		prop = getProperty("mlBatchRestarts");
+		if (prop != null) {
+			logger.info("Batch restarts: " + prop);
+			c.setBatchRestarts(Boolean.parseBoolean(prop));
+		}
+
+		/**
+		 * When true, waiting for MarkLogic to restart checks every host in the cluster, which requires the host names
+		 * known to MarkLogic to be resolvable from the machine running the deployer.
+		 */
+		prop = getProperty("mlCheckAllHostsAfterRestart");
+		if (prop != null) {
+			logger.info("Check all hosts after restart: " + prop);
+			c.setCheckAllHostsAfterRestart(Boolean.parseBoolean(prop));
+		}
+
+		/**
+		 * When greater than 1, commands such as those for users, privileges, and amps save or delete up to this many
+		 * resources at a time.
+		 */
+		prop = getProperty("mlResourceThreadCount");
+		if (prop != null) {
+			logger.info("Resource thread count: " + prop);
+			c.setResourceThreadCount(Integer.parseInt(prop));
+		}
+
+		/**
+		 * When greater than 1, the forests for a database are created on up to this many hosts at a time, and replica
+		 * forests are configured using this many threads.
+		 */
+		prop = getProperty("mlForestThreadCount");
+		if (prop != null) {
+			logger.info("Forest thread count: " + prop);
+			c.setForestThreadCount(Integer.parseInt(prop));
+		}
+
+		/**
+		 * When true, new forests and replica forests are spread across hosts based on how many forests each host already
+		 * has, its zone, and its weight, instead of round-robin by host.
+		 */
+		prop = getProperty("mlBalanceForestPlacement");
+		if (prop != null) {
+			logger.info("Balance forest placement: " + prop);
+			c.setBalanceForestPlacement(Boolean.parseBoolean(prop));
+		}
+
+		/**
+		 * Comma-delimited list of host names and weights of the form "hostName,weight,hostName,weight,etc"; used when
+		 * mlBalanceForestPlacement is true. Hosts have a weight of 1 by default, and a host with a weight of 0 is not
+		 * given any new forests.
+		 */
+		prop = getProperty("mlForestPlacementHostWeights");
+		if (prop != null) {
+			logger.info("Forest placement host weights: " + prop);
+			String[] tokens = prop.split(",");
+			if (tokens.length % 2 != 0) {
+				throw new IllegalArgumentException("mlForestPlacementHostWeights must be a comma-delimited list of "
+					+ "host names and weights of the form hostName,weight,hostName,weight; value: " + prop);
+			}
+			Map<String, Double> map = new HashMap<>();
+			for (int i = 0; i < tokens.length; i += 2) {
+				try {
+					map.put(tokens[i].trim(), Double.parseDouble(tokens[i + 1].trim()));
+				} catch (NumberFormatException ex) {
+					throw new IllegalArgumentException(format("Invalid weight for host %s in "
+						+ "mlForestPlacementHostWeights: %s", tokens[i].trim(), tokens[i + 1]), ex);
+				}
+			}
+			c.setForestPlacementHostWeights(map);
+		}
+
+		/**
+		 * When true, the configuration directory is scanned once at the start of a deploy or undeploy - using up to
+		 * mlResourceThreadCount threads - and commands then list and read files from that catalog instead of from the
+		 * filesystem. Useful when the configuration directory is on a network filesystem.
+		 */
+		prop = getProperty("mlCatalogConfigDir");
+		if (prop != null) {
+			logger.info("Catalog config dir: " + prop);
+			c.setCatalogConfigDir(Boolean.parseBoolean(prop));
+		}
+
+		/**
+		 * When true, the time spent in each command, on each resource file, in each Management API request, and
+		 * waiting for MarkLogic to restart is recorded. When a deploy or undeploy finishes, a JSON report is written to
+		 * mlProfileReportPath, and the mlProfileSummaryCount slowest commands, resources, and request paths are logged.
+		 */
+		prop = getProperty("mlProfileDeploy");
+		if (prop != null) {
+			logger.info("Profile deploy: " + prop);
+			c.setProfileDeploy(Boolean.parseBoolean(prop));
+		}
+
+		prop = getProperty("mlProfileReportPath");
+		if (prop != null) {
+			logger.info("Profile report path: " + prop);
+			c.setProfileReportPath(prop);
+		}
+
+		prop = getProperty("mlProfileSummaryCount");
+		if (prop != null) {
+			logger.info("Profile summary count: " + prop);
+			c.setProfileSummaryCount(Integer.parseInt(prop));
+		}
+
 		return c;
 	}
 
@@ -6,22 +6,31 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.springframework.util.FileCopyUtils;
 
+import com.marklogic.appdeployer.AppConfig;
 import com.marklogic.client.helper.LoggingObject;
+import com.marklogic.mgmt.AbstractResourceManager;
+import com.marklogic.mgmt.ManageConfig;
+import com.marklogic.mgmt.ParsedPayload;
+import com.marklogic.mgmt.PayloadParser;
 import com.marklogic.mgmt.ResourceManager;
 import com.marklogic.mgmt.SaveReceipt;
+import com.marklogic.mgmt.util.DeployProfiler;
 
 /**
  * Abstract base class that provides some convenience methods for implementing a command. Subclasses will typically
  * override the default sort order within the subclass constructor.
  */
-public abstract class AbstractCommand extends LoggingObject implements Command {
+public abstract class AbstractCommand extends LoggingObject implements DependentCommand {
 
     private int executeSortOrder = Integer.MAX_VALUE;
+    private List<Class<?>> executeDependencies;
     private boolean storeResourceIdsAsCustomTokens = false;
+    private PayloadParser payloadParser = new PayloadParser();
 
     protected TokenReplacer tokenReplacer = new DefaultTokenReplacer();
     private FilenameFilter resourceFilenameFilter = new ResourceFilenameFilter();
@@ -34,6 +43,35 @@ public abstract class AbstractCommand extends LoggingObject implements Command {
         return this.executeSortOrder;
     }
 
+    /**
+     * A subclass can declare the commands it depends on via setExecuteDependencies; by default, a command depends on
+     * every command that's sorted before it.
+     */
+    @Override
+    public List<Class<?>> getExecuteDependencies() {
+        return this.executeDependencies;
+    }
+
+    /**
+     * A command that may restart MarkLogic when it's executed should return true so that it's executed on its own, as
+     * other commands would fail while MarkLogic is restarting.
+     *
+     * @return false by default
+     */
+    public boolean isRestartBarrierOnExecute() {
+        return false;
+    }
+
+    /**
+     * A command that restarts MarkLogic when it's undone should return true so that it's undone on its own, as other
+     * commands would fail while MarkLogic is restarting.
+     *
+     * @return false by default
+     */
+    public boolean isRestartBarrierOnUndo() {
+        return false;
+    }
+
     /**
      * Convenience method for setting the names of files to ignore when reading resources from a directory. Will
      * preserve any filenames already being ignored on the underlying FilenameFilter.
@@ -86,27 +124,132 @@ public abstract class AbstractCommand extends LoggingObject implements Command {
 	 * @return
 	 */
 	protected String copyFileToString(File f, CommandContext context) {
-		String str = copyFileToString(f);
+		String str = readFileToString(f, context);
 		return str != null ? tokenReplacer.replaceTokens(str, context.getAppConfig(), false) : str;
 	}
 
     /**
      * Provides a basic implementation for saving a resource defined in a File, including replacing tokens.
      *
+     * If the CommandContext has a ResourceFingerprintStore, the resource is not saved when its token-replaced payload
+     * is the same as when it was last deployed to the same host; the receipt that's returned then has no resource ID,
+     * path, or response. Resources whose IDs are stored as custom tokens are always saved, as later resources depend
+     * on those tokens.
+     *
      * @param mgr
      * @param context
      * @param f
      * @return
      */
     protected SaveReceipt saveResource(ResourceManager mgr, CommandContext context, File f) {
-		String payload = copyFileToString(f, context);
-        SaveReceipt receipt = mgr.save(payload);
+        String payload = copyFileToString(f, context);
+        return saveResource(mgr, context, f, payloadParser.parse(payload));
+    }
+
+    /**
+     * Same as saveResource(ResourceManager, CommandContext, File), but for a caller that has already read and parsed
+     * the file - e.g. to get a value from the payload that's needed to construct the ResourceManager. The parsed
+     * payload is passed to the ResourceManager so that it's not parsed again.
+     *
+     * @param mgr
+     * @param context
+     * @param f
+     * @param parsedPayload
+     * @return
+     */
+    protected SaveReceipt saveResource(ResourceManager mgr, CommandContext context, File f,
+            ParsedPayload parsedPayload) {
+        DeployProfiler profiler = context.getProfiler();
+        if (profiler == null) {
+            return doSaveResource(mgr, context, f, parsedPayload);
+        }
+        String previousActivity = profiler.startActivity(f.getAbsolutePath());
+        long start = System.currentTimeMillis();
+        try {
+            return doSaveResource(mgr, context, f, parsedPayload);
+        } finally {
+            profiler.recordResource(f.getAbsolutePath(), "save", System.currentTimeMillis() - start);
+            profiler.restoreActivity(previousActivity);
+        }
+    }
+
+    protected SaveReceipt doSaveResource(ResourceManager mgr, CommandContext context, File f,
+            ParsedPayload parsedPayload) {
+        String payload = parsedPayload.getPayload();
+
+        ResourceFingerprintStore store = storeResourceIdsAsCustomTokens ? null : context.getResourceFingerprintStore();
+        String fingerprintKey = null;
+        String fingerprint = null;
+        if (store != null) {
+            fingerprintKey = buildFingerprintKey(mgr, context, f);
+            fingerprint = ResourceFingerprintStore.buildFingerprint(payload);
+            if (!context.getAppConfig().isForceDeployResources() && store.isUnchanged(fingerprintKey, fingerprint)
+                    && verifyUnchangedResource(mgr, context, parsedPayload)) {
+                if (logger.isInfoEnabled()) {
+                    logger.info("Resource is unchanged since last deploy, so not saving: " + f.getAbsolutePath());
+                }
+                return new SaveReceipt(null, parsedPayload, null, null, 0, -1);
+            }
+        }
+
+        applyUpdateSettings(mgr, context);
+        SaveReceipt receipt = mgr instanceof AbstractResourceManager ? ((AbstractResourceManager) mgr)
+                .save(parsedPayload) : mgr.save(payload);
+        if (store != null) {
+            store.record(fingerprintKey, fingerprint);
+        }
         if (storeResourceIdsAsCustomTokens) {
             storeTokenForResourceId(receipt, context);
         }
         return receipt;
     }
 
+    protected String buildFingerprintKey(ResourceManager mgr, CommandContext context, File f) {
+        ManageConfig config = context.getManageClient().getManageConfig();
+        String resourcesPath = mgr instanceof AbstractResourceManager ? ((AbstractResourceManager) mgr)
+                .getResourcesPath() : mgr.getClass().getName();
+        return ResourceFingerprintStore.buildKey(config.getHost() + ":" + config.getPort(), resourcesPath, f);
+    }
+
+    /**
+     * When verifyUnchangedResources is enabled, a resource with an unchanged fingerprint is only skipped if it still
+     * exists and its current properties still match the payload, which covers resources that were deleted or
+     * modified by something other than this deployer.
+     *
+     * @param mgr
+     * @param context
+     * @param payload
+     * @return
+     */
+    protected boolean verifyUnchangedResource(ResourceManager mgr, CommandContext context, ParsedPayload payload) {
+        if (!context.getAppConfig().isVerifyUnchangedResources()) {
+            return true;
+        }
+        return mgr instanceof AbstractResourceManager
+                && ((AbstractResourceManager) mgr).payloadMatchesServer(payload);
+    }
+
+    /**
+     * Applies the AppConfig settings that control whether an existing resource is compared with its payload before
+     * being updated. Only the settings that are enabled are applied, so a manager configured by a subclass to compare
+     * before updating will still do so.
+     *
+     * @param mgr
+     * @param context
+     */
+    protected void applyUpdateSettings(ResourceManager mgr, CommandContext context) {
+        if (mgr instanceof AbstractResourceManager) {
+            AbstractResourceManager arm = (AbstractResourceManager) mgr;
+            AppConfig appConfig = context.getAppConfig();
+            if (appConfig.isCompareResourcesBeforeUpdate()) {
+                arm.setCompareBeforeUpdate(true);
+            }
+            if (appConfig.isUpdateChangedPropertiesOnly()) {
+                arm.setUpdateChangedPropertiesOnly(true);
+            }
+        }
+    }
+
     /**
      * Any resource that may be referenced by its ID by another resource will most likely need its ID stored as a custom
      * token so that it can be referenced by the other resource. To enable this, the subclass should set
@@ -116,7 +259,7 @@ public abstract class AbstractCommand extends LoggingObject implements Command {
      * @param context
      */
     protected void storeTokenForResourceId(SaveReceipt receipt, CommandContext context) {
-        URI location = receipt.getResponse().getHeaders().getLocation();
+        URI location = receipt.getResponse() != null ? receipt.getResponse().getHeaders().getLocation() : null;
 
         String idValue = null;
         String resourceName = null;
@@ -137,7 +280,7 @@ public abstract class AbstractCommand extends LoggingObject implements Command {
             logger.info(format("Storing token with key '%s' and value '%s'", key, idValue));
         }
 
-        context.getAppConfig().getCustomTokens().put(key, idValue);
+        context.getAppConfig().addCustomToken(key, idValue);
     }
 
     protected File[] listFilesInDirectory(File dir) {
@@ -146,6 +289,46 @@ public abstract class AbstractCommand extends LoggingObject implements Command {
         return files;
     }
 
+    /**
+     * Lists the resource files in the given directory via the CommandContext's ConfigDirCatalog, if it has one.
+     *
+     * @param dir
+     * @param context
+     * @return
+     */
+    protected File[] listFilesInDirectory(File dir, CommandContext context) {
+        ConfigDirCatalog catalog = context.getConfigDirCatalog();
+        if (catalog == null) {
+            return listFilesInDirectory(dir);
+        }
+        File[] files = catalog.listFiles(dir, resourceFilenameFilter);
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * Reads the file into a String - without replacing tokens - via the CommandContext's ConfigDirCatalog, if it has
+     * one, so that a file read by more than one command is only read once.
+     *
+     * @param f
+     * @param context
+     * @return
+     */
+    protected String readFileToString(File f, CommandContext context) {
+        ConfigDirCatalog catalog = context.getConfigDirCatalog();
+        return catalog != null ? new String(catalog.readBytes(f)) : copyFileToString(f);
+    }
+
+    /**
+     * @param f
+     * @param context
+     * @return true if the file exists, as determined by the CommandContext's ConfigDirCatalog if it has one
+     */
+    protected boolean fileExists(File f, CommandContext context) {
+        ConfigDirCatalog catalog = context.getConfigDirCatalog();
+        return catalog != null ? catalog.exists(f) : f.exists();
+    }
+
     public void setTokenReplacer(TokenReplacer tokenReplacer) {
         this.tokenReplacer = tokenReplacer;
     }
@@ -154,6 +337,19 @@ public abstract class AbstractCommand extends LoggingObject implements Command {
         this.executeSortOrder = executeSortOrder;
     }
 
+    /**
+     * @param commandClasses
+     *            the classes of the commands that this command depends on; calling this with no classes declares that
+     *            this command doesn't depend on any other command
+     */
+    public void setExecuteDependencies(Class<?>... commandClasses) {
+        this.executeDependencies = commandClasses != null ? Arrays.asList(commandClasses) : null;
+    }
+
+    public boolean isStoreResourceIdsAsCustomTokens() {
+        return storeResourceIdsAsCustomTokens;
+    }
+
     public void setStoreResourceIdsAsCustomTokens(boolean storeResourceIdsAsCustomTokens) {
         this.storeResourceIdsAsCustomTokens = storeResourceIdsAsCustomTokens;
     }
@@ -5,44 +5,82 @@ import java.io.File;
 import com.marklogic.mgmt.ResourceManager;
 import com.marklogic.mgmt.SaveReceipt;
 import com.marklogic.mgmt.admin.ActionRequiringRestart;
+import com.marklogic.mgmt.util.DeployProfiler;
 
 /**
  * Provides a basic implementation for creating/updating a resource while an app is being deployed and then deleting it
  * while the app is being undeployed.
+ * <p>
+ * The files in a resource directory are processed using up to threadCount threads - or AppConfig's resourceThreadCount
+ * if threadCount isn't set. A subclass whose resources depend on other resources of the same type should either set
+ * parallelProcessingAllowed to false or order the files itself, as DeployRolesCommand does. Files are always
+ * processed one at a time when resource IDs are stored as custom tokens or MarkLogic restarts after a resource is
+ * deleted.
  */
 public abstract class AbstractResourceCommand extends AbstractUndoableCommand {
 
     private boolean deleteResourcesOnUndo = true;
     private boolean restartAfterDelete = false;
     private boolean catchExceptionOnDeleteFailure = false;
+    private boolean parallelProcessingAllowed = true;
+    private int threadCount = 0;
+    private boolean failFast = true;
 
     protected abstract File[] getResourceDirs(CommandContext context);
 
     protected abstract ResourceManager getResourceManager(CommandContext context);
 
+    /**
+     * Resources are saved within a restart batch, so that resources requiring a restart - e.g. mimetypes - only wait
+     * once for MarkLogic to restart if AppConfig enables batching restarts.
+     */
     @Override
     public void execute(CommandContext context) {
-        for (File resourceDir : getResourceDirs(context)) {
-            processExecuteOnResourceDir(context, resourceDir);
+        context.beginRestartBatch();
+        try {
+            for (File resourceDir : getResourceDirs(context)) {
+                processExecuteOnResourceDir(context, resourceDir);
+            }
+        } finally {
+            context.endRestartBatch();
         }
     }
 
-    protected void processExecuteOnResourceDir(CommandContext context, File resourceDir) {
-        if (resourceDir.exists()) {
-            ResourceManager mgr = getResourceManager(context);
+    protected void processExecuteOnResourceDir(final CommandContext context, File resourceDir) {
+        if (fileExists(resourceDir, context)) {
+            final ResourceManager mgr = getResourceManager(context);
             if (logger.isInfoEnabled()) {
                 logger.info("Processing files in directory: " + resourceDir.getAbsolutePath());
             }
-            for (File f : listFilesInDirectory(resourceDir)) {
-                if (logger.isInfoEnabled()) {
-                    logger.info("Processing file: " + f.getAbsolutePath());
-                }
-                SaveReceipt receipt = saveResource(mgr, context, f);
-                afterResourceSaved(mgr, context, f, receipt);
-            }
+            int count = isStoreResourceIdsAsCustomTokens() ? 1 : determineThreadCount(context);
+            new ParallelFileProcessor(count, failFast).process(listFilesInDirectory(resourceDir, context),
+                    new ParallelFileProcessor.FileCallback() {
+                        @Override
+                        public void process(File f) {
+                            if (logger.isInfoEnabled()) {
+                                logger.info("Processing file: " + f.getAbsolutePath());
+                            }
+                            SaveReceipt receipt = saveResource(mgr, context, f);
+                            afterResourceSaved(mgr, context, f, receipt);
+                        }
+                    });
         }
     }
 
+    /**
+     * @param context
+     * @return the number of threads to use for processing the files in a resource directory
+     */
+    protected int determineThreadCount(CommandContext context) {
+        if (!parallelProcessingAllowed) {
+            return 1;
+        }
+        if (threadCount > 0) {
+            return threadCount;
+        }
+        return context.getAppConfig() != null ? context.getAppConfig().getResourceThreadCount() : 1;
+    }
+
     /**
      * Subclasses can override this to add functionality after a resource has been saved.
      *
@@ -59,24 +97,34 @@ public abstract class AbstractResourceCommand extends AbstractUndoableCommand {
     @Override
     public void undo(CommandContext context) {
         if (deleteResourcesOnUndo) {
-            for (File resourceDir : getResourceDirs(context)) {
-                processUndoOnResourceDir(context, resourceDir);
+            context.beginRestartBatch();
+            try {
+                for (File resourceDir : getResourceDirs(context)) {
+                    processUndoOnResourceDir(context, resourceDir);
+                }
+            } finally {
+                context.endRestartBatch();
             }
         }
     }
 
-    protected void processUndoOnResourceDir(CommandContext context, File resourceDir) {
-        if (resourceDir.exists()) {
+    protected void processUndoOnResourceDir(final CommandContext context, File resourceDir) {
+        if (fileExists(resourceDir, context)) {
             if (logger.isInfoEnabled()) {
                 logger.info("Processing files in directory: " + resourceDir.getAbsolutePath());
             }
             final ResourceManager mgr = getResourceManager(context);
-            for (File f : listFilesInDirectory(resourceDir)) {
-                if (logger.isInfoEnabled()) {
-                    logger.info("Processing file: " + f.getAbsolutePath());
-                }
-                deleteResource(mgr, context, f);
-            }
+            int count = restartAfterDelete ? 1 : determineThreadCount(context);
+            new ParallelFileProcessor(count, failFast).process(listFilesInDirectory(resourceDir, context),
+                    new ParallelFileProcessor.FileCallback() {
+                        @Override
+                        public void process(File f) {
+                            if (logger.isInfoEnabled()) {
+                                logger.info("Processing file: " + f.getAbsolutePath());
+                            }
+                            deleteResource(mgr, context, f);
+                        }
+                    });
         }
     }
 
@@ -91,6 +139,22 @@ public abstract class AbstractResourceCommand extends AbstractUndoableCommand {
      * @param f
      */
     protected void deleteResource(final ResourceManager mgr, CommandContext context, File f) {
+        DeployProfiler profiler = context.getProfiler();
+        if (profiler == null) {
+            doDeleteResource(mgr, context, f);
+            return;
+        }
+        String previousActivity = profiler.startActivity(f.getAbsolutePath());
+        long start = System.currentTimeMillis();
+        try {
+            doDeleteResource(mgr, context, f);
+        } finally {
+            profiler.recordResource(f.getAbsolutePath(), "delete", System.currentTimeMillis() - start);
+            profiler.restoreActivity(previousActivity);
+        }
+    }
+
+    protected void doDeleteResource(final ResourceManager mgr, CommandContext context, File f) {
         final String payload = copyFileToString(f, context);
         try {
             if (restartAfterDelete) {
@@ -131,7 +195,49 @@ public abstract class AbstractResourceCommand extends AbstractUndoableCommand {
         return restartAfterDelete;
     }
 
+    /**
+     * Deleting the resources of a command that restarts after delete restarts MarkLogic.
+     */
+    @Override
+    public boolean isRestartBarrierOnUndo() {
+        return restartAfterDelete;
+    }
+
     public void setCatchExceptionOnDeleteFailure(boolean catchExceptionOnDeleteFailure) {
         this.catchExceptionOnDeleteFailure = catchExceptionOnDeleteFailure;
     }
+
+    public boolean isParallelProcessingAllowed() {
+        return parallelProcessingAllowed;
+    }
+
+    public void setParallelProcessingAllowed(boolean parallelProcessingAllowed) {
+        this.parallelProcessingAllowed = parallelProcessingAllowed;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * @param threadCount
+     *            the number of threads for processing the files in a resource directory; if not greater than zero,
+     *            AppConfig's resourceThreadCount is used
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    /**
+     * @param failFast
+     *            if false, every file in a resource directory is processed even if one fails, with the failures then
+     *            reported together
+     */
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
 }
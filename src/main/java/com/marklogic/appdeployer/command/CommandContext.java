@@ -3,12 +3,16 @@ package com.marklogic.appdeployer.command;
 import com.marklogic.appdeployer.AppConfig;
 import com.marklogic.mgmt.ManageClient;
 import com.marklogic.mgmt.admin.AdminManager;
+import com.marklogic.mgmt.util.DeployProfiler;
 
 public class CommandContext {
 
     private AppConfig appConfig;
     private ManageClient manageClient;
     private AdminManager adminManager;
+    private ResourceFingerprintStore resourceFingerprintStore;
+    private ConfigDirCatalog configDirCatalog;
+    private DeployProfiler profiler;
 
     public CommandContext(AppConfig appConfig, ManageClient manageClient, AdminManager adminManager) {
         super();
@@ -28,4 +32,60 @@ public class CommandContext {
     public AdminManager getAdminManager() {
         return adminManager;
     }
+
+    /**
+     * @return the store used to skip resources that haven't changed since the last deploy, or null if resources should
+     *         always be saved
+     */
+    public ResourceFingerprintStore getResourceFingerprintStore() {
+        return resourceFingerprintStore;
+    }
+
+    /**
+     * @return the catalog of the files in the configuration directory, or null if commands should read the
+     *         configuration directory themselves
+     */
+    public ConfigDirCatalog getConfigDirCatalog() {
+        return configDirCatalog;
+    }
+
+    /**
+     * @return the profiler that records how long each resource takes to save or delete, or null if no timings should
+     *         be recorded
+     */
+    public DeployProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * If AppConfig enables batching restarts, starts a restart batch on the AdminManager so that actions requiring a
+     * restart don't each wait for MarkLogic to restart; callers must call endRestartBatch in a finally block.
+     */
+    public void beginRestartBatch() {
+        if (adminManager != null && appConfig != null && appConfig.isBatchRestarts()) {
+            adminManager.beginRestartBatch();
+        }
+    }
+
+    /**
+     * Ends a batch started by beginRestartBatch, waiting once for MarkLogic to restart if any action in the batch
+     * required a restart.
+     */
+    public void endRestartBatch() {
+        if (adminManager != null && appConfig != null && appConfig.isBatchRestarts()) {
+            adminManager.endRestartBatch();
+        }
+    }
+
+    public void setResourceFingerprintStore(ResourceFingerprintStore resourceFingerprintStore) {
+        this.resourceFingerprintStore = resourceFingerprintStore;
+    }
+
+    public void setConfigDirCatalog(ConfigDirCatalog configDirCatalog) {
+        this.configDirCatalog = configDirCatalog;
+    }
+
+    public void setProfiler(DeployProfiler profiler) {
+        this.profiler = profiler;
+    }
 }
@@ -0,0 +1,311 @@
+package com.marklogic.appdeployer.command;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.FileCopyUtils;
+
+import com.marklogic.client.helper.LoggingObject;
+
+/**
+ * In-memory catalog of every file and directory under a configuration directory, built by walking the directory tree
+ * once - with each top-level directory walked on its own thread if more than one thread is given to scan. Commands can
+ * then list directories, check whether files exist, and read files via the catalog instead of each making its own
+ * filesystem calls, which matters when the configuration directory is on a network filesystem.
+ * <p>
+ * The contents of a file are cached the first time the file is read, keyed on its path along with the last-modified
+ * time and size recorded by the most recent scan; calling scan again thus picks up files that have since been added,
+ * removed, or modified. Files that aren't under the configuration directory are always read from the filesystem.
+ */
+public class ConfigDirCatalog extends LoggingObject {
+
+    private final File baseDir;
+    private final String basePath;
+
+    private Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private Map<String, List<String>> childNames = new ConcurrentHashMap<>();
+    private Map<String, Content> contents = new ConcurrentHashMap<>();
+
+    public ConfigDirCatalog(File baseDir) {
+        this.baseDir = baseDir.getAbsoluteFile();
+        this.basePath = this.baseDir.getPath();
+    }
+
+    /**
+     * Walks the configuration directory, replacing whatever was found by a previous scan. Cached file contents are
+     * kept, but are only used for files whose last-modified time and size haven't changed.
+     *
+     * @param threadCount
+     *            the number of top-level directories to walk at the same time
+     */
+    public void scan(int threadCount) {
+        long start = System.currentTimeMillis();
+        Map<String, Entry> newEntries = new ConcurrentHashMap<>();
+        Map<String, List<String>> newChildNames = new ConcurrentHashMap<>();
+
+        List<Path> topLevelDirs = new ArrayList<>();
+        if (baseDir.isDirectory()) {
+            Path base = baseDir.toPath();
+            newEntries.put(basePath, new Entry(true, 0, 0));
+            List<String> names = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(base)) {
+                for (Path p : stream) {
+                    BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                    names.add(p.getFileName().toString());
+                    if (attrs.isDirectory()) {
+                        topLevelDirs.add(p);
+                    } else {
+                        newEntries.put(p.toString(), new Entry(attrs));
+                    }
+                }
+            } catch (IOException ex) {
+                throw new RuntimeException("Unable to list files in directory: " + basePath + "; cause: "
+                        + ex.getMessage(), ex);
+            }
+            Collections.sort(names);
+            newChildNames.put(basePath, names);
+        }
+
+        if (threadCount > 1 && topLevelDirs.size() > 1) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ml-config-");
+            threadFactory.setDaemon(true);
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, topLevelDirs.size()),
+                    threadFactory);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (Path dir : topLevelDirs) {
+                    futures.add(executor.submit(new WalkTask(dir, newEntries, newChildNames)));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while scanning directory: " + basePath, ex);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(
+                        "Unable to scan directory: " + basePath + "; cause: " + cause.getMessage(), cause);
+            } finally {
+                executor.shutdownNow();
+            }
+        } else {
+            for (Path dir : topLevelDirs) {
+                new WalkTask(dir, newEntries, newChildNames).run();
+            }
+        }
+
+        this.entries = newEntries;
+        this.childNames = newChildNames;
+        for (String path : contents.keySet()) {
+            if (!newEntries.containsKey(path)) {
+                contents.remove(path);
+            }
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info(format("Cataloged %d files and directories under %s in %d ms", newEntries.size(), basePath,
+                    System.currentTimeMillis() - start));
+        }
+    }
+
+    /**
+     * @param f
+     * @return true if the file is the configuration directory or is under it, and is thus served by this catalog
+     */
+    public boolean isCataloged(File f) {
+        String path = f.getAbsolutePath();
+        return path.equals(basePath) || path.startsWith(basePath + File.separator);
+    }
+
+    public boolean exists(File f) {
+        return isCataloged(f) ? entries.containsKey(f.getAbsolutePath()) : f.exists();
+    }
+
+    public boolean isDirectory(File f) {
+        if (!isCataloged(f)) {
+            return f.isDirectory();
+        }
+        Entry entry = entries.get(f.getAbsolutePath());
+        return entry != null && entry.directory;
+    }
+
+    /**
+     * Same contract as File.listFiles(FilenameFilter) - the files are built from the given directory, and null is
+     * returned if the directory doesn't exist. Files are returned in name order.
+     *
+     * @param dir
+     * @param filter
+     *            optional
+     * @return
+     */
+    public File[] listFiles(File dir, FilenameFilter filter) {
+        if (!isCataloged(dir)) {
+            return dir.listFiles(filter);
+        }
+        List<String> names = childNames.get(dir.getAbsolutePath());
+        if (names == null) {
+            return null;
+        }
+        List<File> files = new ArrayList<>(names.size());
+        for (String name : names) {
+            if (filter == null || filter.accept(dir, name)) {
+                files.add(new File(dir, name));
+            }
+        }
+        return files.toArray(new File[files.size()]);
+    }
+
+    /**
+     * @param f
+     * @return the contents of the file, which may be shared with other callers and thus must not be modified
+     */
+    public byte[] readBytes(File f) {
+        String path = f.getAbsolutePath();
+        Entry entry = isCataloged(f) ? entries.get(path) : null;
+        if (entry == null || entry.directory) {
+            return copyToByteArray(f);
+        }
+        Content content = contents.get(path);
+        if (content == null || content.lastModified != entry.lastModified || content.size != entry.size) {
+            content = new Content(entry, copyToByteArray(f));
+            contents.put(path, content);
+        }
+        return content.bytes;
+    }
+
+    /**
+     * @return the number of files and directories found by the last scan, including the configuration directory
+     */
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    public File getBaseDir() {
+        return baseDir;
+    }
+
+    protected byte[] copyToByteArray(File f) {
+        try {
+            return FileCopyUtils.copyToByteArray(f);
+        } catch (IOException ex) {
+            throw new RuntimeException("Unable to read file: " + f.getAbsolutePath() + "; cause: " + ex.getMessage(),
+                    ex);
+        }
+    }
+
+    /**
+     * Walks a directory tree, recording every file and directory along with the names of the children of each
+     * directory. Symbolic links are followed, as File.listFiles would, so that a symlinked directory is cataloged as
+     * a directory; a link back to one of its own ancestors is cataloged as an empty directory instead of being walked
+     * again.
+     */
+    private static class WalkTask implements Runnable {
+
+        private Path dir;
+        private Map<String, Entry> entries;
+        private Map<String, List<String>> childNames;
+
+        WalkTask(Path dir, Map<String, Entry> entries, Map<String, List<String>> childNames) {
+            this.dir = dir;
+            this.entries = entries;
+            this.childNames = childNames;
+        }
+
+        @Override
+        public void run() {
+            final Map<String, List<String>> names = new HashMap<>();
+            try {
+                Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                        new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) {
+                        entries.put(d.toString(), new Entry(true, 0, 0));
+                        names.put(d.toString(), new ArrayList<String>());
+                        addToParent(d);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path f, BasicFileAttributes attrs) {
+                        entries.put(f.toString(), new Entry(attrs));
+                        addToParent(f);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path f, IOException ex) throws IOException {
+                        if (ex instanceof FileSystemLoopException) {
+                            entries.put(f.toString(), new Entry(true, 0, 0));
+                            names.put(f.toString(), new ArrayList<String>());
+                            addToParent(f);
+                            return FileVisitResult.CONTINUE;
+                        }
+                        throw ex;
+                    }
+
+                    private void addToParent(Path p) {
+                        List<String> siblings = names.get(p.getParent().toString());
+                        if (siblings != null) {
+                            siblings.add(p.getFileName().toString());
+                        }
+                    }
+                });
+            } catch (IOException ex) {
+                throw new RuntimeException("Unable to scan directory: " + dir + "; cause: " + ex.getMessage(), ex);
+            }
+            for (Map.Entry<String, List<String>> e : names.entrySet()) {
+                Collections.sort(e.getValue());
+                childNames.put(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    private static class Entry {
+        private final boolean directory;
+        private final long lastModified;
+        private final long size;
+
+        Entry(BasicFileAttributes attrs) {
+            this(attrs.isDirectory(), attrs.lastModifiedTime().toMillis(), attrs.size());
+        }
+
+        Entry(boolean directory, long lastModified, long size) {
+            this.directory = directory;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+    }
+
+    private static class Content {
+        private final long lastModified;
+        private final long size;
+        private final byte[] bytes;
+
+        Content(Entry entry, byte[] bytes) {
+            this.lastModified = entry.lastModified;
+            this.size = entry.size;
+            this.bytes = bytes;
+        }
+    }
+}
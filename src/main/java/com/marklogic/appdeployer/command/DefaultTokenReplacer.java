@@ -1,37 +1,154 @@
 package com.marklogic.appdeployer.command;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import com.marklogic.appdeployer.AppConfig;
+import com.marklogic.appdeployer.util.CompiledTokens;
 
+/**
+ * Replaces the default tokens - e.g. %%NAME%% and %%DATABASE%% - and every custom token in AppConfig in a single pass
+ * via CompiledTokens. The compiled tokens are reused until a default token value changes, or until the custom tokens
+ * change according to AppConfig.getCustomTokensVersion or the number of custom tokens - e.g. when a command stores a
+ * resource ID as a custom token. So a custom token whose value is changed by putting it directly into the map of
+ * custom tokens should instead be changed via AppConfig.addCustomToken.
+ * <p>
+ * A subclass that overrides replaceDefaultTokens or replaceCustomTokens has those methods invoked in turn instead.
+ */
 public class DefaultTokenReplacer implements TokenReplacer {
 
+    private final boolean replaceMethodsOverridden = isOverridden("replaceDefaultTokens")
+            || isOverridden("replaceCustomTokens");
+
+    private volatile CachedTokens cachedTokens;
+    private volatile CachedTokens cachedTestTokens;
+
     public String replaceTokens(String payload, AppConfig appConfig, boolean isTestResource) {
-        payload = replaceDefaultTokens(payload, appConfig, isTestResource);
-        return replaceCustomTokens(payload, appConfig, isTestResource);
+        if (replaceMethodsOverridden) {
+            payload = replaceDefaultTokens(payload, appConfig, isTestResource);
+            return replaceCustomTokens(payload, appConfig, isTestResource);
+        }
+        return getCompiledTokens(appConfig, isTestResource).replace(payload);
     }
 
     protected String replaceDefaultTokens(String payload, AppConfig appConfig, boolean isTestResource) {
-        payload = payload.replace("%%NAME%%",
-                isTestResource ? appConfig.getTestRestServerName() : appConfig.getRestServerName());
-        payload = payload.replace("%%GROUP%%", appConfig.getGroupName());
-        payload = payload.replace("%%DATABASE%%",
-                isTestResource ? appConfig.getTestContentDatabaseName() : appConfig.getContentDatabaseName());
-        payload = payload.replace("%%MODULES_DATABASE%%", appConfig.getModulesDatabaseName());
-        payload = payload.replace("%%TRIGGERS_DATABASE%%", appConfig.getTriggersDatabaseName());
-        payload = payload.replace("%%SCHEMAS_DATABASE%%", appConfig.getSchemasDatabaseName());
-        payload = payload.replace("%%PORT%%", isTestResource ? appConfig.getTestRestPort().toString() : appConfig
-                .getRestPort().toString());
-        return payload;
+        return replace(payload, buildDefaultTokens(appConfig, isTestResource));
     }
 
     protected String replaceCustomTokens(String payload, AppConfig appConfig, boolean isTestResource) {
         Map<String, String> customTokens = appConfig.getCustomTokens();
         if (customTokens != null) {
-            for (String key : customTokens.keySet()) {
-                payload = payload.replace(key, customTokens.get(key));
+            synchronized (customTokens) {
+                payload = replace(payload, customTokens);
+            }
+        }
+        return payload;
+    }
+
+    private String replace(String payload, Map<String, String> tokens) {
+        for (Map.Entry<String, String> entry : tokens.entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null) {
+                payload = payload.replace(entry.getKey(), entry.getValue());
             }
         }
         return payload;
     }
+
+    protected CompiledTokens getCompiledTokens(AppConfig appConfig, boolean isTestResource) {
+        Map<String, String> customTokens = appConfig.getCustomTokens();
+        int version = appConfig.getCustomTokensVersion();
+        int size = 0;
+        if (customTokens != null) {
+            synchronized (customTokens) {
+                size = customTokens.size();
+            }
+        }
+        String[] defaultValues = buildDefaultTokens(appConfig, isTestResource).values().toArray(new String[0]);
+
+        CachedTokens cached = isTestResource ? cachedTestTokens : cachedTokens;
+        if (cached == null || cached.customTokens != customTokens || cached.version != version || cached.size != size
+                || !Arrays.equals(cached.defaultValues, defaultValues)) {
+            cached = new CachedTokens(new CompiledTokens(buildTokens(appConfig, isTestResource)), customTokens,
+                    version, size, defaultValues);
+            if (isTestResource) {
+                cachedTestTokens = cached;
+            } else {
+                cachedTokens = cached;
+            }
+        }
+        return cached.compiledTokens;
+    }
+
+    /**
+     * The default tokens are added after the custom tokens so that they take precedence over a custom token with the
+     * same name.
+     *
+     * @param appConfig
+     * @param isTestResource
+     * @return
+     */
+    protected Map<String, String> buildTokens(AppConfig appConfig, boolean isTestResource) {
+        Map<String, String> tokens = new HashMap<>();
+        Map<String, String> customTokens = appConfig.getCustomTokens();
+        if (customTokens != null) {
+            synchronized (customTokens) {
+                tokens.putAll(customTokens);
+            }
+        }
+        tokens.putAll(buildDefaultTokens(appConfig, isTestResource));
+        return tokens;
+    }
+
+    /**
+     * @param appConfig
+     * @param isTestResource
+     * @return the default tokens, in the order they were replaced in before they were compiled
+     */
+    protected Map<String, String> buildDefaultTokens(AppConfig appConfig, boolean isTestResource) {
+        Map<String, String> tokens = new LinkedHashMap<>();
+        tokens.put("%%NAME%%", isTestResource ? appConfig.getTestRestServerName() : appConfig.getRestServerName());
+        tokens.put("%%GROUP%%", appConfig.getGroupName());
+        tokens.put("%%DATABASE%%",
+                isTestResource ? appConfig.getTestContentDatabaseName() : appConfig.getContentDatabaseName());
+        tokens.put("%%MODULES_DATABASE%%", appConfig.getModulesDatabaseName());
+        tokens.put("%%TRIGGERS_DATABASE%%", appConfig.getTriggersDatabaseName());
+        tokens.put("%%SCHEMAS_DATABASE%%", appConfig.getSchemasDatabaseName());
+        Integer port = isTestResource ? appConfig.getTestRestPort() : appConfig.getRestPort();
+        tokens.put("%%PORT%%", port != null ? port.toString() : null);
+        return tokens;
+    }
+
+    private boolean isOverridden(String methodName) {
+        for (Class<?> c = getClass(); c != DefaultTokenReplacer.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod(methodName, String.class, AppConfig.class, boolean.class);
+                return true;
+            } catch (NoSuchMethodException ex) {
+                // Check the superclass
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compiled tokens, along with what they were compiled from.
+     */
+    private static class CachedTokens {
+        private final CompiledTokens compiledTokens;
+        private final Map<String, String> customTokens;
+        private final int version;
+        private final int size;
+        private final String[] defaultValues;
+
+        private CachedTokens(CompiledTokens compiledTokens, Map<String, String> customTokens, int version, int size,
+                String[] defaultValues) {
+            this.compiledTokens = compiledTokens;
+            this.customTokens = customTokens;
+            this.version = version;
+            this.size = size;
+            this.defaultValues = defaultValues;
+        }
+    }
 }
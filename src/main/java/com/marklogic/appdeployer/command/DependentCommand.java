@@ -0,0 +1,23 @@
+package com.marklogic.appdeployer.command;
+
+import java.util.List;
+
+/**
+ * Implement this interface for a command that can declare which other commands it depends on, which allows
+ * AbstractAppDeployer to execute it at the same time as commands it doesn't depend on when more than one command
+ * thread is configured.
+ * <p>
+ * A command that doesn't implement this interface - or returns null - is assumed to depend on every command that's
+ * sorted before it, and every command sorted after it is assumed to depend on it. When an application is undeployed,
+ * the dependencies are reversed - a command is undone before the commands it depends on.
+ */
+public interface DependentCommand extends Command {
+
+    /**
+     * @return the classes of the commands that must finish executing before this command is executed, or null if this
+     *         command depends on every command that's sorted before it. A declared class matches any command that's an
+     *         instance of it, and is ignored if no such command is sorted before this command.
+     */
+    public List<Class<?>> getExecuteDependencies();
+
+}
@@ -0,0 +1,131 @@
+package com.marklogic.appdeployer.command;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.marklogic.client.helper.LoggingObject;
+
+/**
+ * Processes a set of files - typically resource files in a config directory - using up to a given number of threads.
+ * Errors are reported in the order of the files, regardless of the order in which the files finished processing.
+ * <p>
+ * With failFast set to true, no file is started after any file has failed, and the error for the first failed file is
+ * rethrown once the files already being processed have finished. With failFast set to false, every file is processed,
+ * and the error for the first failed file is then rethrown if it's the only one; otherwise, a RuntimeException listing
+ * every failed file is thrown, with the first error as its cause.
+ */
+public class ParallelFileProcessor extends LoggingObject {
+
+    private int threadCount;
+    private boolean failFast;
+
+    /**
+     * Callback for processing a single file on one of the processor's threads.
+     */
+    public interface FileCallback {
+        public void process(File file);
+    }
+
+    public ParallelFileProcessor(int threadCount, boolean failFast) {
+        this.threadCount = threadCount;
+        this.failFast = failFast;
+    }
+
+    public void process(File[] files, final FileCallback callback) {
+        List<File> failedFiles = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+
+        if (threadCount <= 1 || files.length <= 1) {
+            for (File f : files) {
+                try {
+                    callback.process(f);
+                } catch (RuntimeException ex) {
+                    if (failFast) {
+                        throw ex;
+                    }
+                    failedFiles.add(f);
+                    errors.add(ex);
+                }
+            }
+            throwErrors(failedFiles, errors);
+            return;
+        }
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ml-resource-");
+        threadFactory.setDaemon(true);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, files.length), threadFactory);
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (final File f : files) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        if (failFast && failed.get()) {
+                            return null;
+                        }
+                        try {
+                            callback.process(f);
+                        } catch (RuntimeException ex) {
+                            failed.set(true);
+                            throw ex;
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (int i = 0; i < files.length; i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException ex) {
+                    failedFiles.add(files[i]);
+                    errors.add(ex.getCause());
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while processing files", ex);
+        } finally {
+            executor.shutdownNow();
+        }
+        throwErrors(failedFiles, errors);
+    }
+
+    protected void throwErrors(List<File> failedFiles, List<Throwable> errors) {
+        if (errors.isEmpty()) {
+            return;
+        }
+        for (int i = 1; i < errors.size(); i++) {
+            logger.error(format("Unable to process file %s; cause: %s", failedFiles.get(i).getAbsolutePath(),
+                    errors.get(i).getMessage()));
+        }
+
+        Throwable first = errors.get(0);
+        if (errors.size() == 1 || failFast) {
+            if (first instanceof RuntimeException) {
+                throw (RuntimeException) first;
+            } else if (first instanceof Error) {
+                throw (Error) first;
+            }
+        }
+
+        StringBuilder sb = new StringBuilder("Unable to process " + errors.size() + " file(s): ");
+        for (int i = 0; i < failedFiles.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(failedFiles.get(i).getName());
+        }
+        sb.append("; cause of first failure: ").append(first.getMessage());
+        throw new RuntimeException(sb.toString(), first);
+    }
+}
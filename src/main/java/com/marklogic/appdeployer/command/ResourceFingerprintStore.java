@@ -0,0 +1,134 @@
+package com.marklogic.appdeployer.command;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import com.marklogic.client.helper.LoggingObject;
+
+/**
+ * Persists a fingerprint - a SHA-256 hash - of each resource payload that was deployed, keyed on the Manage API host,
+ * the resources path, and the file that the payload came from. AbstractCommand uses this to skip resources whose
+ * token-replaced payload hasn't changed since the last successful deploy to the same host.
+ * <p>
+ * Fingerprints recorded during a deploy are held in memory and only written to the file - via a temporary file that
+ * then replaces the original - when save is called, which AbstractAppDeployer does once every command has succeeded.
+ * A failed deploy thus doesn't cause any resources to be skipped on the next deploy.
+ */
+public class ResourceFingerprintStore extends LoggingObject {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    private File file;
+    private Properties fingerprints = new Properties();
+    private Map<String, String> pendingFingerprints = new HashMap<>();
+
+    public ResourceFingerprintStore(File file) {
+        this.file = file;
+    }
+
+    public synchronized void load() {
+        fingerprints.clear();
+        if (file.exists()) {
+            try (InputStream in = new FileInputStream(file)) {
+                fingerprints.load(in);
+            } catch (IOException ex) {
+                logger.warn(format("Unable to load resource fingerprints from %s; cause: %s", file.getAbsolutePath(),
+                        ex.getMessage()));
+            }
+        }
+    }
+
+    public static String buildKey(String host, String resourcesPath, File resourceFile) {
+        return host + "|" + resourcesPath + "|" + resourceFile.getAbsolutePath();
+    }
+
+    public static String buildFingerprint(String payload) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(payload.getBytes(UTF8));
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException("Unable to compute fingerprint; cause: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * @param key
+     * @param fingerprint
+     * @return true if the fingerprint matches the one stored for the given key as of the last successful deploy
+     */
+    public synchronized boolean isUnchanged(String key, String fingerprint) {
+        return fingerprint.equals(fingerprints.getProperty(key));
+    }
+
+    /**
+     * Records the fingerprint of a payload that was just deployed; it is not persisted until save is called.
+     *
+     * @param key
+     * @param fingerprint
+     */
+    public synchronized void record(String key, String fingerprint) {
+        pendingFingerprints.put(key, fingerprint);
+    }
+
+    public synchronized void save() {
+        if (pendingFingerprints.isEmpty()) {
+            return;
+        }
+        fingerprints.putAll(pendingFingerprints);
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        File tempFile = new File(file.getAbsolutePath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tempFile)) {
+            fingerprints.store(out, "Fingerprints of resources deployed by ml-app-deployer");
+        } catch (IOException ex) {
+            throw new RuntimeException("Unable to save resource fingerprints to " + tempFile.getAbsolutePath()
+                    + "; cause: " + ex.getMessage(), ex);
+        }
+        try {
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Unable to move " + tempFile.getAbsolutePath() + " to " + file.getAbsolutePath()
+                    + "; cause: " + ex.getMessage(), ex);
+        }
+        pendingFingerprints.clear();
+    }
+
+    /**
+     * Forgets every stored fingerprint, so that every resource is deployed on the next deploy.
+     */
+    public synchronized void clear() {
+        fingerprints.clear();
+        pendingFingerprints.clear();
+        if (file.exists()) {
+            file.delete();
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+}
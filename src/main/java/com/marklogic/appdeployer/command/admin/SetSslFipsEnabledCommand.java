@@ -16,6 +16,14 @@ public class SetSslFipsEnabledCommand extends AbstractCommand {
         context.getAdminManager().setSslFipsEnabled(sslFipsEnabled, context.getAppConfig().getAppServicesPort());
     }
 
+    /**
+     * Setting SSL FIPS enabled restarts MarkLogic.
+     */
+    @Override
+    public boolean isRestartBarrierOnExecute() {
+        return true;
+    }
+
     public boolean isSslFipsEnabled() {
         return sslFipsEnabled;
     }
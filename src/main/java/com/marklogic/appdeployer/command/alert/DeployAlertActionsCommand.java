@@ -25,6 +25,7 @@ public class DeployAlertActionsCommand extends AbstractCommand {
 
     public DeployAlertActionsCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_ALERT_ACTIONS);
+        setExecuteDependencies(DeployAlertConfigsCommand.class);
     }
 
     @Override
@@ -49,7 +50,7 @@ public class DeployAlertActionsCommand extends AbstractCommand {
         }
 
         AlertActionManager mgr = new AlertActionManager(context.getManageClient(), dbName, configUri);
-        for (File f : listFilesInDirectory(dir)) {
+        for (File f : listFilesInDirectory(dir, context)) {
             saveResource(mgr, context, f);
         }
     }
@@ -5,6 +5,9 @@ import java.io.File;
 import com.marklogic.appdeployer.command.AbstractResourceCommand;
 import com.marklogic.appdeployer.command.CommandContext;
 import com.marklogic.appdeployer.command.SortOrderConstants;
+import com.marklogic.appdeployer.command.databases.DeployContentDatabasesCommand;
+import com.marklogic.appdeployer.command.databases.DeployOtherDatabasesCommand;
+import com.marklogic.appdeployer.command.modules.LoadModulesCommand;
 import com.marklogic.mgmt.ResourceManager;
 import com.marklogic.mgmt.alert.AlertConfigManager;
 
@@ -21,6 +24,8 @@ public class DeployAlertConfigsCommand extends AbstractResourceCommand {
      */
     public DeployAlertConfigsCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_ALERT_CONFIGS);
+        setExecuteDependencies(DeployContentDatabasesCommand.class, DeployOtherDatabasesCommand.class,
+                LoadModulesCommand.class);
         setDeleteResourcesOnUndo(false);
     }
 
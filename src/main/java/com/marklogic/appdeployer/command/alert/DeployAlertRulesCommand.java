@@ -5,6 +5,7 @@ import java.io.File;
 import com.marklogic.appdeployer.command.AbstractCommand;
 import com.marklogic.appdeployer.command.CommandContext;
 import com.marklogic.appdeployer.command.SortOrderConstants;
+import com.marklogic.mgmt.ParsedPayload;
 import com.marklogic.mgmt.PayloadParser;
 import com.marklogic.mgmt.alert.AlertRuleManager;
 
@@ -16,6 +17,7 @@ public class DeployAlertRulesCommand extends AbstractCommand {
 
     public DeployAlertRulesCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_ALERT_RULES);
+        setExecuteDependencies(DeployAlertActionsCommand.class);
     }
 
     @Override
@@ -43,11 +45,11 @@ public class DeployAlertRulesCommand extends AbstractCommand {
          * We have to build an AlertRuleManager each time, as we don't know the action name until we load the file and
          * parse its contents.
          */
-        for (File f : listFilesInDirectory(dir)) {
-            String payload = copyFileToString(f, context);
-            String actionName = payloadParser.getPayloadFieldValue(payload, "action-name");
+        for (File f : listFilesInDirectory(dir, context)) {
+            ParsedPayload payload = payloadParser.parse(copyFileToString(f, context));
+            String actionName = payload.getFieldValue("action-name");
             AlertRuleManager mgr = new AlertRuleManager(context.getManageClient(), dbName, configUri, actionName);
-            saveResource(mgr, context, f);
+            saveResource(mgr, context, f, payload);
         }
     }
 
@@ -6,6 +6,13 @@ import com.marklogic.appdeployer.command.AbstractResourceCommand;
 import com.marklogic.appdeployer.command.CommandContext;
 import com.marklogic.appdeployer.command.ResourceFilenameFilter;
 import com.marklogic.appdeployer.command.SortOrderConstants;
+import com.marklogic.appdeployer.command.databases.DeployContentDatabasesCommand;
+import com.marklogic.appdeployer.command.databases.DeployOtherDatabasesCommand;
+import com.marklogic.appdeployer.command.restapis.DeployRestApiServersCommand;
+import com.marklogic.appdeployer.command.security.DeployCertificateAuthoritiesCommand;
+import com.marklogic.appdeployer.command.security.DeployCertificateTemplatesCommand;
+import com.marklogic.appdeployer.command.security.DeployExternalSecurityCommand;
+import com.marklogic.appdeployer.command.security.DeployUsersCommand;
 import com.marklogic.mgmt.ResourceManager;
 import com.marklogic.mgmt.appservers.ServerManager;
 
@@ -17,12 +24,26 @@ public class DeployOtherServersCommand extends AbstractResourceCommand {
 
     public DeployOtherServersCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_OTHER_SERVERS);
+        setExecuteDependencies(DeployContentDatabasesCommand.class, DeployOtherDatabasesCommand.class,
+                DeployRestApiServersCommand.class, UpdateRestApiServersCommand.class, DeployUsersCommand.class,
+                DeployCertificateTemplatesCommand.class, DeployExternalSecurityCommand.class,
+                DeployCertificateAuthoritiesCommand.class);
         setUndoSortOrder(SortOrderConstants.DELETE_OTHER_SERVERS);
+        // Saving or deleting a server may restart MarkLogic
+        setParallelProcessingAllowed(false);
         setRestartAfterDelete(true);
         setCatchExceptionOnDeleteFailure(true);
         setResourceFilenameFilter(new ResourceFilenameFilter("rest-api-server.xml", "rest-api-server.json"));
     }
 
+    /**
+     * Saving a server may restart MarkLogic.
+     */
+    @Override
+    public boolean isRestartBarrierOnExecute() {
+        return true;
+    }
+
     @Override
     protected File[] getResourceDirs(CommandContext context) {
         return new File[] { new File(context.getAppConfig().getConfigDir().getBaseDir(), "servers") };
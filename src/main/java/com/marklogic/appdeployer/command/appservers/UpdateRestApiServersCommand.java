@@ -6,6 +6,9 @@ import com.marklogic.appdeployer.AppConfig;
 import com.marklogic.appdeployer.command.AbstractCommand;
 import com.marklogic.appdeployer.command.CommandContext;
 import com.marklogic.appdeployer.command.SortOrderConstants;
+import com.marklogic.appdeployer.command.restapis.DeployRestApiServersCommand;
+import com.marklogic.appdeployer.command.security.DeployCertificateTemplatesCommand;
+import com.marklogic.appdeployer.command.security.DeployUsersCommand;
 import com.marklogic.mgmt.appservers.ServerManager;
 
 /**
@@ -17,6 +20,8 @@ public class UpdateRestApiServersCommand extends AbstractCommand {
 
     public UpdateRestApiServersCommand() {
         setExecuteSortOrder(SortOrderConstants.UPDATE_REST_API_SERVERS);
+        setExecuteDependencies(DeployRestApiServersCommand.class, DeployUsersCommand.class,
+                DeployCertificateTemplatesCommand.class);
     }
 
     public UpdateRestApiServersCommand(String restApiFilename) {
@@ -22,14 +22,27 @@ public class ModifyLocalClusterCommand extends AbstractCommand {
 	public void execute(CommandContext context) {
 		File configDir = context.getAppConfig().getConfigDir().getClustersDir();
 		if (configDir != null && configDir.exists()) {
-			for (File f : configDir.listFiles()) {
-				if (f.isFile() && f.getName().startsWith("local-cluster")) {
-					String payload = copyFileToString(f);
-					payload = tokenReplacer.replaceTokens(payload, context.getAppConfig(), false);
-					new ClusterManager(context.getManageClient()).modifyLocalCluster(payload, context.getAdminManager());
+			context.beginRestartBatch();
+			try {
+				for (File f : configDir.listFiles()) {
+					if (f.isFile() && f.getName().startsWith("local-cluster")) {
+						String payload = copyFileToString(f);
+						payload = tokenReplacer.replaceTokens(payload, context.getAppConfig(), false);
+						new ClusterManager(context.getManageClient()).modifyLocalCluster(payload, context.getAdminManager());
+					}
 				}
+			} finally {
+				context.endRestartBatch();
 			}
 		}
 	}
 
+	/**
+	 * Modifying the local cluster may restart MarkLogic.
+	 */
+	@Override
+	public boolean isRestartBarrierOnExecute() {
+		return true;
+	}
+
 }
@@ -19,7 +19,7 @@ public abstract class AbstractCpfResourceCommand extends AbstractCommand {
         File dir = new File(config.getConfigDir().getCpfDir(), getCpfDirectoryName());
         if (dir.exists()) {
             AbstractCpfResourceManager mgr = getResourceManager(context);
-            for (File f : listFilesInDirectory(dir)) {
+            for (File f : listFilesInDirectory(dir, context)) {
                 String payload = copyFileToString(f, context);
                 mgr.save(config.getTriggersDatabaseName(), payload);
             }
@@ -9,6 +9,7 @@ public class DeployCpfConfigsCommand extends AbstractCpfResourceCommand {
 
     public DeployCpfConfigsCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_CPF_CONFIGS);
+        setExecuteDependencies(DeployDomainsCommand.class);
     }
 
     @Override
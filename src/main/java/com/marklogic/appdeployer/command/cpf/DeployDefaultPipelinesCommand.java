@@ -3,12 +3,18 @@ package com.marklogic.appdeployer.command.cpf;
 import com.marklogic.appdeployer.command.AbstractCommand;
 import com.marklogic.appdeployer.command.CommandContext;
 import com.marklogic.appdeployer.command.SortOrderConstants;
+import com.marklogic.appdeployer.command.databases.DeployContentDatabasesCommand;
+import com.marklogic.appdeployer.command.databases.DeployOtherDatabasesCommand;
+import com.marklogic.appdeployer.command.databases.DeployTriggersDatabaseCommand;
+import com.marklogic.appdeployer.command.modules.LoadModulesCommand;
 import com.marklogic.mgmt.cpf.PipelineManager;
 
 public class DeployDefaultPipelinesCommand extends AbstractCommand {
 
     public DeployDefaultPipelinesCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_DEFAULT_PIPELINES);
+        setExecuteDependencies(DeployTriggersDatabaseCommand.class, DeployContentDatabasesCommand.class,
+                DeployOtherDatabasesCommand.class, LoadModulesCommand.class);
     }
 
     @Override
@@ -9,6 +9,7 @@ public class DeployDomainsCommand extends AbstractCpfResourceCommand {
 
     public DeployDomainsCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_DOMAINS);
+        setExecuteDependencies(DeployPipelinesCommand.class);
     }
 
     @Override
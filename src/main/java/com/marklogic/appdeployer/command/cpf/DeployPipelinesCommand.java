@@ -9,6 +9,7 @@ public class DeployPipelinesCommand extends AbstractCpfResourceCommand {
 
     public DeployPipelinesCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_PIPELINES);
+        setExecuteDependencies(DeployDefaultPipelinesCommand.class);
     }
 
     @Override
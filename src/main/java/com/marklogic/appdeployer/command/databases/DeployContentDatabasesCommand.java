@@ -27,6 +27,7 @@ public class DeployContentDatabasesCommand extends DeployDatabaseCommand {
 
     public DeployContentDatabasesCommand(int forestsPerHost) {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_CONTENT_DATABASES);
+        setExecuteDependencies(DeployTriggersDatabaseCommand.class, DeploySchemasDatabaseCommand.class);
         setUndoSortOrder(SortOrderConstants.DELETE_CONTENT_DATABASES);
         setForestsPerHost(forestsPerHost);
         setForestFilename("content-forest.json");
@@ -50,6 +51,7 @@ public class DeployContentDatabasesCommand extends DeployDatabaseCommand {
             if (payload != null) {
                 DatabaseManager dbMgr = new DatabaseManager(context.getManageClient());
                 String json = tokenReplacer.replaceTokens(payload, appConfig, true);
+                applyUpdateSettings(dbMgr, context);
                 SaveReceipt receipt = dbMgr.save(json);
                 buildDeployForestsCommand(payload, receipt, context).execute(context);
             }
@@ -77,9 +77,20 @@ public class DeployDatabaseCommand extends AbstractCommand implements UndoableCo
 
     @Override
     public void execute(CommandContext context) {
-        String payload = buildPayload(context);
+        deployDatabase(buildPayload(context), context);
+    }
+
+    /**
+     * Saves the database and creates its forests, using a payload already built via buildPayload.
+     *
+     * @param payload
+     *            if null, nothing is deployed
+     * @param context
+     */
+    public void deployDatabase(String payload, CommandContext context) {
         if (payload != null) {
             DatabaseManager dbMgr = new DatabaseManager(context.getManageClient());
+            applyUpdateSettings(dbMgr, context);
             SaveReceipt receipt = dbMgr.save(payload);
             buildDeployForestsCommand(payload, receipt, context).execute(context);
         }
@@ -87,7 +98,17 @@ public class DeployDatabaseCommand extends AbstractCommand implements UndoableCo
 
     @Override
     public void undo(CommandContext context) {
-        String payload = buildPayload(context);
+        undeployDatabase(buildPayload(context), context);
+    }
+
+    /**
+     * Deletes the database, using a payload already built via buildPayload.
+     *
+     * @param payload
+     *            if null, nothing is deleted
+     * @param context
+     */
+    public void undeployDatabase(String payload, CommandContext context) {
         if (payload != null) {
             newDatabaseManageForDeleting(context).delete(payload);
         }
@@ -134,8 +155,8 @@ public class DeployDatabaseCommand extends AbstractCommand implements UndoableCo
         if (databaseFilename != null) {
             f = new File(context.getAppConfig().getConfigDir().getDatabasesDir(), databaseFilename);
         }
-        if (f != null && f.exists()) {
-            return copyFileToString(f);
+        if (f != null && fileExists(f, context)) {
+            return readFileToString(f, context);
         } else if (createDatabaseWithoutFile) {
             return buildDefaultDatabasePayload(context);
         } else {
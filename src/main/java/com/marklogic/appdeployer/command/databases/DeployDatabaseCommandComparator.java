@@ -8,6 +8,10 @@ import com.marklogic.client.helper.LoggingObject;
 /**
  * Used for sorting instances of DeployDatabaseCommand so that databases are created in a correct order - i.e. an order
  * in which we don't get errors from databases being created before their dependent databases are created.
+ * <p>
+ * DeployOtherDatabasesCommand no longer uses this by default, as it builds each payload once and orders databases via
+ * a DependencyGraph; this builds both payloads for every comparison. A subclass of DeployOtherDatabasesCommand can
+ * still use this in sortCommandsBeforeExecute and sortCommandsBeforeUndo.
  */
 public class DeployDatabaseCommandComparator extends LoggingObject implements Comparator<DeployDatabaseCommand> {
 
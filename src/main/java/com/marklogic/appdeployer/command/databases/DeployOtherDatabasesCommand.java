@@ -3,15 +3,21 @@ package com.marklogic.appdeployer.command.databases;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.marklogic.appdeployer.ConfigDir;
 import com.marklogic.appdeployer.command.AbstractUndoableCommand;
 import com.marklogic.appdeployer.command.CommandContext;
+import com.marklogic.appdeployer.command.ParallelFileProcessor;
 import com.marklogic.appdeployer.command.ResourceFilenameFilter;
 import com.marklogic.appdeployer.command.SortOrderConstants;
+import com.marklogic.mgmt.databases.DatabaseManager;
+import com.marklogic.mgmt.util.DependencyGraph;
 
 /**
  * This commands handles deploying/undeploying every database file except the "default" ones of content-database.json,
@@ -19,8 +25,13 @@ import com.marklogic.appdeployer.command.SortOrderConstants;
  * uncommon to need to create additional databases (and perhaps REST API servers to go with them).
  * <p>
  * A key aspect of this class is its attempt to deploy/undeploy databases in the correct order. For each database file
- * that it finds that's not one of the default ones, a DeployDatabaseCommand will be created. All of those commands will
- * then be sorted based on the presence of "triggers-database" or "schema-database" within the payload for the command.
+ * that it finds that's not one of the default ones, a DeployDatabaseCommand will be created, and its payload is built
+ * once. The databases are then grouped into levels by a DependencyGraph based on the "triggers-database",
+ * "schema-database", and "security-database" referenced by each payload. Each level is deployed after the levels it
+ * depends on, and undeployed in reverse order. The databases in a level - along with their forests - are deployed in
+ * parallel if more than one thread is configured; see setThreadCount and AppConfig's resourceThreadCount. A subclass
+ * can instead deploy the databases one at a time in its own order via sortCommandsBeforeExecute and
+ * sortCommandsBeforeUndo.
  * <p>
  * If the above strategy doesn't work for you, you can always resort to naming your database files to control the order
  * that they're processed in.
@@ -28,35 +39,172 @@ import com.marklogic.appdeployer.command.SortOrderConstants;
  */
 public class DeployOtherDatabasesCommand extends AbstractUndoableCommand {
 
+    private int threadCount = 0;
+
     public DeployOtherDatabasesCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_OTHER_DATABASES);
+        setExecuteDependencies(DeployTriggersDatabaseCommand.class, DeploySchemasDatabaseCommand.class,
+                DeployContentDatabasesCommand.class);
         setUndoSortOrder(SortOrderConstants.DELETE_OTHER_DATABASES);
     }
 
     @Override
-    public void execute(CommandContext context) {
-        List<DeployDatabaseCommand> list = buildDatabaseCommands(context);
-        sortCommandsBeforeExecute(list, context);
-        for (DeployDatabaseCommand c : list) {
-            c.execute(context);
+    public void execute(final CommandContext context) {
+        final Map<File, DeployDatabaseCommand> commands = new HashMap<>();
+        final Map<File, String> payloads = new HashMap<>();
+        List<List<File>> levels = buildDatabaseLevels(context, commands, payloads);
+        List<DeployDatabaseCommand> list = toCommands(levels, commands);
+        List<DeployDatabaseCommand> sorted = new ArrayList<>(list);
+        sortCommandsBeforeExecute(sorted, context);
+        if (!sorted.equals(list)) {
+            Map<DeployDatabaseCommand, String> payloadsByCommand = toPayloadsByCommand(commands, payloads);
+            for (DeployDatabaseCommand c : sorted) {
+                c.deployDatabase(payloadsByCommand.get(c), context);
+            }
+            return;
+        }
+
+        ParallelFileProcessor processor = new ParallelFileProcessor(determineThreadCount(context), true);
+        for (List<File> level : levels) {
+            processor.process(level.toArray(new File[level.size()]), new ParallelFileProcessor.FileCallback() {
+                @Override
+                public void process(File f) {
+                    commands.get(f).deployDatabase(payloads.get(f), context);
+                }
+            });
         }
     }
 
+    /**
+     * The commands are passed in the order determined by the DependencyGraph - i.e. level by level - so by default,
+     * this does nothing. A subclass can reorder the commands - e.g. via DeployDatabaseCommandComparator - in which case
+     * the databases are deployed one at a time in that order instead of level by level.
+     *
+     * @param list
+     * @param context
+     */
     protected void sortCommandsBeforeExecute(List<DeployDatabaseCommand> list, CommandContext context) {
-        Collections.sort(list, new DeployDatabaseCommandComparator(context, false));
     }
 
     @Override
-    public void undo(CommandContext context) {
-        List<DeployDatabaseCommand> list = buildDatabaseCommands(context);
-        sortCommandsBeforeUndo(list, context);
-        for (DeployDatabaseCommand c : list) {
-            c.undo(context);
+    public void undo(final CommandContext context) {
+        final Map<File, DeployDatabaseCommand> commands = new HashMap<>();
+        final Map<File, String> payloads = new HashMap<>();
+        List<List<File>> levels = new ArrayList<>(buildDatabaseLevels(context, commands, payloads));
+        Collections.reverse(levels);
+        List<DeployDatabaseCommand> list = toCommands(levels, commands);
+        List<DeployDatabaseCommand> sorted = new ArrayList<>(list);
+        sortCommandsBeforeUndo(sorted, context);
+        if (!sorted.equals(list)) {
+            Map<DeployDatabaseCommand, String> payloadsByCommand = toPayloadsByCommand(commands, payloads);
+            for (DeployDatabaseCommand c : sorted) {
+                c.undeployDatabase(payloadsByCommand.get(c), context);
+            }
+            return;
+        }
+
+        ParallelFileProcessor processor = new ParallelFileProcessor(determineThreadCount(context), true);
+        for (List<File> level : levels) {
+            processor.process(level.toArray(new File[level.size()]), new ParallelFileProcessor.FileCallback() {
+                @Override
+                public void process(File f) {
+                    commands.get(f).undeployDatabase(payloads.get(f), context);
+                }
+            });
         }
     }
 
+    /**
+     * The commands are passed in the reverse of the order determined by the DependencyGraph, so by default, this does
+     * nothing; see sortCommandsBeforeExecute.
+     *
+     * @param list
+     * @param context
+     */
     protected void sortCommandsBeforeUndo(List<DeployDatabaseCommand> list, CommandContext context) {
-        Collections.sort(list, new DeployDatabaseCommandComparator(context, true));
+    }
+
+    private List<DeployDatabaseCommand> toCommands(List<List<File>> levels, Map<File, DeployDatabaseCommand> commands) {
+        List<DeployDatabaseCommand> list = new ArrayList<>();
+        for (List<File> level : levels) {
+            for (File f : level) {
+                list.add(commands.get(f));
+            }
+        }
+        return list;
+    }
+
+    private Map<DeployDatabaseCommand, String> toPayloadsByCommand(Map<File, DeployDatabaseCommand> commands,
+            Map<File, String> payloads) {
+        Map<DeployDatabaseCommand, String> payloadsByCommand = new IdentityHashMap<>();
+        for (Map.Entry<File, DeployDatabaseCommand> entry : commands.entrySet()) {
+            payloadsByCommand.put(entry.getValue(), payloads.get(entry.getKey()));
+        }
+        return payloadsByCommand;
+    }
+
+    /**
+     * Builds a DeployDatabaseCommand and its payload for each database file, and then groups the files into levels so
+     * that each database comes after the databases it references.
+     *
+     * @param context
+     * @param commands
+     *            populated with the command for each database file
+     * @param payloads
+     *            populated with the payload for each database file
+     * @return the database files, grouped into levels
+     */
+    protected List<List<File>> buildDatabaseLevels(CommandContext context, Map<File, DeployDatabaseCommand> commands,
+            Map<File, String> payloads) {
+        DatabaseManager dbMgr = new DatabaseManager(context.getManageClient());
+        File dir = context.getAppConfig().getConfigDir().getDatabasesDir();
+        Map<String, File> filesByName = new HashMap<>();
+        Map<String, String> fileNamesByDatabaseName = new HashMap<>();
+        Map<String, Set<String>> referencesByFileName = new HashMap<>();
+        List<String> fileNames = new ArrayList<>();
+
+        for (DeployDatabaseCommand c : buildDatabaseCommands(context)) {
+            String payload = c.buildPayload(context);
+            if (payload == null) {
+                continue;
+            }
+            File f = new File(dir, c.getDatabaseFilename());
+            commands.put(f, c);
+            payloads.put(f, payload);
+            filesByName.put(f.getName(), f);
+            fileNames.add(f.getName());
+            fileNamesByDatabaseName.put(dbMgr.getDatabaseName(payload), f.getName());
+            referencesByFileName.put(f.getName(), dbMgr.getReferencedDatabaseNames(payload));
+        }
+
+        DependencyGraph graph = new DependencyGraph();
+        for (String fileName : fileNames) {
+            List<String> refs = new ArrayList<>();
+            for (String databaseName : referencesByFileName.get(fileName)) {
+                String ref = fileNamesByDatabaseName.get(databaseName);
+                if (ref != null) {
+                    refs.add(ref);
+                }
+            }
+            graph.add(fileName, refs);
+        }
+        if (!graph.getNamesInCycles().isEmpty()) {
+            logger.warn("Databases in these files reference each other, so they may fail to deploy: "
+                    + graph.getNamesInCycles());
+        }
+
+        List<List<File>> levels = new ArrayList<>();
+        for (List<String> level : graph.getLevels()) {
+            if (logger.isInfoEnabled()) {
+                logger.info("Database files that will be processed together: " + level);
+            }
+            List<File> files = new ArrayList<>();
+            for (String fileName : level) {
+                files.add(filesByName.get(fileName));
+            }
+            levels.add(files);
+        }
+        return levels;
     }
 
     protected List<DeployDatabaseCommand> buildDatabaseCommands(CommandContext context) {
@@ -64,7 +212,7 @@ public class DeployOtherDatabasesCommand extends AbstractUndoableCommand {
 
         ConfigDir configDir = context.getAppConfig().getConfigDir();
         File dir = configDir.getDatabasesDir();
-        if (dir != null && dir.exists()) {
+        if (dir != null && fileExists(dir, context)) {
             Set<String> ignore = new HashSet<>();
             for (File f : configDir.getContentDatabaseFiles()) {
                 ignore.add(f.getName());
@@ -75,7 +223,7 @@ public class DeployOtherDatabasesCommand extends AbstractUndoableCommand {
             ResourceFilenameFilter filter = new ResourceFilenameFilter(ignore);
             setResourceFilenameFilter(filter);
 
-            for (File f : listFilesInDirectory(dir)) {
+            for (File f : listFilesInDirectory(dir, context)) {
                 if (logger.isDebugEnabled()) {
                     logger.debug("Will process other database in file: " + f.getName());
                 }
@@ -86,4 +234,24 @@ public class DeployOtherDatabasesCommand extends AbstractUndoableCommand {
         }
         return dbCommands;
     }
+
+    protected int determineThreadCount(CommandContext context) {
+        if (threadCount > 0) {
+            return threadCount;
+        }
+        return context.getAppConfig() != null ? context.getAppConfig().getResourceThreadCount() : 1;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * @param threadCount
+     *            the number of databases in a level to deploy or undeploy at the same time; if not greater than zero,
+     *            AppConfig's resourceThreadCount is used
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
 }
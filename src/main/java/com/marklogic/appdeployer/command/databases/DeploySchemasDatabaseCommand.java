@@ -12,6 +12,8 @@ public class DeploySchemasDatabaseCommand extends DeployDatabaseCommand {
 
     public DeploySchemasDatabaseCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_SCHEMAS_DATABASE);
+        // Doesn't depend on any other command
+        setExecuteDependencies();
         setUndoSortOrder(SortOrderConstants.DELETE_SCHEMAS_DATABASE);
         setDatabaseFilename(DATABASE_FILENAME);
         setCreateForestsOnEachHost(false);
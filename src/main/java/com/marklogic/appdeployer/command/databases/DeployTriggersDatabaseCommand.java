@@ -13,6 +13,8 @@ public class DeployTriggersDatabaseCommand extends DeployDatabaseCommand {
 
     public DeployTriggersDatabaseCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_TRIGGERS_DATABASE);
+        // Doesn't depend on any other command
+        setExecuteDependencies();
         setUndoSortOrder(SortOrderConstants.DELETE_TRIGGERS_DATABASE);
         setDatabaseFilename(DATABASE_FILENAME);
         setCreateForestsOnEachHost(false);
@@ -5,6 +5,11 @@ import java.io.File;
 import com.marklogic.appdeployer.command.AbstractResourceCommand;
 import com.marklogic.appdeployer.command.CommandContext;
 import com.marklogic.appdeployer.command.SortOrderConstants;
+import com.marklogic.appdeployer.command.appservers.DeployOtherServersCommand;
+import com.marklogic.appdeployer.command.cpf.DeployCpfConfigsCommand;
+import com.marklogic.appdeployer.command.cpf.DeployDomainsCommand;
+import com.marklogic.appdeployer.command.databases.DeployContentDatabasesCommand;
+import com.marklogic.appdeployer.command.databases.DeployOtherDatabasesCommand;
 import com.marklogic.mgmt.ResourceManager;
 import com.marklogic.mgmt.flexrep.ConfigManager;
 
@@ -17,6 +22,8 @@ public class DeployConfigsCommand extends AbstractResourceCommand {
 
     public DeployConfigsCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_FLEXREP_CONFIGS);
+        setExecuteDependencies(DeployContentDatabasesCommand.class, DeployOtherDatabasesCommand.class,
+                DeployOtherServersCommand.class, DeployDomainsCommand.class, DeployCpfConfigsCommand.class);
         // Flexrep config is stored in a database, so we don't need to delete it as the database will be deleted
         setDeleteResourcesOnUndo(false);
     }
@@ -20,6 +20,7 @@ public class DeployTargetsCommand extends AbstractCommand {
 
     public DeployTargetsCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_FLEXREP_TARGETS);
+        setExecuteDependencies(DeployConfigsCommand.class);
     }
 
     @Override
@@ -44,7 +45,7 @@ public class DeployTargetsCommand extends AbstractCommand {
         }
 
         TargetManager mgr = new TargetManager(context.getManageClient(), dbName, configName);
-        for (File f : listFilesInDirectory(dir)) {
+        for (File f : listFilesInDirectory(dir, context)) {
             saveResource(mgr, context, f);
         }
     }
@@ -5,12 +5,24 @@ import com.marklogic.appdeployer.command.CommandContext;
 import com.marklogic.appdeployer.command.SortOrderConstants;
 import com.marklogic.mgmt.databases.DatabaseManager;
 import com.marklogic.mgmt.forests.ForestManager;
+import com.marklogic.mgmt.forests.ForestPlacementPlanner;
 import com.marklogic.mgmt.forests.ForestStatus;
 import com.marklogic.mgmt.hosts.HostManager;
 
+import com.marklogic.rest.util.ResourcesFragment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 /**
  * Command for configuring - i.e. creating and setting - replica forests for existing databases and/or primary forests.
@@ -19,12 +31,24 @@ import java.util.Map;
  * <p>
  * Very useful for the out-of-the-box forests such as Security, Schemas, App-Services, and Meters, which normally need
  * replicas for failover in a cluster.
+ * <p>
+ * If more than one thread is configured - see setThreadCount and AppConfig's forestThreadCount - the status of every
+ * primary forest is fetched concurrently, and the replicas for each primary forest are then created concurrently,
+ * with at most maxConcurrentReplicasPerHost replicas being created on a single host at a time. The replicas for a
+ * primary forest are set as soon as they all exist, without waiting on the other primary forests.
+ * <p>
+ * Replicas are placed on the hosts following the primary forest's host by default. If AppConfig's
+ * balanceForestPlacement is true, a ForestPlacementPlanner places them instead, based on the forests each host already
+ * has, its zone, and its weight.
  */
 public class ConfigureForestReplicasCommand extends AbstractUndoableCommand {
 
 	private Map<String, Integer> databaseNamesAndReplicaCounts = new HashMap<>();
 	private Map<String, Integer> forestNamesAndReplicaCounts = new HashMap<>();
 	private boolean deleteReplicasOnUndo = true;
+	private int threadCount = 0;
+	private int maxConcurrentReplicasPerHost = 1;
+	private ForestPlacementPlanner placementPlanner;
 
 	/**
 	 * By default, the execute sort order is Integer.MAX_VALUE as a way of guaranteeing that the referenced primary
@@ -74,6 +98,21 @@ public class ConfigureForestReplicasCommand extends AbstractUndoableCommand {
 			return;
 		}
 
+		placementPlanner = context.getAppConfig().isBalanceForestPlacement() ? buildPlacementPlanner(context) : null;
+
+		int count = determineThreadCount(context);
+		if (count > 1) {
+			configureReplicaForestsConcurrently(hostIds, count, context);
+		} else {
+			configureReplicaForestsSerially(hostIds, context, forestMgr);
+		}
+
+		if (placementPlanner != null && logger.isInfoEnabled()) {
+			logger.info(placementPlanner.getPlan().toString());
+		}
+	}
+
+	protected void configureReplicaForestsSerially(List<String> hostIds, CommandContext context, ForestManager forestMgr) {
 		for (String databaseName : databaseNamesAndReplicaCounts.keySet()) {
 			int replicaCount = databaseNamesAndReplicaCounts.get(databaseName);
 			if (replicaCount > 0) {
@@ -191,7 +230,32 @@ public class ConfigureForestReplicasCommand extends AbstractUndoableCommand {
 	protected Map<String, String> createReplicaForests(String forestIdOrName, int replicaCount, List<String> hostIds,
 													   ForestManager forestMgr) {
 		String primaryForestHostId = forestMgr.getHostId(forestIdOrName);
-		Map<String, String> replicaNamesAndHostIds = new HashMap<>();
+		Map<String, String> replicaNamesAndHostIds = buildReplicaNamesAndHostIds(forestIdOrName, primaryForestHostId,
+			replicaCount, hostIds);
+		for (String name : replicaNamesAndHostIds.keySet()) {
+			forestMgr.createJsonForestWithName(name, replicaNamesAndHostIds.get(name));
+		}
+		return replicaNamesAndHostIds;
+	}
+
+	/**
+	 * Starting with the host after the one that the primary forest is on, assigns each of N replicas to the next host
+	 * in the list of host IDs. If balanced placement is enabled, the replicas are instead assigned by a
+	 * ForestPlacementPlanner.
+	 *
+	 * @param forestIdOrName
+	 * @param primaryForestHostId
+	 * @param replicaCount
+	 * @param hostIds
+	 * @return a map where the keys are replica forest names, and the value of each key is the ID of the host that
+	 * the replica should be created on; empty if the primary forest's host isn't in the list of host IDs
+	 */
+	protected Map<String, String> buildReplicaNamesAndHostIds(String forestIdOrName, String primaryForestHostId,
+															  int replicaCount, List<String> hostIds) {
+		if (placementPlanner != null) {
+			return placementPlanner.planReplicas(forestIdOrName, primaryForestHostId, replicaCount);
+		}
+		Map<String, String> replicaNamesAndHostIds = new LinkedHashMap<>();
 		int size = hostIds.size();
 		for (int i = 0; i < size; i++) {
 			String hostId = hostIds.get(i);
@@ -201,10 +265,7 @@ public class ConfigureForestReplicasCommand extends AbstractUndoableCommand {
 					if (nextReplicaHostIndex >= size) {
 						nextReplicaHostIndex = 0;
 					}
-					String replicaHostId = hostIds.get(nextReplicaHostIndex);
-					String name = forestIdOrName + "-replica-" + j;
-					forestMgr.createJsonForestWithName(name, replicaHostId);
-					replicaNamesAndHostIds.put(name, replicaHostId);
+					replicaNamesAndHostIds.put(forestIdOrName + "-replica-" + j, hostIds.get(nextReplicaHostIndex));
 					nextReplicaHostIndex++;
 				}
 			}
@@ -212,6 +273,168 @@ public class ConfigureForestReplicasCommand extends AbstractUndoableCommand {
 		return replicaNamesAndHostIds;
 	}
 
+	/**
+	 * Configures replicas for the forests of every configured database and for every configured forest, using the given
+	 * number of threads; see the class comment.
+	 *
+	 * @param hostIds
+	 * @param threadCount
+	 * @param context
+	 */
+	protected void configureReplicaForestsConcurrently(List<String> hostIds, int threadCount, CommandContext context) {
+		final ForestManager forestMgr = new ForestManager(context.getManageClient());
+		Map<String, Integer> replicaCounts = buildForestNamesAndReplicaCounts(new DatabaseManager(
+			context.getManageClient()));
+		if (replicaCounts.isEmpty()) {
+			return;
+		}
+
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ml-replica-");
+		threadFactory.setDaemon(true);
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount, threadFactory);
+		try {
+			Map<String, Future<ForestStatus>> statuses = new LinkedHashMap<>();
+			for (final String forestName : replicaCounts.keySet()) {
+				statuses.put(forestName, executor.submit(new Callable<ForestStatus>() {
+					@Override
+					public ForestStatus call() {
+						return forestMgr.getForestStatus(forestName);
+					}
+				}));
+			}
+
+			// Fetched once so that the existence check for each replica doesn't fetch the list of forests again
+			final ResourcesFragment existingForests = forestMgr.getAsXml();
+			final Map<String, Semaphore> hostPermits = new HashMap<>();
+			for (String hostId : hostIds) {
+				hostPermits.put(hostId, new Semaphore(Math.max(1, maxConcurrentReplicasPerHost)));
+			}
+
+			Map<String, Future<?>> futures = new LinkedHashMap<>();
+			List<Throwable> errors = new ArrayList<>();
+			for (final String forestName : statuses.keySet()) {
+				ForestStatus status;
+				try {
+					status = statuses.get(forestName).get();
+				} catch (ExecutionException ex) {
+					errors.add(ex.getCause());
+					continue;
+				}
+				if (!status.isPrimary()) {
+					logger.info(format("Forest %s is not a primary forest, so not configuring replica forests", forestName));
+					continue;
+				}
+				if (status.hasReplicas()) {
+					logger.info(format("Forest %s already has replicas, so not configuring replica forests", forestName));
+					continue;
+				}
+				String primaryForestHostId = status.getHostId();
+				if (primaryForestHostId == null) {
+					primaryForestHostId = forestMgr.getHostId(forestName);
+				}
+				final Map<String, String> replicaNamesAndHostIds = buildReplicaNamesAndHostIds(forestName,
+					primaryForestHostId, replicaCounts.get(forestName), hostIds);
+				futures.put(forestName, executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws InterruptedException {
+						for (String name : replicaNamesAndHostIds.keySet()) {
+							String hostId = replicaNamesAndHostIds.get(name);
+							Semaphore permits = hostPermits.get(hostId);
+							permits.acquire();
+							try {
+								forestMgr.createJsonForestWithName(name, hostId, existingForests);
+							} finally {
+								permits.release();
+							}
+						}
+						logger.info(format("Configuring forest replicas for primary forest %s", forestName));
+						if (!replicaNamesAndHostIds.isEmpty()) {
+							forestMgr.setReplicas(forestName, replicaNamesAndHostIds);
+						}
+						logger.info(format("Finished configuring forest replicas for primary forest %s", forestName));
+						return null;
+					}
+				}));
+			}
+
+			for (String forestName : futures.keySet()) {
+				try {
+					futures.get(forestName).get();
+				} catch (ExecutionException ex) {
+					errors.add(ex.getCause());
+				}
+			}
+			throwFirstError(errors);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while configuring forest replicas", ex);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Resolves the replica count of every forest to configure the same way that configuring serially does - the forests
+	 * of each database get that database's count, and a forest configured both via its database and directly gets the
+	 * count of whichever is configured first, as the forest already has replicas by the time the other is configured.
+	 *
+	 * @param dbMgr
+	 * @return a map where the keys are forest names, in the order they would be configured serially, and the value of
+	 * each key is the number of replicas to create for that forest
+	 */
+	protected Map<String, Integer> buildForestNamesAndReplicaCounts(DatabaseManager dbMgr) {
+		Map<String, Integer> replicaCounts = new LinkedHashMap<>();
+		for (String databaseName : databaseNamesAndReplicaCounts.keySet()) {
+			int replicaCount = databaseNamesAndReplicaCounts.get(databaseName);
+			if (replicaCount > 0) {
+				List<String> forestNames = dbMgr.getForestNames(databaseName);
+				logger.info("Forests: " + forestNames);
+				for (String forestName : forestNames) {
+					if (!replicaCounts.containsKey(forestName)) {
+						replicaCounts.put(forestName, replicaCount);
+					}
+				}
+			}
+		}
+		for (String forestName : forestNamesAndReplicaCounts.keySet()) {
+			int replicaCount = forestNamesAndReplicaCounts.get(forestName);
+			if (replicaCount > 0 && !replicaCounts.containsKey(forestName)) {
+				replicaCounts.put(forestName, replicaCount);
+			}
+		}
+		return replicaCounts;
+	}
+
+	protected void throwFirstError(List<Throwable> errors) {
+		if (errors.isEmpty()) {
+			return;
+		}
+		for (int i = 1; i < errors.size(); i++) {
+			logger.error("Unable to configure forest replicas; cause: " + errors.get(i).getMessage());
+		}
+		Throwable first = errors.get(0);
+		if (first instanceof RuntimeException) {
+			throw (RuntimeException) first;
+		} else if (first instanceof Error) {
+			throw (Error) first;
+		}
+		throw new RuntimeException("Unable to configure forest replicas; cause: " + first.getMessage(), first);
+	}
+
+	protected ForestPlacementPlanner buildPlacementPlanner(CommandContext context) {
+		ForestPlacementPlanner planner = new ForestPlacementPlanner(
+			new HostManager(context.getManageClient()).getPlacementHosts());
+		planner.setHostWeights(context.getAppConfig().getForestPlacementHostWeights());
+		return planner;
+	}
+
+	protected int determineThreadCount(CommandContext context) {
+		if (threadCount > 0) {
+			return threadCount;
+		}
+		return context.getAppConfig() != null ? context.getAppConfig().getForestThreadCount() : 1;
+	}
+
 	public Map<String, Integer> getForestNamesAndReplicaCounts() {
 		return forestNamesAndReplicaCounts;
 	}
@@ -231,4 +454,33 @@ public class ConfigureForestReplicasCommand extends AbstractUndoableCommand {
 	public void setDatabaseNamesAndReplicaCounts(Map<String, Integer> databaseNamesAndReplicaCounts) {
 		this.databaseNamesAndReplicaCounts = databaseNamesAndReplicaCounts;
 	}
+
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * @param threadCount
+	 *            the number of threads for fetching forest status and creating replicas; if not greater than zero,
+	 *            AppConfig's forestThreadCount is used
+	 */
+	public void setThreadCount(int threadCount) {
+		this.threadCount = threadCount;
+	}
+
+	public int getMaxConcurrentReplicasPerHost() {
+		return maxConcurrentReplicasPerHost;
+	}
+
+	public void setMaxConcurrentReplicasPerHost(int maxConcurrentReplicasPerHost) {
+		this.maxConcurrentReplicasPerHost = maxConcurrentReplicasPerHost;
+	}
+
+	/**
+	 * @return the planner used the last time replicas were configured with balanced placement, which allows for the
+	 * plan to be inspected; null if balanced placement wasn't used
+	 */
+	public ForestPlacementPlanner getPlacementPlanner() {
+		return placementPlanner;
+	}
 }
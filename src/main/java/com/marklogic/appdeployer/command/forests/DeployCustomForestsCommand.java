@@ -3,6 +3,8 @@ package com.marklogic.appdeployer.command.forests;
 import com.marklogic.appdeployer.command.AbstractCommand;
 import com.marklogic.appdeployer.command.CommandContext;
 import com.marklogic.appdeployer.command.SortOrderConstants;
+import com.marklogic.appdeployer.command.databases.DeployContentDatabasesCommand;
+import com.marklogic.appdeployer.command.databases.DeployOtherDatabasesCommand;
 import com.marklogic.mgmt.forests.ForestManager;
 
 import java.io.File;
@@ -23,6 +25,7 @@ public class DeployCustomForestsCommand extends AbstractCommand {
 
 	public DeployCustomForestsCommand() {
 		setExecuteSortOrder(SortOrderConstants.DEPLOY_FORESTS);
+		setExecuteDependencies(DeployContentDatabasesCommand.class, DeployOtherDatabasesCommand.class);
 	}
 
 	@Override
@@ -39,7 +42,7 @@ public class DeployCustomForestsCommand extends AbstractCommand {
 
 	protected void processDirectory(File dir, CommandContext context) {
 		ForestManager mgr = new ForestManager(context.getManageClient());
-		for (File f : listFilesInDirectory(dir)) {
+		for (File f : listFilesInDirectory(dir, context)) {
 			String payload = copyFileToString(f, context);
 			mgr.saveJsonForests(payload);
 		}
@@ -2,8 +2,16 @@ package com.marklogic.appdeployer.command.forests;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.util.StringUtils;
 
 import com.marklogic.appdeployer.AppConfig;
@@ -12,13 +20,23 @@ import com.marklogic.appdeployer.command.CommandContext;
 import com.marklogic.appdeployer.command.SortOrderConstants;
 import com.marklogic.mgmt.databases.DatabaseManager;
 import com.marklogic.mgmt.forests.ForestManager;
+import com.marklogic.mgmt.forests.ForestPlacement;
+import com.marklogic.mgmt.forests.ForestPlacementPlanner;
 import com.marklogic.mgmt.hosts.HostManager;
+import com.marklogic.rest.util.ResourcesFragment;
 
 /**
  * This command is for a simple use case where all the forests created for a database have the same structure,
  * but possibly exist on different forests. For more precise control over how forests are created, please see
  * DeployCustomForestsCommand.
  *
+ * The list of forests is fetched once, and the forests that don't exist yet are then created. If more than one thread
+ * is configured - see setThreadCount and AppConfig's forestThreadCount - each host's forests are created on a separate
+ * thread, with the forests for a single host still created one at a time.
+ * <p>
+ * Forests are assigned to hosts round-robin by default. If AppConfig's balanceForestPlacement is true, a
+ * ForestPlacementPlanner assigns them instead, based on the forests each host already has, its zone, and its weight.
+ *
  * Doesn't yet support deleting forests - currently assumed that this will be done by deleting a database.
  */
 public class DeployForestsCommand extends AbstractCommand {
@@ -31,6 +49,8 @@ public class DeployForestsCommand extends AbstractCommand {
     private String forestFilename;
     private String forestPayload;
     private boolean createForestsOnEachHost = true;
+    private int threadCount = 0;
+    private ForestPlacementPlanner placementPlanner;
 
     public DeployForestsCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_FORESTS);
@@ -72,7 +92,7 @@ public class DeployForestsCommand extends AbstractCommand {
      * dynamically generated based on what hosts exist and how many forests should be created on each host.
      */
     protected void createForests(String originalPayload, CommandContext context) {
-        ForestManager mgr = new ForestManager(context.getManageClient());
+        final ForestManager mgr = new ForestManager(context.getManageClient());
         AppConfig appConfig = context.getAppConfig();
 
         // Find out which hosts to create forests on
@@ -86,23 +106,172 @@ public class DeployForestsCommand extends AbstractCommand {
 
         // Find out how many forests exist already
         int countOfExistingForests = new DatabaseManager(context.getManageClient()).getPrimaryForestIds(getForestDatabaseName(appConfig)).size();
-        int desiredNumberOfForests = hostNames.size() * forestsPerHost;
+        Map<String, List<String>> forestNamesByHost;
+        if (createForestsOnEachHost && appConfig.isBalanceForestPlacement()) {
+            placementPlanner = buildPlacementPlanner(context);
+            forestNamesByHost = planForestNamesByHost(placementPlanner, hostNames.size(), countOfExistingForests, appConfig);
+        } else {
+            forestNamesByHost = buildForestNamesByHost(hostNames, countOfExistingForests, appConfig);
+        }
+
+        // Fetch the list of forests once instead of before each forest is created
+        ResourcesFragment existingForests = mgr.getAsXml();
+        final Map<String, Map<String, String>> payloadsByHost = new LinkedHashMap<>();
+        for (String hostName : forestNamesByHost.keySet()) {
+            Map<String, String> payloads = new LinkedHashMap<>();
+            for (String forestName : forestNamesByHost.get(hostName)) {
+                if (existingForests.resourceExists(forestName)) {
+                    logger.info(format("Forest already exists with name, so not creating: %s", forestName));
+                    continue;
+                }
+                String payload = tokenReplacer.replaceTokens(originalPayload, appConfig, false);
+                payload = payload.replace("%%FOREST_HOST%%", hostName);
+                payload = payload.replace("%%FOREST_NAME%%", forestName);
+                payload = payload.replace("%%FOREST_DATABASE%%", getForestDatabaseName(appConfig));
+                payloads.put(forestName, payload);
+            }
+            if (!payloads.isEmpty()) {
+                payloadsByHost.put(hostName, payloads);
+            }
+        }
+
+        int count = determineThreadCount(context);
+        if (count <= 1 || payloadsByHost.size() <= 1) {
+            for (String hostName : payloadsByHost.keySet()) {
+                createForestsOnHost(mgr, hostName, payloadsByHost.get(hostName));
+            }
+            return;
+        }
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ml-forest-");
+        threadFactory.setDaemon(true);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(count, payloadsByHost.size()), threadFactory);
+        try {
+            Map<String, Future<?>> futures = new LinkedHashMap<>();
+            for (final String hostName : payloadsByHost.keySet()) {
+                futures.put(hostName, executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        createForestsOnHost(mgr, hostName, payloadsByHost.get(hostName));
+                        return null;
+                    }
+                }));
+            }
+            RuntimeException firstError = null;
+            for (String hostName : futures.keySet()) {
+                try {
+                    futures.get(hostName).get();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (firstError != null) {
+                        logger.error(format("Unable to create forests on host %s; cause: %s", hostName, cause.getMessage()));
+                    } else if (cause instanceof RuntimeException) {
+                        firstError = (RuntimeException) cause;
+                    } else {
+                        firstError = new RuntimeException("Unable to create forests on host " + hostName, cause);
+                    }
+                }
+            }
+            if (firstError != null) {
+                throw firstError;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while creating forests", ex);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-        // Loop over the number of forests to create, starting with count + 1, and iterating over the hosts
+    /**
+     * Assigns forest numbers to hosts, starting with the number after the count of existing forests and iterating over
+     * the hosts, until each host has forestsPerHost forests.
+     *
+     * @return the names of the forests to create, keyed by host name in the order of the given host names
+     */
+    protected Map<String, List<String>> buildForestNamesByHost(List<String> hostNames, int countOfExistingForests,
+            AppConfig appConfig) {
+        Map<String, List<String>> forestNamesByHost = new LinkedHashMap<>();
+        int desiredNumberOfForests = hostNames.size() * forestsPerHost;
         for (int i = countOfExistingForests + 1; i <= desiredNumberOfForests;) {
             for (String hostName : hostNames) {
                 if (i <= desiredNumberOfForests) {
-                    String payload = tokenReplacer.replaceTokens(originalPayload, appConfig, false);
-                    payload = payload.replace("%%FOREST_HOST%%", hostName);
-                    String forestName = getForestName(appConfig, i);
-                    payload = payload.replace("%%FOREST_NAME%%", forestName);
-                    payload = payload.replace("%%FOREST_DATABASE%%", getForestDatabaseName(appConfig));
-                    logger.info(format("Creating forest %s on host %s", forestName, hostName));
-                    mgr.save(payload);
+                    List<String> forestNames = forestNamesByHost.get(hostName);
+                    if (forestNames == null) {
+                        forestNames = new ArrayList<>();
+                        forestNamesByHost.put(hostName, forestNames);
+                    }
+                    forestNames.add(getForestName(appConfig, i));
                 }
                 i++;
             }
         }
+        return forestNamesByHost;
+    }
+
+    /**
+     * Builds a planner from the hosts that can be given new forests, weighted by AppConfig's
+     * forestPlacementHostWeights.
+     *
+     * @param context
+     * @return
+     */
+    protected ForestPlacementPlanner buildPlacementPlanner(CommandContext context) {
+        ForestPlacementPlanner planner = new ForestPlacementPlanner(
+                new HostManager(context.getManageClient()).getPlacementHosts());
+        planner.setHostWeights(context.getAppConfig().getForestPlacementHostWeights());
+        return planner;
+    }
+
+    /**
+     * Uses the planner to assign the same forests that buildForestNamesByHost would create.
+     *
+     * @return the names of the forests to create, keyed by host name
+     */
+    protected Map<String, List<String>> planForestNamesByHost(ForestPlacementPlanner planner, int hostCount,
+            int countOfExistingForests, AppConfig appConfig) {
+        List<String> forestNames = new ArrayList<>();
+        for (int i = countOfExistingForests + 1; i <= hostCount * forestsPerHost; i++) {
+            forestNames.add(getForestName(appConfig, i));
+        }
+        List<ForestPlacement> placements = planner.planPrimaries(forestNames);
+        if (logger.isInfoEnabled()) {
+            logger.info("Planned forest placement: " + placements);
+        }
+        Map<String, List<String>> forestNamesByHost = new LinkedHashMap<>();
+        for (ForestPlacement placement : placements) {
+            String hostName = placement.getHost().getName();
+            if (!forestNamesByHost.containsKey(hostName)) {
+                forestNamesByHost.put(hostName, new ArrayList<String>());
+            }
+            forestNamesByHost.get(hostName).add(placement.getForestName());
+        }
+        return forestNamesByHost;
+    }
+
+    /**
+     * @param mgr
+     * @param hostName
+     * @param payloads
+     *            payloads for forests that don't exist yet, keyed by forest name
+     */
+    protected void createForestsOnHost(ForestManager mgr, String hostName, Map<String, String> payloads) {
+        long start = System.currentTimeMillis();
+        for (String forestName : payloads.keySet()) {
+            logger.info(format("Creating forest %s on host %s", forestName, hostName));
+            mgr.createResource(payloads.get(forestName), forestName);
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info(format("Created %d forest(s) on host %s in %d ms", payloads.size(), hostName,
+                    System.currentTimeMillis() - start));
+        }
+    }
+
+    protected int determineThreadCount(CommandContext context) {
+        if (threadCount > 0) {
+            return threadCount;
+        }
+        return context.getAppConfig() != null ? context.getAppConfig().getForestThreadCount() : 1;
     }
 
     protected String getForestName(AppConfig appConfig, int forestNumber) {
@@ -152,4 +321,25 @@ public class DeployForestsCommand extends AbstractCommand {
     public void setCreateForestsOnEachHost(boolean createForestsOnEachHost) {
         this.createForestsOnEachHost = createForestsOnEachHost;
     }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * @param threadCount
+     *            the number of hosts to create forests on at the same time; if not greater than zero, AppConfig's
+     *            forestThreadCount is used
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * @return the planner used the last time forests were created with balanced placement, which allows for the plan
+     *         to be inspected; null if balanced placement hasn't been used
+     */
+    public ForestPlacementPlanner getPlacementPlanner() {
+        return placementPlanner;
+    }
 }
@@ -14,6 +14,16 @@ public class DeployGroupsCommand extends AbstractResourceCommand {
     public DeployGroupsCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_GROUPS);
         setUndoSortOrder(SortOrderConstants.DELETE_GROUPS);
+        // Saving a group may restart MarkLogic
+        setParallelProcessingAllowed(false);
+    }
+
+    /**
+     * Saving a group may restart MarkLogic.
+     */
+    @Override
+    public boolean isRestartBarrierOnExecute() {
+        return true;
     }
 
     @Override
@@ -29,11 +39,14 @@ public class DeployGroupsCommand extends AbstractResourceCommand {
     /**
      * Does a poor man's job of checking for a restart by checking for "cache-size" in the payload. This doesn't mean a
      * restart has occurred - the cache size may not changed - but that's fine, as the waitForRestart method on
-     * AdminManager will quickly exit.
+     * AdminManager will quickly exit. No restart occurs if the group was left unchanged.
      */
     @Override
     protected void afterResourceSaved(ResourceManager mgr, CommandContext context, File resourceFile,
             SaveReceipt receipt) {
+        if (receipt != null && receipt.isUpdateSkipped()) {
+            return;
+        }
         String payload = receipt.getPayload();
         if (payload != null && payload.contains("cache-size") && context.getAdminManager() != null) {
             if (logger.isDebugEnabled()) {
@@ -14,9 +14,19 @@ public class DeployMimetypesCommand extends AbstractResourceCommand {
     public DeployMimetypesCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_MIMETYPES);
         setUndoSortOrder(SortOrderConstants.DELETE_MIMETYPES);
+        // Saving a mimetype restarts MarkLogic
+        setParallelProcessingAllowed(false);
         setRestartAfterDelete(true);
     }
 
+    /**
+     * Saving a mimetype restarts MarkLogic.
+     */
+    @Override
+    public boolean isRestartBarrierOnExecute() {
+        return true;
+    }
+
     @Override
     protected File[] getResourceDirs(CommandContext context) {
         return new File[] { new File(context.getAppConfig().getConfigDir().getBaseDir(), "mimetypes") };
@@ -28,11 +38,15 @@ public class DeployMimetypesCommand extends AbstractResourceCommand {
     }
 
     /**
-     * As of ML 8.0-4, any time a mimetype is created or updated, ML must be restarted.
+     * As of ML 8.0-4, any time a mimetype is created or updated, ML must be restarted. No restart occurs if the
+     * mimetype was left unchanged.
      */
     @Override
     protected void afterResourceSaved(ResourceManager mgr, CommandContext context, File resourceFile,
             SaveReceipt receipt) {
+        if (receipt != null && receipt.isUpdateSkipped()) {
+            return;
+        }
         logger.info("Waiting for restart after saving mimetype");
         context.getAdminManager().waitForRestart();
     }
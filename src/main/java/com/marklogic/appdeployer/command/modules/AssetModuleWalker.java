@@ -0,0 +1,55 @@
+package com.marklogic.appdeployer.command.modules;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.List;
+
+/**
+ * Walks the files in a set of asset directories, determining the URI that XccAssetLoader loads each file to - its path
+ * relative to its asset directory, prefixed with "/ext" when the asset directory is named "ext".
+ */
+public class AssetModuleWalker {
+
+    /**
+     * Callback for each file found in an asset directory.
+     */
+    public interface AssetCallback {
+        public void visit(File file, String uri);
+    }
+
+    private FileFilter fileFilter;
+
+    /**
+     * @param fileFilter
+     *            optional filter for files and directories to include
+     */
+    public AssetModuleWalker(FileFilter fileFilter) {
+        this.fileFilter = fileFilter;
+    }
+
+    public void walk(List<File> assetDirectories, AssetCallback callback) {
+        for (File dir : assetDirectories) {
+            if (dir.isDirectory()) {
+                walk(dir, "ext".equals(dir.getName()) ? "/ext" : "", callback);
+            }
+        }
+    }
+
+    protected void walk(File dir, String uriPrefix, AssetCallback callback) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File f : children) {
+            if (fileFilter != null && !fileFilter.accept(f)) {
+                continue;
+            }
+            String uri = uriPrefix + "/" + f.getName();
+            if (f.isDirectory()) {
+                walk(f, uri, callback);
+            } else {
+                callback.visit(f, uri);
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.marklogic.appdeployer.command.modules;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.marklogic.client.helper.LoggingObject;
+import com.marklogic.client.modulesloader.ModulesManager;
+
+/**
+ * ModulesManager that decides whether a module has changed based on a hash of its content instead of its last-modified
+ * time, so that a module whose timestamp changed - e.g. after a git checkout or a restore of a CI cache - but whose
+ * content didn't isn't loaded again.
+ * <p>
+ * For each module that's been loaded, the index holds the module's last-modified time, size, and SHA-256 hash. A module
+ * is only hashed when its last-modified time or size differs from the index, and a module that only had its timestamp
+ * changed has the new timestamp recorded so that it isn't hashed again.
+ * <p>
+ * The index is held in memory and written in a compact binary format - replacing the previous file via a temporary
+ * file - when save is called, which LoadModulesCommand does after loading modules. Every method is safe to call from
+ * multiple threads.
+ */
+public class ContentHashModuleManager extends LoggingObject implements ModulesManager {
+
+    private final static int MAGIC = 0x4d4c4348; // "MLCH"
+    private final static int VERSION = 1;
+    private final static int HASH_LENGTH = 32;
+
+    private File file;
+    private Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private Map<String, Entry> pendingEntries = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+    private volatile boolean initialized;
+
+    public ContentHashModuleManager(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the index from its file the first time it's called; later calls do nothing, as DefaultModulesLoader calls
+     * this every time it loads modules, and the hashes of modules loaded since then must be kept until save is called.
+     */
+    @Override
+    public synchronized void initialize() {
+        if (!initialized) {
+            reload();
+        }
+    }
+
+    /**
+     * Loads the index from its file, discarding any hashes that haven't been saved; an index that can't be read is
+     * logged and treated as empty, which results in every module being loaded.
+     */
+    public synchronized void reload() {
+        entries.clear();
+        pendingEntries.clear();
+        dirty = false;
+        initialized = true;
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                logger.warn("Ignoring module hashes file with unrecognized format: " + file.getAbsolutePath());
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long lastModified = in.readLong();
+                long size = in.readLong();
+                byte[] hash = new byte[HASH_LENGTH];
+                in.readFully(hash);
+                entries.put(path, new Entry(lastModified, size, hash));
+            }
+        } catch (EOFException ex) {
+            logger.warn("Module hashes file is truncated, so ignoring it: " + file.getAbsolutePath());
+            entries.clear();
+        } catch (IOException ex) {
+            logger.warn(format("Unable to load module hashes from %s; cause: %s", file.getAbsolutePath(),
+                    ex.getMessage()));
+            entries.clear();
+        }
+    }
+
+    @Override
+    public boolean hasFileBeenModifiedSinceLastLoaded(File f) {
+        ensureInitialized();
+        String path = f.getAbsolutePath();
+        long lastModified = f.lastModified();
+        long size = f.length();
+        Entry entry = entries.get(path);
+        if (entry != null && entry.lastModified == lastModified && entry.size == size) {
+            return false;
+        }
+
+        byte[] hash = hash(f);
+        Entry current = new Entry(lastModified, size, hash);
+        if (entry != null && entry.size == size && Arrays.equals(entry.hash, hash)) {
+            // Only the timestamp changed; record it so the file isn't hashed again
+            entries.put(path, current);
+            dirty = true;
+            return false;
+        }
+        pendingEntries.put(path, current);
+        return true;
+    }
+
+    /**
+     * Records the hash of a module that was just loaded; the given date is not used, as the module's own last-modified
+     * time is what's compared on the next load.
+     */
+    @Override
+    public void saveLastLoadedTimestamp(File f, Date date) {
+        ensureInitialized();
+        String path = f.getAbsolutePath();
+        Entry entry = pendingEntries.remove(path);
+        long lastModified = f.lastModified();
+        long size = f.length();
+        if (entry == null || entry.lastModified != lastModified || entry.size != size) {
+            entry = new Entry(lastModified, size, hash(f));
+        }
+        entries.put(path, entry);
+        dirty = true;
+    }
+
+    /**
+     * Writes the index if anything has changed since it was loaded or last saved.
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        File tempFile = new File(file.getAbsolutePath() + ".tmp");
+        Map<String, Entry> snapshot = new HashMap<>(entries);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, Entry> e : snapshot.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeLong(e.getValue().lastModified);
+                out.writeLong(e.getValue().size);
+                out.write(e.getValue().hash);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Unable to save module hashes to " + tempFile.getAbsolutePath() + "; cause: "
+                    + ex.getMessage(), ex);
+        }
+        try {
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Unable to move " + tempFile.getAbsolutePath() + " to " + file.getAbsolutePath()
+                    + "; cause: " + ex.getMessage(), ex);
+        }
+        dirty = false;
+    }
+
+    /**
+     * Forgets every module, so that every module is loaded the next time.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        pendingEntries.clear();
+        dirty = false;
+        if (file.exists()) {
+            file.delete();
+        }
+    }
+
+    /**
+     * @param f
+     * @return the SHA-256 hash of the file's content
+     */
+    public static byte[] hash(File f) {
+        try (InputStream in = new FileInputStream(f)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+            }
+            return digest.digest();
+        } catch (IOException ex) {
+            throw new RuntimeException("Unable to hash file: " + f.getAbsolutePath() + "; cause: " + ex.getMessage(),
+                    ex);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException("Unable to hash file; cause: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * @param f
+     * @return the hash recorded for the file when it was last loaded, or null if it hasn't been loaded
+     */
+    public byte[] getLoadedHash(File f) {
+        ensureInitialized();
+        Entry entry = entries.get(f.getAbsolutePath());
+        return entry != null ? entry.hash : null;
+    }
+
+    public int getModuleCount() {
+        return entries.size();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    private void ensureInitialized() {
+        if (!initialized) {
+            synchronized (this) {
+                if (!initialized) {
+                    initialize();
+                }
+            }
+        }
+    }
+
+    private static class Entry {
+        private final long lastModified;
+        private final long size;
+        private final byte[] hash;
+
+        Entry(long lastModified, long size, byte[] hash) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.hash = hash;
+        }
+    }
+}
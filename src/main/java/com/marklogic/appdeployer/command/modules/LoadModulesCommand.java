@@ -1,16 +1,40 @@
 package com.marklogic.appdeployer.command.modules;
 
 import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.marklogic.appdeployer.command.appservers.DeployOtherServersCommand;
+import com.marklogic.appdeployer.command.appservers.UpdateRestApiServersCommand;
+import com.marklogic.appdeployer.command.databases.DeployOtherDatabasesCommand;
+import com.marklogic.appdeployer.command.restapis.DeployRestApiServersCommand;
+import com.marklogic.appdeployer.command.security.DeployRolesCommand;
+import com.marklogic.appdeployer.command.security.DeployUsersCommand;
 import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.modulesloader.Modules;
 import com.marklogic.client.modulesloader.ModulesLoader;
+import com.marklogic.client.modulesloader.ModulesManager;
 import com.marklogic.client.modulesloader.impl.DefaultModulesLoader;
-import com.marklogic.client.modulesloader.impl.PropertiesModuleManager;
 import com.marklogic.client.modulesloader.impl.TestServerModulesFinder;
+import com.marklogic.client.modulesloader.tokenreplacer.PropertiesSource;
 import com.marklogic.appdeployer.AppConfig;
 import com.marklogic.appdeployer.command.AbstractCommand;
 import com.marklogic.appdeployer.command.CommandContext;
 import com.marklogic.appdeployer.command.SortOrderConstants;
+import com.marklogic.appdeployer.util.ChangedFilesModuleManager;
 
 /**
  * Command for loading modules via an instance of DefaultModulesLoader, which depends on an instance of XccAssetLoader -
@@ -19,9 +43,13 @@ import com.marklogic.appdeployer.command.SortOrderConstants;
 public class LoadModulesCommand extends AbstractCommand {
 
     private ModulesLoader modulesLoader;
+    private ModulesManager modulesManager;
 
     public LoadModulesCommand() {
         setExecuteSortOrder(SortOrderConstants.LOAD_MODULES);
+        setExecuteDependencies(DeployRestApiServersCommand.class, UpdateRestApiServersCommand.class,
+                DeployOtherServersCommand.class, DeployOtherDatabasesCommand.class, DeployRolesCommand.class,
+                DeployUsersCommand.class);
     }
 
     /**
@@ -33,23 +61,97 @@ public class LoadModulesCommand extends AbstractCommand {
     public void initializeDefaultModulesLoader(CommandContext context) {
         logger.info("Initializing instance of DefaultModulesLoader");
 		DefaultModulesLoader l = new DefaultModulesLoader(context.getAppConfig().newXccAssetLoader());
-		String path = context.getAppConfig().getModuleTimestampsPath();
-		if (path != null) {
-			l.setModulesManager(new PropertiesModuleManager(new File(path)));
+		ModulesManager mgr = context.getAppConfig().newModulesManager();
+		if (context.getAppConfig().isDiffModulesWithServer()) {
+			mgr = new ChangedFilesModuleManager(mgr);
+		}
+		if (mgr != null) {
+			l.setModulesManager(mgr);
 		}
+		this.modulesManager = mgr;
 		l.setStaticChecker(context.getAppConfig().newStaticChecker());
         this.modulesLoader = l;
     }
 
     @Override
     public void execute(CommandContext context) {
-        loadModulesIntoMainServer(context);
-
-        if (context.getAppConfig().isTestPortSet()) {
+        AppConfig config = context.getAppConfig();
+        if (!config.isTestPortSet()) {
+            loadModulesIntoMainServer(context);
+        } else if (config.isLoadTestModulesConcurrently()) {
+            loadModulesIntoMainAndTestServersConcurrently(context);
+        } else {
+            loadModulesIntoMainServer(context);
             loadModulesIntoTestServer(context);
         }
     }
 
+    /**
+     * Loads modules into the test server on a separate thread while the main server's non-asset modules are being
+     * loaded. The test server's options and properties are only loaded once the main server's asset modules - including
+     * any custom rewriter that the test server may share - have been loaded, so that the ordering guarantee described
+     * on loadModulesIntoMainServer holds for the test server as well. Both loads are always allowed to finish; an error
+     * from loading into the main server takes precedence over one from loading into the test server.
+     *
+     * @param context
+     */
+    protected void loadModulesIntoMainAndTestServersConcurrently(final CommandContext context) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ml-test-modules-");
+        threadFactory.setDaemon(true);
+        final ExecutorService executor = Executors.newSingleThreadExecutor(threadFactory);
+        final List<Future<?>> testServerLoads = new ArrayList<>();
+        try {
+            RuntimeException mainServerError = null;
+            try {
+                loadModulesIntoMainServer(context, new Runnable() {
+                    @Override
+                    public void run() {
+                        testServerLoads.add(executor.submit(new Runnable() {
+                            @Override
+                            public void run() {
+                                loadModulesIntoTestServer(context);
+                            }
+                        }));
+                    }
+                });
+            } catch (RuntimeException ex) {
+                mainServerError = ex;
+            }
+
+            if (testServerLoads.isEmpty()) {
+                if (mainServerError != null) {
+                    throw mainServerError;
+                }
+                // The main server's loading didn't reach the point of starting the test server's loading
+                loadModulesIntoTestServer(context);
+                return;
+            }
+
+            try {
+                testServerLoads.get(0).get();
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (mainServerError != null) {
+                    logger.error("Unable to load modules into test server; cause: " + cause.getMessage(), cause);
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else {
+                    throw new RuntimeException("Unable to load modules into test server; cause: "
+                            + cause.getMessage(), cause);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while loading modules into test server", ex);
+            }
+
+            if (mainServerError != null) {
+                throw mainServerError;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * If we have multiple module paths, we want to load via XCC the assets for each first, and then iterate over the
      * paths again and load all the REST API resources. This ensures that if the REST server for loading REST API
@@ -58,6 +160,16 @@ public class LoadModulesCommand extends AbstractCommand {
      * @param context
      */
     protected void loadModulesIntoMainServer(CommandContext context) {
+        loadModulesIntoMainServer(context, null);
+    }
+
+    /**
+     * @param context
+     * @param afterAssetModulesLoaded
+     *            optional callback that's run once the asset modules have been loaded, before any REST API resources
+     *            are loaded
+     */
+    protected void loadModulesIntoMainServer(CommandContext context, Runnable afterAssetModulesLoaded) {
         if (modulesLoader == null) {
             initializeDefaultModulesLoader(context);
         }
@@ -66,9 +178,14 @@ public class LoadModulesCommand extends AbstractCommand {
         DatabaseClient client = config.newDatabaseClient();
 
         try {
-            for (String modulesPath : config.getModulePaths()) {
-                logger.info("Loading asset modules from dir: " + modulesPath);
-                modulesLoader.loadModules(new File(modulesPath), new AssetModulesFinder(), client);
+            if (config.isDiffModulesWithServer() && modulesManager instanceof ChangedFilesModuleManager) {
+                loadAssetModulesChangedSinceLastLoad(config, client, (ChangedFilesModuleManager) modulesManager);
+            } else {
+                loadAssetModules(config, client);
+            }
+
+            if (afterAssetModulesLoaded != null) {
+                afterAssetModulesLoaded.run();
             }
 
             for (String modulesPath : config.getModulePaths()) {
@@ -77,6 +194,150 @@ public class LoadModulesCommand extends AbstractCommand {
             }
         } finally {
             client.release();
+            saveModuleHashes();
+        }
+    }
+
+    /**
+     * Loads the asset modules in each module path, either via the ModulesLoader or - when assetLoadThreadCount is
+     * greater than 1 and assets aren't being statically checked - via a ParallelAssetLoader that uses the same
+     * ModulesManager.
+     *
+     * @param config
+     * @param client
+     */
+    protected void loadAssetModules(AppConfig config, DatabaseClient client) {
+        if (config.getAssetLoadThreadCount() > 1 && !config.isStaticCheckAssets()) {
+            ParallelAssetLoader loader = config.newParallelAssetLoader();
+            loader.setModulesManager(modulesManager);
+            logger.info("Loading asset modules from dirs: " + config.getModulePaths());
+            loader.loadAssets(findAssetDirectories(config));
+        } else {
+            for (String modulesPath : config.getModulePaths()) {
+                logger.info("Loading asset modules from dir: " + modulesPath);
+                modulesLoader.loadModules(new File(modulesPath), new AssetModulesFinder(), client);
+            }
+        }
+    }
+
+    protected List<File> findAssetDirectories(AppConfig config) {
+        List<File> assetDirs = new ArrayList<>();
+        for (String modulesPath : config.getModulePaths()) {
+            Modules modules = new AssetModulesFinder().findModules(new File(modulesPath));
+            if (modules.getAssetDirectories() != null) {
+                assetDirs.addAll(modules.getAssetDirectories());
+            }
+        }
+        return assetDirs;
+    }
+
+    /**
+     * Fetches the manifest stored in the modules database when modules were last loaded, and only loads the asset
+     * modules that are missing from it or whose content differs from it. The manifest is then replaced with one for
+     * the local modules, and if deleteModulesMissingLocally is true, modules in the stored manifest that no longer
+     * exist locally are deleted. Failing to read or write the manifest - e.g. due to the user lacking the privilege to
+     * eval against the modules database - only results in a warning.
+     *
+     * @param config
+     * @param client
+     * @param changedFilesManager
+     */
+    protected void loadAssetModulesChangedSinceLastLoad(AppConfig config, DatabaseClient client,
+            ChangedFilesModuleManager changedFilesManager) {
+        ModulesManifest localManifest = ModulesManifest.build(findAssetDirectories(config),
+                config.getAssetFileFilter(), buildTokensFingerprint(config));
+
+        ModulesManifestStore store = new ModulesManifestStore(config.getModulesDatabaseName());
+        store.setManifestUri(config.getModulesManifestUri());
+        ModulesManifest storedManifest = null;
+        try {
+            storedManifest = store.read(client);
+        } catch (RuntimeException ex) {
+            logger.warn("Unable to read modules manifest, so loading all asset modules; cause: " + ex.getMessage());
+        }
+
+        Set<File> changedFiles = localManifest.findChangedFiles(storedManifest);
+        logger.info(format("Asset modules missing or changed in modules database: %d of %d", changedFiles.size(),
+                localManifest.size()));
+
+        if (!changedFiles.isEmpty()) {
+            changedFilesManager.setChangedFiles(changedFiles);
+            try {
+                loadAssetModules(config, client);
+            } finally {
+                changedFilesManager.setChangedFiles(null);
+            }
+        }
+
+        List<String> urisToDelete = null;
+        if (config.isDeleteModulesMissingLocally()) {
+            urisToDelete = localManifest.findMissingUris(storedManifest);
+            if (!urisToDelete.isEmpty()) {
+                logger.info("Deleting modules that no longer exist locally: " + urisToDelete);
+            }
+        }
+        try {
+            store.write(client, localManifest, urisToDelete);
+        } catch (RuntimeException ex) {
+            // The modules were loaded, so this only means the next load can't skip any of them
+            String message = "Unable to write modules manifest, so all asset modules will be loaded next time";
+            if (urisToDelete != null && !urisToDelete.isEmpty()) {
+                message += ", and modules missing locally were not deleted";
+            }
+            logger.warn(message + "; cause: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * @param config
+     * @return a hash of the tokens that are replaced in modules, so that every module is loaded again when a token
+     *         value changes
+     */
+    protected String buildTokensFingerprint(AppConfig config) {
+        if (!config.isReplaceTokensInModules()) {
+            return "none";
+        }
+        Map<Object, Object> tokens = new TreeMap<>();
+        Map<String, String> customTokens = config.getCustomTokens();
+        if (customTokens != null) {
+            synchronized (customTokens) {
+                tokens.putAll(customTokens);
+            }
+        }
+        if (config.getModuleTokensPropertiesSources() != null) {
+            for (PropertiesSource ps : config.getModuleTokensPropertiesSources()) {
+                Properties props = ps.getProperties();
+                if (props != null) {
+                    for (String name : props.stringPropertyNames()) {
+                        tokens.put(name, props.getProperty(name));
+                    }
+                }
+            }
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(config.isUseRoxyTokenPrefix()).getBytes("UTF-8"));
+            for (Map.Entry<Object, Object> entry : tokens.entrySet()) {
+                digest.update(("\n" + entry.getKey() + "=" + entry.getValue()).getBytes("UTF-8"));
+            }
+            return ModulesManifest.toHex(digest.digest());
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException ex) {
+            throw new RuntimeException("Unable to build fingerprint of module tokens; cause: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * A ContentHashModuleManager only keeps the hashes of loaded modules in memory, so they're written out once all of
+     * the modules have been loaded - including when loading fails partway, so that modules that were loaded aren't
+     * loaded again.
+     */
+    protected void saveModuleHashes() {
+        ModulesManager mgr = modulesManager;
+        if (mgr instanceof ChangedFilesModuleManager) {
+            mgr = ((ChangedFilesModuleManager) mgr).getDelegate();
+        }
+        if (mgr instanceof ContentHashModuleManager) {
+            ((ContentHashModuleManager) mgr).save();
         }
     }
 
@@ -111,6 +372,20 @@ public class LoadModulesCommand extends AbstractCommand {
         this.modulesLoader = modulesLoader;
     }
 
+    /**
+     * Only needed when setting a ModulesLoader that uses a ContentHashModuleManager, so that the hashes are saved after
+     * modules are loaded.
+     *
+     * @param modulesManager
+     */
+    public void setModulesManager(ModulesManager modulesManager) {
+        this.modulesManager = modulesManager;
+    }
+
+    public ModulesManager getModulesManager() {
+        return modulesManager;
+    }
+
     public ModulesLoader getModulesLoader() {
         return modulesLoader;
     }
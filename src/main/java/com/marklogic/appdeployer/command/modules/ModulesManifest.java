@@ -0,0 +1,156 @@
+package com.marklogic.appdeployer.command.modules;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Maps the URI of each asset module to a hash of its content, along with a fingerprint of the tokens that were
+ * replaced in the modules. A manifest built from the local asset directories is compared with the one stored in the
+ * modules database when modules were last loaded, so that only missing or changed modules need to be loaded.
+ * <p>
+ * The URI of each module is determined via AssetModuleWalker, matching the URIs that XccAssetLoader loads modules to.
+ */
+public class ModulesManifest {
+
+    private String tokensFingerprint;
+    private Map<String, String> hashes = new TreeMap<>();
+    private Map<String, File> files = new TreeMap<>();
+
+    public ModulesManifest(String tokensFingerprint) {
+        this.tokensFingerprint = tokensFingerprint;
+    }
+
+    /**
+     * @param assetDirectories
+     * @param fileFilter
+     *            optional filter for files and directories to include
+     * @param tokensFingerprint
+     * @return a manifest of every file under the given asset directories
+     */
+    public static ModulesManifest build(List<File> assetDirectories, FileFilter fileFilter, String tokensFingerprint) {
+        final ModulesManifest manifest = new ModulesManifest(tokensFingerprint);
+        new AssetModuleWalker(fileFilter).walk(assetDirectories, new AssetModuleWalker.AssetCallback() {
+            @Override
+            public void visit(File file, String uri) {
+                manifest.put(uri, ContentHashModuleManager.hash(file), file);
+            }
+        });
+        return manifest;
+    }
+
+    public void put(String uri, byte[] hash, File file) {
+        hashes.put(uri, toHex(hash));
+        if (file != null) {
+            files.put(uri, file);
+        }
+    }
+
+    /**
+     * @param stored
+     *            the manifest stored when modules were last loaded, limited to the modules that still exist; null if
+     *            there isn't one
+     * @return the local files whose URI is not in the stored manifest or whose hash differs from it; every file if the
+     *         token fingerprints differ
+     */
+    public Set<File> findChangedFiles(ModulesManifest stored) {
+        boolean allChanged = stored == null || !equal(tokensFingerprint, stored.tokensFingerprint);
+        Set<File> changed = new LinkedHashSet<>();
+        for (Map.Entry<String, File> entry : files.entrySet()) {
+            String uri = entry.getKey();
+            if (allChanged || !hashes.get(uri).equals(stored.hashes.get(uri))) {
+                changed.add(entry.getValue());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @param stored
+     * @return the URIs in the stored manifest that aren't in this manifest - i.e. modules that were loaded before but
+     *         no longer exist locally
+     */
+    public List<String> findMissingUris(ModulesManifest stored) {
+        List<String> uris = new ArrayList<>();
+        if (stored != null) {
+            for (String uri : stored.hashes.keySet()) {
+                if (!hashes.containsKey(uri)) {
+                    uris.add(uri);
+                }
+            }
+        }
+        return uris;
+    }
+
+    public String toJson() {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode node = mapper.createObjectNode();
+        if (tokensFingerprint != null) {
+            node.put("tokensFingerprint", tokensFingerprint);
+        }
+        ObjectNode hashesNode = node.putObject("hashes");
+        for (Map.Entry<String, String> entry : hashes.entrySet()) {
+            hashesNode.put(entry.getKey(), entry.getValue());
+        }
+        try {
+            return mapper.writeValueAsString(node);
+        } catch (IOException ex) {
+            throw new RuntimeException("Unable to write modules manifest as JSON; cause: " + ex.getMessage(), ex);
+        }
+    }
+
+    public static ModulesManifest fromJson(String json) {
+        try {
+            JsonNode node = new ObjectMapper().readTree(json);
+            ModulesManifest manifest = new ModulesManifest(node.has("tokensFingerprint") ? node.get(
+                    "tokensFingerprint").asText() : null);
+            JsonNode hashesNode = node.get("hashes");
+            if (hashesNode != null) {
+                Iterator<Map.Entry<String, JsonNode>> iter = hashesNode.fields();
+                while (iter.hasNext()) {
+                    Map.Entry<String, JsonNode> entry = iter.next();
+                    manifest.hashes.put(entry.getKey(), entry.getValue().asText());
+                }
+            }
+            return manifest;
+        } catch (IOException ex) {
+            throw new RuntimeException("Unable to parse modules manifest; cause: " + ex.getMessage(), ex);
+        }
+    }
+
+    public static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static boolean equal(String s1, String s2) {
+        return s1 == null ? s2 == null : s1.equals(s2);
+    }
+
+    public String getTokensFingerprint() {
+        return tokensFingerprint;
+    }
+
+    public Map<String, String> getHashes() {
+        return Collections.unmodifiableMap(hashes);
+    }
+
+    public int size() {
+        return hashes.size();
+    }
+}
@@ -0,0 +1,95 @@
+package com.marklogic.appdeployer.command.modules;
+
+import java.util.List;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.helper.LoggingObject;
+
+/**
+ * Reads and writes a ModulesManifest as a JSON document in a modules database, via an eval request against the REST
+ * API server that a DatabaseClient connects to. Each of read and write is a single request.
+ */
+public class ModulesManifestStore extends LoggingObject {
+
+    public final static String DEFAULT_MANIFEST_URI = "/com.marklogic.appdeployer/modules-manifest.json";
+
+    /**
+     * Returns the stored manifest, limited to the modules that still exist, so that a module that was deleted or lost
+     * in a restore is considered missing.
+     */
+    private final static String READ_QUERY = "xquery version '1.0-ml'; "
+            + "declare variable $DATABASE external; declare variable $URI external; "
+            + "xdmp:invoke-function(function() { "
+            + "  let $manifest := fn:doc($URI)/object-node() "
+            + "  where fn:exists($manifest) "
+            + "  return xdmp:to-json-string( "
+            + "    let $o := json:object() "
+            + "    let $hashes := json:object() "
+            + "    let $_ := for $h in $manifest/hashes/node() "
+            + "      let $uri := fn:string(fn:node-name($h)) "
+            + "      where fn:doc-available($uri) "
+            + "      return map:put($hashes, $uri, fn:string($h)) "
+            + "    let $_ := map:put($o, 'tokensFingerprint', fn:string($manifest/tokensFingerprint)) "
+            + "    let $_ := map:put($o, 'hashes', $hashes) "
+            + "    return $o) "
+            + "}, <options xmlns='xdmp:eval'><database>{xdmp:database($DATABASE)}</database></options>)";
+
+    private final static String WRITE_QUERY = "xquery version '1.0-ml'; "
+            + "declare variable $DATABASE external; declare variable $URI external; "
+            + "declare variable $MANIFEST external; declare variable $DELETE_URIS external; "
+            + "xdmp:invoke-function(function() { "
+            + "  for $uri in fn:tokenize($DELETE_URIS, '\\n')[. ne ''] "
+            + "  where fn:doc-available($uri) "
+            + "  return xdmp:document-delete($uri), "
+            + "  xdmp:document-insert($URI, xdmp:unquote($MANIFEST)) "
+            + "}, <options xmlns='xdmp:eval'><database>{xdmp:database($DATABASE)}</database>"
+            + "<transaction-mode>update-auto-commit</transaction-mode></options>)";
+
+    private String databaseName;
+    private String manifestUri = DEFAULT_MANIFEST_URI;
+
+    public ModulesManifestStore(String databaseName) {
+        this.databaseName = databaseName;
+    }
+
+    /**
+     * @param client
+     * @return the stored manifest, or null if there isn't one
+     */
+    public ModulesManifest read(DatabaseClient client) {
+        String json = client.newServerEval().xquery(READ_QUERY).addVariable("DATABASE", databaseName)
+                .addVariable("URI", manifestUri).evalAs(String.class);
+        return json != null && json.trim().length() > 0 ? ModulesManifest.fromJson(json) : null;
+    }
+
+    /**
+     * Stores the manifest and deletes the given modules in one transaction.
+     *
+     * @param client
+     * @param manifest
+     * @param urisToDelete
+     */
+    public void write(DatabaseClient client, ModulesManifest manifest, List<String> urisToDelete) {
+        StringBuilder deletes = new StringBuilder();
+        if (urisToDelete != null) {
+            for (String uri : urisToDelete) {
+                deletes.append(uri).append("\n");
+            }
+        }
+        client.newServerEval().xquery(WRITE_QUERY).addVariable("DATABASE", databaseName)
+                .addVariable("URI", manifestUri).addVariable("MANIFEST", manifest.toJson())
+                .addVariable("DELETE_URIS", deletes.toString()).eval().close();
+    }
+
+    public void setManifestUri(String manifestUri) {
+        this.manifestUri = manifestUri;
+    }
+
+    public String getManifestUri() {
+        return manifestUri;
+    }
+
+    public String getDatabaseName() {
+        return databaseName;
+    }
+}
@@ -0,0 +1,345 @@
+package com.marklogic.appdeployer.command.modules;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.marklogic.client.helper.LoggingObject;
+import com.marklogic.client.modulesloader.ModulesManager;
+import com.marklogic.client.modulesloader.tokenreplacer.ModuleTokenReplacer;
+import com.marklogic.client.modulesloader.xcc.DefaultDocumentFormatGetter;
+import com.marklogic.client.modulesloader.xcc.DocumentFormatGetter;
+import com.marklogic.xcc.Content;
+import com.marklogic.xcc.ContentCapability;
+import com.marklogic.xcc.ContentCreateOptions;
+import com.marklogic.xcc.ContentFactory;
+import com.marklogic.xcc.ContentPermission;
+import com.marklogic.xcc.ContentSource;
+import com.marklogic.xcc.ContentSourceFactory;
+import com.marklogic.xcc.DocumentFormat;
+import com.marklogic.xcc.Session;
+import com.marklogic.xcc.exceptions.RequestException;
+
+/**
+ * Loads asset modules via XCC by splitting them into batches of batchSize modules and inserting the batches
+ * concurrently, each in its own session and transaction, using up to threadCount threads. A batch that fails is retried
+ * up to maxRetries times; if a batch still fails, the other batches are still loaded, and an exception is then thrown.
+ * <p>
+ * URIs, permissions, document formats, and token replacement match those of XccAssetLoader. If a ModulesManager is
+ * set, it's initialized, only modules that it considers modified are loaded, and the load time of each loaded module is
+ * then saved via it. Unlike DefaultModulesLoader, this does not statically check modules after loading them.
+ */
+public class ParallelAssetLoader extends LoggingObject {
+
+    private String host;
+    private int port = 8000;
+    private String username;
+    private String password;
+    private String databaseName;
+    private String permissions = "rest-admin,read,rest-admin,update,rest-extension-user,execute";
+    private DocumentFormatGetter documentFormatGetter = new DefaultDocumentFormatGetter();
+    private FileFilter fileFilter;
+    private ModuleTokenReplacer moduleTokenReplacer;
+    private ModulesManager modulesManager;
+    private int threadCount = 4;
+    private int batchSize = 200;
+    private int maxRetries = 2;
+    private long retrySleepTime = 1000;
+
+    private ContentSource contentSource;
+
+    /**
+     * An asset module to load, along with the URI to load it to.
+     */
+    public static class Asset {
+        private final File file;
+        private final String uri;
+
+        public Asset(File file, String uri) {
+            this.file = file;
+            this.uri = uri;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public String getUri() {
+            return uri;
+        }
+    }
+
+    /**
+     * @param assetDirectories
+     * @return the files that were loaded
+     */
+    public Set<File> loadAssets(List<File> assetDirectories) {
+        if (modulesManager != null) {
+            modulesManager.initialize();
+        }
+        List<Asset> assets = findAssets(assetDirectories);
+        if (assets.isEmpty()) {
+            return new LinkedHashSet<>();
+        }
+
+        List<List<Asset>> batches = new ArrayList<>();
+        int size = batchSize > 0 ? batchSize : assets.size();
+        for (int i = 0; i < assets.size(); i += size) {
+            batches.add(assets.subList(i, Math.min(i + size, assets.size())));
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info(format("Loading %d asset modules in %d batches using %d threads", assets.size(),
+                    batches.size(), Math.min(threadCount, batches.size())));
+        }
+
+        long start = System.currentTimeMillis();
+        long bytes = loadBatches(batches);
+        logThroughput(assets.size(), bytes, System.currentTimeMillis() - start);
+
+        Set<File> loadedFiles = new LinkedHashSet<>();
+        Date now = new Date();
+        for (Asset asset : assets) {
+            loadedFiles.add(asset.getFile());
+            if (modulesManager != null) {
+                modulesManager.saveLastLoadedTimestamp(asset.getFile(), now);
+            }
+        }
+        return loadedFiles;
+    }
+
+    /**
+     * @param assetDirectories
+     * @return the files in the asset directories that the ModulesManager, if set, considers modified
+     */
+    protected List<Asset> findAssets(List<File> assetDirectories) {
+        final List<Asset> assets = new ArrayList<>();
+        new AssetModuleWalker(fileFilter).walk(assetDirectories, new AssetModuleWalker.AssetCallback() {
+            @Override
+            public void visit(File file, String uri) {
+                if (modulesManager == null || modulesManager.hasFileBeenModifiedSinceLastLoaded(file)) {
+                    assets.add(new Asset(file, uri));
+                }
+            }
+        });
+        return assets;
+    }
+
+    /**
+     * @param batches
+     * @return the number of bytes that were loaded
+     */
+    protected long loadBatches(List<List<Asset>> batches) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ml-assets-");
+        threadFactory.setDaemon(true);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threadCount, batches.size())),
+                threadFactory);
+        List<Future<Long>> futures = new ArrayList<>();
+        final AtomicBoolean interrupted = new AtomicBoolean(false);
+        try {
+            for (final List<Asset> batch : batches) {
+                futures.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        return loadBatchWithRetry(batch, interrupted);
+                    }
+                }));
+            }
+
+            long bytes = 0;
+            List<Throwable> errors = new ArrayList<>();
+            for (Future<Long> future : futures) {
+                try {
+                    bytes += future.get();
+                } catch (ExecutionException ex) {
+                    errors.add(ex.getCause());
+                }
+            }
+            if (!errors.isEmpty()) {
+                for (int i = 1; i < errors.size(); i++) {
+                    logger.error("Unable to load batch of asset modules; cause: " + errors.get(i).getMessage());
+                }
+                Throwable first = errors.get(0);
+                throw new RuntimeException(format("Unable to load %d of %d batches of asset modules; cause: %s",
+                        errors.size(), batches.size(), first.getMessage()), first);
+            }
+            return bytes;
+        } catch (InterruptedException ex) {
+            interrupted.set(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading asset modules", ex);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    protected long loadBatchWithRetry(List<Asset> batch, AtomicBoolean interrupted) throws Exception {
+        int attempt = 0;
+        while (true) {
+            try {
+                return insertBatch(batch);
+            } catch (RequestException | IOException | RuntimeException ex) {
+                if (attempt >= maxRetries || interrupted.get()) {
+                    throw ex;
+                }
+                attempt++;
+                logger.warn(format("Unable to load batch of %d asset modules starting with %s, will retry (%d of %d); "
+                        + "cause: %s", batch.size(), batch.get(0).getUri(), attempt, maxRetries, ex.getMessage()));
+                Thread.sleep(retrySleepTime);
+            }
+        }
+    }
+
+    /**
+     * Inserts the batch in a single transaction.
+     *
+     * @param batch
+     * @return the number of bytes that were inserted
+     * @throws RequestException
+     * @throws IOException
+     */
+    protected long insertBatch(List<Asset> batch) throws RequestException, IOException {
+        Content[] contents = new Content[batch.size()];
+        long bytes = 0;
+        ContentPermission[] contentPermissions = buildPermissions();
+        for (int i = 0; i < contents.length; i++) {
+            Asset asset = batch.get(i);
+            DocumentFormat format = documentFormatGetter.getDocumentFormat(asset.getFile());
+            ContentCreateOptions options = new ContentCreateOptions();
+            options.setFormat(format);
+            options.setPermissions(contentPermissions);
+
+            byte[] content = Files.readAllBytes(asset.getFile().toPath());
+            if (moduleTokenReplacer != null && format != DocumentFormat.BINARY) {
+                content = moduleTokenReplacer.replaceTokensInModule(new String(content, "UTF-8")).getBytes("UTF-8");
+            }
+            bytes += content.length;
+            contents[i] = ContentFactory.newContent(asset.getUri(), content, options);
+        }
+
+        Session session = getContentSource().newSession();
+        try {
+            session.insertContent(contents);
+        } finally {
+            session.close();
+        }
+        return bytes;
+    }
+
+    protected ContentPermission[] buildPermissions() {
+        List<ContentPermission> list = new ArrayList<>();
+        if (permissions != null && permissions.trim().length() > 0) {
+            String[] tokens = permissions.split(",");
+            for (int i = 0; i + 1 < tokens.length; i += 2) {
+                list.add(new ContentPermission(toCapability(tokens[i + 1].trim()), tokens[i].trim()));
+            }
+        }
+        return list.toArray(new ContentPermission[list.size()]);
+    }
+
+    protected ContentCapability toCapability(String capability) {
+        if ("read".equals(capability)) {
+            return ContentCapability.READ;
+        } else if ("update".equals(capability)) {
+            return ContentCapability.UPDATE;
+        } else if ("insert".equals(capability)) {
+            return ContentCapability.INSERT;
+        } else if ("execute".equals(capability)) {
+            return ContentCapability.EXECUTE;
+        }
+        throw new IllegalArgumentException("Unrecognized permission capability: " + capability);
+    }
+
+    protected void logThroughput(int count, long bytes, long millis) {
+        if (logger.isInfoEnabled()) {
+            double seconds = Math.max(millis, 1) / 1000.0;
+            double megabytes = bytes / (1024.0 * 1024.0);
+            logger.info(format("Loaded %d asset modules (%.2f MB) in %d ms; %.1f docs/sec, %.2f MB/sec", count,
+                    megabytes, millis, count / seconds, megabytes / seconds));
+        }
+    }
+
+    protected synchronized ContentSource getContentSource() {
+        if (contentSource == null) {
+            contentSource = ContentSourceFactory.newContentSource(host, port, username, password, databaseName);
+        }
+        return contentSource;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public void setDatabaseName(String databaseName) {
+        this.databaseName = databaseName;
+    }
+
+    public void setPermissions(String permissions) {
+        this.permissions = permissions;
+    }
+
+    public void setDocumentFormatGetter(DocumentFormatGetter documentFormatGetter) {
+        this.documentFormatGetter = documentFormatGetter;
+    }
+
+    public void setFileFilter(FileFilter fileFilter) {
+        this.fileFilter = fileFilter;
+    }
+
+    public void setModuleTokenReplacer(ModuleTokenReplacer moduleTokenReplacer) {
+        this.moduleTokenReplacer = moduleTokenReplacer;
+    }
+
+    public void setModulesManager(ModulesManager modulesManager) {
+        this.modulesManager = modulesManager;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public void setRetrySleepTime(long retrySleepTime) {
+        this.retrySleepTime = retrySleepTime;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+}
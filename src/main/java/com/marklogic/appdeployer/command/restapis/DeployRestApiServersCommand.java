@@ -5,6 +5,8 @@ import com.marklogic.appdeployer.command.AbstractCommand;
 import com.marklogic.appdeployer.command.CommandContext;
 import com.marklogic.appdeployer.command.SortOrderConstants;
 import com.marklogic.appdeployer.command.UndoableCommand;
+import com.marklogic.appdeployer.command.databases.DeployContentDatabasesCommand;
+import com.marklogic.appdeployer.command.databases.DeployOtherDatabasesCommand;
 import com.marklogic.appdeployer.util.RestApiUtil;
 import com.marklogic.mgmt.ManageClient;
 import com.marklogic.mgmt.admin.ActionRequiringRestart;
@@ -27,6 +29,7 @@ public class DeployRestApiServersCommand extends AbstractCommand implements Undo
 
 	public DeployRestApiServersCommand() {
 		setExecuteSortOrder(SortOrderConstants.DEPLOY_REST_API_SERVERS);
+		setExecuteDependencies(DeployContentDatabasesCommand.class, DeployOtherDatabasesCommand.class);
 	}
 
 	public DeployRestApiServersCommand(String restApiFilename) {
@@ -83,10 +86,23 @@ public class DeployRestApiServersCommand extends AbstractCommand implements Undo
 		}
 	}
 
+	/**
+	 * Deleting a REST API server restarts MarkLogic.
+	 */
+	@Override
+	public boolean isRestartBarrierOnUndo() {
+		return true;
+	}
+
 	@Override
 	public void undo(CommandContext context) {
-		deleteTestRestServer(context);
-		deleteMainRestServer(context);
+		context.beginRestartBatch();
+		try {
+			deleteTestRestServer(context);
+			deleteMainRestServer(context);
+		} finally {
+			context.endRestartBatch();
+		}
 	}
 
 	/**
@@ -4,6 +4,9 @@ import com.marklogic.appdeployer.AppConfig;
 import com.marklogic.appdeployer.command.AbstractCommand;
 import com.marklogic.appdeployer.command.CommandContext;
 import com.marklogic.appdeployer.command.SortOrderConstants;
+import com.marklogic.appdeployer.command.databases.DeployContentDatabasesCommand;
+import com.marklogic.appdeployer.command.databases.DeployOtherDatabasesCommand;
+import com.marklogic.appdeployer.command.databases.DeploySchemasDatabaseCommand;
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.FailedRequestException;
 import com.marklogic.client.schemasloader.impl.DefaultSchemasLoader;
@@ -12,6 +15,8 @@ public class LoadSchemasCommand extends AbstractCommand {
 
 	public LoadSchemasCommand() {
 		setExecuteSortOrder(SortOrderConstants.LOAD_SCHEMAS);
+		setExecuteDependencies(DeploySchemasDatabaseCommand.class, DeployContentDatabasesCommand.class,
+				DeployOtherDatabasesCommand.class);
 	}
 
 	@Override
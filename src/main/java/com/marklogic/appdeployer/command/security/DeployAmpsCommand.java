@@ -5,6 +5,8 @@ import java.io.File;
 import com.marklogic.appdeployer.command.AbstractResourceCommand;
 import com.marklogic.appdeployer.command.CommandContext;
 import com.marklogic.appdeployer.command.SortOrderConstants;
+import com.marklogic.appdeployer.command.databases.DeployOtherDatabasesCommand;
+import com.marklogic.appdeployer.command.modules.LoadModulesCommand;
 import com.marklogic.mgmt.ResourceManager;
 import com.marklogic.mgmt.security.AmpManager;
 
@@ -12,6 +14,7 @@ public class DeployAmpsCommand extends AbstractResourceCommand {
 
     public DeployAmpsCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_AMPS);
+        setExecuteDependencies(LoadModulesCommand.class, DeployRolesCommand.class, DeployOtherDatabasesCommand.class);
         setUndoSortOrder(SortOrderConstants.DELETE_AMPS);
     }
 
@@ -13,6 +13,8 @@ public class DeployCertificateAuthoritiesCommand extends AbstractCommand {
 
     public DeployCertificateAuthoritiesCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_CERTIFICATE_AUTHORITIES);
+        // Doesn't depend on any other command
+        setExecuteDependencies();
     }
 
     @Override
@@ -12,6 +12,8 @@ public class DeployCertificateTemplatesCommand extends AbstractResourceCommand {
 
     public DeployCertificateTemplatesCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_CERTIFICATE_TEMPLATES);
+        // Doesn't depend on any other command
+        setExecuteDependencies();
         setUndoSortOrder(SortOrderConstants.DELETE_CERTIFICATE_TEMPLATES);
 
         // Since an HTTP server file needs to refer to a certificate template by its ID, this is set to true
@@ -12,6 +12,8 @@ public class DeployExternalSecurityCommand extends AbstractResourceCommand {
 
     public DeployExternalSecurityCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_EXTERNAL_SECURITY);
+        // Doesn't depend on any other command
+        setExecuteDependencies();
         setUndoSortOrder(SortOrderConstants.DELETE_EXTERNAL_SECURITY);
     }
 
@@ -12,6 +12,8 @@ public class DeployPrivilegesCommand extends AbstractResourceCommand {
 
     public DeployPrivilegesCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_PRIVILEGES);
+        // Doesn't depend on any other command
+        setExecuteDependencies();
         setUndoSortOrder(SortOrderConstants.DELETE_PRIVILEGES);
     }
 
@@ -12,6 +12,7 @@ public class DeployProtectedCollectionsCommand extends AbstractResourceCommand {
 
     public DeployProtectedCollectionsCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_PROTECTED_COLLECTIONS);
+        setExecuteDependencies(DeployRolesCommand.class);
         setUndoSortOrder(SortOrderConstants.DELETE_PROTECTED_COLLECTIONS);
     }
 
@@ -1,17 +1,39 @@
 package com.marklogic.appdeployer.command.security;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import com.marklogic.appdeployer.command.AbstractResourceCommand;
 import com.marklogic.appdeployer.command.CommandContext;
+import com.marklogic.appdeployer.command.ParallelFileProcessor;
 import com.marklogic.appdeployer.command.SortOrderConstants;
+import com.marklogic.mgmt.ParsedPayload;
+import com.marklogic.mgmt.PayloadParser;
 import com.marklogic.mgmt.ResourceManager;
+import com.marklogic.mgmt.security.RoleDependencyGraph;
 import com.marklogic.mgmt.security.RoleManager;
 
+/**
+ * Roles can inherit other roles and reference other roles in their permissions, so the role files are read up front
+ * and the roles are saved in the order determined by a RoleDependencyGraph - each level of roles that don't depend on
+ * each other is saved before the next level, with the roles in a level saved in parallel if more than one thread is
+ * configured. Roles that reference each other are first created without their inherited roles and permissions, if they
+ * don't exist yet, and then saved in full. A role that's defined in more than one file is saved once per file, in the
+ * order of the files.
+ */
 public class DeployRolesCommand extends AbstractResourceCommand {
 
+    private PayloadParser payloadParser = new PayloadParser();
+
     public DeployRolesCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_ROLES);
+        setExecuteDependencies(DeployPrivilegesCommand.class);
         setUndoSortOrder(SortOrderConstants.DELETE_ROLES);
     }
 
@@ -24,4 +46,81 @@ public class DeployRolesCommand extends AbstractResourceCommand {
         return new RoleManager(context.getManageClient());
     }
 
+    @Override
+    protected void processExecuteOnResourceDir(final CommandContext context, File resourceDir) {
+        if (!fileExists(resourceDir, context)) {
+            return;
+        }
+        ResourceManager resourceManager = getResourceManager(context);
+        if (!(resourceManager instanceof RoleManager)) {
+            super.processExecuteOnResourceDir(context, resourceDir);
+            return;
+        }
+        final RoleManager mgr = (RoleManager) resourceManager;
+        if (logger.isInfoEnabled()) {
+            logger.info("Processing files in directory: " + resourceDir.getAbsolutePath());
+        }
+
+        Map<String, List<File>> filesByRoleName = new LinkedHashMap<>();
+        Map<String, Set<String>> referencedRoleNames = new LinkedHashMap<>();
+        final Map<File, ParsedPayload> payloads = new HashMap<>();
+        for (File f : listFilesInDirectory(resourceDir, context)) {
+            String payload = copyFileToString(f, context);
+            String roleName = mgr.getRoleName(payload);
+            if (!filesByRoleName.containsKey(roleName)) {
+                filesByRoleName.put(roleName, new ArrayList<File>());
+                referencedRoleNames.put(roleName, new LinkedHashSet<String>());
+            }
+            filesByRoleName.get(roleName).add(f);
+            referencedRoleNames.get(roleName).addAll(mgr.getReferencedRoleNames(payload));
+            payloads.put(f, payloadParser.parse(payload));
+        }
+
+        RoleDependencyGraph graph = new RoleDependencyGraph();
+        for (Map.Entry<String, Set<String>> entry : referencedRoleNames.entrySet()) {
+            graph.addRole(entry.getKey(), entry.getValue());
+        }
+
+        Set<String> rolesInCycles = graph.getRolesInCycles();
+        ParallelFileProcessor processor = new ParallelFileProcessor(determineThreadCount(context), isFailFast());
+        ParallelFileProcessor.FileCallback callback = new ParallelFileProcessor.FileCallback() {
+            @Override
+            public void process(File f) {
+                if (logger.isInfoEnabled()) {
+                    logger.info("Processing file: " + f.getAbsolutePath());
+                }
+                afterResourceSaved(mgr, context, f, saveResource(mgr, context, f, payloads.get(f)));
+            }
+        };
+        for (List<String> level : graph.getLevels()) {
+            int maxFileCount = 0;
+            for (String roleName : level) {
+                maxFileCount = Math.max(maxFileCount, filesByRoleName.get(roleName).size());
+                if (rolesInCycles.contains(roleName) && !mgr.exists(roleName)) {
+                    if (logger.isInfoEnabled()) {
+                        logger.info(format("Role %s references a role that references it, so creating it without "
+                                + "its inherited roles and permissions first", roleName));
+                    }
+                    // The fingerprint recorded for the stripped payload differs from that of the full payload, so
+                    // the full save below is never skipped as unchanged
+                    File f = filesByRoleName.get(roleName).get(0);
+                    saveResource(mgr, context, f, payloadParser.parse(mgr.removeRoleReferences(payloads.get(f)
+                            .getPayload())));
+                }
+            }
+
+            // A role defined in more than one file is saved once per file, in file order, so the files of a role are
+            // never saved concurrently
+            for (int i = 0; i < maxFileCount; i++) {
+                List<File> files = new ArrayList<>();
+                for (String roleName : level) {
+                    List<File> roleFiles = filesByRoleName.get(roleName);
+                    if (i < roleFiles.size()) {
+                        files.add(roleFiles.get(i));
+                    }
+                }
+                processor.process(files.toArray(new File[files.size()]), callback);
+            }
+        }
+    }
 }
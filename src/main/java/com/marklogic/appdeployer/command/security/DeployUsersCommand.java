@@ -12,6 +12,7 @@ public class DeployUsersCommand extends AbstractResourceCommand {
 
     public DeployUsersCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_USERS);
+        setExecuteDependencies(DeployRolesCommand.class);
         setUndoSortOrder(SortOrderConstants.DELETE_USERS);
     }
 
@@ -16,6 +16,7 @@ public class GenerateTemporaryCertificateCommand extends AbstractCommand {
 
     public GenerateTemporaryCertificateCommand() {
         setExecuteSortOrder(SortOrderConstants.GENERATE_TEMPORARY_CERTIFICATE);
+        setExecuteDependencies(DeployCertificateTemplatesCommand.class);
     }
 
     @Override
@@ -6,6 +6,10 @@ import java.io.FileFilter;
 import com.marklogic.appdeployer.command.AbstractResourceCommand;
 import com.marklogic.appdeployer.command.CommandContext;
 import com.marklogic.appdeployer.command.SortOrderConstants;
+import com.marklogic.appdeployer.command.databases.DeployContentDatabasesCommand;
+import com.marklogic.appdeployer.command.databases.DeployOtherDatabasesCommand;
+import com.marklogic.appdeployer.command.modules.LoadModulesCommand;
+import com.marklogic.appdeployer.command.security.DeployUsersCommand;
 import com.marklogic.mgmt.ResourceManager;
 import com.marklogic.mgmt.tasks.TaskManager;
 
@@ -15,6 +19,8 @@ public class DeployScheduledTasksCommand extends AbstractResourceCommand {
 
     public DeployScheduledTasksCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_SCHEDULED_TASKS);
+        setExecuteDependencies(LoadModulesCommand.class, DeployUsersCommand.class, DeployContentDatabasesCommand.class,
+                DeployOtherDatabasesCommand.class);
         setUndoSortOrder(SortOrderConstants.DELETE_SCHEDULED_TASKS);
     }
 
@@ -5,6 +5,10 @@ import java.io.File;
 import com.marklogic.appdeployer.command.AbstractResourceCommand;
 import com.marklogic.appdeployer.command.CommandContext;
 import com.marklogic.appdeployer.command.SortOrderConstants;
+import com.marklogic.appdeployer.command.databases.DeployContentDatabasesCommand;
+import com.marklogic.appdeployer.command.databases.DeployOtherDatabasesCommand;
+import com.marklogic.appdeployer.command.databases.DeployTriggersDatabaseCommand;
+import com.marklogic.appdeployer.command.modules.LoadModulesCommand;
 import com.marklogic.mgmt.ResourceManager;
 import com.marklogic.mgmt.triggers.TriggerManager;
 
@@ -18,6 +22,8 @@ public class DeployTriggersCommand extends AbstractResourceCommand {
 
     public DeployTriggersCommand() {
         setExecuteSortOrder(SortOrderConstants.DEPLOY_TRIGGERS);
+        setExecuteDependencies(DeployTriggersDatabaseCommand.class, DeployContentDatabasesCommand.class,
+                DeployOtherDatabasesCommand.class, LoadModulesCommand.class);
         // Triggers are stored in a database, so we don't need to delete them as the database will be deleted
         setDeleteResourcesOnUndo(false);
     }
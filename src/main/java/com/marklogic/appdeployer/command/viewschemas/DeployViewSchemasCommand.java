@@ -5,7 +5,9 @@ import java.io.File;
 import com.marklogic.appdeployer.command.AbstractResourceCommand;
 import com.marklogic.appdeployer.command.CommandContext;
 import com.marklogic.appdeployer.command.SortOrderConstants;
-import com.marklogic.mgmt.PayloadParser;
+import com.marklogic.appdeployer.command.databases.DeployContentDatabasesCommand;
+import com.marklogic.appdeployer.command.databases.DeployOtherDatabasesCommand;
+import com.marklogic.appdeployer.command.databases.DeploySchemasDatabaseCommand;
 import com.marklogic.mgmt.ResourceManager;
 import com.marklogic.mgmt.SaveReceipt;
 import com.marklogic.mgmt.viewschemas.ViewManager;
@@ -29,6 +31,8 @@ public class DeployViewSchemasCommand extends AbstractResourceCommand {
         // Don't need to delete anything, as view-schemas all live in a database
         setDeleteResourcesOnUndo(false);
         setExecuteSortOrder(SortOrderConstants.DEPLOY_SQL_VIEWS);
+        setExecuteDependencies(DeploySchemasDatabaseCommand.class, DeployContentDatabasesCommand.class,
+                DeployOtherDatabasesCommand.class);
     }
 
     @Override
@@ -45,13 +49,12 @@ public class DeployViewSchemasCommand extends AbstractResourceCommand {
     @Override
     protected void afterResourceSaved(ResourceManager mgr, CommandContext context, File resourceFile,
             SaveReceipt receipt) {
-        PayloadParser parser = new PayloadParser();
-        String viewSchemaName = parser.getPayloadFieldValue(receipt.getPayload(), "view-schema-name");
+        String viewSchemaName = receipt.getParsedPayload().getFieldValue("view-schema-name");
         File viewDir = new File(resourceFile.getParentFile(), viewSchemaName + "-views");
         if (viewDir.exists()) {
 			String dbName = databaseIdOrName != null ? databaseIdOrName : context.getAppConfig().getContentDatabaseName();
             ViewManager viewMgr = new ViewManager(context.getManageClient(), dbName, viewSchemaName);
-            for (File viewFile : listFilesInDirectory(viewDir)) {
+            for (File viewFile : listFilesInDirectory(viewDir, context)) {
                 saveResource(viewMgr, context, viewFile);
             }
         }
@@ -1,6 +1,8 @@
 package com.marklogic.appdeployer.impl;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -11,13 +13,20 @@ import com.marklogic.appdeployer.AppConfig;
 import com.marklogic.appdeployer.AppDeployer;
 import com.marklogic.appdeployer.command.Command;
 import com.marklogic.appdeployer.command.CommandContext;
+import com.marklogic.appdeployer.command.ConfigDirCatalog;
+import com.marklogic.appdeployer.command.ResourceFingerprintStore;
 import com.marklogic.appdeployer.command.UndoableCommand;
 import com.marklogic.mgmt.ManageClient;
+import com.marklogic.mgmt.ResourceInventory;
 import com.marklogic.mgmt.admin.AdminManager;
+import com.marklogic.mgmt.admin.ClusterReadinessProbe;
+import com.marklogic.mgmt.util.DeployProfiler;
+import com.marklogic.rest.util.RestConfig;
 
 /**
  * Abstract base class that just needs the subclass to define the list of Command instances to use. Handles executing
- * commands in sorted order.
+ * commands in sorted order; if AppConfig specifies more than one command thread, a CommandScheduler executes commands
+ * that don't depend on each other at the same time.
  */
 public abstract class AbstractAppDeployer extends LoggingObject implements AppDeployer {
 
@@ -51,27 +60,64 @@ public abstract class AbstractAppDeployer extends LoggingObject implements AppDe
         List<Command> commands = getCommands();
         Collections.sort(commands, new ExecuteComparator());
 
-        CommandContext context = new CommandContext(appConfig, manageClient, adminManager);
+        final CommandContext context = new CommandContext(appConfig, manageClient, adminManager);
+        ResourceFingerprintStore fingerprintStore = null;
+        if (appConfig.isSkipUnchangedResources() && appConfig.getResourceFingerprintsPath() != null) {
+            fingerprintStore = new ResourceFingerprintStore(new File(appConfig.getResourceFingerprintsPath()));
+            fingerprintStore.load();
+            context.setResourceFingerprintStore(fingerprintStore);
+        }
+        context.setConfigDirCatalog(buildConfigDirCatalog(appConfig));
+        final DeployProfiler profiler = beginProfiling(appConfig);
+        context.setProfiler(profiler);
 
-        String[] filenamesToIgnore = appConfig.getResourceFilenamesToIgnore();
-        for (Command command : commands) {
-            String name = command.getClass().getName();
-            logger.info(format("Executing command [%s] with sort order [%d]", name, command.getExecuteSortOrder()));
-            if (command instanceof AbstractCommand) {
-	            ((AbstractCommand)command).setFilenamesToIgnore(filenamesToIgnore);
+        configureReadinessProbe(appConfig);
+        ResourceInventory previousInventory = beginResourceInventory(appConfig);
+        try {
+            String[] filenamesToIgnore = appConfig.getResourceFilenamesToIgnore();
+            for (Command command : commands) {
+                if (command instanceof AbstractCommand) {
+                    ((AbstractCommand) command).setFilenamesToIgnore(filenamesToIgnore);
+                }
+            }
+
+            CommandScheduler scheduler = newCommandScheduler(appConfig);
+            List<BitSet> dependencies = scheduler.buildExecuteDependencies(commands);
+            scheduler.run(commands, dependencies, new CommandScheduler.CommandRunner<Command>() {
+                @Override
+                public void run(Command command) {
+                    String name = command.getClass().getName();
+                    logger.info(format("Executing command [%s] with sort order [%d]", name, command.getExecuteSortOrder()));
+                    String previousActivity = profiler != null ? profiler.startActivity(name) : null;
+                    long start = System.currentTimeMillis();
+                    try {
+                        command.execute(context);
+                    } finally {
+                        if (profiler != null) {
+                            profiler.recordCommand(name, "execute", System.currentTimeMillis() - start);
+                            profiler.restoreActivity(previousActivity);
+                        }
+                    }
+                    logger.info(format("Finished executing command [%s]\n", name));
+                }
+            });
+            if (fingerprintStore != null) {
+                fingerprintStore.save();
             }
-            command.execute(context);
-            logger.info(format("Finished executing command [%s]\n", name));
+        } finally {
+            manageClient.setResourceInventory(previousInventory);
+            endProfiling(profiler, appConfig);
         }
 
         logger.info(format("Deployed app %s", appConfig.getName()));
     }
 
-    public void undeploy(AppConfig appConfig) {
+    public void undeploy(final AppConfig appConfig) {
         logger.info(format("Undeploying app %s with config dir: %s\n", appConfig.getName(), appConfig.getConfigDir()
                 .getBaseDir().getAbsolutePath()));
 
         List<Command> commands = getCommands();
+        Collections.sort(commands, new ExecuteComparator());
 
         List<UndoableCommand> undoableCommands = new ArrayList<UndoableCommand>();
         for (Command command : commands) {
@@ -82,15 +128,164 @@ public abstract class AbstractAppDeployer extends LoggingObject implements AppDe
 
         Collections.sort(undoableCommands, new UndoComparator());
 
-        for (UndoableCommand command : undoableCommands) {
-            String name = command.getClass().getName();
-            logger.info(format("Undoing command [%s] with sort order [%d]", name, command.getUndoSortOrder()));
-            command.undo(new CommandContext(appConfig, manageClient, adminManager));
-            logger.info(format("Finished undoing command [%s]\n", name));
+        // Resources are about to be deleted, so none of them can be skipped on the next deploy
+        if (appConfig.isSkipUnchangedResources() && appConfig.getResourceFingerprintsPath() != null) {
+            new ResourceFingerprintStore(new File(appConfig.getResourceFingerprintsPath())).clear();
+        }
+
+        final ConfigDirCatalog catalog = buildConfigDirCatalog(appConfig);
+        final DeployProfiler profiler = beginProfiling(appConfig);
+        configureReadinessProbe(appConfig);
+        ResourceInventory previousInventory = beginResourceInventory(appConfig);
+        try {
+            CommandScheduler scheduler = newCommandScheduler(appConfig);
+            List<BitSet> dependencies = scheduler.buildUndoDependencies(commands, undoableCommands);
+            scheduler.run(undoableCommands, dependencies, new CommandScheduler.CommandRunner<UndoableCommand>() {
+                @Override
+                public void run(UndoableCommand command) {
+                    String name = command.getClass().getName();
+                    logger.info(format("Undoing command [%s] with sort order [%d]", name, command.getUndoSortOrder()));
+                    CommandContext context = new CommandContext(appConfig, manageClient, adminManager);
+                    context.setConfigDirCatalog(catalog);
+                    context.setProfiler(profiler);
+                    String previousActivity = profiler != null ? profiler.startActivity(name) : null;
+                    long start = System.currentTimeMillis();
+                    try {
+                        command.undo(context);
+                    } finally {
+                        if (profiler != null) {
+                            profiler.recordCommand(name, "undo", System.currentTimeMillis() - start);
+                            profiler.restoreActivity(previousActivity);
+                        }
+                    }
+                    logger.info(format("Finished undoing command [%s]\n", name));
+                }
+            });
+        } finally {
+            manageClient.setResourceInventory(previousInventory);
+            endProfiling(profiler, appConfig);
         }
 
         logger.info(format("Undeployed app %s", appConfig.getName()));
     }
+
+    /**
+     * Builds the scheduler for running commands. Commands that run at the same time add custom tokens via
+     * AppConfig.addCustomToken, so the custom tokens map in the AppConfig is used as is.
+     * 
+     * @param appConfig
+     * @return
+     */
+    protected CommandScheduler newCommandScheduler(AppConfig appConfig) {
+        return new CommandScheduler(appConfig.getCommandThreadCount());
+    }
+
+    /**
+     * Configures the AdminManager's readiness probe so that waiting for MarkLogic to restart also waits for the Manage
+     * server, and for the App-Services server when the app's REST servers don't use SSL. If AppConfig enables it,
+     * every host in the cluster is checked. When restarts are batched, the ManageClient is also set up to retry a
+     * request that fails because MarkLogic is restarting from an earlier action in the batch.
+     * 
+     * @param appConfig
+     */
+    protected void configureReadinessProbe(AppConfig appConfig) {
+        if (adminManager == null) {
+            return;
+        }
+        ClusterReadinessProbe probe = adminManager.getReadinessProbe();
+        List<RestConfig> serverConfigs = new ArrayList<>();
+        if (manageClient != null && manageClient.getManageConfig() != null) {
+            serverConfigs.add(manageClient.getManageConfig());
+        }
+        if (appConfig.getAppServicesPort() != null && appConfig.getRestSslContext() == null) {
+            serverConfigs.add(new RestConfig(appConfig.getHost(), appConfig.getAppServicesPort(), null, null));
+        }
+        probe.setServerConfigs(serverConfigs);
+        probe.setManageClient(manageClient);
+        probe.setCheckAllHosts(appConfig.isCheckAllHostsAfterRestart());
+
+        // With restarts batched, MarkLogic may be restarting while the rest of a batch is sent
+        if (manageClient != null) {
+            manageClient.setRestartBatchAdminManager(appConfig.isBatchRestarts() ? adminManager : null);
+        }
+    }
+
+    /**
+     * If enabled, creates a DeployProfiler and attaches it to the ManageClient and AdminManager so that every
+     * Management API request and every wait for MarkLogic to restart is recorded.
+     * 
+     * @param appConfig
+     * @return the profiler, or null if AppConfig doesn't enable profiling
+     */
+    protected DeployProfiler beginProfiling(AppConfig appConfig) {
+        if (!appConfig.isProfileDeploy()) {
+            return null;
+        }
+        DeployProfiler profiler = new DeployProfiler();
+        manageClient.setProfiler(profiler);
+        if (adminManager != null) {
+            adminManager.setProfiler(profiler);
+        }
+        return profiler;
+    }
+
+    /**
+     * Detaches the profiler, writes its JSON report to AppConfig's profileReportPath, and logs a summary of the
+     * slowest commands, resources, and requests. A failure to write the report is logged instead of being thrown so
+     * that it doesn't hide the outcome of the deploy or undeploy.
+     * 
+     * @param profiler
+     * @param appConfig
+     */
+    protected void endProfiling(DeployProfiler profiler, AppConfig appConfig) {
+        if (profiler == null) {
+            return;
+        }
+        manageClient.setProfiler(null);
+        if (adminManager != null) {
+            adminManager.setProfiler(null);
+        }
+        if (appConfig.getProfileReportPath() != null) {
+            File file = new File(appConfig.getProfileReportPath());
+            try {
+                profiler.writeReport(file);
+                logger.info("Wrote deploy profile to: " + file.getAbsolutePath());
+            } catch (RuntimeException ex) {
+                logger.warn("Unable to write deploy profile; cause: " + ex.getMessage());
+            }
+        }
+        logger.info("Deploy profile summary:\n" + profiler.buildSummary(appConfig.getProfileSummaryCount()));
+    }
+
+    /**
+     * If enabled, scans the configuration directory once so that commands can list and read its files from memory.
+     * 
+     * @param appConfig
+     * @return the catalog, or null if AppConfig doesn't enable cataloging the configuration directory
+     */
+    protected ConfigDirCatalog buildConfigDirCatalog(AppConfig appConfig) {
+        if (!appConfig.isCatalogConfigDir() || appConfig.getConfigDir() == null) {
+            return null;
+        }
+        ConfigDirCatalog catalog = new ConfigDirCatalog(appConfig.getConfigDir().getBaseDir());
+        catalog.scan(appConfig.getResourceThreadCount());
+        return catalog;
+    }
+
+    /**
+     * If enabled, attaches a new ResourceInventory to the ManageClient so that every manager used during the deploy or
+     * undeploy shares one cached list of resources per type.
+     * 
+     * @param appConfig
+     * @return the inventory that was attached before, so that it can be restored afterwards
+     */
+    protected ResourceInventory beginResourceInventory(AppConfig appConfig) {
+        ResourceInventory previousInventory = manageClient.getResourceInventory();
+        if (appConfig.isCacheResourceInventory()) {
+            manageClient.setResourceInventory(new ResourceInventory());
+        }
+        return previousInventory;
+    }
 }
 
 class ExecuteComparator implements Comparator<Command> {
@@ -0,0 +1,269 @@
+package com.marklogic.appdeployer.impl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.marklogic.appdeployer.command.AbstractCommand;
+import com.marklogic.appdeployer.command.Command;
+import com.marklogic.appdeployer.command.DependentCommand;
+import com.marklogic.appdeployer.command.UndoableCommand;
+import com.marklogic.client.helper.LoggingObject;
+
+/**
+ * Runs a sorted list of commands, executing a command as soon as every command it depends on has finished. With a
+ * thread count of 1, commands are run one at a time in sorted order.
+ * <p>
+ * The dependencies of each command are derived from the sorted list via DependentCommand - a command that declares its
+ * dependencies depends on each declared command that's sorted before it, plus every command sorted before it that
+ * doesn't declare its dependencies; a command that doesn't declare its dependencies depends on every command sorted
+ * before it. When undoing, a command that declares its dependencies must be undone after every command that depends
+ * on it - directly or indirectly - when executing. A command that may restart MarkLogic - when executed or undone, as
+ * reported by AbstractCommand - is a restart barrier: it waits for every command sorted before it, and every command
+ * sorted after it waits for it, so that no other command is running while MarkLogic restarts. A command can thus only
+ * depend on commands sorted before it, which ensures there are no cycles.
+ */
+public class CommandScheduler extends LoggingObject {
+
+    private int threadCount = 1;
+
+    /**
+     * Callback for running a single command on one of the scheduler's threads.
+     */
+    public interface CommandRunner<C extends Command> {
+        public void run(C command);
+    }
+
+    public CommandScheduler() {
+    }
+
+    public CommandScheduler(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * @param commands
+     *            sorted by execute sort order
+     * @return for each command, the indexes of the commands it depends on when executing
+     */
+    public List<BitSet> buildExecuteDependencies(List<? extends Command> commands) {
+        List<BitSet> dependencies = new ArrayList<>();
+        for (int i = 0; i < commands.size(); i++) {
+            Command command = commands.get(i);
+            List<Class<?>> declared = getDeclaredDependencies(command);
+            boolean barrier = isRestartBarrierOnExecute(command);
+            BitSet set = new BitSet();
+            for (int j = 0; j < i; j++) {
+                Command other = commands.get(j);
+                if (barrier || declared == null || getDeclaredDependencies(other) == null
+                        || isRestartBarrierOnExecute(other) || isInstanceOfAny(other, declared)) {
+                    set.set(j);
+                }
+            }
+            if (declared != null) {
+                for (int j = i + 1; j < commands.size(); j++) {
+                    if (isInstanceOfAny(commands.get(j), declared) && logger.isWarnEnabled()) {
+                        logger.warn(format("Ignoring dependency of command [%s] on command [%s] as it's sorted after it",
+                                command.getClass().getName(), commands.get(j).getClass().getName()));
+                    }
+                }
+            }
+            dependencies.add(set);
+        }
+        return dependencies;
+    }
+
+    /**
+     * @param commands
+     *            every command, sorted by execute sort order
+     * @param undoableCommands
+     *            the undoable commands, sorted by undo sort order
+     * @return for each undoable command, the indexes of the undoable commands it depends on when undoing
+     */
+    public List<BitSet> buildUndoDependencies(List<? extends Command> commands,
+            List<? extends UndoableCommand> undoableCommands) {
+        List<BitSet> executeDependencies = buildExecuteDependencies(commands);
+
+        // Commands only depend on commands sorted before them, so one pass in sorted order yields the closure
+        List<BitSet> closures = new ArrayList<>();
+        for (int i = 0; i < commands.size(); i++) {
+            BitSet closure = (BitSet) executeDependencies.get(i).clone();
+            BitSet direct = executeDependencies.get(i);
+            for (int j = direct.nextSetBit(0); j >= 0; j = direct.nextSetBit(j + 1)) {
+                closure.or(closures.get(j));
+            }
+            closures.add(closure);
+        }
+
+        Map<Command, Integer> executeIndexes = new IdentityHashMap<>();
+        for (int i = 0; i < commands.size(); i++) {
+            executeIndexes.put(commands.get(i), i);
+        }
+
+        List<BitSet> dependencies = new ArrayList<>();
+        for (int i = 0; i < undoableCommands.size(); i++) {
+            UndoableCommand command = undoableCommands.get(i);
+            Integer index = executeIndexes.get(command);
+            boolean declared = isDeclaredForUndo(command);
+            BitSet set = new BitSet();
+            for (int j = 0; j < i; j++) {
+                UndoableCommand other = undoableCommands.get(j);
+                Integer otherIndex = executeIndexes.get(other);
+                if (!declared || !isDeclaredForUndo(other) || index == null || otherIndex == null
+                        || closures.get(otherIndex).get(index)) {
+                    set.set(j);
+                }
+            }
+            dependencies.add(set);
+        }
+        return dependencies;
+    }
+
+    /**
+     * Runs the given commands, stopping at the first command that fails; that failure is then rethrown once every
+     * command already running has finished.
+     *
+     * @param commands
+     * @param dependencies
+     *            for each command, the indexes of the commands that must finish before it's run
+     * @param runner
+     */
+    public <C extends Command> void run(List<C> commands, List<BitSet> dependencies, final CommandRunner<C> runner) {
+        if (threadCount <= 1 || commands.size() <= 1) {
+            for (C command : commands) {
+                runner.run(command);
+            }
+            return;
+        }
+
+        final int size = commands.size();
+        int[] remaining = new int[size];
+        List<List<Integer>> dependents = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            dependents.add(new ArrayList<Integer>());
+        }
+        for (int i = 0; i < size; i++) {
+            BitSet set = dependencies.get(i);
+            remaining[i] = set.cardinality();
+            for (int j = set.nextSetBit(0); j >= 0; j = set.nextSetBit(j + 1)) {
+                dependents.get(j).add(i);
+            }
+        }
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ml-command-");
+        threadFactory.setDaemon(true);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, size), threadFactory);
+        CompletionService<Integer> completionService = new ExecutorCompletionService<>(executor);
+        try {
+            int running = 0;
+            for (int i = 0; i < size; i++) {
+                if (remaining[i] == 0) {
+                    submit(completionService, commands, i, runner);
+                    running++;
+                }
+            }
+
+            Throwable failure = null;
+            while (running > 0) {
+                Future<Integer> future = completionService.take();
+                running--;
+                try {
+                    int index = future.get();
+                    if (failure == null) {
+                        for (int dependent : dependents.get(index)) {
+                            if (--remaining[dependent] == 0) {
+                                submit(completionService, commands, dependent, runner);
+                                running++;
+                            }
+                        }
+                    }
+                } catch (ExecutionException ex) {
+                    if (failure == null) {
+                        failure = ex.getCause();
+                    }
+                }
+            }
+
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (failure != null) {
+                throw new RuntimeException("Command failed; cause: " + failure.getMessage(), failure);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for commands to finish", ex);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private <C extends Command> void submit(CompletionService<Integer> completionService, List<C> commands,
+            final int index, final CommandRunner<C> runner) {
+        final C command = commands.get(index);
+        completionService.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                runner.run(command);
+                return index;
+            }
+        });
+    }
+
+    /**
+     * A command that's a restart barrier when undone is undone on its own, regardless of the dependencies it declares.
+     *
+     * @param command
+     * @return
+     */
+    protected boolean isDeclaredForUndo(UndoableCommand command) {
+        if (command instanceof AbstractCommand && ((AbstractCommand) command).isRestartBarrierOnUndo()) {
+            return false;
+        }
+        return getDeclaredDependencies(command) != null;
+    }
+
+    /**
+     * A command that's a restart barrier when executed is executed on its own, regardless of the dependencies it or any
+     * other command declares.
+     *
+     * @param command
+     * @return
+     */
+    protected boolean isRestartBarrierOnExecute(Command command) {
+        return command instanceof AbstractCommand && ((AbstractCommand) command).isRestartBarrierOnExecute();
+    }
+
+    protected List<Class<?>> getDeclaredDependencies(Command command) {
+        return command instanceof DependentCommand ? ((DependentCommand) command).getExecuteDependencies() : null;
+    }
+
+    private boolean isInstanceOfAny(Command command, List<Class<?>> classes) {
+        for (Class<?> c : classes) {
+            if (c.isInstance(command)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+}
@@ -0,0 +1,72 @@
+package com.marklogic.appdeployer.util;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.marklogic.client.modulesloader.ModulesManager;
+
+/**
+ * ModulesManager for when the files that have changed are already known - e.g. from filesystem events - so that a
+ * modules loader only loads those files instead of asking the delegate ModulesManager about every file it finds. Until
+ * a set of changed files is given, every question is passed to the delegate, or every file is considered modified if
+ * there's no delegate. Load timestamps are always passed to the delegate so that it stays current.
+ */
+public class ChangedFilesModuleManager implements ModulesManager {
+
+    private ModulesManager delegate;
+    private volatile Set<File> changedFiles;
+
+    public ChangedFilesModuleManager(ModulesManager delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void initialize() {
+        if (delegate != null) {
+            delegate.initialize();
+        }
+    }
+
+    @Override
+    public boolean hasFileBeenModifiedSinceLastLoaded(File file) {
+        Set<File> files = changedFiles;
+        if (files != null) {
+            return files.contains(file.getAbsoluteFile());
+        }
+        return delegate == null || delegate.hasFileBeenModifiedSinceLastLoaded(file);
+    }
+
+    @Override
+    public void saveLastLoadedTimestamp(File file, Date date) {
+        if (delegate != null) {
+            delegate.saveLastLoadedTimestamp(file, date);
+        }
+    }
+
+    /**
+     * @param files
+     *            the files that have changed; null to pass every question to the delegate again
+     */
+    public void setChangedFiles(Set<File> files) {
+        if (files == null) {
+            this.changedFiles = null;
+        } else {
+            Set<File> set = new HashSet<>();
+            for (File f : files) {
+                set.add(f.getAbsoluteFile());
+            }
+            this.changedFiles = Collections.unmodifiableSet(set);
+        }
+    }
+
+    public Set<File> getChangedFiles() {
+        return changedFiles;
+    }
+
+    public ModulesManager getDelegate() {
+        return delegate;
+    }
+}
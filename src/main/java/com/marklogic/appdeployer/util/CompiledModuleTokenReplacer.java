@@ -0,0 +1,60 @@
+package com.marklogic.appdeployer.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import com.marklogic.client.modulesloader.tokenreplacer.ModuleTokenReplacer;
+import com.marklogic.client.modulesloader.tokenreplacer.PropertiesSource;
+
+/**
+ * ModuleTokenReplacer that replaces the properties from each PropertiesSource - with each property name prefixed by
+ * the optional property prefix, e.g. "@ml." for Roxy-style tokens - in a single pass via CompiledTokens. As with
+ * DefaultModuleTokenReplacer, the properties are read the first time a module is processed, with properties from a
+ * later source overriding those from an earlier one.
+ */
+public class CompiledModuleTokenReplacer implements ModuleTokenReplacer {
+
+    private List<PropertiesSource> propertiesSources = new ArrayList<>();
+    private String propertyPrefix;
+    private volatile CompiledTokens compiledTokens;
+
+    @Override
+    public String replaceTokensInModule(String moduleText) {
+        return getCompiledTokens().replace(moduleText);
+    }
+
+    protected CompiledTokens getCompiledTokens() {
+        CompiledTokens compiled = compiledTokens;
+        if (compiled == null) {
+            Map<String, String> tokens = new HashMap<>();
+            for (PropertiesSource source : propertiesSources) {
+                Properties props = source.getProperties();
+                if (props != null) {
+                    for (String name : props.stringPropertyNames()) {
+                        tokens.put(propertyPrefix != null ? propertyPrefix + name : name, props.getProperty(name));
+                    }
+                }
+            }
+            compiled = new CompiledTokens(tokens);
+            compiledTokens = compiled;
+        }
+        return compiled;
+    }
+
+    public void addPropertiesSource(PropertiesSource source) {
+        propertiesSources.add(source);
+        compiledTokens = null;
+    }
+
+    public String getPropertyPrefix() {
+        return propertyPrefix;
+    }
+
+    public void setPropertyPrefix(String propertyPrefix) {
+        this.propertyPrefix = propertyPrefix;
+        compiledTokens = null;
+    }
+}
@@ -0,0 +1,99 @@
+package com.marklogic.appdeployer.util;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A map of tokens to replacement values, compiled into a trie so that every token in a string is replaced in a single
+ * pass with one output buffer, instead of one String.replace pass per token. At each position in the string, the
+ * longest token starting at that position is replaced, and replacement values aren't scanned for tokens. Only the
+ * positions holding the first character of some token - e.g. "%" for tokens of the form %%NAME%% - are checked
+ * against the trie.
+ * <p>
+ * Tokens with a null value are left as-is. Instances are immutable, and thus can be shared across threads and by
+ * different token replacers.
+ */
+public class CompiledTokens {
+
+    private final Map<String, String> tokens;
+    private final Node root = new Node();
+    private final BitSet firstChars = new BitSet();
+
+    public CompiledTokens(Map<String, String> tokens) {
+        this.tokens = new HashMap<>(tokens);
+        for (Map.Entry<String, String> entry : this.tokens.entrySet()) {
+            String token = entry.getKey();
+            if (token == null || token.isEmpty() || entry.getValue() == null) {
+                continue;
+            }
+            Node node = root;
+            for (int i = 0; i < token.length(); i++) {
+                char c = token.charAt(i);
+                Node child = node.children.get(c);
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(c, child);
+                }
+                node = child;
+            }
+            node.value = entry.getValue();
+            firstChars.set(token.charAt(0));
+        }
+    }
+
+    public String replace(String text) {
+        if (text == null || firstChars.isEmpty()) {
+            return text;
+        }
+        int length = text.length();
+        StringBuilder sb = null;
+        int copiedUpTo = 0;
+        int i = 0;
+        while (i < length) {
+            if (!firstChars.get(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            Node node = root;
+            String value = null;
+            int end = -1;
+            for (int j = i; j < length; j++) {
+                node = node.children.get(text.charAt(j));
+                if (node == null) {
+                    break;
+                }
+                if (node.value != null) {
+                    value = node.value;
+                    end = j + 1;
+                }
+            }
+            if (value == null) {
+                i++;
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(length + 16);
+            }
+            sb.append(text, copiedUpTo, i).append(value);
+            copiedUpTo = end;
+            i = end;
+        }
+        if (sb == null) {
+            return text;
+        }
+        return sb.append(text, copiedUpTo, length).toString();
+    }
+
+    /**
+     * @return the tokens and values that this was compiled from
+     */
+    public Map<String, String> getTokens() {
+        return tokens;
+    }
+
+    private static class Node {
+        private Map<Character, Node> children = new HashMap<>();
+        private String value;
+    }
+}
@@ -1,67 +1,497 @@
 package com.marklogic.appdeployer.util;
 
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.helper.LoggingObject;
 import com.marklogic.client.modulesloader.ModulesFinder;
+import com.marklogic.client.modulesloader.ModulesLoader;
 import com.marklogic.client.modulesloader.impl.DefaultModulesFinder;
 import com.marklogic.client.modulesloader.impl.DefaultModulesLoader;
-import com.marklogic.client.modulesloader.impl.PropertiesModuleManager;
 import com.marklogic.client.modulesloader.impl.XccAssetLoader;
 import com.marklogic.appdeployer.AppConfig;
 import com.marklogic.appdeployer.DefaultAppConfigFactory;
+import com.marklogic.appdeployer.command.modules.ContentHashModuleManager;
 import com.marklogic.mgmt.util.SystemPropertySource;
 
 /**
- * This is a hacked together prototype of loading modules from within groovysh. The idea is that all the necessary
- * configuration for loading modules can be collected from system properties, which can be set by a tool like ml-gradle.
- * This class can then be created and started in the startup script for groovysh so that when the shell starts, this
- * class can load new/modified modules.
+ * Loads new and modified modules as they change - e.g. from within groovysh, where all the necessary configuration for
+ * loading modules can be collected from system properties set by a tool like ml-gradle.
+ * <p>
+ * When started, every module is loaded that the ModulesManager considers modified - as determined by the timestamps
+ * file in AppConfig, if one is set. The module paths are then watched via a WatchService, with every directory
+ * registered so that a change anywhere in a module path is seen. Once a change is seen, the watcher waits until no
+ * change has been seen for debounceTime, so that a burst of saves from an editor becomes one batch, and then loads only
+ * the changed files in that batch, via a ChangedFilesModuleManager. Only the module paths containing a changed file are
+ * processed.
+ * <p>
+ * If a WatchService isn't available for the filesystem, or if polling is enabled via setPolling, the module paths are
+ * instead scanned every sleepTime for files whose last-modified time or size has changed.
+ * <p>
+ * Call stop to stop watching; the watcher runs on a daemon thread, so it won't prevent the JVM from exiting. The
+ * watcher thread is never interrupted, so a load that's in progress - which may be writing to MarkLogic via XCC - is
+ * allowed to finish.
  */
 public class ModulesWatcher extends LoggingObject implements Runnable {
 
     private long sleepTime = 1000;
+    private long debounceTime = 300;
+    private boolean polling = false;
 
     private AppConfig appConfig;
+    private ChangedFilesModuleManager modulesManager;
+    private ModulesLoader modulesLoader;
+    private ModulesFinder modulesFinder = new DefaultModulesFinder();
+
+    private volatile boolean running;
+    private boolean stopRequested;
+    private final Object sleepLock = new Object();
+    private Thread thread;
+    private volatile WatchService watchService;
+    private Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private Map<File, FileState> fileStates;
 
     public ModulesWatcher(AppConfig appConfig) {
         this.appConfig = appConfig;
     }
 
-    public static void startFromSystemProps() {
+    public static ModulesWatcher startFromSystemProps() {
         ModulesWatcher mw = new ModulesWatcher(new DefaultAppConfigFactory(new SystemPropertySource()).newAppConfig());
-        new Thread(mw).start();
+        mw.start();
+        return mw;
+    }
+
+    /**
+     * Starts watching on a new daemon thread; does nothing if already started.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        stopRequested = false;
+        thread = new Thread(this, "ml-modules-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching, waiting for a load that's in progress to finish. The watcher thread is woken up by closing the
+     * WatchService, or when polling, by notifying it, instead of being interrupted.
+     */
+    public void stop() {
+        Thread t;
+        synchronized (this) {
+            running = false;
+            stopRequested = true;
+            t = thread;
+            thread = null;
+        }
+        closeWatchService();
+        synchronized (sleepLock) {
+            sleepLock.notifyAll();
+        }
+        if (t != null && t != Thread.currentThread()) {
+            try {
+                t.join();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
     }
 
     @Override
     public void run() {
+        synchronized (this) {
+            if (stopRequested) {
+                return;
+            }
+            if (!running) {
+                // Invoked directly instead of via start
+                running = true;
+                thread = Thread.currentThread();
+            }
+        }
+        DatabaseClient client = null;
+        try {
+            initializeModulesLoader();
+            client = newDatabaseClient();
+
+            if (!polling) {
+                try {
+                    watchService = FileSystems.getDefault().newWatchService();
+                    if (!running) {
+                        // stop was called before the WatchService existed, so it couldn't close it
+                        return;
+                    }
+                    for (String path : appConfig.getModulePaths()) {
+                        registerDirectories(new File(path).toPath(), null);
+                    }
+                } catch (IOException | UnsupportedOperationException ex) {
+                    logger.warn("Unable to watch module paths for changes, so polling them instead; cause: "
+                            + ex.getMessage());
+                    closeWatchService();
+                    polling = true;
+                }
+            }
+            if (polling) {
+                fileStates = scanFileStates();
+            }
+
+            // Changes are being watched before the initial load so that none are missed
+            loadModules(null, client);
+
+            while (running) {
+                Set<File> changedFiles = polling ? pollForChanges() : waitForChanges();
+                if (running && (changedFiles == null || !changedFiles.isEmpty())) {
+                    loadModules(changedFiles, client);
+                }
+            }
+        } catch (ClosedWatchServiceException ex) {
+            // Expected when stop is called
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeWatchService();
+            if (client != null) {
+                client.release();
+            }
+            running = false;
+        }
+    }
+
+    protected void initializeModulesLoader() {
+        if (modulesLoader != null) {
+            return;
+        }
+        modulesManager = new ChangedFilesModuleManager(appConfig.newModulesManager());
         XccAssetLoader xal = appConfig.newXccAssetLoader();
         DefaultModulesLoader loader = new DefaultModulesLoader(xal);
-        String path = appConfig.getModuleTimestampsPath();
-        if (path != null) {
-        	loader.setModulesManager(new PropertiesModuleManager(new File(path)));
-        }
-		loader.setStaticChecker(appConfig.newStaticChecker());
+        loader.setModulesManager(modulesManager);
+        loader.setStaticChecker(appConfig.newStaticChecker());
         loader.setCatchExceptions(true);
-        DatabaseClient client = appConfig.newDatabaseClient();
+        this.modulesLoader = loader;
+    }
+
+    protected DatabaseClient newDatabaseClient() {
+        return appConfig.newDatabaseClient();
+    }
+
+    /**
+     * @param changedFiles
+     *            the files to load; if null, the ModulesManager decides which files to load from every module path
+     * @param client
+     */
+    protected void loadModules(Set<File> changedFiles, DatabaseClient client) {
+        if (changedFiles != null && logger.isInfoEnabled()) {
+            logger.info("Loading changed modules: " + changedFiles);
+        }
+        if (modulesManager != null) {
+            modulesManager.setChangedFiles(changedFiles);
+        }
+        try {
+            for (String path : appConfig.getModulePaths()) {
+                File dir = new File(path);
+                if (changedFiles == null || containsFileUnder(changedFiles, dir)) {
+                    modulesLoader.loadModules(dir, modulesFinder, client);
+                }
+            }
+        } finally {
+            if (modulesManager != null) {
+                modulesManager.setChangedFiles(null);
+                if (modulesManager.getDelegate() instanceof ContentHashModuleManager) {
+                    ((ContentHashModuleManager) modulesManager.getDelegate()).save();
+                }
+            }
+        }
+    }
+
+    protected boolean containsFileUnder(Set<File> files, File dir) {
+        String dirPath = dir.getAbsolutePath() + File.separator;
+        for (File f : files) {
+            if (f.getAbsolutePath().startsWith(dirPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Blocks until a change is seen, and then collects changes until none have been seen for debounceTime.
+     *
+     * @return the changed files, or null if events were lost and thus every module path must be checked
+     * @throws InterruptedException
+     */
+    protected Set<File> waitForChanges() throws InterruptedException {
+        Set<File> changedFiles = new LinkedHashSet<>();
+        boolean overflow = processWatchKey(watchService.take(), changedFiles);
+        WatchKey key;
+        while ((key = watchService.poll(debounceTime, TimeUnit.MILLISECONDS)) != null) {
+            overflow = processWatchKey(key, changedFiles) || overflow;
+        }
+        return overflow ? null : changedFiles;
+    }
+
+    /**
+     * @param key
+     * @param changedFiles
+     * @return true if events were lost
+     */
+    protected boolean processWatchKey(WatchKey key, Set<File> changedFiles) {
+        boolean overflow = false;
+        Path dir = watchedDirectories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+            if (dir == null || event.kind() == ENTRY_DELETE) {
+                continue;
+            }
+            Path child = dir.resolve((Path) event.context());
+            if (Files.isDirectory(child)) {
+                if (event.kind() == ENTRY_CREATE) {
+                    try {
+                        registerDirectories(child, changedFiles);
+                    } catch (IOException ex) {
+                        logger.warn("Unable to watch new directory: " + child + "; cause: " + ex.getMessage());
+                    }
+                }
+            } else if (Files.isRegularFile(child)) {
+                changedFiles.add(child.toFile().getAbsoluteFile());
+            }
+        }
+        if (!key.reset()) {
+            watchedDirectories.remove(key);
+        }
+        return overflow;
+    }
+
+    /**
+     * Registers the given directory and every directory under it with the WatchService.
+     *
+     * @param start
+     * @param filesFound
+     *            if not null, every file found is added to this; used for directories created after watching started
+     * @throws IOException
+     */
+    protected void registerDirectories(Path start, final Set<File> filesFound) throws IOException {
+        if (!Files.isDirectory(start)) {
+            return;
+        }
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                watchedDirectories.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (filesFound != null) {
+                    filesFound.add(file.toFile().getAbsoluteFile());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Sleeps for sleepTime and then scans the module paths; once a change is found, keeps scanning every debounceTime
+     * until no further change is found.
+     *
+     * @return the changed files
+     * @throws InterruptedException
+     */
+    protected Set<File> pollForChanges() throws InterruptedException {
+        Set<File> changedFiles = new LinkedHashSet<>();
+        if (!sleepUnlessStopped(sleepTime)) {
+            return changedFiles;
+        }
+        while (collectChangedFiles(changedFiles) && sleepUnlessStopped(debounceTime)) {
+            // Keep scanning until a scan finds no further change
+        }
+        return changedFiles;
+    }
+
+    /**
+     * Waits for the given time, returning early if stop is called.
+     *
+     * @param millis
+     * @return true if still running
+     * @throws InterruptedException
+     */
+    protected boolean sleepUnlessStopped(long millis) throws InterruptedException {
+        long end = System.currentTimeMillis() + millis;
+        synchronized (sleepLock) {
+            long remaining = millis;
+            while (running && remaining > 0) {
+                sleepLock.wait(remaining);
+                remaining = end - System.currentTimeMillis();
+            }
+        }
+        return running;
+    }
+
+    /**
+     * Scans the module paths and compares each file with the last scan.
+     *
+     * @param changedFiles
+     *            new and modified files are added to this
+     * @return true if any file was new or modified
+     */
+    protected boolean collectChangedFiles(Set<File> changedFiles) {
+        Map<File, FileState> states = scanFileStates();
+        boolean changed = false;
+        for (Map.Entry<File, FileState> entry : states.entrySet()) {
+            FileState previous = fileStates != null ? fileStates.get(entry.getKey()) : null;
+            if (previous == null || !previous.equals(entry.getValue())) {
+                changedFiles.add(entry.getKey());
+                changed = true;
+            }
+        }
+        fileStates = states;
+        return changed;
+    }
+
+    protected Map<File, FileState> scanFileStates() {
+        final Map<File, FileState> states = new HashMap<>();
         List<String> paths = appConfig.getModulePaths();
-        ModulesFinder finder = new DefaultModulesFinder();
-        while (true) {
-            for (String modulesPath : paths) {
-                loader.loadModules(new File(modulesPath), finder, client);
+        for (String path : paths) {
+            Path start = new File(path).toPath();
+            if (!Files.isDirectory(start)) {
+                continue;
             }
             try {
-                Thread.sleep(sleepTime);
-            } catch (InterruptedException ie) {
-                // Ignore
+                Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        states.put(file.toFile().getAbsoluteFile(), new FileState(attrs.lastModifiedTime()
+                                .toMillis(), attrs.size()));
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException ex) {
+                logger.warn("Unable to scan module path: " + path + "; cause: " + ex.getMessage());
             }
         }
+        return states;
     }
 
+    private void closeWatchService() {
+        WatchService ws = watchService;
+        if (ws != null) {
+            try {
+                ws.close();
+            } catch (IOException ex) {
+                // Ignore, nothing more can be done with it
+            }
+        }
+    }
+
+    protected static class FileState {
+        private final long lastModified;
+        private final long size;
+
+        public FileState(long lastModified, long size) {
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FileState)) {
+                return false;
+            }
+            FileState other = (FileState) o;
+            return lastModified == other.lastModified && size == other.size;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (lastModified ^ (lastModified >>> 32)) * 31 + (int) size;
+        }
+    }
+
+    /**
+     * @param sleepTime
+     *            when polling, the number of milliseconds to wait between scans of the module paths
+     */
     public void setSleepTime(long sleepTime) {
         this.sleepTime = sleepTime;
     }
 
+    /**
+     * @param debounceTime
+     *            the number of milliseconds without any change to wait for before loading a batch of changed files
+     */
+    public void setDebounceTime(long debounceTime) {
+        this.debounceTime = debounceTime;
+    }
+
+    /**
+     * @param polling
+     *            true to scan the module paths every sleepTime instead of using a WatchService; useful for filesystems
+     *            - e.g. network filesystems - that don't report changes
+     */
+    public void setPolling(boolean polling) {
+        this.polling = polling;
+    }
+
+    public boolean isPolling() {
+        return polling;
+    }
+
+    /**
+     * @param modulesLoader
+     *            loader to use instead of a DefaultModulesLoader built from the AppConfig; it should use the
+     *            ChangedFilesModuleManager from getModulesManager in order to only load changed files
+     */
+    public void setModulesLoader(ModulesLoader modulesLoader) {
+        this.modulesLoader = modulesLoader;
+    }
+
+    public ChangedFilesModuleManager getModulesManager() {
+        return modulesManager;
+    }
+
+    public void setModulesManager(ChangedFilesModuleManager modulesManager) {
+        this.modulesManager = modulesManager;
+    }
+
+    public void setModulesFinder(ModulesFinder modulesFinder) {
+        this.modulesFinder = modulesFinder;
+    }
 }
@@ -1,5 +1,8 @@
 package com.marklogic.mgmt;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.ClassUtils;
 
@@ -7,6 +10,8 @@ import com.marklogic.client.helper.LoggingObject;
 
 public class AbstractManager extends LoggingObject {
 
+    private final static Map<String, Boolean> overriddenMethods = new ConcurrentHashMap<>();
+
     protected PayloadParser payloadParser = new PayloadParser();
 
     /**
@@ -39,8 +44,52 @@ public class AbstractManager extends LoggingObject {
         return getResourceName() + "-name";
     }
 
+    /**
+     * Delegates to getResourceId(ParsedPayload), unless a subclass overrides this method, in which case
+     * getResourceId(ParsedPayload) delegates to the override instead.
+     */
     protected String getResourceId(String payload) {
-        return payloadParser.getPayloadFieldValue(payload, getIdFieldName());
+        ParsedPayload parsed = payloadParser.parse(payload);
+        if (isOverridden(AbstractManager.class, "getResourceId", String.class)) {
+            return parsed.getFieldValue(getIdFieldName());
+        }
+        return getResourceId(parsed);
+    }
+
+    protected String getResourceId(ParsedPayload payload) {
+        if (isOverridden(AbstractManager.class, "getResourceId", String.class)) {
+            return getResourceId(payload.getPayload());
+        }
+        return payload.getFieldValue(getIdFieldName());
+    }
+
+    /**
+     * Used for keeping a method that takes a String payload working for subclasses that override it, when the
+     * equivalent method that takes a ParsedPayload is the one that's called.
+     *
+     * @param declaringClass
+     *            the class that declares the method
+     * @param methodName
+     * @param parameterTypes
+     * @return true if the class of this object, or a superclass below declaringClass, declares the method
+     */
+    protected boolean isOverridden(Class<?> declaringClass, String methodName, Class<?>... parameterTypes) {
+        String key = getClass().getName() + "#" + declaringClass.getName() + "#" + methodName;
+        Boolean overridden = overriddenMethods.get(key);
+        if (overridden == null) {
+            overridden = false;
+            for (Class<?> c = getClass(); c != null && c != declaringClass; c = c.getSuperclass()) {
+                try {
+                    c.getDeclaredMethod(methodName, parameterTypes);
+                    overridden = true;
+                    break;
+                } catch (NoSuchMethodException ex) {
+                    // Check the superclass
+                }
+            }
+            overriddenMethods.put(key, overridden);
+        }
+        return overridden;
     }
 
     protected ResponseEntity<String> putPayload(ManageClient client, String path, String payload) {
@@ -1,5 +1,8 @@
 package com.marklogic.mgmt;
 
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
 import com.marklogic.rest.util.Fragment;
 import com.marklogic.rest.util.ResourcesFragment;
 import org.springframework.http.ResponseEntity;
@@ -13,6 +16,9 @@ public abstract class AbstractResourceManager extends AbstractManager implements
 
     private ManageClient manageClient;
     private boolean updateAllowed = true;
+    private boolean compareBeforeUpdate = false;
+    private boolean updateChangedPropertiesOnly = false;
+    private PropertiesComparator propertiesComparator = new PropertiesComparator();
 
     public AbstractResourceManager(ManageClient client) {
         this.manageClient = client;
@@ -34,9 +40,61 @@ public abstract class AbstractResourceManager extends AbstractManager implements
 
     /**
      * TODO Not sure yet whether we need to account for resourceUrlParams when doing an existence check.
+     * 
+     * If the ManageClient has a ResourceInventory, the list of resources is fetched only when the inventory doesn't
+     * already have it.
      */
     public boolean exists(String resourceNameOrId, String... resourceUrlParams) {
-        return getAsXml().resourceExists(resourceNameOrId);
+        ResourceInventory inventory = manageClient.getResourceInventory();
+        if (inventory == null) {
+            return getAsXml().resourceExists(resourceNameOrId);
+        }
+        String resourcesPath = getResourcesPath();
+        Boolean exists = inventory.contains(resourcesPath, resourceNameOrId);
+        if (exists == null) {
+            long generation = inventory.getGeneration();
+            ResourcesFragment resources = getAsXml();
+            inventory.load(resourcesPath, resources, generation);
+            exists = resources.resourceExists(resourceNameOrId);
+        }
+        return exists;
+    }
+
+    /**
+     * @param payload
+     * @return true if the resource identified by the payload exists
+     */
+    public boolean payloadExists(String payload) {
+        return exists(getResourceId(payloadParser.parse(payload)));
+    }
+
+    /**
+     * Determines whether the resource identified by the payload exists and - for a JSON payload - whether its current
+     * properties still match the payload, as determined by the PropertiesComparator. XML payloads are only checked for
+     * existence.
+     *
+     * @param payload
+     * @return false if the resource doesn't exist, if any of its properties differ from the payload, or if its
+     *         properties can't be retrieved
+     */
+    public boolean payloadMatchesServer(ParsedPayload payload) {
+        if (!payloadExists(payload.getPayload())) {
+            return false;
+        }
+        if (!payload.isJson()) {
+            return true;
+        }
+        String resourceId = getResourceId(payload);
+        String path = appendParamsAndValuesToPath(getPropertiesPath(resourceId), getUpdateResourceParams(payload));
+        try {
+            JsonNode current = payloadParser.parseJson(useAdminUser() ? manageClient.getJsonAsAdmin(path)
+                    : manageClient.getJson(path));
+            return propertiesComparator.getChangedPropertyNames(payload.getJson(), current).isEmpty();
+        } catch (RuntimeException ex) {
+            logger.warn(format("Unable to get current properties of %s %s; cause: %s", getResourceName(), resourceId,
+                    ex.getMessage()));
+            return false;
+        }
     }
 
     public ResourcesFragment getAsXml() {
@@ -64,22 +122,62 @@ public abstract class AbstractResourceManager extends AbstractManager implements
      * Determines whether to create a new resource or update an existing one based on the contents of the payload.
      */
     public SaveReceipt save(String payload) {
+        ParsedPayload parsed = payloadParser.parse(payload);
+        return isOverridden(AbstractResourceManager.class, "save", String.class) ? saveParsedPayload(parsed)
+                : save(parsed);
+    }
+
+    /**
+     * Same as save(String), but with a payload that's already been parsed, so that the resource ID and any URL
+     * parameters are looked up in the parsed payload instead of parsing the payload again. If a subclass overrides
+     * save(String), this delegates to that override.
+     */
+    public SaveReceipt save(ParsedPayload payload) {
+        if (isOverridden(AbstractResourceManager.class, "save", String.class)) {
+            return save(payload.getPayload());
+        }
+        return saveParsedPayload(payload);
+    }
+
+    private SaveReceipt saveParsedPayload(ParsedPayload payload) {
         String resourceId = getResourceId(payload);
-        String label = getResourceName();
-        String path = null;
-        ResponseEntity<String> response = null;
         if (exists(resourceId)) {
             if (updateAllowed) {
                 return updateResource(payload, resourceId);
             } else {
                 logger.info("Resource already exists and updates are not supported, so not updating: " + resourceId);
+                return new SaveReceipt(resourceId, payload, null, null);
+            }
+        }
+        return createResource(payload, resourceId);
+    }
+
+    /**
+     * Creates the resource without first checking whether it exists; useful when the caller has already fetched the
+     * list of resources.
+     */
+    public SaveReceipt createResource(String payload, String resourceId) {
+        return createResource(payloadParser.parse(payload), resourceId);
+    }
+
+    public SaveReceipt createResource(ParsedPayload payload, String resourceId) {
+        String label = getResourceName();
+        logger.info(format("Creating %s: %s", label, resourceId));
+        String path = getCreateResourcePath(payload);
+        ResponseEntity<String> response;
+        ResourceInventory inventory = manageClient.getResourceInventory();
+        if (inventory != null) {
+            inventory.beginUpdate(getResourcesPath());
+            try {
+                response = postPayload(manageClient, path, payload.getPayload());
+            } finally {
+                inventory.endUpdate();
             }
+            inventory.resourceCreated(getResourcesPath(), resourceId);
         } else {
-            logger.info(format("Creating %s: %s", label, resourceId));
-            path = getCreateResourcePath(payload);
-            response = postPayload(manageClient, path, payload);
-            logger.info(format("Created %s: %s", label, resourceId));
+            response = postPayload(manageClient, path, payload.getPayload());
         }
+        logger.info(format("Created %s: %s", label, resourceId));
         return new SaveReceipt(resourceId, payload, path, response);
     }
 
@@ -105,15 +203,122 @@ public abstract class AbstractResourceManager extends AbstractManager implements
      * @return
      */
     public SaveReceipt updateResource(String payload, String resourceId) {
+        return updateResource(payloadParser.parse(payload), resourceId);
+    }
+
+    /**
+     * If the ManageClient has a ResourceInventory, the cached list of this manager's resources is kept while the
+     * resource is updated, unless the payload renames the resource.
+     */
+    public SaveReceipt updateResource(ParsedPayload payload, String resourceId) {
+        ResourceInventory inventory = manageClient.getResourceInventory();
+        if (inventory == null) {
+            return sendUpdate(payload, resourceId);
+        }
+        SaveReceipt receipt;
+        inventory.beginUpdate(getResourcesPath());
+        try {
+            receipt = sendUpdate(payload, resourceId);
+        } finally {
+            inventory.endUpdate();
+        }
+        if (isRenamedBy(payload, resourceId)) {
+            inventory.invalidate(getResourcesPath());
+        }
+        return receipt;
+    }
+
+    /**
+     * @param payload
+     * @param resourceId
+     * @return true if the ID in the payload differs from the given ID, or if the payload has no ID
+     */
+    protected boolean isRenamedBy(ParsedPayload payload, String resourceId) {
+        try {
+            return !resourceId.equals(getResourceId(payload));
+        } catch (RuntimeException ex) {
+            return true;
+        }
+    }
+
+    private SaveReceipt sendUpdate(ParsedPayload payload, String resourceId) {
         String path = getPropertiesPath(resourceId);
         String label = getResourceName();
         path = appendParamsAndValuesToPath(path, getUpdateResourceParams(payload));
+        if ((compareBeforeUpdate || updateChangedPropertiesOnly) && payload.isJson()) {
+            SaveReceipt receipt = updateChangedProperties(payload, resourceId, path);
+            if (receipt != null) {
+                return receipt;
+            }
+        }
         logger.info(format("Found %s with name of %s, so updating at path %s", label, resourceId, path));
-        ResponseEntity<String> response = putPayload(manageClient, path, payload);
+        ResponseEntity<String> response = putPayload(manageClient, path, payload.getPayload());
         logger.info(format("Updated %s at %s", label, path));
         return new SaveReceipt(resourceId, payload, path, response);
     }
 
+    /**
+     * Compares the JSON payload with the current properties of the resource. Nothing is sent if every property
+     * matches; otherwise, either the full payload or - if updateChangedPropertiesOnly is true - just the properties that
+     * differ are sent. XML payloads are not compared.
+     * 
+     * @param payload
+     * @param resourceId
+     * @param path
+     * @return null if the current properties could not be retrieved, in which case the full payload should be sent
+     */
+    protected SaveReceipt updateChangedProperties(ParsedPayload payload, String resourceId, String path) {
+        return updateChangedProperties(payload.getPayload(), resourceId, path);
+    }
+
+    /**
+     * @deprecated override updateChangedProperties(ParsedPayload, String, String) instead; this is only invoked by
+     *             its default implementation
+     */
+    @Deprecated
+    protected SaveReceipt updateChangedProperties(String payload, String resourceId, String path) {
+        return compareAndUpdateProperties(payloadParser.parse(payload), resourceId, path);
+    }
+
+    private SaveReceipt compareAndUpdateProperties(ParsedPayload payload, String resourceId, String path) {
+        String label = getResourceName();
+        JsonNode current;
+        try {
+            current = payloadParser.parseJson(useAdminUser() ? manageClient.getJsonAsAdmin(path) : manageClient
+                    .getJson(path));
+        } catch (RuntimeException ex) {
+            logger.warn(format("Unable to get current properties of %s %s, so sending full payload; cause: %s", label,
+                    resourceId, ex.getMessage()));
+            return null;
+        }
+
+        JsonNode desired = payload.getJson();
+        List<String> changed = propertiesComparator.getChangedPropertyNames(desired, current);
+        int unchangedCount = desired.size() - changed.size();
+        if (changed.isEmpty()) {
+            logger.info(format("Properties of %s %s already match payload, so not updating", label, resourceId));
+            return new SaveReceipt(resourceId, payload, path, null, 0, unchangedCount);
+        }
+
+        String update = payload.getPayload();
+        if (updateChangedPropertiesOnly) {
+            update = propertiesComparator.retainProperties(desired, changed, getIdFieldName()).toString();
+        }
+        logger.info(format("Updating %s %s at path %s; changed properties: %s", label, resourceId, path, changed));
+        ResponseEntity<String> response = putPayload(manageClient, path, update);
+        logger.info(format("Updated %s at %s", label, path));
+        return new SaveReceipt(resourceId, update, path, response, changed.size(), unchangedCount);
+    }
+
+    protected String getCreateResourcePath(ParsedPayload payload) {
+        return getCreateResourcePath(payload.getPayload());
+    }
+
+    /**
+     * @deprecated override getCreateResourcePath(ParsedPayload) instead; this is only invoked by its default
+     *             implementation
+     */
+    @Deprecated
     protected String getCreateResourcePath(String payload) {
         return getResourcesPath();
     }
@@ -126,6 +331,13 @@ public abstract class AbstractResourceManager extends AbstractManager implements
 
     @Override
     public DeleteReceipt delete(String payload, String... resourceUrlParams) {
+        return delete(payloadParser.parse(payload), resourceUrlParams);
+    }
+
+    /**
+     * Same as delete(String, String...), but with a payload that's already been parsed so that it isn't parsed again.
+     */
+    public DeleteReceipt delete(ParsedPayload payload, String... resourceUrlParams) {
         String resourceId = getResourceId(payload);
         if (!exists(resourceId)) {
             logger.info(
@@ -135,7 +347,18 @@ public abstract class AbstractResourceManager extends AbstractManager implements
             String path = getResourcePath(resourceId, resourceUrlParams);
             path = appendParamsAndValuesToPath(path, getDeleteResourceParams(payload));
             beforeDelete(resourceId, path, resourceUrlParams);
-            deleteAtPath(path);
+            ResourceInventory inventory = manageClient.getResourceInventory();
+            if (inventory != null) {
+                inventory.beginUpdate(getResourcesPath());
+                try {
+                    deleteAtPath(path);
+                } finally {
+                    inventory.endUpdate();
+                }
+                inventory.resourceDeleted(getResourcesPath(), resourceId);
+            } else {
+                deleteAtPath(path);
+            }
             return new DeleteReceipt(resourceId, path, true);
         }
     }
@@ -198,6 +421,15 @@ public abstract class AbstractResourceManager extends AbstractManager implements
      *            XML or JSON payload
      * @return
      */
+    protected String[] getUpdateResourceParams(ParsedPayload payload) {
+        return getUpdateResourceParams(payload.getPayload());
+    }
+
+    /**
+     * @deprecated override getUpdateResourceParams(ParsedPayload) instead; this is only invoked by its default
+     *             implementation
+     */
+    @Deprecated
     protected String[] getUpdateResourceParams(String payload) {
         return new String[] {};
     }
@@ -209,8 +441,17 @@ public abstract class AbstractResourceManager extends AbstractManager implements
      *            XML or JSON payload
      * @return
      */
+    protected String[] getDeleteResourceParams(ParsedPayload payload) {
+        return getDeleteResourceParams(payload.getPayload());
+    }
+
+    /**
+     * @deprecated override getDeleteResourceParams(ParsedPayload) instead; this is only invoked by its default
+     *             implementation
+     */
+    @Deprecated
     protected String[] getDeleteResourceParams(String payload) {
-        return getUpdateResourceParams(payload);
+        return getUpdateResourceParams(payloadParser.parse(payload));
     }
 
     protected ManageClient getManageClient() {
@@ -225,4 +466,33 @@ public abstract class AbstractResourceManager extends AbstractManager implements
         this.updateAllowed = updateAllowed;
     }
 
+    public boolean isCompareBeforeUpdate() {
+        return compareBeforeUpdate;
+    }
+
+    /**
+     * @param compareBeforeUpdate
+     *            if true, an existing resource is only updated when its current properties differ from the payload
+     */
+    public void setCompareBeforeUpdate(boolean compareBeforeUpdate) {
+        this.compareBeforeUpdate = compareBeforeUpdate;
+    }
+
+    public boolean isUpdateChangedPropertiesOnly() {
+        return updateChangedPropertiesOnly;
+    }
+
+    /**
+     * @param updateChangedPropertiesOnly
+     *            if true, an update of an existing resource only includes the top-level properties that differ from
+     *            its current properties; implies compareBeforeUpdate
+     */
+    public void setUpdateChangedPropertiesOnly(boolean updateChangedPropertiesOnly) {
+        this.updateChangedPropertiesOnly = updateChangedPropertiesOnly;
+    }
+
+    public void setPropertiesComparator(PropertiesComparator propertiesComparator) {
+        this.propertiesComparator = propertiesComparator;
+    }
+
 }
@@ -0,0 +1,318 @@
+package com.marklogic.mgmt;
+
+import java.net.URI;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureTask;
+
+import com.marklogic.client.helper.LoggingObject;
+import com.marklogic.rest.util.Fragment;
+
+/**
+ * Non-blocking counterpart to ManageClient. Each method submits the equivalent ManageClient call to a bounded thread
+ * pool and returns a ListenableFuture for its result, which allows a command to overlap independent Manage API calls.
+ * <p>
+ * To avoid flooding the Manage server, at most maxRequestsInFlight requests may be submitted and not yet completed;
+ * once that limit is reached, a call to submit blocks until a prior request finishes. ManageClient applies the same
+ * limit to every request it sends via RequestLimitingInterceptor, so requests sent synchronously from the threads of
+ * the parallel commands - e.g. saving resources or forests in parallel - share the limit with the submitted ones.
+ * <p>
+ * An instance is normally obtained via ManageClient.getAsyncClient, so that it shares that ManageClient's
+ * RestTemplates and thus its pooled connections.
+ */
+public class AsyncManageClient extends LoggingObject {
+
+    private ManageClient manageClient;
+    private int threadCount = 8;
+    private int maxRequestsInFlight = 16;
+
+    private ExecutorService executorService;
+    private Semaphore requestPermits;
+    private final ThreadLocal<Boolean> permitHeld = new ThreadLocal<>();
+
+    public AsyncManageClient(ManageClient manageClient) {
+        this.manageClient = manageClient;
+    }
+
+    /**
+     * Submits any unit of work - typically a series of ManageClient calls, or a ResourceManager operation - subject to
+     * the same thread pool and in-flight limit as the other methods in this class.
+     *
+     * @param callable
+     * @return
+     */
+    public <T> ListenableFuture<T> submit(final Callable<T> callable) {
+        final Semaphore permits = getRequestPermits();
+        try {
+            permits.acquire();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting to submit Manage API request", ie);
+        }
+        ListenableFutureTask<T> task = new ListenableFutureTask<>(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                permitHeld.set(Boolean.TRUE);
+                try {
+                    return callable.call();
+                } finally {
+                    permitHeld.remove();
+                    permits.release();
+                }
+            }
+        });
+        try {
+            getExecutorService().execute(task);
+        } catch (RejectedExecutionException ex) {
+            permits.release();
+            throw ex;
+        }
+        return task;
+    }
+
+    /**
+     * Blocks until a request can be sent without exceeding maxRequestsInFlight. A thread that already holds a permit -
+     * e.g. one running a task submitted to this client - isn't given another one, so that a unit of work that sends
+     * several requests can't block itself.
+     *
+     * @return true if a permit was acquired, in which case releaseRequestPermit must be called once the request has
+     *         completed
+     */
+    public boolean acquireRequestPermit() {
+        if (permitHeld.get() != null) {
+            return false;
+        }
+        try {
+            getRequestPermits().acquire();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting to send Manage API request", ie);
+        }
+        permitHeld.set(Boolean.TRUE);
+        return true;
+    }
+
+    public void releaseRequestPermit() {
+        permitHeld.remove();
+        getRequestPermits().release();
+    }
+
+    public ListenableFuture<ResponseEntity<String>> putJson(final String path, final String json) {
+        return submit(new Callable<ResponseEntity<String>>() {
+            @Override
+            public ResponseEntity<String> call() {
+                return manageClient.putJson(path, json);
+            }
+        });
+    }
+
+    public ListenableFuture<ResponseEntity<String>> putJsonAsAdmin(final String path, final String json) {
+        return submit(new Callable<ResponseEntity<String>>() {
+            @Override
+            public ResponseEntity<String> call() {
+                return manageClient.putJsonAsAdmin(path, json);
+            }
+        });
+    }
+
+    public ListenableFuture<ResponseEntity<String>> putXml(final String path, final String xml) {
+        return submit(new Callable<ResponseEntity<String>>() {
+            @Override
+            public ResponseEntity<String> call() {
+                return manageClient.putXml(path, xml);
+            }
+        });
+    }
+
+    public ListenableFuture<ResponseEntity<String>> putXmlAsAdmin(final String path, final String xml) {
+        return submit(new Callable<ResponseEntity<String>>() {
+            @Override
+            public ResponseEntity<String> call() {
+                return manageClient.putXmlAsAdmin(path, xml);
+            }
+        });
+    }
+
+    public ListenableFuture<ResponseEntity<String>> postJson(final String path, final String json) {
+        return submit(new Callable<ResponseEntity<String>>() {
+            @Override
+            public ResponseEntity<String> call() {
+                return manageClient.postJson(path, json);
+            }
+        });
+    }
+
+    public ListenableFuture<ResponseEntity<String>> postJsonAsAdmin(final String path, final String json) {
+        return submit(new Callable<ResponseEntity<String>>() {
+            @Override
+            public ResponseEntity<String> call() {
+                return manageClient.postJsonAsAdmin(path, json);
+            }
+        });
+    }
+
+    public ListenableFuture<ResponseEntity<String>> postXml(final String path, final String xml) {
+        return submit(new Callable<ResponseEntity<String>>() {
+            @Override
+            public ResponseEntity<String> call() {
+                return manageClient.postXml(path, xml);
+            }
+        });
+    }
+
+    public ListenableFuture<ResponseEntity<String>> postXmlAsAdmin(final String path, final String xml) {
+        return submit(new Callable<ResponseEntity<String>>() {
+            @Override
+            public ResponseEntity<String> call() {
+                return manageClient.postXmlAsAdmin(path, xml);
+            }
+        });
+    }
+
+    public ListenableFuture<ResponseEntity<String>> postForm(final String path, final String... params) {
+        return submit(new Callable<ResponseEntity<String>>() {
+            @Override
+            public ResponseEntity<String> call() {
+                return manageClient.postForm(path, params);
+            }
+        });
+    }
+
+    public ListenableFuture<Fragment> getXml(final String path, final String... namespacePrefixesAndUris) {
+        return submit(new Callable<Fragment>() {
+            @Override
+            public Fragment call() {
+                return manageClient.getXml(path, namespacePrefixesAndUris);
+            }
+        });
+    }
+
+    public ListenableFuture<Fragment> getXmlAsAdmin(final String path, final String... namespacePrefixesAndUris) {
+        return submit(new Callable<Fragment>() {
+            @Override
+            public Fragment call() {
+                return manageClient.getXmlAsAdmin(path, namespacePrefixesAndUris);
+            }
+        });
+    }
+
+    public ListenableFuture<String> getJson(final String path) {
+        return submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return manageClient.getJson(path);
+            }
+        });
+    }
+
+    public ListenableFuture<String> getJsonAsAdmin(final String path) {
+        return submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return manageClient.getJsonAsAdmin(path);
+            }
+        });
+    }
+
+    public ListenableFuture<String> getJson(final URI uri) {
+        return submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return manageClient.getJson(uri);
+            }
+        });
+    }
+
+    public ListenableFuture<Void> delete(final String path) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                manageClient.delete(path);
+                return null;
+            }
+        });
+    }
+
+    public ListenableFuture<Void> deleteAsAdmin(final String path) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                manageClient.deleteAsAdmin(path);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Stops the thread pool once all submitted requests have completed. A new pool is created if this client is used
+     * again afterwards.
+     */
+    public synchronized void shutdown() {
+        if (executorService != null) {
+            executorService.shutdown();
+            executorService = null;
+        }
+    }
+
+    protected synchronized ExecutorService getExecutorService() {
+        if (executorService == null) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ml-manage-async-");
+            threadFactory.setDaemon(true);
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), threadFactory);
+            executor.allowCoreThreadTimeOut(true);
+            if (logger.isInfoEnabled()) {
+                logger.info(format("Initializing async Manage API client with %d threads and max requests in flight: %d",
+                        threadCount, maxRequestsInFlight));
+            }
+            executorService = executor;
+        }
+        return executorService;
+    }
+
+    protected synchronized Semaphore getRequestPermits() {
+        if (requestPermits == null) {
+            requestPermits = new Semaphore(maxRequestsInFlight);
+        }
+        return requestPermits;
+    }
+
+    public ManageClient getManageClient() {
+        return manageClient;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Must be set before the first request is submitted.
+     *
+     * @param threadCount
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    public int getMaxRequestsInFlight() {
+        return maxRequestsInFlight;
+    }
+
+    /**
+     * Must be set before the first request is submitted.
+     *
+     * @param maxRequestsInFlight
+     */
+    public void setMaxRequestsInFlight(int maxRequestsInFlight) {
+        this.maxRequestsInFlight = maxRequestsInFlight;
+    }
+}
@@ -1,22 +1,38 @@
 package com.marklogic.mgmt;
 
+import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
 import org.jdom2.Namespace;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
 import com.marklogic.client.helper.LoggingObject;
+import com.marklogic.mgmt.admin.AdminManager;
+import com.marklogic.mgmt.admin.RestartBatchRetryInterceptor;
+import com.marklogic.mgmt.util.DeployProfiler;
+import com.marklogic.mgmt.util.ProfilingRequestInterceptor;
 import com.marklogic.rest.util.Fragment;
 import com.marklogic.rest.util.RestTemplateUtil;
+import com.marklogic.rest.util.XmlStreamHandler;
 
 /**
  * Wraps a RestTemplate with methods that should simplify accessing the Manage API with RestTemplate. Each NounManager
@@ -24,9 +40,20 @@ import com.marklogic.rest.util.RestTemplateUtil;
  */
 public class ManageClient extends LoggingObject {
 
+    private final static XMLInputFactory xmlInputFactory;
+
+    static {
+        xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
     private ManageConfig manageConfig;
     private RestTemplate restTemplate;
     private RestTemplate adminRestTemplate;
+    private AsyncManageClient asyncClient;
+    private ResourceInventory resourceInventory;
+    private DeployProfiler profiler;
 
     /**
      * Can use this constructor when the default values in ManageConfig will work.
@@ -50,51 +77,82 @@ public class ManageClient extends LoggingObject {
             if (logger.isInfoEnabled()) {
                 logger.info("Initializing ManageClient with admin config, admin user: " + config.getAdminUsername());
             }
-            this.adminRestTemplate = RestTemplateUtil.newRestTemplate(config.getHost(), config.getPort(),
-                    config.getAdminUsername(), config.getAdminPassword());
+            this.adminRestTemplate = RestTemplateUtil.newRestTemplate(config, config.getAdminUsername(),
+                    config.getAdminPassword());
         } else {
             this.adminRestTemplate = restTemplate;
         }
+        applyRequestLimit(restTemplate);
+        if (adminRestTemplate != restTemplate) {
+            applyRequestLimit(adminRestTemplate);
+        }
+        if (profiler != null) {
+            setProfiler(profiler);
+        }
     }
 
     public ResponseEntity<String> putJson(String path, String json) {
         logRequest(path, "JSON", "PUT");
-        return restTemplate.exchange(buildUri(path), HttpMethod.PUT, buildJsonEntity(json), String.class);
+        ResponseEntity<String> response = restTemplate.exchange(buildUri(path), HttpMethod.PUT,
+                buildJsonEntity(json), String.class);
+        updateOccurred(path);
+        return response;
     }
 
     public ResponseEntity<String> putJsonAsAdmin(String path, String json) {
         logAdminRequest(path, "JSON", "PUT");
-        return adminRestTemplate.exchange(buildUri(path), HttpMethod.PUT, buildJsonEntity(json), String.class);
+        ResponseEntity<String> response = adminRestTemplate.exchange(buildUri(path), HttpMethod.PUT,
+                buildJsonEntity(json), String.class);
+        updateOccurred(path);
+        return response;
     }
 
     public ResponseEntity<String> putXml(String path, String xml) {
         logRequest(path, "XML", "PUT");
-        return restTemplate.exchange(buildUri(path), HttpMethod.PUT, buildXmlEntity(xml), String.class);
+        ResponseEntity<String> response = restTemplate.exchange(buildUri(path), HttpMethod.PUT, buildXmlEntity(xml),
+                String.class);
+        updateOccurred(path);
+        return response;
     }
 
     public ResponseEntity<String> putXmlAsAdmin(String path, String xml) {
         logAdminRequest(path, "XML", "PUT");
-        return adminRestTemplate.exchange(buildUri(path), HttpMethod.PUT, buildXmlEntity(xml), String.class);
+        ResponseEntity<String> response = adminRestTemplate.exchange(buildUri(path), HttpMethod.PUT,
+                buildXmlEntity(xml), String.class);
+        updateOccurred(path);
+        return response;
     }
 
     public ResponseEntity<String> postJson(String path, String json) {
         logRequest(path, "JSON", "POST");
-        return restTemplate.exchange(buildUri(path), HttpMethod.POST, buildJsonEntity(json), String.class);
+        ResponseEntity<String> response = restTemplate.exchange(buildUri(path), HttpMethod.POST,
+                buildJsonEntity(json), String.class);
+        writeOccurred(path);
+        return response;
     }
 
     public ResponseEntity<String> postJsonAsAdmin(String path, String json) {
         logAdminRequest(path, "JSON", "POST");
-        return adminRestTemplate.exchange(buildUri(path), HttpMethod.POST, buildJsonEntity(json), String.class);
+        ResponseEntity<String> response = adminRestTemplate.exchange(buildUri(path), HttpMethod.POST,
+                buildJsonEntity(json), String.class);
+        writeOccurred(path);
+        return response;
     }
 
     public ResponseEntity<String> postXml(String path, String xml) {
         logRequest(path, "XML", "POST");
-        return restTemplate.exchange(buildUri(path), HttpMethod.POST, buildXmlEntity(xml), String.class);
+        ResponseEntity<String> response = restTemplate.exchange(buildUri(path), HttpMethod.POST,
+                buildXmlEntity(xml), String.class);
+        writeOccurred(path);
+        return response;
     }
 
     public ResponseEntity<String> postXmlAsAdmin(String path, String xml) {
         logAdminRequest(path, "XML", "POST");
-        return adminRestTemplate.exchange(buildUri(path), HttpMethod.POST, buildXmlEntity(xml), String.class);
+        ResponseEntity<String> response = adminRestTemplate.exchange(buildUri(path), HttpMethod.POST,
+                buildXmlEntity(xml), String.class);
+        writeOccurred(path);
+        return response;
     }
 
     public ResponseEntity<String> postForm(String path, String... params) {
@@ -106,7 +164,9 @@ public class ManageClient extends LoggingObject {
             map.add(params[i], params[i + 1]);
         }
         HttpEntity<MultiValueMap<String, String>> entity = new HttpEntity<MultiValueMap<String, String>>(map, headers);
-        return restTemplate.exchange(buildUri(path), HttpMethod.POST, entity, String.class);
+        ResponseEntity<String> response = restTemplate.exchange(buildUri(path), HttpMethod.POST, entity, String.class);
+        writeOccurred(path);
+        return response;
     }
 
     public Fragment getXml(String path, String... namespacePrefixesAndUris) {
@@ -129,6 +189,54 @@ public class ManageClient extends LoggingObject {
         return new Fragment(xml, list.toArray(new Namespace[] {}));
     }
 
+    /**
+     * Sends a GET request for XML and passes the response body, as a StAX stream, to the given handler. Unlike getXml,
+     * the response is never held in memory as a String or a DOM, which matters for large list and status responses.
+     * 
+     * @param path
+     * @param handler
+     */
+    public void streamXml(String path, XmlStreamHandler handler) {
+        logRequest(path, "XML", "GET");
+        streamXml(getRestTemplate(), path, handler);
+    }
+
+    public void streamXmlAsAdmin(String path, XmlStreamHandler handler) {
+        logAdminRequest(path, "XML", "GET");
+        streamXml(getAdminRestTemplate(), path, handler);
+    }
+
+    protected void streamXml(RestTemplate rt, final String path, final XmlStreamHandler handler) {
+        RequestCallback acceptXml = new RequestCallback() {
+            @Override
+            public void doWithRequest(ClientHttpRequest request) throws IOException {
+                request.getHeaders().setAccept(Arrays.asList(MediaType.APPLICATION_XML));
+            }
+        };
+        rt.execute(buildUri(path), HttpMethod.GET, acceptXml, new ResponseExtractor<Void>() {
+            @Override
+            public Void extractData(ClientHttpResponse response) throws IOException {
+                XMLStreamReader reader = null;
+                try {
+                    reader = xmlInputFactory.createXMLStreamReader(response.getBody());
+                    handler.handleXmlStream(reader);
+                } catch (XMLStreamException ex) {
+                    throw new RuntimeException("Unable to read XML response from path: " + path + "; cause: "
+                            + ex.getMessage(), ex);
+                } finally {
+                    if (reader != null) {
+                        try {
+                            reader.close();
+                        } catch (XMLStreamException ex) {
+                            // Ignore, the response itself is closed by RestTemplate
+                        }
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
     public String getJson(String path) {
         logRequest(path, "JSON", "GET");
         HttpHeaders headers = new HttpHeaders();
@@ -137,6 +245,14 @@ public class ManageClient extends LoggingObject {
                 .getBody();
     }
 
+    public String getJsonAsAdmin(String path) {
+        logAdminRequest(path, "JSON", "GET");
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Accept", MediaType.APPLICATION_JSON_VALUE);
+        return getAdminRestTemplate().exchange(buildUri(path), HttpMethod.GET, new HttpEntity<>(headers),
+                String.class).getBody();
+    }
+
     public String getJson(URI uri) {
         logRequest(uri.toString(), "JSON", "GET");
         HttpHeaders headers = new HttpHeaders();
@@ -147,11 +263,13 @@ public class ManageClient extends LoggingObject {
     public void delete(String path) {
         logRequest(path, "", "DELETE");
         restTemplate.delete(buildUri(path));
+        writeOccurred(path);
     }
 
     public void deleteAsAdmin(String path) {
         logAdminRequest(path, "", "DELETE");
         adminRestTemplate.delete(buildUri(path));
+        writeOccurred(path);
     }
 
     public HttpEntity<String> buildJsonEntity(String json) {
@@ -166,6 +284,32 @@ public class ManageClient extends LoggingObject {
         return new HttpEntity<String>(xml, headers);
     }
 
+    /**
+     * Should be called after any request that may have created or deleted a resource, so that the resource inventory,
+     * if one is in use, doesn't report stale results.
+     * 
+     * @param path
+     */
+    public void writeOccurred(String path) {
+        ResourceInventory inventory = this.resourceInventory;
+        if (inventory != null) {
+            inventory.writeOccurred(path);
+        }
+    }
+
+    /**
+     * Should be called after any request that may have renamed a resource, so that the resource inventory, if one is in
+     * use, doesn't report stale results.
+     *
+     * @param path
+     */
+    public void updateOccurred(String path) {
+        ResourceInventory inventory = this.resourceInventory;
+        if (inventory != null) {
+            inventory.updateOccurred(path);
+        }
+    }
+
     protected void logRequest(String path, String contentType, String method) {
         if (logger.isInfoEnabled()) {
             logger.info(String.format("Sending %s %s request as user '%s' to path: %s", contentType, method,
@@ -195,4 +339,99 @@ public class ManageClient extends LoggingObject {
     public ManageConfig getManageConfig() {
         return manageConfig;
     }
+
+    /**
+     * @return an AsyncManageClient that issues the same requests as this client, but without blocking the caller;
+     *         created on first access
+     */
+    public synchronized AsyncManageClient getAsyncClient() {
+        if (asyncClient == null) {
+            asyncClient = new AsyncManageClient(this);
+        }
+        return asyncClient;
+    }
+
+    public ResourceInventory getResourceInventory() {
+        return resourceInventory;
+    }
+
+    /**
+     * @param resourceInventory
+     *            if not null, AbstractResourceManager uses this for existence checks instead of fetching the list of
+     *            resources each time
+     */
+    public void setResourceInventory(ResourceInventory resourceInventory) {
+        this.resourceInventory = resourceInventory;
+    }
+
+    public synchronized void setAsyncClient(AsyncManageClient asyncClient) {
+        this.asyncClient = asyncClient;
+    }
+
+    public DeployProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * @param profiler
+     *            if not null, every request made via this client's RestTemplates is recorded with the profiler; if
+     *            null, requests are no longer recorded
+     */
+    public synchronized void setProfiler(DeployProfiler profiler) {
+        this.profiler = profiler;
+        applyProfiler(restTemplate, profiler);
+        if (adminRestTemplate != restTemplate) {
+            applyProfiler(adminRestTemplate, profiler);
+        }
+    }
+
+    /**
+     * Limits the requests sent via the given RestTemplate to the AsyncManageClient's maxRequestsInFlight, shared with
+     * every other request sent via this client.
+     *
+     * @param template
+     */
+    protected void applyRequestLimit(RestTemplate template) {
+        List<ClientHttpRequestInterceptor> interceptors = new ArrayList<>(template.getInterceptors());
+        interceptors.add(new RequestLimitingInterceptor(this));
+        template.setInterceptors(interceptors);
+    }
+
+    /**
+     * @param adminManager
+     *            if not null, a request that fails because MarkLogic is restarting from an action in a restart batch
+     *            on the AdminManager is retried once MarkLogic has restarted; see RestartBatchRetryInterceptor
+     */
+    public synchronized void setRestartBatchAdminManager(AdminManager adminManager) {
+        applyRestartBatchRetries(restTemplate, adminManager);
+        if (adminRestTemplate != restTemplate) {
+            applyRestartBatchRetries(adminRestTemplate, adminManager);
+        }
+    }
+
+    protected void applyRestartBatchRetries(RestTemplate template, AdminManager adminManager) {
+        List<ClientHttpRequestInterceptor> interceptors = new ArrayList<>();
+        for (ClientHttpRequestInterceptor interceptor : template.getInterceptors()) {
+            if (!(interceptor instanceof RestartBatchRetryInterceptor)) {
+                interceptors.add(interceptor);
+            }
+        }
+        if (adminManager != null) {
+            interceptors.add(new RestartBatchRetryInterceptor(adminManager));
+        }
+        template.setInterceptors(interceptors);
+    }
+
+    protected void applyProfiler(RestTemplate template, DeployProfiler profiler) {
+        List<ClientHttpRequestInterceptor> interceptors = new ArrayList<>();
+        for (ClientHttpRequestInterceptor interceptor : template.getInterceptors()) {
+            if (!(interceptor instanceof ProfilingRequestInterceptor)) {
+                interceptors.add(interceptor);
+            }
+        }
+        if (profiler != null) {
+            interceptors.add(new ProfilingRequestInterceptor(profiler));
+        }
+        template.setInterceptors(interceptors);
+    }
 }
@@ -0,0 +1,92 @@
+package com.marklogic.mgmt;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.marklogic.rest.util.Fragment;
+
+/**
+ * A JSON or XML payload along with its parsed form - a Jackson tree or a JDOM-based Fragment - so that a payload can be
+ * parsed once and then passed through the save and delete path of a resource manager, with the resource ID and any
+ * other values being looked up in the parsed form. The payload is parsed when a value is first needed; instances are
+ * not thread-safe until then.
+ */
+public class ParsedPayload {
+
+    private final String payload;
+    private final boolean json;
+    private final PayloadParser payloadParser;
+
+    private JsonNode jsonNode;
+    private Fragment fragment;
+
+    public ParsedPayload(String payload, PayloadParser payloadParser) {
+        this.payload = payload;
+        this.payloadParser = payloadParser;
+        this.json = payloadParser.isJsonPayload(payload);
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public boolean isJson() {
+        return json;
+    }
+
+    public JsonNode getJson() {
+        if (jsonNode == null) {
+            jsonNode = payloadParser.parseJson(payload);
+        }
+        return jsonNode;
+    }
+
+    public Fragment getFragment() {
+        if (fragment == null) {
+            fragment = new Fragment(payload);
+        }
+        return fragment;
+    }
+
+    /**
+     * @param fieldName
+     * @return the value of the given top-level field
+     * @throws RuntimeException
+     *             if the payload doesn't have the field
+     */
+    public String getFieldValue(String fieldName) {
+        if (json) {
+            JsonNode node = getJson();
+            if (!node.has(fieldName)) {
+                throw new RuntimeException("Cannot get field value from JSON; field name: " + fieldName + "; JSON: "
+                        + payload);
+            }
+            return node.get(fieldName).asText();
+        }
+        String xpath = buildXpath(fieldName);
+        Fragment f = getFragment();
+        if (!f.elementExists(xpath)) {
+            throw new RuntimeException("Cannot get field value from XML at path: " + xpath + "; XML: " + payload);
+        }
+        return f.getElementValues(xpath).get(0);
+    }
+
+    /**
+     * @param fieldName
+     * @return the value of the given top-level field, or null if the payload doesn't have the field
+     */
+    public String getOptionalFieldValue(String fieldName) {
+        if (json) {
+            JsonNode node = getJson();
+            return node.has(fieldName) ? node.get(fieldName).asText() : null;
+        }
+        return getFragment().getElementValue(buildXpath(fieldName));
+    }
+
+    protected String buildXpath(String fieldName) {
+        return String.format("/node()/*[local-name(.) = '%s']", fieldName);
+    }
+
+    @Override
+    public String toString() {
+        return payload;
+    }
+}
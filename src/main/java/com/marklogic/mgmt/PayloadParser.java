@@ -2,7 +2,6 @@ package com.marklogic.mgmt;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.marklogic.rest.util.Fragment;
 
 /**
  * Utility class for parsing a JSON or XML payload and extracting values.
@@ -24,21 +23,15 @@ public class PayloadParser {
     }
 
     public String getPayloadFieldValue(String payload, String fieldName) {
-        if (isJsonPayload(payload)) {
-            JsonNode node = parseJson(payload);
-            if (!node.has(fieldName)) {
-                throw new RuntimeException("Cannot get field value from JSON; field name: " + fieldName + "; JSON: "
-                        + payload);
-            }
-            return node.get(fieldName).asText();
-        } else {
-            Fragment f = new Fragment(payload);
-            String xpath = String.format("/node()/*[local-name(.) = '%s']", fieldName);
-            if (!f.elementExists(xpath)) {
-                throw new RuntimeException("Cannot get field value from XML at path: " + xpath + "; XML: " + payload);
-            }
-            return f.getElementValues(xpath).get(0);
-        }
+        return parse(payload).getFieldValue(fieldName);
+    }
+
+    /**
+     * @param payload
+     * @return a ParsedPayload for the given payload, for when more than one value is needed from it
+     */
+    public ParsedPayload parse(String payload) {
+        return new ParsedPayload(payload, this);
     }
 
     public boolean isJsonPayload(String payload) {
@@ -0,0 +1,109 @@
+package com.marklogic.mgmt;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Compares a JSON resource payload with the current properties of that resource, as returned by the Manage API, to
+ * determine which top-level properties would actually be changed by a PUT.
+ * <p>
+ * The comparison is intentionally lenient, as the Manage API returns every property of a resource - including default
+ * values that a payload rarely specifies - and doesn't preserve the order of array items:
+ * <ol>
+ * <li>Scalars are compared by their text value, so "10" matches 10 and "true" matches true.</li>
+ * <li>An object matches if every field in the payload's object matches the same field in the current object; fields
+ * that only exist in the current object are ignored.</li>
+ * <li>An array matches if it has the same number of items and each payload item matches a different current item,
+ * regardless of order.</li>
+ * </ol>
+ */
+public class PropertiesComparator {
+
+    /**
+     * @param payload
+     * @param currentProperties
+     * @return the names of the top-level properties in the payload whose values differ from the current properties
+     */
+    public List<String> getChangedPropertyNames(JsonNode payload, JsonNode currentProperties) {
+        List<String> names = new ArrayList<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = payload.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode current = currentProperties.get(field.getKey());
+            if (current == null || !matches(field.getValue(), current)) {
+                names.add(field.getKey());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @param payload
+     * @param propertyNames
+     * @param idFieldName
+     *            always retained so that the Manage API can identify the resource
+     * @return a copy of the payload with only the given top-level properties and the ID field
+     */
+    public ObjectNode retainProperties(JsonNode payload, List<String> propertyNames, String idFieldName) {
+        ObjectNode copy = ((ObjectNode) payload).deepCopy();
+        Iterator<String> names = copy.fieldNames();
+        while (names.hasNext()) {
+            String name = names.next();
+            if (!name.equals(idFieldName) && !propertyNames.contains(name)) {
+                names.remove();
+            }
+        }
+        return copy;
+    }
+
+    public boolean matches(JsonNode expected, JsonNode actual) {
+        if (expected.isObject()) {
+            if (!actual.isObject()) {
+                return false;
+            }
+            Iterator<Map.Entry<String, JsonNode>> fields = expected.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                JsonNode value = actual.get(field.getKey());
+                if (value == null || !matches(field.getValue(), value)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        if (expected.isArray()) {
+            if (!actual.isArray() || expected.size() != actual.size()) {
+                return false;
+            }
+            List<JsonNode> unmatched = new ArrayList<>();
+            for (JsonNode item : actual) {
+                unmatched.add(item);
+            }
+            for (JsonNode item : expected) {
+                boolean found = false;
+                for (Iterator<JsonNode> iter = unmatched.iterator(); iter.hasNext();) {
+                    if (matches(item, iter.next())) {
+                        iter.remove();
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        if (expected.isNull()) {
+            return actual.isNull();
+        }
+        return actual.isValueNode() && !actual.isNull() && expected.asText().equals(actual.asText());
+    }
+}
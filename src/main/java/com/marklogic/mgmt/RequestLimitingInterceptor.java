@@ -0,0 +1,35 @@
+package com.marklogic.mgmt;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Holds one of the ManageClient's AsyncManageClient request permits while each request is sent, so that no more than
+ * maxRequestsInFlight requests are sent at once, regardless of how many threads are sending them.
+ */
+public class RequestLimitingInterceptor implements ClientHttpRequestInterceptor {
+
+    private ManageClient manageClient;
+
+    public RequestLimitingInterceptor(ManageClient manageClient) {
+        this.manageClient = manageClient;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        AsyncManageClient asyncClient = manageClient.getAsyncClient();
+        boolean acquired = asyncClient.acquireRequestPermit();
+        try {
+            return execution.execute(request, body);
+        } finally {
+            if (acquired) {
+                asyncClient.releaseRequestPermit();
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.marklogic.mgmt;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jdom2.Element;
+
+import com.marklogic.client.helper.LoggingObject;
+import com.marklogic.rest.util.ResourcesFragment;
+
+/**
+ * Caches the names and IDs of the resources listed at each resources path - e.g. /manage/v2/roles - so that
+ * AbstractResourceManager can answer existence checks without fetching the full list of resources for every payload.
+ * <p>
+ * An inventory is attached to a ManageClient, and thus shared by every resource manager built from that ManageClient.
+ * The list for a resources path is fetched the first time it's needed, and AbstractResourceManager then updates it in
+ * place as it creates and deletes resources. Any other POST or DELETE sent via the ManageClient may create or delete
+ * resources of any type - e.g. deleting a database can delete its forests - so ManageClient calls writeOccurred, which
+ * discards every cached list except the one belonging to a resource manager that is updating its list itself. A PUT
+ * may rename the resource it updates, so ManageClient calls updateOccurred, which discards the cached lists that the
+ * updated resource could belong to, again except for a list that a resource manager is updating itself.
+ * <p>
+ * Every write increments the inventory's generation. A list is only cached by load if no write occurred since the
+ * generation passed to it was read, so that a list fetched while a write was in progress is not cached.
+ * <p>
+ * AbstractAppDeployer attaches a new inventory to its ManageClient for the duration of a deploy or undeploy; outside
+ * of that, ManageClient has no inventory and every existence check goes to the Manage API.
+ */
+public class ResourceInventory extends LoggingObject {
+
+    private Map<String, Resources> resourcesByPath = new ConcurrentHashMap<>();
+    private ThreadLocal<String> pathBeingUpdated = new ThreadLocal<>();
+    private long generation;
+
+    /**
+     * @param resourcesPath
+     * @param resourceNameOrId
+     * @return true or false if the list of resources for the given path is cached, or null if it is not
+     */
+    public Boolean contains(String resourcesPath, String resourceNameOrId) {
+        Resources resources = resourcesByPath.get(resourcesPath);
+        return resources != null ? resources.contains(resourceNameOrId) : null;
+    }
+
+    /**
+     * @return the current generation, which must be read before fetching a list that's then passed to load
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @param resourcesPath
+     * @param fragment
+     *            the list of resources, fetched after generationBeforeFetch was read
+     * @param generationBeforeFetch
+     * @return true if the list was cached, or false if a write occurred while it was being fetched
+     */
+    public boolean load(String resourcesPath, ResourcesFragment fragment, long generationBeforeFetch) {
+        Resources resources = new Resources();
+        for (Element item : fragment.getListItems()) {
+            resources.add(fragment.getChildValue(item, "nameref"), fragment.getChildValue(item, "idref"));
+        }
+        synchronized (this) {
+            if (generation != generationBeforeFetch) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Not caching resources, as a write occurred while fetching them: " + resourcesPath);
+                }
+                return false;
+            }
+            resourcesByPath.put(resourcesPath, resources);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug(format("Cached %d resources for path: %s", resources.size(), resourcesPath));
+        }
+        return true;
+    }
+
+    public void resourceCreated(String resourcesPath, String resourceName) {
+        Resources resources = resourcesByPath.get(resourcesPath);
+        if (resources != null) {
+            resources.add(resourceName, null);
+        }
+    }
+
+    public void resourceDeleted(String resourcesPath, String resourceNameOrId) {
+        Resources resources = resourcesByPath.get(resourcesPath);
+        if (resources != null) {
+            resources.remove(resourceNameOrId);
+        }
+    }
+
+    /**
+     * Marks the current thread as sending a write that affects the given resources path, with the caller being
+     * responsible for updating the cached list for that path; see writeOccurred.
+     *
+     * @param resourcesPath
+     */
+    public void beginUpdate(String resourcesPath) {
+        pathBeingUpdated.set(resourcesPath);
+    }
+
+    public void endUpdate() {
+        pathBeingUpdated.remove();
+    }
+
+    /**
+     * Called by ManageClient after a POST or DELETE; see the class comment.
+     *
+     * @param path
+     */
+    public synchronized void writeOccurred(String path) {
+        generation++;
+        String keep = pathBeingUpdated.get();
+        for (String resourcesPath : resourcesByPath.keySet()) {
+            if (!resourcesPath.equals(keep)) {
+                resourcesByPath.remove(resourcesPath);
+            }
+        }
+    }
+
+    /**
+     * Called by ManageClient after a PUT; discards every cached list whose path - ignoring any query string - the PUT
+     * path is under, e.g. /manage/v2/roles for /manage/v2/roles/my-role/properties.
+     *
+     * @param path
+     */
+    public synchronized void updateOccurred(String path) {
+        generation++;
+        String keep = pathBeingUpdated.get();
+        String updatedPath = stripQuery(path);
+        for (String resourcesPath : resourcesByPath.keySet()) {
+            if (!resourcesPath.equals(keep) && updatedPath.startsWith(stripQuery(resourcesPath) + "/")) {
+                resourcesByPath.remove(resourcesPath);
+            }
+        }
+    }
+
+    public synchronized void invalidate(String resourcesPath) {
+        generation++;
+        resourcesByPath.remove(resourcesPath);
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        resourcesByPath.clear();
+    }
+
+    private String stripQuery(String path) {
+        int index = path.indexOf('?');
+        return index < 0 ? path : path.substring(0, index);
+    }
+
+    /**
+     * A resource created via AbstractResourceManager is known only by name until the list is fetched again.
+     */
+    private static class Resources {
+
+        private Map<String, String> namesToIds = new HashMap<>();
+        private Map<String, String> idsToNames = new HashMap<>();
+
+        public synchronized boolean contains(String nameOrId) {
+            return namesToIds.containsKey(nameOrId) || idsToNames.containsKey(nameOrId);
+        }
+
+        public synchronized void add(String name, String id) {
+            if (name != null) {
+                namesToIds.put(name, id);
+            }
+            if (id != null) {
+                idsToNames.put(id, name);
+            }
+        }
+
+        public synchronized void remove(String nameOrId) {
+            String id = namesToIds.containsKey(nameOrId) ? namesToIds.remove(nameOrId) : nameOrId;
+            if (id != null) {
+                String name = idsToNames.remove(id);
+                if (name != null) {
+                    namesToIds.remove(name);
+                }
+            }
+        }
+
+        public synchronized int size() {
+            return Math.max(namesToIds.size(), idsToNames.size());
+        }
+    }
+}
@@ -6,9 +6,14 @@ public class SaveReceipt {
 
     private String resourceId;
     private String payload;
+    private ParsedPayload parsedPayload;
     private ResponseEntity<String> response;
     private String path;
 
+    // Only set when an update was preceded by a comparison with the resource's current properties
+    private int updatedPropertyCount = -1;
+    private int unchangedPropertyCount = -1;
+
     public SaveReceipt(String resourceId, String payload, String path, ResponseEntity<String> response) {
         super();
         this.resourceId = resourceId;
@@ -17,6 +22,25 @@ public class SaveReceipt {
         this.response = response;
     }
 
+    public SaveReceipt(String resourceId, String payload, String path, ResponseEntity<String> response,
+            int updatedPropertyCount, int unchangedPropertyCount) {
+        this(resourceId, payload, path, response);
+        this.updatedPropertyCount = updatedPropertyCount;
+        this.unchangedPropertyCount = unchangedPropertyCount;
+    }
+
+    public SaveReceipt(String resourceId, ParsedPayload parsedPayload, String path, ResponseEntity<String> response) {
+        this(resourceId, parsedPayload.getPayload(), path, response);
+        this.parsedPayload = parsedPayload;
+    }
+
+    public SaveReceipt(String resourceId, ParsedPayload parsedPayload, String path, ResponseEntity<String> response,
+            int updatedPropertyCount, int unchangedPropertyCount) {
+        this(resourceId, parsedPayload, path, response);
+        this.updatedPropertyCount = updatedPropertyCount;
+        this.unchangedPropertyCount = unchangedPropertyCount;
+    }
+
     public boolean hasLocationHeader() {
         return response != null && response.getHeaders().getLocation() != null;
     }
@@ -36,4 +60,39 @@ public class SaveReceipt {
     public String getPayload() {
         return payload;
     }
+
+    /**
+     * @return the parsed form of the payload that was saved; the payload is parsed here if the receipt was constructed
+     *         with just the payload text
+     */
+    public ParsedPayload getParsedPayload() {
+        if (parsedPayload == null && payload != null) {
+            parsedPayload = new PayloadParser().parse(payload);
+        }
+        return parsedPayload;
+    }
+
+    /**
+     * @return true if the resource already existed and its current properties matched the payload, and thus no update
+     *         was sent
+     */
+    public boolean isUpdateSkipped() {
+        return updatedPropertyCount == 0;
+    }
+
+    /**
+     * @return the number of top-level properties that were sent in an update, or -1 if the payload wasn't compared
+     *         with the resource's current properties
+     */
+    public int getUpdatedPropertyCount() {
+        return updatedPropertyCount;
+    }
+
+    /**
+     * @return the number of top-level properties in the payload that matched the resource's current properties, or -1
+     *         if no comparison was made
+     */
+    public int getUnchangedPropertyCount() {
+        return unchangedPropertyCount;
+    }
 }
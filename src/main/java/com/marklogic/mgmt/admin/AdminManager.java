@@ -2,6 +2,7 @@ package com.marklogic.mgmt.admin;
 
 import java.io.FileOutputStream;
 import java.net.URI;
+import java.util.Map;
 
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
@@ -17,15 +18,20 @@ import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import com.marklogic.mgmt.AbstractManager;
+import com.marklogic.mgmt.util.DeployProfiler;
 import com.marklogic.rest.util.Fragment;
+import com.marklogic.rest.util.RestConfig;
 import com.marklogic.rest.util.RestTemplateUtil;
 
 public class AdminManager extends AbstractManager {
 
     private int waitForRestartCheckInterval = 1000;
     private int waitForRestartLimit = 30;
+    private final InheritableThreadLocal<RestartBatch> restartBatch = new InheritableThreadLocal<>();
+    private ClusterReadinessProbe readinessProbe;
     private RestTemplate restTemplate;
     private AdminConfig adminConfig;
+    private volatile DeployProfiler profiler;
 
     /**
      * Can use this constructor when the default values in ManageConfig will work.
@@ -126,18 +132,19 @@ public class AdminManager extends AbstractManager {
     }
 
     /**
-     * This used to be much more complex - the code first got the latest restart timestamp and then waited for a new
-     * value. But based on the "delay()" method implementation in marklogic-samplestack, we can just keep catching
-     * exceptions until the call to get the restart timestamp works.
+     * The restart timestamps of the cluster hosts are captured before the action is executed - or reused, if the
+     * ClusterReadinessProbe saw them moments ago - so that the wait for MarkLogic to restart can end as soon as every
+     * host reports a new timestamp.
      *
      * @param action
      */
     public void invokeActionRequiringRestart(ActionRequiringRestart action) {
         logger.info("Executing action that may require restarting MarkLogic");
+        Map<String, String> timestampsBefore = getReadinessProbe().getRestartTimestamps();
         boolean requiresRestart = action.execute();
         if (requiresRestart) {
             logger.info("Waiting for MarkLogic to restart...");
-            waitForRestart();
+            waitForRestart(timestampsBefore);
         }
     }
 
@@ -145,32 +152,169 @@ public class AdminManager extends AbstractManager {
         return restTemplate.getForEntity(adminConfig.buildUri("/admin/v1/timestamp"), String.class).getBody();
     }
 
+    /**
+     * Waits for MarkLogic to restart, unless a restart batch is in progress, in which case the wait is deferred until
+     * the batch ends.
+     */
     public void waitForRestart() {
-        waitForRestartInternal(1);
+        waitForRestart(null);
     }
 
-    private void waitForRestartInternal(int attempt) {
-        if (attempt > this.waitForRestartLimit) {
-            logger.error("Reached limit of " + waitForRestartLimit
-                    + ", and MarkLogic has not restarted yet; check MarkLogic status");
-            return;
+    /**
+     * @param timestampsBefore
+     *            the restart timestamps captured via the ClusterReadinessProbe before MarkLogic was asked to restart;
+     *            may be null
+     */
+    public void waitForRestart(Map<String, String> timestampsBefore) {
+        RestartBatch batch = restartBatch.get();
+        if (batch != null) {
+            synchronized (batch) {
+                if (batch.depth > 0) {
+                    // The latest timestamps are kept, as they're the most likely to precede the last restart
+                    if (!batch.restartPending || timestampsBefore != null) {
+                        batch.timestampsBefore = timestampsBefore;
+                    }
+                    batch.restartPending = true;
+                    logger.info("Restart batch in progress, so deferring wait for MarkLogic to restart");
+                    return;
+                }
+            }
         }
+        waitUntilReady(timestampsBefore);
+    }
+
+    /**
+     * Waits via the ClusterReadinessProbe, recording the time spent waiting with the DeployProfiler if one is set.
+     *
+     * @param timestampsBefore
+     */
+    protected void waitUntilReady(Map<String, String> timestampsBefore) {
+        long start = System.currentTimeMillis();
         try {
-            Thread.sleep(waitForRestartCheckInterval);
-            getLastRestartTimestamp();
-            if (logger.isInfoEnabled()) {
-                logger.info("Finished waiting for MarkLogic to restart");
+            getReadinessProbe().waitUntilReady(timestampsBefore);
+        } finally {
+            DeployProfiler p = profiler;
+            if (p != null) {
+                p.recordRestartWait(System.currentTimeMillis() - start);
+            }
+        }
+    }
+
+    /**
+     * Starts a restart batch - until endRestartBatch is called, any action requiring a restart is executed without
+     * waiting for MarkLogic to restart, and endRestartBatch then waits once if any action required a restart. Batches
+     * can be nested; only the outermost batch waits.
+     * <p>
+     * A batch belongs to the thread that starts it, so commands running at the same time on other threads are not
+     * affected by it. Threads started while a batch is in progress - e.g. to save resources in parallel - share the
+     * batch of the thread that started them.
+     * <p>
+     * Since MarkLogic may be restarting while the rest of the batch is sent, a ManageClient should retry its requests
+     * via a RestartBatchRetryInterceptor - see ManageClient.setRestartBatchAdminManager.
+     */
+    public void beginRestartBatch() {
+        RestartBatch batch = restartBatch.get();
+        if (batch != null) {
+            synchronized (batch) {
+                if (batch.depth > 0) {
+                    batch.depth++;
+                    return;
+                }
+            }
+        }
+        batch = new RestartBatch();
+        batch.depth = 1;
+        restartBatch.set(batch);
+    }
+
+    public void endRestartBatch() {
+        RestartBatch batch = restartBatch.get();
+        if (batch == null) {
+            return;
+        }
+        boolean waitNow;
+        Map<String, String> timestampsBefore;
+        synchronized (batch) {
+            if (batch.depth > 0) {
+                batch.depth--;
             }
-        } catch (Exception ex) {
-            attempt++;
-            logger.info("Waiting for MarkLogic to restart, attempt: " + attempt);
-            if (logger.isTraceEnabled()) {
-                logger.trace("Caught exception while waiting for MarkLogic to restart: " + ex.getMessage(), ex);
+            if (batch.depth > 0) {
+                return;
             }
-            waitForRestartInternal(attempt);
+            waitNow = batch.restartPending;
+            timestampsBefore = batch.timestampsBefore;
+            batch.restartPending = false;
+            batch.timestampsBefore = null;
+        }
+        restartBatch.remove();
+        if (waitNow) {
+            logger.info("Restart batch finished, waiting for MarkLogic to restart...");
+            waitUntilReady(timestampsBefore);
         }
     }
 
+    /**
+     * If a restart batch is in progress on the current thread and an action in it required a restart, waits now for
+     * MarkLogic to restart instead of when the batch ends. RestartBatchRetryInterceptor calls this when a Manage request
+     * fails because MarkLogic is restarting.
+     *
+     * @return true if a restart was pending and thus waited for
+     */
+    public boolean waitForPendingRestart() {
+        RestartBatch batch = restartBatch.get();
+        if (batch == null) {
+            return false;
+        }
+        Map<String, String> timestampsBefore;
+        synchronized (batch) {
+            if (batch.depth == 0 || !batch.restartPending) {
+                return false;
+            }
+            timestampsBefore = batch.timestampsBefore;
+            batch.restartPending = false;
+            batch.timestampsBefore = null;
+        }
+        logger.info("MarkLogic is restarting during a restart batch, so waiting for it to restart...");
+        waitUntilReady(timestampsBefore);
+        return true;
+    }
+
+    /**
+     * @return true if a restart batch is in progress on the current thread and an action in it required a restart
+     */
+    public boolean isRestartPending() {
+        RestartBatch batch = restartBatch.get();
+        if (batch == null) {
+            return false;
+        }
+        synchronized (batch) {
+            return batch.depth > 0 && batch.restartPending;
+        }
+    }
+
+    /**
+     * @return true if a restart batch is in progress on the current thread
+     */
+    public boolean isRestartBatchInProgress() {
+        RestartBatch batch = restartBatch.get();
+        if (batch == null) {
+            return false;
+        }
+        synchronized (batch) {
+            return batch.depth > 0;
+        }
+    }
+
+    /**
+     * The state of a restart batch, which is shared by the thread that started it and the threads started by that
+     * thread while it's in progress.
+     */
+    private static class RestartBatch {
+        private int depth;
+        private boolean restartPending;
+        private Map<String, String> timestampsBefore;
+    }
+
     /**
      * Set whether SSL FIPS is enabled on the cluster or not by running against /v1/eval on the given appServicesPort.
      */
@@ -179,11 +323,14 @@ public class AdminManager extends AbstractManager {
                 + "admin:save-configuration(admin:cluster-set-ssl-fips-enabled(admin:get-configuration(), " + enabled
                 + "()))";
 
+        RestConfig evalConfig = new RestConfig(adminConfig.getHost(), appServicesPort, adminConfig.getUsername(),
+                adminConfig.getPassword());
+        evalConfig.setHttpClientPool(adminConfig.getHttpClientPool());
+        final RestTemplate rt = RestTemplateUtil.newRestTemplate(evalConfig);
+
         invokeActionRequiringRestart(new ActionRequiringRestart() {
             @Override
             public boolean execute() {
-                RestTemplate rt = RestTemplateUtil.newRestTemplate(adminConfig.getHost(), appServicesPort,
-                        adminConfig.getUsername(), adminConfig.getPassword());
                 HttpHeaders headers = new HttpHeaders();
                 headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
                 MultiValueMap<String, String> map = new LinkedMultiValueMap<String, String>();
@@ -211,12 +358,37 @@ public class AdminManager extends AbstractManager {
         return getServerConfig().getElementValue("/m:host/m:version");
     }
 
-    public void setWaitForRestartCheckInterval(int waitForRestartCheckInterval) {
+    /**
+     * @return the probe used for waiting for MarkLogic to restart; by default, this only checks the Admin server on
+     *         the host in the AdminConfig, waiting at most waitForRestartCheckInterval between checks and giving up
+     *         after waitForRestartLimit intervals
+     */
+    public synchronized ClusterReadinessProbe getReadinessProbe() {
+        if (readinessProbe == null) {
+            readinessProbe = new ClusterReadinessProbe(adminConfig);
+            readinessProbe.setMaxDelay(waitForRestartCheckInterval);
+            readinessProbe.setTimeout((long) waitForRestartCheckInterval * waitForRestartLimit);
+        }
+        return readinessProbe;
+    }
+
+    public synchronized void setReadinessProbe(ClusterReadinessProbe readinessProbe) {
+        this.readinessProbe = readinessProbe;
+    }
+
+    public synchronized void setWaitForRestartCheckInterval(int waitForRestartCheckInterval) {
         this.waitForRestartCheckInterval = waitForRestartCheckInterval;
+        if (readinessProbe != null) {
+            readinessProbe.setMaxDelay(waitForRestartCheckInterval);
+            readinessProbe.setTimeout((long) waitForRestartCheckInterval * waitForRestartLimit);
+        }
     }
 
-    public void setWaitForRestartLimit(int waitForRestartLimit) {
+    public synchronized void setWaitForRestartLimit(int waitForRestartLimit) {
         this.waitForRestartLimit = waitForRestartLimit;
+        if (readinessProbe != null) {
+            readinessProbe.setTimeout((long) waitForRestartCheckInterval * waitForRestartLimit);
+        }
     }
 
 
@@ -286,4 +458,16 @@ public class AdminManager extends AbstractManager {
 	public RestTemplate getRestTemplate() {
 		return restTemplate;
 	}
+
+	public DeployProfiler getProfiler() {
+		return profiler;
+	}
+
+	/**
+	 * @param profiler
+	 *            if not null, the time spent waiting for MarkLogic to restart is recorded with the profiler
+	 */
+	public void setProfiler(DeployProfiler profiler) {
+		this.profiler = profiler;
+	}
 }
@@ -0,0 +1,395 @@
+package com.marklogic.mgmt.admin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+
+import com.marklogic.client.helper.LoggingObject;
+import com.marklogic.mgmt.ManageClient;
+import com.marklogic.mgmt.hosts.HostManager;
+import com.marklogic.rest.util.RestConfig;
+import com.marklogic.rest.util.RestTemplateUtil;
+
+/**
+ * Determines when MarkLogic is ready again after an action that may have restarted it. Each probe checks every host
+ * in parallel - the restart timestamp is fetched from the Admin server on each host, and each additional server, such
+ * as the Manage server, must respond on each host. Any HTTP response other than a 503 counts as responding, so the
+ * additional servers are not required to accept the Admin credentials.
+ * <p>
+ * MarkLogic is considered ready once every probe succeeds and either every host reports a restart timestamp different
+ * from the one captured before the action, or a probe has failed since waiting started. Otherwise, MarkLogic is assumed
+ * not to have restarted once every probe has succeeded for the no-restart grace period - when no timestamps were
+ * captured before the action - or for the longer restart detection window when they were; MarkLogic often keeps
+ * responding for a while after accepting a restart, so a longer window is used when a restart can be detected. Probes
+ * are spaced using exponential backoff with jitter, up to a maximum delay, until the timeout is reached.
+ * <p>
+ * Restart timestamps seen by a probe are reused as the baseline for the next action for up to timestampReuseTime, so
+ * consecutive actions don't each require fetching them first. Probes run on a shared pool of daemon threads.
+ * <p>
+ * By default, only the host in the Admin config is checked. If a ManageClient is set and checkAllHosts is true, every
+ * host in the cluster is checked; this requires the host names known to MarkLogic to be resolvable by this client.
+ */
+public class ClusterReadinessProbe extends LoggingObject {
+
+    private RestConfig adminConfig;
+    private List<RestConfig> serverConfigs = new ArrayList<>();
+    private List<String> hosts;
+    private ManageClient manageClient;
+    private boolean checkAllHosts = false;
+
+    private long initialDelay = 250;
+    private long maxDelay = 1000;
+    private double backoffMultiplier = 2;
+    private double jitter = 0.2;
+    private long timeout = 30000;
+    private long noRestartGracePeriod = 1000;
+    private long restartDetectionWindow = 3000;
+    private long timestampReuseTime = 5000;
+
+    private Map<String, RestTemplate> restTemplates = new ConcurrentHashMap<>();
+    private ExecutorService executor;
+    private Map<String, String> lastTimestamps;
+    private long lastTimestampsTime;
+
+    public ClusterReadinessProbe(RestConfig adminConfig) {
+        this.adminConfig = adminConfig;
+    }
+
+    /**
+     * @return the restart timestamp of each host, with a null value for a host whose timestamp couldn't be fetched;
+     *         timestamps seen by a probe within the last timestampReuseTime are returned without fetching them again
+     */
+    public Map<String, String> getRestartTimestamps() {
+        List<String> hostNames = getHostsToCheck();
+        synchronized (this) {
+            if (lastTimestamps != null && lastTimestamps.keySet().equals(new HashSet<>(hostNames))
+                    && System.currentTimeMillis() - lastTimestampsTime <= timestampReuseTime) {
+                return new HashMap<>(lastTimestamps);
+            }
+        }
+        return fetchTimestamps(hostNames, timeout);
+    }
+
+    /**
+     * @param timestampsBefore
+     *            the restart timestamps captured before the action that may have restarted MarkLogic; may be null
+     * @return true if MarkLogic is ready, or false if the timeout was reached first
+     */
+    public boolean waitUntilReady(Map<String, String> timestampsBefore) {
+        final long start = System.currentTimeMillis();
+        final long deadline = start + timeout;
+        List<String> hostNames = timestampsBefore != null && !timestampsBefore.isEmpty() ? new ArrayList<>(
+                timestampsBefore.keySet()) : getHostsToCheck();
+
+        final long noRestartTime = hasBaseline(timestampsBefore) ? restartDetectionWindow : noRestartGracePeriod;
+
+        long delay = initialDelay;
+        boolean probeFailed = false;
+        for (int attempt = 1;; attempt++) {
+            sleep(applyJitter(delay));
+
+            long remaining = Math.max(deadline - System.currentTimeMillis(), maxDelay);
+            Map<String, String> timestamps = fetchTimestamps(hostNames, remaining);
+            boolean responding = !timestamps.containsValue(null)
+                    && serversRespond(getExecutor(), hostNames, remaining);
+            if (responding) {
+                long elapsed = System.currentTimeMillis() - start;
+                if (probeFailed || allHostsRestarted(timestampsBefore, timestamps)) {
+                    if (logger.isInfoEnabled()) {
+                        logger.info(format("Finished waiting for MarkLogic to restart after %d ms", elapsed));
+                    }
+                    return true;
+                }
+                if (elapsed >= noRestartTime) {
+                    if (logger.isInfoEnabled()) {
+                        logger.info(format("MarkLogic did not restart within %d ms, so assuming it didn't need to",
+                                elapsed));
+                    }
+                    return true;
+                }
+            } else {
+                probeFailed = true;
+                logger.info("Waiting for MarkLogic to restart, attempt: " + attempt);
+            }
+
+            if (System.currentTimeMillis() >= deadline) {
+                logger.error(format("Reached timeout of %d ms, and MarkLogic is not ready yet; check MarkLogic status",
+                        timeout));
+                return false;
+            }
+            delay = Math.min(maxDelay, (long) (delay * backoffMultiplier));
+        }
+    }
+
+    /**
+     * Fetches the restart timestamp of each host, remembering them if every host responded so that the next call to
+     * getRestartTimestamps can reuse them.
+     */
+    private Map<String, String> fetchTimestamps(List<String> hostNames, long timeoutMillis) {
+        Map<String, String> timestamps = probeTimestamps(getExecutor(), hostNames, timeoutMillis);
+        if (!timestamps.containsValue(null)) {
+            synchronized (this) {
+                lastTimestamps = new HashMap<>(timestamps);
+                lastTimestampsTime = System.currentTimeMillis();
+            }
+        }
+        return timestamps;
+    }
+
+    /**
+     * @param timestampsBefore
+     * @return true if a timestamp was captured for every host before the action, and thus a restart can be detected
+     */
+    protected boolean hasBaseline(Map<String, String> timestampsBefore) {
+        return timestampsBefore != null && !timestampsBefore.isEmpty() && !timestampsBefore.containsValue(null);
+    }
+
+    protected boolean allHostsRestarted(Map<String, String> timestampsBefore, Map<String, String> timestamps) {
+        if (timestampsBefore == null || timestampsBefore.isEmpty()) {
+            return false;
+        }
+        for (String host : timestampsBefore.keySet()) {
+            String before = timestampsBefore.get(host);
+            if (before == null || before.equals(timestamps.get(host))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected Map<String, String> probeTimestamps(ExecutorService executor, List<String> hostNames, long timeoutMillis) {
+        Map<String, Future<String>> futures = new LinkedHashMap<>();
+        for (final String host : hostNames) {
+            futures.put(host, executor.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    return getRestTemplate(adminConfig, host).getForObject(
+                            buildConfig(adminConfig, host).buildUri("/admin/v1/timestamp"), String.class);
+                }
+            }));
+        }
+        Map<String, String> timestamps = new HashMap<>();
+        for (Map.Entry<String, Future<String>> entry : futures.entrySet()) {
+            timestamps.put(entry.getKey(), getResult(entry.getValue(), timeoutMillis));
+        }
+        return timestamps;
+    }
+
+    protected boolean serversRespond(ExecutorService executor, List<String> hostNames, long timeoutMillis) {
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (final String host : hostNames) {
+            for (final RestConfig serverConfig : serverConfigs) {
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return serverResponds(serverConfig, host);
+                    }
+                }));
+            }
+        }
+        boolean responding = true;
+        for (Future<Boolean> future : futures) {
+            if (!Boolean.TRUE.equals(getResult(future, timeoutMillis))) {
+                responding = false;
+            }
+        }
+        return responding;
+    }
+
+    protected boolean serverResponds(RestConfig serverConfig, String host) {
+        try {
+            getRestTemplate(serverConfig, host).getForEntity(buildConfig(serverConfig, host).buildUri("/"),
+                    String.class);
+            return true;
+        } catch (HttpStatusCodeException ex) {
+            return !HttpStatus.SERVICE_UNAVAILABLE.equals(ex.getStatusCode());
+        }
+    }
+
+    private <T> T getResult(Future<T> future, long timeoutMillis) {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return null;
+        } catch (Exception ex) {
+            if (logger.isTraceEnabled()) {
+                logger.trace("Caught exception while probing MarkLogic: " + ex.getMessage(), ex);
+            }
+            future.cancel(true);
+            return null;
+        }
+    }
+
+    /**
+     * @return the hosts to check; falls back to the host in the Admin config if the cluster hosts can't be listed
+     */
+    protected synchronized List<String> getHostsToCheck() {
+        if (hosts != null) {
+            return hosts;
+        }
+        if (checkAllHosts && manageClient != null) {
+            try {
+                List<String> names = new HostManager(manageClient).getHostNames();
+                if (!names.isEmpty()) {
+                    hosts = names;
+                    return hosts;
+                }
+            } catch (Exception ex) {
+                logger.warn("Unable to list cluster hosts, so only checking " + adminConfig.getHost() + "; cause: "
+                        + ex.getMessage());
+            }
+        }
+        List<String> list = new ArrayList<>();
+        list.add(adminConfig.getHost());
+        return list;
+    }
+
+    protected RestTemplate getRestTemplate(RestConfig config, String host) {
+        String key = config.getScheme() + "://" + host + ":" + config.getPort();
+        RestTemplate rt = restTemplates.get(key);
+        if (rt == null) {
+            rt = RestTemplateUtil.newRestTemplate(buildConfig(config, host), adminConfig.getUsername(),
+                    adminConfig.getPassword());
+            restTemplates.put(key, rt);
+        }
+        return rt;
+    }
+
+    private RestConfig buildConfig(RestConfig config, String host) {
+        RestConfig c = new RestConfig(host, config.getPort(), config.getUsername(), config.getPassword());
+        c.setScheme(config.getScheme());
+        c.setHttpClientPool(config.getHttpClientPool());
+        return c;
+    }
+
+    /**
+     * @return the pool that probes run on; its threads are daemon threads that end once idle for a minute, so the pool
+     *         never needs to be shut down
+     */
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ml-readiness-");
+            threadFactory.setDaemon(true);
+            executor = Executors.newCachedThreadPool(threadFactory);
+        }
+        return executor;
+    }
+
+    protected long applyJitter(long delay) {
+        if (jitter <= 0) {
+            return delay;
+        }
+        double factor = 1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+        return (long) (delay * factor);
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for MarkLogic to restart", ex);
+        }
+    }
+
+    /**
+     * @param serverConfigs
+     *            servers - e.g. Manage or App-Services - that must respond on every host; only the port and scheme of
+     *            each config are used
+     */
+    public void setServerConfigs(List<RestConfig> serverConfigs) {
+        this.serverConfigs = serverConfigs != null ? serverConfigs : new ArrayList<RestConfig>();
+    }
+
+    public List<RestConfig> getServerConfigs() {
+        return serverConfigs;
+    }
+
+    /**
+     * @param hosts
+     *            the hosts to check; if null, the hosts are determined via the ManageClient or the Admin config
+     */
+    public synchronized void setHosts(List<String> hosts) {
+        this.hosts = hosts;
+        this.lastTimestamps = null;
+    }
+
+    public synchronized void setManageClient(ManageClient manageClient) {
+        this.manageClient = manageClient;
+    }
+
+    public synchronized void setCheckAllHosts(boolean checkAllHosts) {
+        this.checkAllHosts = checkAllHosts;
+    }
+
+    public void setInitialDelay(long initialDelay) {
+        this.initialDelay = initialDelay;
+    }
+
+    public void setMaxDelay(long maxDelay) {
+        this.maxDelay = maxDelay;
+    }
+
+    public void setBackoffMultiplier(double backoffMultiplier) {
+        this.backoffMultiplier = backoffMultiplier;
+    }
+
+    public void setJitter(double jitter) {
+        this.jitter = jitter;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * @param noRestartGracePeriod
+     *            how long to wait for a restart when no restart timestamps were captured before the action
+     */
+    public void setNoRestartGracePeriod(long noRestartGracePeriod) {
+        this.noRestartGracePeriod = noRestartGracePeriod;
+    }
+
+    /**
+     * @param restartDetectionWindow
+     *            how long to wait for a restart when restart timestamps were captured before the action, but no host
+     *            has reported a new one and every probe has succeeded
+     */
+    public void setRestartDetectionWindow(long restartDetectionWindow) {
+        this.restartDetectionWindow = restartDetectionWindow;
+    }
+
+    /**
+     * @param timestampReuseTime
+     *            how long restart timestamps seen by a probe can be reused as the baseline for the next action; 0 to
+     *            always fetch them
+     */
+    public synchronized void setTimestampReuseTime(long timestampReuseTime) {
+        this.timestampReuseTime = timestampReuseTime;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+}
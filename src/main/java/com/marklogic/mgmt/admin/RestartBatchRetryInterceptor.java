@@ -0,0 +1,50 @@
+package com.marklogic.mgmt.admin;
+
+import java.io.IOException;
+import java.net.ConnectException;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * When a restart batch on the AdminManager has deferred waiting for MarkLogic to restart, a request sent later in the
+ * batch may reach MarkLogic while it's restarting. If such a request can't connect, gets a 503, or - for a method other
+ * than POST - loses its connection, this waits for MarkLogic to restart via AdminManager.waitForPendingRestart and
+ * then sends the request once more. Requests are never retried when no restart is pending on the current thread.
+ * <p>
+ * Sending the request again skips any interceptor after this one on the RestTemplate, so ManageClient adds it last.
+ */
+public class RestartBatchRetryInterceptor implements ClientHttpRequestInterceptor {
+
+    private AdminManager adminManager;
+
+    public RestartBatchRetryInterceptor(AdminManager adminManager) {
+        this.adminManager = adminManager;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException ex) {
+            // A POST that lost its connection may have been processed, so only one that never connected is retried
+            boolean retryable = ex instanceof ConnectException || !HttpMethod.POST.equals(request.getMethod());
+            if (retryable && adminManager.waitForPendingRestart()) {
+                return execution.execute(request, body);
+            }
+            throw ex;
+        }
+        if (HttpStatus.SERVICE_UNAVAILABLE.equals(response.getStatusCode()) && adminManager.isRestartPending()) {
+            response.close();
+            adminManager.waitForPendingRestart();
+            return execution.execute(request, body);
+        }
+        return response;
+    }
+}
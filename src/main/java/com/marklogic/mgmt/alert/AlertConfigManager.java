@@ -2,6 +2,7 @@ package com.marklogic.mgmt.alert;
 
 import com.marklogic.mgmt.AbstractResourceManager;
 import com.marklogic.mgmt.ManageClient;
+import com.marklogic.mgmt.ParsedPayload;
 import com.marklogic.mgmt.SaveReceipt;
 
 public class AlertConfigManager extends AbstractResourceManager {
@@ -24,8 +25,8 @@ public class AlertConfigManager extends AbstractResourceManager {
     }
 
     @Override
-    protected String[] getUpdateResourceParams(String payload) {
-        return new String[] { "uri", payloadParser.getPayloadFieldValue(payload, "uri") };
+    protected String[] getUpdateResourceParams(ParsedPayload payload) {
+        return new String[] { "uri", payload.getFieldValue("uri") };
     }
 
     @Override
@@ -39,7 +40,7 @@ public class AlertConfigManager extends AbstractResourceManager {
      * ensure that the domains are setup correctly.
      */
     @Override
-    public SaveReceipt save(String payload) {
+    public SaveReceipt save(ParsedPayload payload) {
         SaveReceipt receipt = super.save(payload);
         if (receipt.hasLocationHeader()) {
             if (logger.isInfoEnabled()) {
@@ -8,6 +8,7 @@ import com.marklogic.mgmt.admin.AdminManager;
 import com.marklogic.rest.util.Fragment;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
@@ -41,7 +42,9 @@ public class ClusterManager extends AbstractManager {
 		    @Override
 		    public boolean execute() {
 		    	try {
-				    putPayload(manageClient, "/manage/v2/properties", payload);
+				    // A 202 is returned when the change requires a restart
+				    return HttpStatus.ACCEPTED.equals(
+					    putPayload(manageClient, "/manage/v2/properties", payload).getStatusCode());
 			    } catch (ResourceAccessException rae) {
 				    /**
 				     * This is odd. Plenty of other Manage endpoints cause ML to restart, but this one seems to trigger
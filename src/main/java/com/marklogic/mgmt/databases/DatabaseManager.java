@@ -1,11 +1,15 @@
 package com.marklogic.mgmt.databases;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.marklogic.mgmt.AbstractResourceManager;
 import com.marklogic.mgmt.ManageClient;
+import com.marklogic.mgmt.ParsedPayload;
 import com.marklogic.mgmt.forests.ForestManager;
 import com.marklogic.rest.util.Fragment;
 
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 public class DatabaseManager extends AbstractResourceManager {
 
@@ -19,6 +23,35 @@ public class DatabaseManager extends AbstractResourceManager {
         super(manageClient);
     }
 
+    public String getDatabaseName(String payload) {
+        return getResourceId(payload);
+    }
+
+    /**
+     * @param payload
+     * @return the names of the triggers, schema, and security databases referenced by the database in the payload,
+     *         excluding the database itself
+     */
+    public Set<String> getReferencedDatabaseNames(String payload) {
+        Set<String> names = new LinkedHashSet<>();
+        String[] fieldNames = new String[] { "triggers-database", "schema-database", "security-database" };
+        if (payloadParser.isJsonPayload(payload)) {
+            JsonNode node = payloadParser.parseJson(payload);
+            for (String fieldName : fieldNames) {
+                if (node.has(fieldName)) {
+                    names.add(node.get(fieldName).asText());
+                }
+            }
+        } else {
+            Fragment f = new Fragment(payload);
+            for (String fieldName : fieldNames) {
+                names.addAll(f.getElementValues(format("/node()/*[local-name(.) = '%s']", fieldName)));
+            }
+        }
+        names.remove(getDatabaseName(payload));
+        return names;
+    }
+
     /**
      * This will catch and log any exception by default, as the most frequent reason why this fails is because the
      * database doesn't exist yet.
@@ -148,7 +181,7 @@ public class DatabaseManager extends AbstractResourceManager {
     }
 
     @Override
-    protected String[] getDeleteResourceParams(String payload) {
+    protected String[] getDeleteResourceParams(ParsedPayload payload) {
         return forestDelete != null ? new String[] { "forest-delete", forestDelete } : new String[] {};
     }
 
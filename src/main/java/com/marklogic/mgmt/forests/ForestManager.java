@@ -3,7 +3,11 @@ package com.marklogic.mgmt.forests;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.marklogic.mgmt.AbstractResourceManager;
 import com.marklogic.mgmt.ManageClient;
+import com.marklogic.mgmt.ParsedPayload;
 import com.marklogic.rest.util.Fragment;
+import com.marklogic.rest.util.ListItemsStreamHandler;
+import com.marklogic.rest.util.ResourcesFragment;
+import org.jdom2.Element;
 
 import java.util.HashMap;
 import java.util.Iterator;
@@ -35,7 +39,19 @@ public class ForestManager extends AbstractResourceManager {
     }
 
     public void createJsonForestWithName(String name, String host) {
-        if (forestExists(name)) {
+        createJsonForestWithName(name, host, null);
+    }
+
+    /**
+     * @param name
+     * @param host
+     * @param existingForests
+     *            optional list of forests fetched beforehand, which is checked instead of fetching the list of forests
+     *            again; useful when creating many forests at once
+     */
+    public void createJsonForestWithName(String name, String host, ResourcesFragment existingForests) {
+        boolean exists = existingForests != null ? existingForests.resourceExists(name) : forestExists(name);
+        if (exists) {
             logger.info(format("Forest already exists with name, so not creating: %s", name));
         } else {
             logger.info(format("Creating forest %s on host %s", name, host));
@@ -84,10 +100,19 @@ public class ForestManager extends AbstractResourceManager {
         getManageClient().postJson("/manage/v2/forests", json);
     }
 
-    public boolean forestExists(String nameOrId) {
-        Fragment f = getManageClient().getXml("/manage/v2/forests");
-        return f.elementExists(format("/node()/f:list-items/f:list-item[f:nameref = '%s' or f:idref = '%s']", nameOrId,
-                nameOrId));
+    /**
+     * Streams the list of forests, stopping as soon as a matching forest is found.
+     */
+    public boolean forestExists(final String nameOrId) {
+        ListItemsStreamHandler handler = new ListItemsStreamHandler(1) {
+            @Override
+            protected boolean accept(Element listItem) {
+                return nameOrId.equals(getChildValue(listItem, "nameref"))
+                        || nameOrId.equals(getChildValue(listItem, "idref"));
+            }
+        };
+        getManageClient().streamXml("/manage/v2/forests", handler);
+        return !handler.getListItems().isEmpty();
     }
 
     public void attachForest(String forestIdOrName, String databaseIdOrName) {
@@ -188,7 +213,7 @@ public class ForestManager extends AbstractResourceManager {
     }
 
     @Override
-    protected String[] getDeleteResourceParams(String payload) {
+    protected String[] getDeleteResourceParams(ParsedPayload payload) {
         return this.deleteLevel != null ? new String[] { "level", deleteLevel } : null;
     }
 
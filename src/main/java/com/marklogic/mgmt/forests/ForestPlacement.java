@@ -0,0 +1,40 @@
+package com.marklogic.mgmt.forests;
+
+/**
+ * A single forest in a ForestPlacementPlan. The primary forest name is null unless the forest is a replica.
+ */
+public class ForestPlacement {
+
+    private String forestName;
+    private PlacementHost host;
+    private String primaryForestName;
+
+    public ForestPlacement(String forestName, PlacementHost host, String primaryForestName) {
+        this.forestName = forestName;
+        this.host = host;
+        this.primaryForestName = primaryForestName;
+    }
+
+    public boolean isReplica() {
+        return primaryForestName != null;
+    }
+
+    @Override
+    public String toString() {
+        return primaryForestName != null
+                ? String.format("%s on %s (replica of %s)", forestName, host.getName(), primaryForestName)
+                : String.format("%s on %s", forestName, host.getName());
+    }
+
+    public String getForestName() {
+        return forestName;
+    }
+
+    public PlacementHost getHost() {
+        return host;
+    }
+
+    public String getPrimaryForestName() {
+        return primaryForestName;
+    }
+}
@@ -0,0 +1,66 @@
+package com.marklogic.mgmt.forests;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The forests assigned to hosts by a ForestPlacementPlanner, in the order in which they were planned. Nothing is
+ * created by a plan; the commands that build a plan create the forests it describes.
+ */
+public class ForestPlacementPlan {
+
+    private List<ForestPlacement> placements = new ArrayList<>();
+
+    public void add(ForestPlacement placement) {
+        placements.add(placement);
+    }
+
+    public List<ForestPlacement> getPlacements() {
+        return placements;
+    }
+
+    /**
+     * @return the names of the planned primary forests, keyed by host name
+     */
+    public Map<String, List<String>> getPrimaryForestNamesByHostName() {
+        Map<String, List<String>> map = new LinkedHashMap<>();
+        for (ForestPlacement p : placements) {
+            if (!p.isReplica()) {
+                String hostName = p.getHost().getName();
+                List<String> names = map.get(hostName);
+                if (names == null) {
+                    names = new ArrayList<>();
+                    map.put(hostName, names);
+                }
+                names.add(p.getForestName());
+            }
+        }
+        return map;
+    }
+
+    /**
+     * @param primaryForestName
+     * @return a map where the keys are the planned replica forest names for the given primary forest, and the value
+     *         of each key is the ID of the host that the replica is planned for
+     */
+    public Map<String, String> getReplicaNamesAndHostIds(String primaryForestName) {
+        Map<String, String> map = new LinkedHashMap<>();
+        for (ForestPlacement p : placements) {
+            if (primaryForestName.equals(p.getPrimaryForestName())) {
+                map.put(p.getForestName(), p.getHost().getId());
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Forest placement plan:");
+        for (ForestPlacement p : placements) {
+            sb.append("\n  ").append(p);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,171 @@
+package com.marklogic.mgmt.forests;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.marklogic.client.helper.LoggingObject;
+
+/**
+ * Assigns new primary and replica forests to hosts so that the number of forests on each host, relative to the host's
+ * weight, stays as even as possible. The forests that each host already has are taken into account, as are the
+ * forests planned so far, so a single planner can be used for several databases in a row.
+ * <p>
+ * A replica is never placed on the host of its primary forest or of another replica of that forest, and hosts in a
+ * zone that doesn't yet hold a copy of the forest are preferred. If a group name is set, only hosts in that group are
+ * assigned forests. Ties are broken by the order of the hosts, so hosts with the same load and weight are assigned
+ * forests round-robin.
+ * <p>
+ * Each plan method adds to the plan returned by getPlan; the planner is not thread-safe.
+ */
+public class ForestPlacementPlanner extends LoggingObject {
+
+    private List<PlacementHost> hosts;
+    private String groupName;
+    private Map<String, Integer> plannedCounts = new HashMap<>();
+    private ForestPlacementPlan plan = new ForestPlacementPlan();
+
+    public ForestPlacementPlanner(List<PlacementHost> hosts) {
+        this.hosts = hosts;
+    }
+
+    /**
+     * @param weightsByHostName
+     *            weights to apply to the hosts with the given names; hosts not in the map keep their current weight
+     */
+    public void setHostWeights(Map<String, Double> weightsByHostName) {
+        if (weightsByHostName != null) {
+            for (PlacementHost host : hosts) {
+                Double weight = weightsByHostName.get(host.getName());
+                if (weight != null) {
+                    host.setWeight(weight);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param forestNames
+     * @return the placements of the given primary forests, which are also added to the plan
+     */
+    public List<ForestPlacement> planPrimaries(List<String> forestNames) {
+        List<ForestPlacement> list = new ArrayList<>();
+        for (String forestName : forestNames) {
+            PlacementHost host = selectHost(eligibleHosts(), new HashSet<String>());
+            if (host == null) {
+                throw new IllegalStateException("No host is eligible for forest: " + forestName);
+            }
+            list.add(place(forestName, host, null));
+        }
+        return list;
+    }
+
+    /**
+     * @param primaryForestName
+     * @param primaryHostId
+     * @param replicaCount
+     * @return a map where the keys are replica forest names, and the value of each key is the ID of the host that the
+     *         replica is planned for; fewer replicas than requested are planned if there aren't enough eligible hosts
+     */
+    public Map<String, String> planReplicas(String primaryForestName, String primaryHostId, int replicaCount) {
+        Set<String> usedZones = new HashSet<>();
+        List<PlacementHost> candidates = new ArrayList<>();
+        for (PlacementHost host : hosts) {
+            if (host.getId().equals(primaryHostId)) {
+                addZone(usedZones, host);
+            }
+        }
+        for (PlacementHost host : eligibleHosts()) {
+            if (!host.getId().equals(primaryHostId)) {
+                candidates.add(host);
+            }
+        }
+
+        for (int j = 1; j <= replicaCount; j++) {
+            PlacementHost host = selectHost(candidates, usedZones);
+            if (host == null) {
+                logger.warn(format("Only able to plan %d of %d replicas for forest %s; not enough eligible hosts",
+                        j - 1, replicaCount, primaryForestName));
+                break;
+            }
+            place(primaryForestName + "-replica-" + j, host, primaryForestName);
+            candidates.remove(host);
+            addZone(usedZones, host);
+        }
+        return plan.getReplicaNamesAndHostIds(primaryForestName);
+    }
+
+    /**
+     * @param candidates
+     * @param usedZones
+     * @return the candidate with the lowest load, preferring hosts outside the used zones; null if there are no
+     *         candidates
+     */
+    protected PlacementHost selectHost(List<PlacementHost> candidates, Set<String> usedZones) {
+        PlacementHost best = null;
+        boolean bestInUsedZone = false;
+        double bestLoad = 0;
+        for (PlacementHost host : candidates) {
+            boolean inUsedZone = host.getZone() != null && usedZones.contains(host.getZone());
+            double load = getLoad(host);
+            if (best == null || (bestInUsedZone && !inUsedZone) || (bestInUsedZone == inUsedZone && load < bestLoad)) {
+                best = host;
+                bestInUsedZone = inUsedZone;
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+
+    protected double getLoad(PlacementHost host) {
+        Integer planned = plannedCounts.get(host.getId());
+        return (host.getForestCount() + (planned != null ? planned : 0)) / host.getWeight();
+    }
+
+    protected List<PlacementHost> eligibleHosts() {
+        List<PlacementHost> list = new ArrayList<>();
+        for (PlacementHost host : hosts) {
+            if (host.getWeight() > 0 && (groupName == null || groupName.equals(host.getGroupName()))) {
+                list.add(host);
+            }
+        }
+        return list;
+    }
+
+    private ForestPlacement place(String forestName, PlacementHost host, String primaryForestName) {
+        Integer planned = plannedCounts.get(host.getId());
+        plannedCounts.put(host.getId(), planned != null ? planned + 1 : 1);
+        ForestPlacement placement = new ForestPlacement(forestName, host, primaryForestName);
+        plan.add(placement);
+        return placement;
+    }
+
+    private void addZone(Set<String> zones, PlacementHost host) {
+        if (host.getZone() != null) {
+            zones.add(host.getZone());
+        }
+    }
+
+    public ForestPlacementPlan getPlan() {
+        return plan;
+    }
+
+    public List<PlacementHost> getHosts() {
+        return hosts;
+    }
+
+    public String getGroupName() {
+        return groupName;
+    }
+
+    /**
+     * @param groupName
+     *            if set, only hosts in this group are assigned forests
+     */
+    public void setGroupName(String groupName) {
+        this.groupName = groupName;
+    }
+}
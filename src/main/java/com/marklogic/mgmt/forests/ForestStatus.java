@@ -20,6 +20,13 @@ public class ForestStatus extends Fragment {
         return id != null && masterForestId != null && id.equals(masterForestId);
     }
 
+    /**
+     * @return the ID of the host that the forest is on, or null if the status doesn't identify the host
+     */
+    public String getHostId() {
+        return getElementValue("/f:forest-status/f:relations/f:relation-group[f:typeref = 'hosts']/f:relation/f:idref");
+    }
+
     public boolean hasReplicas() {
         return !getElementValues("/f:forest-status/f:status-properties/f:replica-forests/f:replica-forest").isEmpty();
     }
@@ -0,0 +1,67 @@
+package com.marklogic.mgmt.forests;
+
+/**
+ * Describes a host as input to a ForestPlacementPlanner - its group, its zone, and how many forests it already has.
+ * The weight is relative to the other hosts; a host with a weight of 2 is expected to hold twice as many forests as a
+ * host with a weight of 1, and a host with a weight of zero or less is not assigned any forests.
+ */
+public class PlacementHost {
+
+    private String id;
+    private String name;
+    private String groupName;
+    private String zone;
+    private int forestCount;
+    private double weight = 1.0;
+
+    public PlacementHost(String id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[host: %s, group: %s, zone: %s, forests: %d, weight: %s]", name, groupName, zone,
+                forestCount, weight);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getGroupName() {
+        return groupName;
+    }
+
+    public void setGroupName(String groupName) {
+        this.groupName = groupName;
+    }
+
+    public String getZone() {
+        return zone;
+    }
+
+    public void setZone(String zone) {
+        this.zone = zone;
+    }
+
+    public int getForestCount() {
+        return forestCount;
+    }
+
+    public void setForestCount(int forestCount) {
+        this.forestCount = forestCount;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    public void setWeight(double weight) {
+        this.weight = weight;
+    }
+}
@@ -3,6 +3,7 @@ package com.marklogic.mgmt.groups;
 import com.marklogic.mgmt.AbstractResourceManager;
 import com.marklogic.mgmt.DeleteReceipt;
 import com.marklogic.mgmt.ManageClient;
+import com.marklogic.mgmt.ParsedPayload;
 
 public class GroupManager extends AbstractResourceManager {
 
@@ -16,7 +17,7 @@ public class GroupManager extends AbstractResourceManager {
     }
 
     @Override
-    public DeleteReceipt delete(String payload, String... resourceUrlParams) {
+    public DeleteReceipt delete(ParsedPayload payload, String... resourceUrlParams) {
         String resourceId = getResourceId(payload);
         if (resourceId != null && resourceId.toUpperCase().equals("DEFAULT")) {
             return new DeleteReceipt(resourceId, null, false);
@@ -1,10 +1,15 @@
 package com.marklogic.mgmt.hosts;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import org.jdom2.Element;
+
 import com.marklogic.mgmt.AbstractManager;
 import com.marklogic.mgmt.ManageClient;
+import com.marklogic.mgmt.forests.PlacementHost;
 import com.marklogic.rest.util.Fragment;
+import com.marklogic.rest.util.ListItemsStreamHandler;
 
 public class HostManager extends AbstractManager {
 
@@ -15,14 +20,41 @@ public class HostManager extends AbstractManager {
     }
 
     public List<String> getHostIds() {
-        return getHosts().getElementValues("/h:host-default-list/h:list-items/h:list-item/h:idref");
+        return streamHosts().getValues("idref");
     }
 
     public List<String> getHostNames() {
-        return getHosts().getElementValues("/h:host-default-list/h:list-items/h:list-item/h:nameref");
+        return streamHosts().getValues("nameref");
+    }
+
+    /**
+     * Fetches the default view and properties of each host in order to build the input for a ForestPlacementPlanner.
+     *
+     * @return a PlacementHost for each host, with its group, zone, and count of forests
+     */
+    public List<PlacementHost> getPlacementHosts() {
+        List<PlacementHost> hosts = new ArrayList<>();
+        for (Element item : streamHosts().getListItems()) {
+            String id = ListItemsStreamHandler.getChildValue(item, "idref");
+            PlacementHost host = new PlacementHost(id, ListItemsStreamHandler.getChildValue(item, "nameref"));
+            Fragment props = client.getXml(format("/manage/v2/hosts/%s/properties", id));
+            host.setGroupName(props.getElementValue("/node()/h:group"));
+            host.setZone(props.getElementValue("/node()/h:zone"));
+            Fragment f = client.getXml(format("/manage/v2/hosts/%s", id));
+            host.setForestCount(f.getElementValues(
+                    "/node()/h:relations/h:relation-group[h:typeref = 'forests']/h:relation/h:idref").size());
+            hosts.add(host);
+        }
+        return hosts;
     }
 
     public Fragment getHosts() {
         return client.getXml("/manage/v2/hosts");
     }
+
+    protected ListItemsStreamHandler streamHosts() {
+        ListItemsStreamHandler handler = new ListItemsStreamHandler();
+        client.streamXml("/manage/v2/hosts", handler);
+        return handler;
+    }
 }
@@ -4,6 +4,7 @@ import com.marklogic.mgmt.AbstractManager;
 import com.marklogic.mgmt.AbstractResourceManager;
 import com.marklogic.mgmt.ManageClient;
 import com.marklogic.rest.util.Fragment;
+import com.marklogic.rest.util.ListItemsStreamHandler;
 import org.jdom2.Element;
 
 import java.util.List;
@@ -24,7 +25,17 @@ public class RequestManager extends AbstractManager {
 		return getRequestsForRelationId(id).size();
 	}
 
-	public List<Element> getRequestsForRelationId(String id) {
-		return getRequests().getElements(format("//req:list-items/req:list-item[req:relation-id = '%s']", id));
+	/**
+	 * Streams the list of requests so that only the matching list items are built in memory.
+	 */
+	public List<Element> getRequestsForRelationId(final String id) {
+		ListItemsStreamHandler handler = new ListItemsStreamHandler() {
+			@Override
+			protected boolean accept(Element listItem) {
+				return id.equals(getChildValue(listItem, "relation-id"));
+			}
+		};
+		client.streamXml("/manage/v2/requests", handler);
+		return handler.getListItems();
 	}
 }
@@ -1,11 +1,11 @@
 package com.marklogic.mgmt.security;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.marklogic.mgmt.AbstractResourceManager;
 import com.marklogic.mgmt.ManageClient;
+import com.marklogic.mgmt.ParsedPayload;
 import com.marklogic.mgmt.SaveReceipt;
-import com.marklogic.rest.util.Fragment;
 import com.marklogic.rest.util.ResourcesFragment;
+import org.jdom2.Element;
 import org.springframework.http.ResponseEntity;
 
 import java.util.ArrayList;
@@ -47,7 +47,7 @@ public class AmpManager extends AbstractResourceManager {
 	 * document-uri, namespace, and modules-database.
 	 */
 	@Override
-	public SaveReceipt save(String payload) {
+	public SaveReceipt save(ParsedPayload payload) {
 		String resourceId = getResourceId(payload);
 		String label = getResourceName();
 		String path = null;
@@ -57,12 +57,17 @@ public class AmpManager extends AbstractResourceManager {
 		} else {
 			logger.info(format("Creating %s: %s", label, resourceId));
 			path = getCreateResourcePath(payload);
-			response = postPayload(getManageClient(), path, payload);
+			response = postPayload(getManageClient(), path, payload.getPayload());
 			logger.info(format("Created %s: %s", label, resourceId));
 		}
 		return new SaveReceipt(resourceId, payload, path, response);
 	}
 
+	@Override
+	public boolean payloadExists(String payload) {
+		return ampExists(payloadParser.parse(payload));
+	}
+
 	/**
 	 * Uses local-name, document-uri, modules-database, and namespace to determine if the amp exists. Since we
 	 * do this comparison against the XML returned by /manage/v2/amps, if no modules-database is set, we have
@@ -72,28 +77,27 @@ public class AmpManager extends AbstractResourceManager {
 	 * @return
 	 */
 	public boolean ampExists(String payload) {
+		return ampExists(payloadParser.parse(payload));
+	}
+
+	public boolean ampExists(ParsedPayload payload) {
 		String resourceId = getResourceId(payload);
 		AmpParams params = getAmpParams(payload);
 		ResourcesFragment resources = getAsXml();
 
-		String xpath = "/node()/*[local-name(.) = 'list-items']/node()[" +
-			"(*[local-name(.) = 'nameref'] = '%s' or *[local-name(.) = 'idref'] = '%s')" +
-			" and *[local-name(.) = 'document-uri'] = '%s'";
-		xpath = format(xpath, resourceId, resourceId, params.documentUri);
-		if (params.namespace != null) {
-			xpath += format(" and *[local-name(.) = 'namespace'] = '%s'", params.namespace);
-		}
-		if (params.modulesDatabase != null) {
-			xpath += format(" and *[local-name(.) = 'modules-database'] = '%s'", params.modulesDatabase);
-		} else {
-			xpath += format(" and *[local-name(.) = 'modules-database'] = 'filesystem'");
+		String modulesDatabase = params.modulesDatabase != null ? params.modulesDatabase : "filesystem";
+		for (Element item : resources.getListItemsForNameOrId(resourceId)) {
+			if (params.documentUri.equals(resources.getChildValue(item, "document-uri"))
+				&& modulesDatabase.equals(resources.getChildValue(item, "modules-database"))
+				&& (params.namespace == null || params.namespace.equals(resources.getChildValue(item, "namespace")))) {
+				return true;
+			}
 		}
-		xpath += "]";
-		return resources.elementExists(xpath);
+		return false;
 	}
 
 	@Override
-	protected String[] getUpdateResourceParams(String payload) {
+	protected String[] getUpdateResourceParams(ParsedPayload payload) {
 		List<String> params = new ArrayList<String>();
 		AmpParams ampParams = getAmpParams(payload);
 		params.add("document-uri");
@@ -118,7 +122,7 @@ public class AmpManager extends AbstractResourceManager {
 	 * won't find the amp with all the params, and the call will succeed without deleting anything.
 	 */
 	@Override
-	protected String[] getDeleteResourceParams(String payload) {
+	protected String[] getDeleteResourceParams(ParsedPayload payload) {
 		List<String> params = new ArrayList<String>();
 		AmpParams ampParams = getAmpParams(payload);
 		params.add("document-uri");
@@ -140,28 +144,14 @@ public class AmpManager extends AbstractResourceManager {
 	 * needed to uniquely refer to an amp.
 	 */
 	public AmpParams getAmpParams(String payload) {
+		return getAmpParams(payloadParser.parse(payload));
+	}
+
+	public AmpParams getAmpParams(ParsedPayload payload) {
 		AmpParams params = new AmpParams();
-		if (payloadParser.isJsonPayload(payload)) {
-			JsonNode node = payloadParser.parseJson(payload);
-			params.documentUri = node.get("document-uri").asText();
-			if (node.has("namespace")) {
-				params.namespace = node.get("namespace").asText();
-			}
-			if (node.has("modules-database")) {
-				params.modulesDatabase = node.get("modules-database").asText();
-			}
-		} else {
-			Fragment f = new Fragment(payload);
-			params.documentUri = f.getElementValue("/node()/*[local-name(.) = 'document-uri']");
-			String val = f.getElementValue("/node()/*[local-name(.) = 'namespace']");
-			if (val != null) {
-				params.namespace = val;
-			}
-			val = f.getElementValue("/node()/*[local-name(.) = 'modules-database']");
-			if (val != null) {
-				params.modulesDatabase = val;
-			}
-		}
+		params.documentUri = payload.getOptionalFieldValue("document-uri");
+		params.namespace = payload.getOptionalFieldValue("namespace");
+		params.modulesDatabase = payload.getOptionalFieldValue("modules-database");
 		return params;
 	}
 
@@ -27,6 +27,7 @@ public class CertificateAuthorityManager extends AbstractManager {
         HttpEntity<String> entity = new HttpEntity<String>(payload, headers);
         ResponseEntity<String> response = t.exchange(manageClient.buildUri("/manage/v2/certificate-authorities"),
                 HttpMethod.POST, entity, String.class);
+        manageClient.writeOccurred("/manage/v2/certificate-authorities");
         return response;
     }
 
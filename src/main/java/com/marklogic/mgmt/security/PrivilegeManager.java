@@ -2,6 +2,7 @@ package com.marklogic.mgmt.security;
 
 import com.marklogic.mgmt.AbstractResourceManager;
 import com.marklogic.mgmt.ManageClient;
+import com.marklogic.mgmt.ParsedPayload;
 
 public class PrivilegeManager extends AbstractResourceManager {
 
@@ -15,7 +16,7 @@ public class PrivilegeManager extends AbstractResourceManager {
     }
 
     @Override
-    protected String[] getUpdateResourceParams(String payload) {
-        return new String[] { "kind", payloadParser.getPayloadFieldValue(payload, "kind") };
+    protected String[] getUpdateResourceParams(ParsedPayload payload) {
+        return new String[] { "kind", payload.getFieldValue("kind") };
     }
 }
@@ -0,0 +1,31 @@
+package com.marklogic.mgmt.security;
+
+import java.util.Collection;
+import java.util.Set;
+
+import com.marklogic.mgmt.util.DependencyGraph;
+
+/**
+ * Orders a set of roles so that each role is saved after the roles it references - via inherited roles or the role
+ * names in its permissions. Roles are grouped into levels; the roles in a level only reference roles in earlier levels
+ * or roles that are not part of the graph, and thus can be saved at the same time.
+ * <p>
+ * Roles that reference each other - directly, or by referencing themselves - can't be ordered. Such roles are placed
+ * in the same level and returned by getRolesInCycles, so that a client can create them without their references first
+ * and then save them in full.
+ */
+public class RoleDependencyGraph extends DependencyGraph {
+
+    /**
+     * @param roleName
+     * @param referencedRoleNames
+     *            roles referenced by the role; roles that aren't added to this graph are assumed to already exist
+     */
+    public void addRole(String roleName, Collection<String> referencedRoleNames) {
+        add(roleName, referencedRoleNames);
+    }
+
+    public Set<String> getRolesInCycles() {
+        return getNamesInCycles();
+    }
+}
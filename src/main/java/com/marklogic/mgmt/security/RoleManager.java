@@ -1,7 +1,19 @@
 package com.marklogic.mgmt.security;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jdom2.Element;
+import org.jdom2.output.XMLOutputter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.marklogic.mgmt.AbstractResourceManager;
 import com.marklogic.mgmt.ManageClient;
+import com.marklogic.rest.util.Fragment;
 
 public class RoleManager extends AbstractResourceManager {
 
@@ -14,4 +26,62 @@ public class RoleManager extends AbstractResourceManager {
         return true;
     }
 
+    public String getRoleName(String payload) {
+        return getResourceId(payload);
+    }
+
+    /**
+     * @param payload
+     * @return the names of the roles that the role in the payload inherits or references in its permissions
+     */
+    public Set<String> getReferencedRoleNames(String payload) {
+        Set<String> names = new LinkedHashSet<>();
+        if (payloadParser.isJsonPayload(payload)) {
+            JsonNode node = payloadParser.parseJson(payload);
+            if (node.has("role")) {
+                for (JsonNode role : node.get("role")) {
+                    names.add(role.asText());
+                }
+            }
+            if (node.has("permission")) {
+                for (JsonNode perm : node.get("permission")) {
+                    if (perm.has("role-name")) {
+                        names.add(perm.get("role-name").asText());
+                    }
+                }
+            }
+        } else {
+            Fragment f = new Fragment(payload);
+            names.addAll(f.getElementValues("/node()/*[local-name(.) = 'roles']/*[local-name(.) = 'role']"));
+            names.addAll(f.getElementValues(
+                    "/node()/*[local-name(.) = 'permissions']/*[local-name(.) = 'permission']/*[local-name(.) = 'role-name']"));
+        }
+        return names;
+    }
+
+    /**
+     * @param payload
+     * @return a copy of the payload without inherited roles and permissions, for creating a role before the roles it
+     *         references exist
+     */
+    public String removeRoleReferences(String payload) {
+        if (payloadParser.isJsonPayload(payload)) {
+            ObjectNode node = (ObjectNode) payloadParser.parseJson(payload);
+            node.remove("role");
+            node.remove("permission");
+            return node.toString();
+        }
+        Fragment f = new Fragment(payload);
+        Element root = f.getInternalDoc().getRootElement();
+        List<Element> toRemove = new ArrayList<>();
+        for (Element child : root.getChildren()) {
+            if ("roles".equals(child.getName()) || "permissions".equals(child.getName())) {
+                toRemove.add(child);
+            }
+        }
+        for (Iterator<Element> iter = toRemove.iterator(); iter.hasNext();) {
+            root.removeContent(iter.next());
+        }
+        return new XMLOutputter().outputString(f.getInternalDoc());
+    }
 }
@@ -3,10 +3,14 @@ package com.marklogic.mgmt.tasks;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.jdom2.Element;
+
 import com.marklogic.mgmt.AbstractResourceManager;
 import com.marklogic.mgmt.ManageClient;
+import com.marklogic.mgmt.ParsedPayload;
 import com.marklogic.mgmt.requests.RequestManager;
 import com.marklogic.rest.util.Fragment;
+import com.marklogic.rest.util.ResourcesFragment;
 
 /**
  * A scheduled task doesn't have a name, and the ID is generated by ML, so this class assumes that task-path will be
@@ -49,7 +53,7 @@ public class TaskManager extends AbstractResourceManager {
 	}
 
 	@Override
-	protected String[] getUpdateResourceParams(String payload) {
+	protected String[] getUpdateResourceParams(ParsedPayload payload) {
 		List<String> params = new ArrayList<>();
 		params.add("group-id");
 		params.add(groupName);
@@ -62,11 +66,9 @@ public class TaskManager extends AbstractResourceManager {
 	}
 
 	public String getTaskIdForTaskPath(String taskPath) {
-		Fragment f = getAsXml();
-		String xpath = "/node()/*[local-name(.) = 'list-items']/node()"
-			+ "[*[local-name(.) = 'task-path'] = '%s']/*[local-name(.) = 'idref']";
-		xpath = String.format(xpath, taskPath);
-		String id = f.getElementValue(xpath);
+		ResourcesFragment f = getAsXml();
+		List<Element> items = f.getListItemsWithValue("task-path", taskPath);
+		String id = items.isEmpty() ? null : f.getChildValue(items.get(0), "idref");
 		if (id == null) {
 			throw new RuntimeException("Could not find a scheduled task with a task-path of: " + taskPath);
 		}
@@ -75,10 +77,7 @@ public class TaskManager extends AbstractResourceManager {
 
 	@Override
 	public boolean exists(String resourceNameOrId, String... resourceUrlParams) {
-		Fragment f = getAsXml();
-		return f.elementExists(format(
-			"/node()/*[local-name(.) = 'list-items']/node()[*[local-name(.) = 'task-path'] = '%s']",
-			resourceNameOrId));
+		return !getAsXml().getListItemsWithValue("task-path", resourceNameOrId).isEmpty();
 	}
 
 	public void disableAllTasks() {
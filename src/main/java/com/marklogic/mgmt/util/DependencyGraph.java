@@ -0,0 +1,135 @@
+package com.marklogic.mgmt.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Orders a set of names - e.g. of roles or databases - so that each name comes after the names it references. Names
+ * are grouped into levels; the names in a level only reference names in earlier levels or names that are not part of
+ * the graph, and thus can be processed at the same time.
+ * <p>
+ * Names that reference each other - directly, or by referencing themselves - can't be ordered. Such names are placed
+ * in the same level and returned by getNamesInCycles.
+ */
+public class DependencyGraph {
+
+    private Map<String, List<String>> references = new LinkedHashMap<>();
+
+    private List<List<String>> levels;
+    private Set<String> namesInCycles;
+
+    // Tarjan state
+    private int index;
+    private Map<String, Integer> indexes;
+    private Map<String, Integer> lowLinks;
+    private List<String> stack;
+    private Set<String> onStack;
+
+    /**
+     * @param name
+     * @param referencedNames
+     *            names referenced by the given name; names that aren't added to this graph are ignored
+     */
+    public void add(String name, Collection<String> referencedNames) {
+        references.put(name, new ArrayList<>(referencedNames));
+        levels = null;
+    }
+
+    /**
+     * @return the names grouped into levels, with the names in each level in the order they were added
+     */
+    public List<List<String>> getLevels() {
+        if (levels == null) {
+            build();
+        }
+        return levels;
+    }
+
+    public Set<String> getNamesInCycles() {
+        if (levels == null) {
+            build();
+        }
+        return namesInCycles;
+    }
+
+    protected void build() {
+        index = 0;
+        indexes = new HashMap<>();
+        lowLinks = new HashMap<>();
+        stack = new ArrayList<>();
+        onStack = new HashSet<>();
+        namesInCycles = new HashSet<>();
+
+        Map<String, Integer> nameLevels = new HashMap<>();
+        for (String name : references.keySet()) {
+            if (!indexes.containsKey(name)) {
+                connect(name, nameLevels);
+            }
+        }
+
+        levels = new ArrayList<>();
+        for (String name : references.keySet()) {
+            int level = nameLevels.get(name);
+            while (levels.size() <= level) {
+                levels.add(new ArrayList<String>());
+            }
+            levels.get(level).add(name);
+        }
+    }
+
+    /**
+     * Tarjan's algorithm; each strongly connected component is completed after every component it references, so its
+     * level can be computed as soon as it's completed.
+     */
+    private void connect(String name, Map<String, Integer> nameLevels) {
+        indexes.put(name, index);
+        lowLinks.put(name, index);
+        index++;
+        stack.add(name);
+        onStack.add(name);
+
+        for (String ref : references.get(name)) {
+            if (!references.containsKey(ref)) {
+                continue;
+            }
+            if (!indexes.containsKey(ref)) {
+                connect(ref, nameLevels);
+                lowLinks.put(name, Math.min(lowLinks.get(name), lowLinks.get(ref)));
+            } else if (onStack.contains(ref)) {
+                lowLinks.put(name, Math.min(lowLinks.get(name), indexes.get(ref)));
+            }
+        }
+
+        if (lowLinks.get(name).equals(indexes.get(name))) {
+            List<String> component = new ArrayList<>();
+            String member;
+            do {
+                member = stack.remove(stack.size() - 1);
+                onStack.remove(member);
+                component.add(member);
+            } while (!member.equals(name));
+
+            int level = 0;
+            for (String m : component) {
+                for (String ref : references.get(m)) {
+                    Integer refLevel = nameLevels.get(ref);
+                    if (refLevel != null && !component.contains(ref)) {
+                        level = Math.max(level, refLevel + 1);
+                    }
+                }
+            }
+            for (String m : component) {
+                nameLevels.put(m, level);
+            }
+            if (component.size() > 1 || references.get(name).contains(name)) {
+                namesInCycles.addAll(component);
+            }
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.marklogic.mgmt.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Records how long a deploy or undeploy spends in each command, on each resource file, in each Management API request,
+ * and waiting for MarkLogic to restart. Requests are attributed to the activity - a command or resource file - that the
+ * calling thread is working on, as set via startActivity.
+ * <p>
+ * The recorded timings can be written as a JSON report via writeReport, and summarized via buildSummary. Every method
+ * is safe to call from multiple threads.
+ */
+public class DeployProfiler {
+
+    private final long startTime = System.currentTimeMillis();
+    private final ThreadLocal<String> currentActivity = new ThreadLocal<>();
+
+    private ConcurrentLinkedQueue<Timing> commandTimings = new ConcurrentLinkedQueue<>();
+    private ConcurrentLinkedQueue<Timing> resourceTimings = new ConcurrentLinkedQueue<>();
+    private ConcurrentLinkedQueue<RequestTiming> requestTimings = new ConcurrentLinkedQueue<>();
+    private AtomicLong restartWaitMillis = new AtomicLong();
+    private AtomicInteger restartWaitCount = new AtomicInteger();
+
+    /**
+     * Sets the activity that requests made by the current thread are attributed to.
+     *
+     * @param activity
+     * @return the previous activity of the current thread, which should be passed to restoreActivity
+     */
+    public String startActivity(String activity) {
+        String previous = currentActivity.get();
+        currentActivity.set(activity);
+        return previous;
+    }
+
+    public void restoreActivity(String previousActivity) {
+        if (previousActivity != null) {
+            currentActivity.set(previousActivity);
+        } else {
+            currentActivity.remove();
+        }
+    }
+
+    public String getCurrentActivity() {
+        return currentActivity.get();
+    }
+
+    public void recordCommand(String commandName, String action, long millis) {
+        commandTimings.add(new Timing(commandName, action, millis));
+    }
+
+    public void recordResource(String resourcePath, String action, long millis) {
+        resourceTimings.add(new Timing(resourcePath, action, millis));
+    }
+
+    /**
+     * @param method
+     * @param path
+     * @param status
+     *            the HTTP status code, or -1 if no response was received
+     * @param bytes
+     *            the number of bytes in the response body
+     * @param millis
+     */
+    public void recordRequest(String method, String path, int status, long bytes, long millis) {
+        requestTimings.add(new RequestTiming(method, path, buildPathTemplate(path), status, bytes, millis,
+                currentActivity.get()));
+    }
+
+    public void recordRestartWait(long millis) {
+        restartWaitMillis.addAndGet(millis);
+        restartWaitCount.incrementAndGet();
+    }
+
+    /**
+     * Replaces the name or ID of the resource in a Management API path - e.g. /manage/v2/databases/Documents/properties
+     * becomes /manage/v2/databases/{id}/properties - and the values of any query parameters, so that requests for
+     * resources of the same type can be grouped together.
+     *
+     * @param path
+     * @return
+     */
+    public static String buildPathTemplate(String path) {
+        if (path == null) {
+            return null;
+        }
+        String query = null;
+        int pos = path.indexOf('?');
+        if (pos > -1) {
+            query = path.substring(pos + 1);
+            path = path.substring(0, pos);
+        }
+        String[] segments = path.split("/", -1);
+        if (segments.length > 4 && "manage".equals(segments[1]) && "v2".equals(segments[2])) {
+            segments[4] = "{id}";
+            path = join(segments, "/");
+        }
+        if (query != null) {
+            String[] params = query.split("&");
+            for (int i = 0; i < params.length; i++) {
+                int eq = params[i].indexOf('=');
+                if (eq > -1) {
+                    params[i] = params[i].substring(0, eq) + "={}";
+                }
+            }
+            path += "?" + join(params, "&");
+        }
+        return path;
+    }
+
+    private static String join(String[] values, String delimiter) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(delimiter);
+            }
+            sb.append(values[i]);
+        }
+        return sb.toString();
+    }
+
+    public ObjectNode toJson() {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode report = mapper.createObjectNode();
+        report.put("totalMillis", System.currentTimeMillis() - startTime);
+        report.put("restartWaitMillis", restartWaitMillis.get());
+        report.put("restartWaitCount", restartWaitCount.get());
+
+        ArrayNode commands = report.putArray("commands");
+        for (Timing t : sort(commandTimings)) {
+            commands.addObject().put("name", t.name).put("action", t.action).put("millis", t.millis);
+        }
+
+        Map<String, RequestSummary> requestsByActivity = summarizeRequests(true);
+        ArrayNode resources = report.putArray("resources");
+        for (Timing t : sort(resourceTimings)) {
+            ObjectNode node = resources.addObject().put("path", t.name).put("action", t.action)
+                    .put("millis", t.millis);
+            RequestSummary summary = requestsByActivity.get(t.name);
+            node.put("requestCount", summary != null ? summary.count : 0);
+        }
+
+        ArrayNode templates = report.putArray("requestsByPathTemplate");
+        for (RequestSummary s : sortSummaries(summarizeRequests(false).values())) {
+            templates.addObject().put("method", s.method).put("pathTemplate", s.pathTemplate).put("count", s.count)
+                    .put("totalMillis", s.totalMillis).put("maxMillis", s.maxMillis).put("bytes", s.bytes);
+        }
+
+        ArrayNode requests = report.putArray("requests");
+        for (RequestTiming r : requestTimings) {
+            ObjectNode node = requests.addObject().put("method", r.method).put("path", r.path)
+                    .put("pathTemplate", r.pathTemplate).put("status", r.status).put("bytes", r.bytes)
+                    .put("millis", r.millis);
+            if (r.activity != null) {
+                node.put("activity", r.activity);
+            }
+        }
+        return report;
+    }
+
+    public void writeReport(File file) {
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        try {
+            new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(file, toJson());
+        } catch (IOException ex) {
+            throw new RuntimeException("Unable to write deploy profile to: " + file.getAbsolutePath() + "; cause: "
+                    + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * @param topCount
+     *            the number of commands, resources, and request path templates to list
+     * @return a human-readable summary of where the most time was spent
+     */
+    public String buildSummary(int topCount) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Total time: %d ms; waiting for restarts: %d ms (%d waits)%n",
+                System.currentTimeMillis() - startTime, restartWaitMillis.get(), restartWaitCount.get()));
+
+        List<Timing> commands = sort(commandTimings);
+        sb.append(String.format("Slowest commands (%d of %d):%n", Math.min(topCount, commands.size()),
+                commands.size()));
+        for (Timing t : commands.subList(0, Math.min(topCount, commands.size()))) {
+            sb.append(String.format("  %8d ms  %s %s%n", t.millis, t.action, t.name));
+        }
+
+        List<Timing> resources = sort(resourceTimings);
+        sb.append(String.format("Slowest resources (%d of %d):%n", Math.min(topCount, resources.size()),
+                resources.size()));
+        for (Timing t : resources.subList(0, Math.min(topCount, resources.size()))) {
+            sb.append(String.format("  %8d ms  %s %s%n", t.millis, t.action, t.name));
+        }
+
+        List<RequestSummary> templates = sortSummaries(summarizeRequests(false).values());
+        sb.append(String.format("Slowest requests by path (%d of %d paths, %d requests):%n",
+                Math.min(topCount, templates.size()), templates.size(), requestTimings.size()));
+        for (RequestSummary s : templates.subList(0, Math.min(topCount, templates.size()))) {
+            sb.append(String.format("  %8d ms  %d x %s %s; max %d ms; %d bytes%n", s.totalMillis, s.count,
+                    s.method, s.pathTemplate, s.maxMillis, s.bytes));
+        }
+        return sb.toString();
+    }
+
+    public List<RequestTiming> getRequestTimings() {
+        return new ArrayList<>(requestTimings);
+    }
+
+    public long getRestartWaitMillis() {
+        return restartWaitMillis.get();
+    }
+
+    private Map<String, RequestSummary> summarizeRequests(boolean byActivity) {
+        Map<String, RequestSummary> map = new LinkedHashMap<>();
+        for (RequestTiming r : requestTimings) {
+            String key = byActivity ? r.activity : r.method + " " + r.pathTemplate;
+            if (key == null) {
+                continue;
+            }
+            RequestSummary s = map.get(key);
+            if (s == null) {
+                s = new RequestSummary(r.method, r.pathTemplate);
+                map.put(key, s);
+            }
+            s.count++;
+            s.totalMillis += r.millis;
+            s.maxMillis = Math.max(s.maxMillis, r.millis);
+            s.bytes += r.bytes;
+        }
+        return map;
+    }
+
+    private static List<Timing> sort(ConcurrentLinkedQueue<Timing> timings) {
+        List<Timing> list = new ArrayList<>(timings);
+        Collections.sort(list, new Comparator<Timing>() {
+            @Override
+            public int compare(Timing o1, Timing o2) {
+                return Long.compare(o2.millis, o1.millis);
+            }
+        });
+        return list;
+    }
+
+    private static List<RequestSummary> sortSummaries(Collection<RequestSummary> summaries) {
+        List<RequestSummary> list = new ArrayList<>(summaries);
+        Collections.sort(list, new Comparator<RequestSummary>() {
+            @Override
+            public int compare(RequestSummary o1, RequestSummary o2) {
+                return Long.compare(o2.totalMillis, o1.totalMillis);
+            }
+        });
+        return list;
+    }
+
+    private static class Timing {
+        private final String name;
+        private final String action;
+        private final long millis;
+
+        Timing(String name, String action, long millis) {
+            this.name = name;
+            this.action = action;
+            this.millis = millis;
+        }
+    }
+
+    private static class RequestSummary {
+        private final String method;
+        private final String pathTemplate;
+        private int count;
+        private long totalMillis;
+        private long maxMillis;
+        private long bytes;
+
+        RequestSummary(String method, String pathTemplate) {
+            this.method = method;
+            this.pathTemplate = pathTemplate;
+        }
+    }
+
+    public static class RequestTiming {
+        private final String method;
+        private final String path;
+        private final String pathTemplate;
+        private final int status;
+        private final long bytes;
+        private final long millis;
+        private final String activity;
+
+        RequestTiming(String method, String path, String pathTemplate, int status, long bytes, long millis,
+                String activity) {
+            this.method = method;
+            this.path = path;
+            this.pathTemplate = pathTemplate;
+            this.status = status;
+            this.bytes = bytes;
+            this.millis = millis;
+            this.activity = activity;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getPathTemplate() {
+            return pathTemplate;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        public String getActivity() {
+            return activity;
+        }
+    }
+}
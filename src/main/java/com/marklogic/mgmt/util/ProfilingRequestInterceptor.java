@@ -0,0 +1,152 @@
+package com.marklogic.mgmt.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Records each request made via a RestTemplate with a DeployProfiler. A request is recorded when its response is
+ * closed - which RestTemplate does once it has read the response body - so that the time and byte count include the
+ * reading of the body.
+ */
+public class ProfilingRequestInterceptor implements ClientHttpRequestInterceptor {
+
+    private DeployProfiler profiler;
+
+    public ProfilingRequestInterceptor(DeployProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        long start = System.currentTimeMillis();
+        String method = request.getMethod() != null ? request.getMethod().name() : null;
+        String path = request.getURI().getRawPath();
+        if (request.getURI().getRawQuery() != null) {
+            path += "?" + request.getURI().getRawQuery();
+        }
+        try {
+            return new ProfiledResponse(execution.execute(request, body), method, path, start);
+        } catch (IOException | RuntimeException ex) {
+            profiler.recordRequest(method, path, -1, 0, System.currentTimeMillis() - start);
+            throw ex;
+        }
+    }
+
+    public DeployProfiler getProfiler() {
+        return profiler;
+    }
+
+    private class ProfiledResponse implements ClientHttpResponse {
+
+        private ClientHttpResponse response;
+        private String method;
+        private String path;
+        private long start;
+        private CountingInputStream body;
+        private boolean recorded;
+
+        ProfiledResponse(ClientHttpResponse response, String method, String path, long start) {
+            this.response = response;
+            this.method = method;
+            this.path = path;
+            this.start = start;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = new CountingInputStream(response.getBody());
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            if (!recorded) {
+                recorded = true;
+                int status;
+                try {
+                    status = response.getRawStatusCode();
+                } catch (IOException ex) {
+                    status = -1;
+                }
+                profiler.recordRequest(method, path, status, body != null ? body.count : 0,
+                        System.currentTimeMillis() - start);
+            }
+            response.close();
+        }
+
+        @Override
+        public HttpStatus getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public int getRawStatusCode() throws IOException {
+            return response.getRawStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+    }
+
+    private static class CountingInputStream extends InputStream {
+
+        private InputStream in;
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -2,8 +2,11 @@ package com.marklogic.rest.util;
 
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.jdom2.Document;
 import org.jdom2.Element;
@@ -17,12 +20,28 @@ import org.jdom2.xpath.XPathFactory;
 
 public class Fragment {
 
+    /**
+     * Compiled XPath expressions, keyed on the namespaces and the XPath string. Most XPath strings used by this library
+     * are constants, so caching avoids recompiling them each time a fragment is queried. The cache is bounded since
+     * some callers build XPath strings that contain resource names.
+     */
+    private final static int MAX_CACHED_XPATH_EXPRESSIONS = 500;
+    private final static Map<String, XPathExpression<Element>> xpathCache = Collections
+            .synchronizedMap(new LinkedHashMap<String, XPathExpression<Element>>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, XPathExpression<Element>> eldest) {
+                    return size() > MAX_CACHED_XPATH_EXPRESSIONS;
+                }
+            });
+
     private Document internalDoc;
     private Namespace[] namespaces;
+    private String namespacesKey;
 
     public Fragment(Fragment other) {
         this.internalDoc = other.internalDoc;
         this.namespaces = other.namespaces;
+        this.namespacesKey = other.namespacesKey;
     }
 
     public Fragment(String xml, Namespace... namespaces) {
@@ -45,6 +64,7 @@ public class Fragment {
                 list.add(n);
             }
             this.namespaces = list.toArray(new Namespace[] {});
+            this.namespacesKey = buildNamespacesKey(this.namespaces);
         } catch (Exception e) {
             throw new RuntimeException(String.format("Unable to parse XML, cause: %s; XML: %s", e.getMessage(), xml), e);
         }
@@ -79,10 +99,33 @@ public class Fragment {
         return evaluateForElements(xpath);
     }
 
+    /**
+     * JDOM XPathExpression instances are not thread-safe, so evaluation of a cached expression is synchronized on it.
+     */
     protected List<Element> evaluateForElements(String xpath) {
-        XPathFactory f = XPathFactory.instance();
-        XPathExpression<Element> expr = f.compile(xpath, Filters.element(), new HashMap<String, Object>(), namespaces);
-        return expr.evaluate(internalDoc);
+        XPathExpression<Element> expr = getCompiledXPath(xpath);
+        synchronized (expr) {
+            return expr.evaluate(internalDoc);
+        }
+    }
+
+    protected XPathExpression<Element> getCompiledXPath(String xpath) {
+        String key = namespacesKey + xpath;
+        XPathExpression<Element> expr = xpathCache.get(key);
+        if (expr == null) {
+            XPathFactory f = XPathFactory.instance();
+            expr = f.compile(xpath, Filters.element(), new HashMap<String, Object>(), namespaces);
+            xpathCache.put(key, expr);
+        }
+        return expr;
+    }
+
+    private static String buildNamespacesKey(Namespace[] namespaces) {
+        StringBuilder sb = new StringBuilder();
+        for (Namespace n : namespaces) {
+            sb.append(n.getPrefix()).append("=").append(n.getURI()).append(" ");
+        }
+        return sb.append("|").toString();
     }
 
     public Document getInternalDoc() {
@@ -0,0 +1,285 @@
+package com.marklogic.rest.util;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthScheme;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.AuthCache;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+/**
+ * Owns a single HttpClient backed by a PoolingHttpClientConnectionManager, so that every RestTemplate created via
+ * RestTemplateUtil - e.g. the ones used by ManageClient and AdminManager - reuses keep-alive connections instead of
+ * opening a new TCP/TLS connection per request.
+ * <p>
+ * Credentials are not bound to the HttpClient; each request factory returned by newRequestFactory supplies its own
+ * credentials and its own auth cache via the HttpContext. Once a digest challenge has been answered, the resulting
+ * auth scheme is cached and sent preemptively on subsequent requests, which avoids a 401 round trip per request.
+ * <p>
+ * The connection pool is created lazily on first use, so the setters in this class must be called before then in
+ * order to take effect. A daemon thread periodically evicts expired and idle connections.
+ */
+public class HttpClientPool {
+
+    private static HttpClientPool sharedInstance = new HttpClientPool();
+
+    protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private int maxTotal = 50;
+    private int defaultMaxPerRoute = 10;
+    private Map<HttpHost, Integer> maxPerRoute = new LinkedHashMap<>();
+    private long connectionTimeToLive = -1;
+    private long idleConnectionTimeout = 30000;
+    private long idleConnectionCheckInterval = 5000;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private IdleConnectionEvictor evictor;
+
+    /**
+     * @return the pool that is used by RestTemplateUtil when a RestConfig does not specify its own pool
+     */
+    public static HttpClientPool getSharedInstance() {
+        return sharedInstance;
+    }
+
+    public static void setSharedInstance(HttpClientPool pool) {
+        sharedInstance = pool;
+    }
+
+    /**
+     * @param host
+     * @param port
+     * @param username
+     * @param password
+     * @return a request factory that sends requests via the pooled HttpClient, authenticating with the given
+     *         credentials
+     */
+    public ClientHttpRequestFactory newRequestFactory(String host, int port, String username, String password) {
+        BasicCredentialsProvider prov = new BasicCredentialsProvider();
+        prov.setCredentials(new AuthScope(host, port, AuthScope.ANY_REALM), new UsernamePasswordCredentials(username,
+                password));
+        return new PooledRequestFactory(getHttpClient(), prov);
+    }
+
+    public synchronized HttpClient getHttpClient() {
+        if (httpClient == null) {
+            initialize();
+        }
+        return httpClient;
+    }
+
+    protected void initialize() {
+        connectionManager = new PoolingHttpClientConnectionManager(connectionTimeToLive, TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(defaultMaxPerRoute);
+        for (HttpHost host : maxPerRoute.keySet()) {
+            connectionManager.setMaxPerRoute(new HttpRoute(host), maxPerRoute.get(host));
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info(String.format("Initializing HTTP connection pool; max total: %d, default max per route: %d",
+                    maxTotal, defaultMaxPerRoute));
+        }
+        httpClient = HttpClientBuilder.create().setConnectionManager(connectionManager).build();
+
+        if (idleConnectionCheckInterval > 0) {
+            evictor = new IdleConnectionEvictor(connectionManager, idleConnectionCheckInterval, idleConnectionTimeout);
+            evictor.start();
+        }
+    }
+
+    /**
+     * Stops the idle connection evictor and closes every pooled connection. The pool will be recreated if it's used
+     * again afterwards.
+     */
+    public synchronized void shutdown() {
+        if (evictor != null) {
+            evictor.interrupt();
+            evictor = null;
+        }
+        if (connectionManager != null) {
+            connectionManager.shutdown();
+            connectionManager = null;
+        }
+        httpClient = null;
+    }
+
+    /**
+     * Sets the max number of connections for a particular host and port, overriding defaultMaxPerRoute.
+     *
+     * @param host
+     * @param port
+     * @param max
+     */
+    public void setMaxPerRoute(String host, int port, int max) {
+        maxPerRoute.put(new HttpHost(host, port), max);
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public void setMaxTotal(int maxTotal) {
+        this.maxTotal = maxTotal;
+    }
+
+    public int getDefaultMaxPerRoute() {
+        return defaultMaxPerRoute;
+    }
+
+    public void setDefaultMaxPerRoute(int defaultMaxPerRoute) {
+        this.defaultMaxPerRoute = defaultMaxPerRoute;
+    }
+
+    public long getConnectionTimeToLive() {
+        return connectionTimeToLive;
+    }
+
+    /**
+     * @param connectionTimeToLive max lifetime of a pooled connection in milliseconds; -1 means no limit
+     */
+    public void setConnectionTimeToLive(long connectionTimeToLive) {
+        this.connectionTimeToLive = connectionTimeToLive;
+    }
+
+    public long getIdleConnectionTimeout() {
+        return idleConnectionTimeout;
+    }
+
+    /**
+     * @param idleConnectionTimeout connections idle for longer than this many milliseconds are closed
+     */
+    public void setIdleConnectionTimeout(long idleConnectionTimeout) {
+        this.idleConnectionTimeout = idleConnectionTimeout;
+    }
+
+    public long getIdleConnectionCheckInterval() {
+        return idleConnectionCheckInterval;
+    }
+
+    /**
+     * @param idleConnectionCheckInterval how often, in milliseconds, to check for idle connections; set to 0 or less
+     *                                    to disable the evictor thread
+     */
+    public void setIdleConnectionCheckInterval(long idleConnectionCheckInterval) {
+        this.idleConnectionCheckInterval = idleConnectionCheckInterval;
+    }
+}
+
+/**
+ * Supplies each request with a fresh context holding the credentials and the auth cache that belong to a single
+ * RestTemplate. A fresh context is needed per request since HttpClientContext is not thread-safe, while the auth cache
+ * is shared so that the digest scheme negotiated by one request is reused by the next.
+ */
+class PooledRequestFactory extends HttpComponentsClientHttpRequestFactory {
+
+    private BasicCredentialsProvider credentialsProvider;
+    private AuthCache authCache = new ConcurrentAuthCache();
+
+    public PooledRequestFactory(HttpClient httpClient, BasicCredentialsProvider credentialsProvider) {
+        super(httpClient);
+        this.credentialsProvider = credentialsProvider;
+    }
+
+    @Override
+    protected HttpContext createHttpContext(HttpMethod httpMethod, URI uri) {
+        HttpClientContext context = HttpClientContext.create();
+        context.setCredentialsProvider(credentialsProvider);
+        context.setAuthCache(authCache);
+        return context;
+    }
+
+    /**
+     * The HttpClient is owned by HttpClientPool, so it must not be closed when this factory is destroyed.
+     */
+    @Override
+    public void destroy() {
+    }
+}
+
+/**
+ * BasicAuthCache is not thread-safe, and a RestTemplate may be used by several threads at once.
+ */
+class ConcurrentAuthCache implements AuthCache {
+
+    private Map<HttpHost, AuthScheme> map = new ConcurrentHashMap<>();
+
+    @Override
+    public void put(HttpHost host, AuthScheme authScheme) {
+        if (authScheme != null) {
+            map.put(getKey(host), authScheme);
+        }
+    }
+
+    @Override
+    public AuthScheme get(HttpHost host) {
+        return map.get(getKey(host));
+    }
+
+    @Override
+    public void remove(HttpHost host) {
+        map.remove(getKey(host));
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    protected HttpHost getKey(HttpHost host) {
+        if (host.getPort() <= 0) {
+            int port = "https".equalsIgnoreCase(host.getSchemeName()) ? 443 : 80;
+            return new HttpHost(host.getHostName(), port, host.getSchemeName());
+        }
+        return host;
+    }
+}
+
+class IdleConnectionEvictor extends Thread {
+
+    private PoolingHttpClientConnectionManager connectionManager;
+    private long checkInterval;
+    private long idleTimeout;
+
+    public IdleConnectionEvictor(PoolingHttpClientConnectionManager connectionManager, long checkInterval,
+            long idleTimeout) {
+        super("ml-http-idle-connection-evictor");
+        setDaemon(true);
+        this.connectionManager = connectionManager;
+        this.checkInterval = checkInterval;
+        this.idleTimeout = idleTimeout;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!isInterrupted()) {
+                Thread.sleep(checkInterval);
+                connectionManager.closeExpiredConnections();
+                if (idleTimeout > 0) {
+                    connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+                }
+            }
+        } catch (InterruptedException ie) {
+            // Pool has been shut down
+        }
+    }
+}
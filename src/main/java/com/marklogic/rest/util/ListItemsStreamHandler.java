@@ -0,0 +1,107 @@
+package com.marklogic.rest.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.jdom2.Element;
+import org.jdom2.Namespace;
+
+/**
+ * Streams the list-item elements of a Manage API list response - e.g. /manage/v2/hosts or /manage/v2/requests. Each
+ * list-item is built as a small, detached JDOM element and passed to accept; only the ones that are accepted are
+ * retained, so the memory used is bounded by the matching items rather than by the size of the response.
+ * <p>
+ * Set maxItems to stop reading the response as soon as enough items have been found.
+ */
+public class ListItemsStreamHandler implements XmlStreamHandler {
+
+    private List<Element> listItems = new ArrayList<>();
+    private int maxItems = -1;
+
+    public ListItemsStreamHandler() {
+    }
+
+    public ListItemsStreamHandler(int maxItems) {
+        this.maxItems = maxItems;
+    }
+
+    @Override
+    public void handleXmlStream(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT && "list-item".equals(reader.getLocalName())) {
+                Element item = readElement(reader);
+                if (accept(item)) {
+                    listItems.add(item);
+                    if (maxItems > 0 && listItems.size() >= maxItems) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Override this to filter the list items that are retained.
+     *
+     * @param listItem
+     * @return
+     */
+    protected boolean accept(Element listItem) {
+        return true;
+    }
+
+    /**
+     * @param childLocalName
+     * @return the value of the child element with the given local name in each retained list item
+     */
+    public List<String> getValues(String childLocalName) {
+        List<String> values = new ArrayList<>();
+        for (Element item : listItems) {
+            String value = getChildValue(item, childLocalName);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    public static String getChildValue(Element item, String childLocalName) {
+        for (Element child : item.getChildren()) {
+            if (childLocalName.equals(child.getName())) {
+                return child.getText();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds an element from the reader, which must be positioned at a start element; the reader is left positioned at
+     * the matching end element.
+     */
+    protected Element readElement(XMLStreamReader reader) throws XMLStreamException {
+        String prefix = reader.getPrefix() != null ? reader.getPrefix() : "";
+        String uri = reader.getNamespaceURI() != null ? reader.getNamespaceURI() : "";
+        Element el = new Element(reader.getLocalName(), Namespace.getNamespace(prefix, uri));
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                el.addContent(readElement(reader));
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                if (!reader.isWhiteSpace()) {
+                    el.addContent(reader.getText());
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                break;
+            }
+        }
+        return el;
+    }
+
+    public List<Element> getListItems() {
+        return listItems;
+    }
+}
@@ -1,14 +1,26 @@
 package com.marklogic.rest.util;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.jdom2.Element;
 import org.jdom2.Namespace;
 
 /**
- * Provides some convenience methods for the XML response from resources endpoints
+ * Provides some convenience methods for the XML response from resources endpoints.
+ * <p>
+ * Lookups of list items by the value of one of their child elements - e.g. nameref, idref, task-path - are served by a
+ * hash index that is built for that element the first time it's needed, instead of by an XPath scan of the whole list
+ * on every call.
  */
 public class ResourcesFragment extends Fragment {
 
+    private List<Element> listItems;
+    private Map<String, Map<String, List<Element>>> listItemIndexes = new HashMap<>();
+
     public ResourcesFragment(Fragment f) {
         super(f);
     }
@@ -23,10 +35,7 @@ public class ResourcesFragment extends Fragment {
     }
 
     public boolean resourceExists(String resourceIdOrName) {
-        String xpath = "/node()/*[local-name(.) = 'list-items']/node()"
-                + "[*[local-name(.) = 'nameref'] = '%s' or *[local-name(.) = 'idref'] = '%s']";
-        xpath = String.format(xpath, resourceIdOrName, resourceIdOrName);
-        return elementExists(xpath);
+        return getListItem(resourceIdOrName) != null;
     }
 
     public String getIdForNameOrId(String resourceIdOrName) {
@@ -34,10 +43,67 @@ public class ResourcesFragment extends Fragment {
     }
 
     public String getListItemValue(String resourceIdOrName, String elementLocalName) {
-        String xpath = "/node()/*[local-name(.) = 'list-items']/node()"
-                + "[*[local-name(.) = 'nameref'] = '%s' or *[local-name(.) = 'idref'] = '%s']/*[local-name(.) = '%s']";
-        xpath = String.format(xpath, resourceIdOrName, resourceIdOrName, elementLocalName);
-        return getElementValue(xpath);
+        Element item = getListItem(resourceIdOrName);
+        return item != null ? getChildValue(item, elementLocalName) : null;
+    }
+
+    /**
+     * @param resourceIdOrName
+     * @return the first list item whose nameref or idref equals the given value, or null if none exists
+     */
+    public Element getListItem(String resourceIdOrName) {
+        List<Element> items = getListItemsForNameOrId(resourceIdOrName);
+        return items.isEmpty() ? null : items.get(0);
+    }
+
+    /**
+     * @param resourceIdOrName
+     * @return every list item whose nameref or idref equals the given value; more than one can exist for resources
+     *         like amps that are identified by more than their name
+     */
+    public List<Element> getListItemsForNameOrId(String resourceIdOrName) {
+        List<Element> byName = getListItemsWithValue("nameref", resourceIdOrName);
+        List<Element> byId = getListItemsWithValue("idref", resourceIdOrName);
+        if (byId.isEmpty()) {
+            return byName;
+        } else if (byName.isEmpty()) {
+            return byId;
+        }
+        List<Element> items = new ArrayList<>(byName);
+        for (Element el : byId) {
+            if (!items.contains(el)) {
+                items.add(el);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * @param elementLocalName
+     *            local name of the list item child element to match on, e.g. "task-path"
+     * @param value
+     * @return the list items, in document order, with a child element of the given name and value
+     */
+    public synchronized List<Element> getListItemsWithValue(String elementLocalName, String value) {
+        Map<String, List<Element>> index = listItemIndexes.get(elementLocalName);
+        if (index == null) {
+            index = new HashMap<>();
+            for (Element item : getListItems()) {
+                for (Element child : item.getChildren()) {
+                    if (elementLocalName.equals(child.getName())) {
+                        List<Element> items = index.get(child.getText());
+                        if (items == null) {
+                            items = new ArrayList<>();
+                            index.put(child.getText(), items);
+                        }
+                        items.add(item);
+                    }
+                }
+            }
+            listItemIndexes.put(elementLocalName, index);
+        }
+        List<Element> items = index.get(value);
+        return items != null ? items : Collections.<Element> emptyList();
     }
 
     public List<String> getListItemIdRefs() {
@@ -49,7 +115,46 @@ public class ResourcesFragment extends Fragment {
     }
 
     public List<String> getListItemValues(String elementName) {
-        String xpath = "/node()/*[local-name(.) = 'list-items']/node()/*[local-name(.) = '%s']";
-        return getElementValues(String.format(xpath, elementName));
+        List<String> values = new ArrayList<>();
+        for (Element item : getListItems()) {
+            for (Element child : item.getChildren()) {
+                if (elementName.equals(child.getName())) {
+                    values.add(child.getText());
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return the child elements of the list-items element, excluding list-count
+     */
+    public synchronized List<Element> getListItems() {
+        if (listItems == null) {
+            listItems = new ArrayList<>();
+            for (Element listItemsElement : getElements("/node()/*[local-name(.) = 'list-items']")) {
+                for (Element child : listItemsElement.getChildren()) {
+                    if (!"list-count".equals(child.getName())) {
+                        listItems.add(child);
+                    }
+                }
+            }
+        }
+        return listItems;
+    }
+
+    /**
+     * @param item
+     *            a list item, as returned by one of the methods in this class
+     * @param elementLocalName
+     * @return the text of the first child of the list item with the given local name, or null if none exists
+     */
+    public String getChildValue(Element item, String elementLocalName) {
+        for (Element child : item.getChildren()) {
+            if (elementLocalName.equals(child.getName())) {
+                return child.getText();
+            }
+        }
+        return null;
     }
 }
@@ -10,6 +10,7 @@ public class RestConfig {
     private String username;
     private String password;
     private String scheme = "http";
+    private HttpClientPool httpClientPool;
 
     public RestConfig() {
     }
@@ -86,4 +87,16 @@ public class RestConfig {
     public void setScheme(String scheme) {
         this.scheme = scheme;
     }
+
+    public HttpClientPool getHttpClientPool() {
+        return httpClientPool;
+    }
+
+    /**
+     * @param httpClientPool the pool to use for RestTemplates built from this config; if not set,
+     *                       HttpClientPool.getSharedInstance() is used
+     */
+    public void setHttpClientPool(HttpClientPool httpClientPool) {
+        this.httpClientPool = httpClientPool;
+    }
 }
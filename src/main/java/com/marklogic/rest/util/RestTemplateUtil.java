@@ -1,25 +1,39 @@
 package com.marklogic.rest.util;
 
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.HttpClient;
-import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+/**
+ * Every RestTemplate built here sends its requests through an HttpClientPool - the one on the RestConfig if set,
+ * otherwise the shared instance - so that connections and negotiated digest auth are reused across requests.
+ */
 public class RestTemplateUtil {
 
     public static RestTemplate newRestTemplate(RestConfig config) {
-        return newRestTemplate(config.getHost(), config.getPort(), config.getUsername(), config.getPassword());
+        return newRestTemplate(config, config.getUsername(), config.getPassword());
+    }
+
+    /**
+     * Use this when a RestTemplate is needed for the host/port of the given config, but with different credentials -
+     * e.g. the admin user of a ManageConfig.
+     *
+     * @param config
+     * @param username
+     * @param password
+     * @return
+     */
+    public static RestTemplate newRestTemplate(RestConfig config, String username, String password) {
+        HttpClientPool pool = config.getHttpClientPool() != null ? config.getHttpClientPool() : HttpClientPool
+                .getSharedInstance();
+        return newRestTemplate(pool, config.getHost(), config.getPort(), username, password);
     }
 
     public static RestTemplate newRestTemplate(String host, int port, String username, String password) {
-        BasicCredentialsProvider prov = new BasicCredentialsProvider();
-        prov.setCredentials(new AuthScope(host, port, AuthScope.ANY_REALM), new UsernamePasswordCredentials(username,
-                password));
-        HttpClient client = HttpClientBuilder.create().setDefaultCredentialsProvider(prov).build();
-        RestTemplate rt = new RestTemplate(new HttpComponentsClientHttpRequestFactory(client));
+        return newRestTemplate(HttpClientPool.getSharedInstance(), host, port, username, password);
+    }
+
+    public static RestTemplate newRestTemplate(HttpClientPool pool, String host, int port, String username,
+            String password) {
+        RestTemplate rt = new RestTemplate(pool.newRequestFactory(host, port, username, password));
         rt.setErrorHandler(new MgmtResponseErrorHandler());
         return rt;
     }
@@ -0,0 +1,14 @@
+package com.marklogic.rest.util;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Callback for pulling data out of an XML response without materializing it as a String or a DOM. The handler is
+ * positioned at the start of the document and may stop reading at any point; the underlying response is closed once
+ * the handler returns.
+ */
+public interface XmlStreamHandler {
+
+    void handleXmlStream(XMLStreamReader reader) throws XMLStreamException;
+}
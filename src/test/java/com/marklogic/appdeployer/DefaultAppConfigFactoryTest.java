@@ -66,6 +66,13 @@ public class DefaultAppConfigFactoryTest extends Assert {
         p.setProperty("mlUseRoxyTokenPrefix", "false");
         p.setProperty("mlModulePaths", "path1,path2,path3");
         p.setProperty("mlModuleTimestampsPath", "custom/timestamps/path.properties");
+        p.setProperty("mlModuleHashesPath", "custom/hashes/path.bin");
+        p.setProperty("mlDiffModulesWithServer", "true");
+        p.setProperty("mlDeleteModulesMissingLocally", "true");
+        p.setProperty("mlModulesManifestUri", "/custom/manifest.json");
+        p.setProperty("mlAssetLoadThreadCount", "8");
+        p.setProperty("mlAssetLoadBatchSize", "50");
+        p.setProperty("mlLoadTestModulesConcurrently", "false");
 
         p.setProperty("mlModelsPath", "ml/models");
         p.setProperty("mlInstanceConverterPath", "ext/my/path");
@@ -75,6 +82,24 @@ public class DefaultAppConfigFactoryTest extends Assert {
 	    p.setProperty("mlGenerateSearchOptions", "false");
 	    p.setProperty("mlGenerateExtractionTemplate", "false");
 	    p.setProperty("mlResourceFilenamesToIgnore", "role1.json,role2.xml");
+	    p.setProperty("mlCacheResourceInventory", "false");
+	    p.setProperty("mlCompareResourcesBeforeUpdate", "true");
+	    p.setProperty("mlUpdateChangedPropertiesOnly", "true");
+	    p.setProperty("mlSkipUnchangedResources", "true");
+	    p.setProperty("mlResourceFingerprintsPath", "custom/fingerprints.properties");
+	    p.setProperty("mlForceDeployResources", "true");
+	    p.setProperty("mlVerifyUnchangedResources", "true");
+	    p.setProperty("mlCommandThreadCount", "4");
+	    p.setProperty("mlBatchRestarts", "true");
+	    p.setProperty("mlCheckAllHostsAfterRestart", "true");
+	    p.setProperty("mlResourceThreadCount", "8");
+	    p.setProperty("mlForestThreadCount", "6");
+	    p.setProperty("mlBalanceForestPlacement", "true");
+	    p.setProperty("mlForestPlacementHostWeights", "host1,2,host2,0.5");
+	    p.setProperty("mlCatalogConfigDir", "true");
+	    p.setProperty("mlProfileDeploy", "true");
+	    p.setProperty("mlProfileReportPath", "custom/profile.json");
+	    p.setProperty("mlProfileSummaryCount", "25");
 
 	    sut = new DefaultAppConfigFactory(new SimplePropertySource(p));
         AppConfig config = sut.newAppConfig();
@@ -116,9 +141,35 @@ public class DefaultAppConfigFactoryTest extends Assert {
         assertEquals("path3", paths.get(2));
 
         assertEquals("custom/timestamps/path.properties", config.getModuleTimestampsPath());
+        assertEquals("custom/hashes/path.bin", config.getModuleHashesPath());
+        assertTrue(config.isDiffModulesWithServer());
+        assertTrue(config.isDeleteModulesMissingLocally());
+        assertEquals("/custom/manifest.json", config.getModulesManifestUri());
+        assertEquals(8, config.getAssetLoadThreadCount());
+        assertEquals(50, config.getAssetLoadBatchSize());
+        assertFalse(config.isLoadTestModulesConcurrently());
 
         assertEquals("role1.json", config.getResourceFilenamesToIgnore()[0]);
 	    assertEquals("role2.xml", config.getResourceFilenamesToIgnore()[1]);
+	    assertFalse(config.isCacheResourceInventory());
+	    assertTrue(config.isCompareResourcesBeforeUpdate());
+	    assertTrue(config.isUpdateChangedPropertiesOnly());
+	    assertTrue(config.isSkipUnchangedResources());
+	    assertEquals("custom/fingerprints.properties", config.getResourceFingerprintsPath());
+	    assertTrue(config.isForceDeployResources());
+	    assertTrue(config.isVerifyUnchangedResources());
+	    assertEquals(4, config.getCommandThreadCount());
+	    assertTrue(config.isBatchRestarts());
+	    assertTrue(config.isCheckAllHostsAfterRestart());
+	    assertEquals(8, config.getResourceThreadCount());
+	    assertEquals(6, config.getForestThreadCount());
+	    assertTrue(config.isBalanceForestPlacement());
+	    assertEquals(2.0, config.getForestPlacementHostWeights().get("host1"), 0);
+	    assertEquals(0.5, config.getForestPlacementHostWeights().get("host2"), 0);
+	    assertTrue(config.isCatalogConfigDir());
+	    assertTrue(config.isProfileDeploy());
+	    assertEquals("custom/profile.json", config.getProfileReportPath());
+	    assertEquals(25, config.getProfileSummaryCount());
     }
 
 	/**
@@ -134,6 +185,25 @@ public class DefaultAppConfigFactoryTest extends Assert {
 		assertTrue(config.getConfigDir().getBaseDir().getAbsolutePath().contains("empty-ml-config"));
 	}
 
+    @Test
+    public void invalidForestPlacementHostWeights() {
+        sut = new DefaultAppConfigFactory(new SimplePropertySource("mlForestPlacementHostWeights", "host1,2,host2"));
+        try {
+            sut.newAppConfig();
+            fail("A host without a weight should be rejected");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage().contains("mlForestPlacementHostWeights"));
+        }
+
+        sut = new DefaultAppConfigFactory(new SimplePropertySource("mlForestPlacementHostWeights", "host1,heavy"));
+        try {
+            sut.newAppConfig();
+            fail("A weight that isn't a number should be rejected");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage().contains("mlForestPlacementHostWeights"));
+        }
+    }
+
     @Test
     public void mlUsernameAndPassword() {
         sut = new DefaultAppConfigFactory(
@@ -0,0 +1,109 @@
+package com.marklogic.appdeployer.command;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.FileSystemUtils;
+
+public class ConfigDirCatalogTest extends Assert {
+
+    private File baseDir = new File("build/config-dir-catalog-test");
+
+    @Before
+    public void setup() throws IOException {
+        FileSystemUtils.deleteRecursively(baseDir);
+        write("rest-api.json", "{}");
+        write("databases/content-database.json", "{\"database-name\":\"content\"}");
+        write("databases/other-database.json", "{\"database-name\":\"other\"}");
+        write("databases/notes.txt", "ignored");
+        write("security/roles/role1.json", "{\"role-name\":\"role1\"}");
+        new File(baseDir, "security/users").mkdirs();
+    }
+
+    @Test
+    public void singleThread() throws IOException {
+        verifyCatalog(1);
+    }
+
+    @Test
+    public void multipleThreads() throws IOException {
+        verifyCatalog(4);
+    }
+
+    @Test
+    public void contentsAreCachedUntilModified() throws IOException {
+        ConfigDirCatalog catalog = new ConfigDirCatalog(baseDir);
+        catalog.scan(1);
+        File f = new File(baseDir, "databases/other-database.json");
+        byte[] bytes = catalog.readBytes(f);
+        assertSame(bytes, catalog.readBytes(f));
+
+        write("databases/other-database.json", "{\"database-name\":\"other-changed\"}");
+        assertSame("Contents aren't re-read until the next scan", bytes, catalog.readBytes(f));
+        catalog.scan(1);
+        assertEquals("{\"database-name\":\"other-changed\"}", new String(catalog.readBytes(f)));
+    }
+
+    @Test
+    public void symlinkedDirectoriesAreFollowed() throws IOException {
+        File target = new File("build/config-dir-catalog-test-target");
+        FileSystemUtils.deleteRecursively(target);
+        new File(target, "databases").mkdirs();
+        FileCopyUtils.copy("{\"database-name\":\"linked\"}".getBytes(), new File(target,
+                "databases/linked-database.json"));
+        Files.createSymbolicLink(new File(baseDir, "security/linked").toPath(), target.getAbsoluteFile().toPath());
+        Files.createSymbolicLink(new File(target, "loop").toPath(), target.getAbsoluteFile().toPath());
+
+        File link = new File("build/config-dir-catalog-test-link");
+        link.delete();
+        Files.createSymbolicLink(link.toPath(), baseDir.getAbsoluteFile().toPath());
+
+        for (int threadCount : new int[] { 1, 4 }) {
+            ConfigDirCatalog catalog = new ConfigDirCatalog(link);
+            catalog.scan(threadCount);
+            File linkedDbDir = new File(link, "security/linked/databases");
+            assertTrue("A symlinked config dir and the directories under it are cataloged",
+                    catalog.isDirectory(new File(link, "databases")));
+            assertTrue("A symlinked directory is cataloged as a directory", catalog.isDirectory(linkedDbDir));
+            File[] files = catalog.listFiles(linkedDbDir, null);
+            assertEquals(1, files.length);
+            assertEquals("{\"database-name\":\"linked\"}", new String(catalog.readBytes(files[0])));
+            assertEquals("A link to an ancestor is not walked again", 0, catalog.listFiles(new File(link,
+                    "security/linked/loop"), null).length);
+        }
+    }
+
+    private void verifyCatalog(int threadCount) {
+        ConfigDirCatalog catalog = new ConfigDirCatalog(baseDir);
+        catalog.scan(threadCount);
+        assertEquals("The base dir, 4 directories, and 5 files", 10, catalog.getEntryCount());
+
+        File dbDir = new File(baseDir, "databases");
+        assertTrue(catalog.exists(dbDir));
+        assertTrue(catalog.isDirectory(dbDir));
+        assertFalse(catalog.exists(new File(baseDir, "servers")));
+        assertNull(catalog.listFiles(new File(baseDir, "servers"), null));
+
+        File[] files = catalog.listFiles(dbDir, new ResourceFilenameFilter("content-database.json"));
+        assertEquals(1, files.length);
+        assertEquals(new File(dbDir, "other-database.json"), files[0]);
+        assertEquals(3, catalog.listFiles(dbDir, null).length);
+        assertEquals(0, catalog.listFiles(new File(baseDir, "security/users"), null).length);
+        assertEquals("{\"role-name\":\"role1\"}",
+                new String(catalog.readBytes(new File(baseDir, "security/roles/role1.json"))));
+
+        assertTrue("Files outside of the base dir are checked on the filesystem",
+                catalog.exists(new File("src/test/java")));
+    }
+
+    private void write(String path, String content) throws IOException {
+        File f = new File(baseDir, path);
+        f.getParentFile().mkdirs();
+        FileCopyUtils.copy(content.getBytes(), f);
+    }
+}
@@ -0,0 +1,72 @@
+package com.marklogic.appdeployer.command;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelFileProcessorTest extends Assert {
+
+    private File[] files = new File[] { new File("a.json"), new File("b.json"), new File("c.json"), new File("d.json") };
+
+    @Test
+    public void processInParallel() {
+        final List<String> processed = Collections.synchronizedList(new ArrayList<String>());
+        new ParallelFileProcessor(3, true).process(files, new ParallelFileProcessor.FileCallback() {
+            @Override
+            public void process(File file) {
+                processed.add(file.getName());
+            }
+        });
+        Collections.sort(processed);
+        assertEquals("[a.json, b.json, c.json, d.json]", processed.toString());
+    }
+
+    @Test
+    public void failFast() {
+        try {
+            new ParallelFileProcessor(4, true).process(files, new ParallelFileProcessor.FileCallback() {
+                @Override
+                public void process(File file) {
+                    if (file.getName().startsWith("c")) {
+                        throw new IllegalStateException(file.getName());
+                    }
+                }
+            });
+            fail("Expected an error");
+        } catch (IllegalStateException ex) {
+            assertEquals("The original exception should be rethrown", "c.json", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void continueOnError() {
+        final List<String> processed = Collections.synchronizedList(new ArrayList<String>());
+        try {
+            new ParallelFileProcessor(1, false).process(files, new FailingCallback() {
+                @Override
+                public void process(File file) {
+                    super.process(file);
+                    processed.add(file.getName());
+                }
+            });
+            fail("Expected an error");
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getMessage().contains("b.json, d.json"));
+            assertEquals("b.json", ex.getCause().getMessage());
+        }
+        assertEquals("[a.json, c.json]", processed.toString());
+    }
+
+    private static class FailingCallback implements ParallelFileProcessor.FileCallback {
+        @Override
+        public void process(File file) {
+            if (file.getName().startsWith("b") || file.getName().startsWith("d")) {
+                throw new IllegalStateException(file.getName());
+            }
+        }
+    }
+}
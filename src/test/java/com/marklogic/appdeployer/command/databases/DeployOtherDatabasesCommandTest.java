@@ -0,0 +1,101 @@
+package com.marklogic.appdeployer.command.databases;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.marklogic.appdeployer.AppConfig;
+import com.marklogic.appdeployer.ConfigDir;
+import com.marklogic.appdeployer.command.CommandContext;
+import com.marklogic.mgmt.databases.DatabaseManager;
+
+public class DeployOtherDatabasesCommandTest extends Assert {
+
+    @Test
+    public void databaseLevels() {
+        AppConfig appConfig = new AppConfig();
+        ConfigDir configDir = new ConfigDir(new File("src/test/resources/sample-app/lots-of-databases"));
+        configDir.getContentDatabaseFiles().add(new File(configDir.getDatabasesDir(), "more-content-db-config.json"));
+        appConfig.setConfigDir(configDir);
+
+        List<List<File>> levels = new DeployOtherDatabasesCommand().buildDatabaseLevels(
+                new CommandContext(appConfig, null, null), new HashMap<File, DeployDatabaseCommand>(),
+                new HashMap<File, String>());
+        assertEquals(2, levels.size());
+        assertEquals(2, levels.get(0).size());
+        assertTrue(levels.get(0).contains(new File(configDir.getDatabasesDir(), "other-schemas-database.json")));
+        assertTrue(levels.get(0).contains(new File(configDir.getDatabasesDir(), "other-triggers-database.json")));
+        assertEquals("other-content-database.json", levels.get(1).get(0).getName());
+    }
+
+    @Test
+    public void sortCommandsBeforeExecuteOverridesLevels() {
+        final List<String> deployed = new ArrayList<>();
+        DeployOtherDatabasesCommand command = new DeployOtherDatabasesCommand() {
+            @Override
+            protected List<DeployDatabaseCommand> buildDatabaseCommands(CommandContext context) {
+                List<DeployDatabaseCommand> list = new ArrayList<>();
+                list.add(new TestDatabaseCommand("a", "{\"database-name\":\"a\"}", deployed));
+                list.add(new TestDatabaseCommand("b", "{\"database-name\":\"b\", \"schema-database\":\"a\"}",
+                        deployed));
+                return list;
+            }
+
+            @Override
+            protected void sortCommandsBeforeExecute(List<DeployDatabaseCommand> list, CommandContext context) {
+                Collections.reverse(list);
+            }
+        };
+        command.execute(new CommandContext(new AppConfig(), null, null));
+        assertEquals("[b, a]", deployed.toString());
+
+        deployed.clear();
+        command.undo(new CommandContext(new AppConfig(), null, null));
+        assertEquals("Without an override, databases are undeployed in reverse dependency order", "[b, a]",
+                deployed.toString());
+    }
+
+    @Test
+    public void referencedDatabaseNames() {
+        DatabaseManager mgr = new DatabaseManager(null);
+        String json = "{\"database-name\":\"Schemas\", \"schema-database\":\"Schemas\", "
+                + "\"triggers-database\":\"Triggers\", \"security-database\":\"Security\"}";
+        assertEquals("[Triggers, Security]", mgr.getReferencedDatabaseNames(json).toString());
+
+        String xml = "<database-properties xmlns='http://marklogic.com/manage'><database-name>db</database-name>"
+                + "<schema-database>my-schemas</schema-database></database-properties>";
+        assertEquals("[my-schemas]", mgr.getReferencedDatabaseNames(xml).toString());
+    }
+
+    private static class TestDatabaseCommand extends DeployDatabaseCommand {
+
+        private String payload;
+        private List<String> deployed;
+
+        TestDatabaseCommand(String filename, String payload, List<String> deployed) {
+            super(filename);
+            this.payload = payload;
+            this.deployed = deployed;
+        }
+
+        @Override
+        public String buildPayload(CommandContext context) {
+            return payload;
+        }
+
+        @Override
+        public void deployDatabase(String payload, CommandContext context) {
+            deployed.add(getDatabaseFilename());
+        }
+
+        @Override
+        public void undeployDatabase(String payload, CommandContext context) {
+            deployed.add(getDatabaseFilename());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.marklogic.appdeployer.command.forests;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.marklogic.mgmt.ManageClient;
+import com.marklogic.mgmt.ManageConfig;
+import com.marklogic.mgmt.databases.DatabaseManager;
+import com.marklogic.mgmt.forests.ForestStatus;
+
+public class ConfigureForestReplicasCommandTest extends Assert {
+
+    @Test
+    public void replicaNamesAndHostIds() {
+        ConfigureForestReplicasCommand command = new ConfigureForestReplicasCommand();
+        List<String> hostIds = Arrays.asList("1", "2", "3");
+
+        assertEquals("{f-replica-1=3, f-replica-2=1}",
+                command.buildReplicaNamesAndHostIds("f", "2", 2, hostIds).toString());
+        assertEquals("{f-replica-1=1}", command.buildReplicaNamesAndHostIds("f", "3", 1, hostIds).toString());
+        assertTrue(command.buildReplicaNamesAndHostIds("f", "4", 1, hostIds).isEmpty());
+    }
+
+    @Test
+    public void forestConfiguredViaDatabaseKeepsDatabaseReplicaCount() {
+        ConfigureForestReplicasCommand command = new ConfigureForestReplicasCommand();
+        command.setDatabaseNamesAndReplicaCountsAsString("my-db,2");
+        Map<String, Integer> forestCounts = new LinkedHashMap<>();
+        forestCounts.put("my-db-1", 1);
+        forestCounts.put("Security", 1);
+        command.setForestNamesAndReplicaCounts(forestCounts);
+
+        DatabaseManager dbMgr = new DatabaseManager(new ManageClient(new ManageConfig("localhost", 8002, "admin",
+                "admin"))) {
+            @Override
+            public List<String> getForestNames(String databaseNameOrId) {
+                return Arrays.asList("my-db-1", "my-db-2");
+            }
+        };
+        assertEquals("{my-db-1=2, my-db-2=2, Security=1}", command.buildForestNamesAndReplicaCounts(dbMgr)
+                .toString());
+    }
+
+    @Test
+    public void hostIdFromStatus() {
+        ForestStatus status = new ForestStatus("<forest-status xmlns='http://marklogic.com/manage/forests'>"
+                + "<id>10</id><relations><relation-group><typeref>hosts</typeref><relation><idref>123</idref>"
+                + "</relation></relation-group></relations></forest-status>");
+        assertEquals("123", status.getHostId());
+    }
+}
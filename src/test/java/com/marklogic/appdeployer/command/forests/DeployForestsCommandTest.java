@@ -0,0 +1,30 @@
+package com.marklogic.appdeployer.command.forests;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.marklogic.appdeployer.AppConfig;
+
+public class DeployForestsCommandTest extends Assert {
+
+    @Test
+    public void forestNamesByHost() {
+        DeployForestsCommand command = new DeployForestsCommand();
+        command.setDatabaseName("db");
+        command.setForestsPerHost(2);
+
+        List<String> hostNames = Arrays.asList("host1", "host2");
+        Map<String, List<String>> map = command.buildForestNamesByHost(hostNames, 0, new AppConfig());
+        assertEquals("{host1=[db-1, db-3], host2=[db-2, db-4]}", map.toString());
+
+        map = command.buildForestNamesByHost(hostNames, 1, new AppConfig());
+        assertEquals("Numbering should continue after the existing forests", "{host1=[db-2, db-4], host2=[db-3]}",
+                map.toString());
+
+        assertTrue(command.buildForestNamesByHost(hostNames, 4, new AppConfig()).isEmpty());
+    }
+}
@@ -0,0 +1,102 @@
+package com.marklogic.appdeployer.command.modules;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.FileSystemUtils;
+
+public class ContentHashModuleManagerTest extends Assert {
+
+    private File dir = new File("build/content-hash-module-manager-test").getAbsoluteFile();
+    private File indexFile = new File(dir, "module-hashes.bin");
+    private File module = new File(dir, "modules/lib.xqy");
+
+    @Before
+    public void setup() throws IOException {
+        FileSystemUtils.deleteRecursively(dir);
+        module.getParentFile().mkdirs();
+        write(module, "xquery version '1.0-ml';");
+    }
+
+    @After
+    public void teardown() {
+        FileSystemUtils.deleteRecursively(dir);
+    }
+
+    @Test
+    public void newAndChangedModulesAreModified() throws IOException {
+        ContentHashModuleManager mgr = new ContentHashModuleManager(indexFile);
+        mgr.initialize();
+        assertTrue(mgr.hasFileBeenModifiedSinceLastLoaded(module));
+        mgr.saveLastLoadedTimestamp(module, new Date());
+        assertFalse(mgr.hasFileBeenModifiedSinceLastLoaded(module));
+
+        write(module, "xquery version '1.0-ml'; 1");
+        assertTrue(mgr.hasFileBeenModifiedSinceLastLoaded(module));
+    }
+
+    @Test
+    public void touchedModuleIsNotModified() throws IOException {
+        ContentHashModuleManager mgr = new ContentHashModuleManager(indexFile);
+        mgr.initialize();
+        mgr.saveLastLoadedTimestamp(module, new Date());
+
+        module.setLastModified(module.lastModified() - 60000);
+        assertFalse(mgr.hasFileBeenModifiedSinceLastLoaded(module));
+    }
+
+    @Test
+    public void saveAndReload() throws IOException {
+        ContentHashModuleManager mgr = new ContentHashModuleManager(indexFile);
+        mgr.initialize();
+        mgr.saveLastLoadedTimestamp(module, new Date());
+        mgr.save();
+        assertTrue(indexFile.exists());
+        assertFalse(new File(indexFile.getAbsolutePath() + ".tmp").exists());
+
+        ContentHashModuleManager reloaded = new ContentHashModuleManager(indexFile);
+        reloaded.initialize();
+        assertEquals(1, reloaded.getModuleCount());
+        assertArrayEquals(ContentHashModuleManager.hash(module), reloaded.getLoadedHash(module));
+        assertFalse(reloaded.hasFileBeenModifiedSinceLastLoaded(module));
+
+        reloaded.clear();
+        assertFalse(indexFile.exists());
+        assertTrue(reloaded.hasFileBeenModifiedSinceLastLoaded(module));
+    }
+
+    @Test
+    public void initializeKeepsUnsavedHashes() {
+        ContentHashModuleManager mgr = new ContentHashModuleManager(indexFile);
+        mgr.initialize();
+        mgr.saveLastLoadedTimestamp(module, new Date());
+        mgr.initialize();
+        assertFalse(mgr.hasFileBeenModifiedSinceLastLoaded(module));
+        mgr.save();
+
+        ContentHashModuleManager reloaded = new ContentHashModuleManager(indexFile);
+        reloaded.initialize();
+        assertEquals(1, reloaded.getModuleCount());
+        assertFalse(reloaded.hasFileBeenModifiedSinceLastLoaded(module));
+    }
+
+    @Test
+    public void unreadableIndexIsIgnored() throws IOException {
+        dir.mkdirs();
+        write(indexFile, "not an index");
+        ContentHashModuleManager mgr = new ContentHashModuleManager(indexFile);
+        mgr.initialize();
+        assertEquals(0, mgr.getModuleCount());
+        assertTrue(mgr.hasFileBeenModifiedSinceLastLoaded(module));
+    }
+
+    private void write(File f, String text) throws IOException {
+        FileCopyUtils.copy(text.getBytes("UTF-8"), f);
+    }
+}
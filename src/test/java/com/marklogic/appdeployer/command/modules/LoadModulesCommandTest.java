@@ -0,0 +1,139 @@
+package com.marklogic.appdeployer.command.modules;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.marklogic.appdeployer.AppConfig;
+import com.marklogic.appdeployer.command.CommandContext;
+
+public class LoadModulesCommandTest extends Assert {
+
+    @Test
+    public void testServerIsLoadedConcurrentlyAfterMainServerAssets() {
+        final AtomicBoolean assetsLoaded = new AtomicBoolean(false);
+        final AtomicBoolean testLoadedAfterAssets = new AtomicBoolean(false);
+        final CountDownLatch testStarted = new CountDownLatch(1);
+        LoadModulesCommand command = new LoadModulesCommand() {
+            @Override
+            protected void loadModulesIntoMainServer(CommandContext context, Runnable afterAssetModulesLoaded) {
+                assetsLoaded.set(true);
+                afterAssetModulesLoaded.run();
+                // The test server load must overlap the main server's non-asset modules
+                await(testStarted);
+            }
+
+            @Override
+            protected void loadModulesIntoTestServer(CommandContext context) {
+                testLoadedAfterAssets.set(assetsLoaded.get());
+                testStarted.countDown();
+            }
+        };
+        command.execute(newContext(true));
+        assertTrue(testLoadedAfterAssets.get());
+    }
+
+    @Test
+    public void testServerIsNotLoadedWhenMainServerAssetsFail() {
+        final AtomicBoolean testLoaded = new AtomicBoolean(false);
+        LoadModulesCommand command = new LoadModulesCommand() {
+            @Override
+            protected void loadModulesIntoMainServer(CommandContext context, Runnable afterAssetModulesLoaded) {
+                throw new RuntimeException("assets");
+            }
+
+            @Override
+            protected void loadModulesIntoTestServer(CommandContext context) {
+                testLoaded.set(true);
+            }
+        };
+        try {
+            command.execute(newContext(true));
+            fail("Expected the error from loading assets");
+        } catch (RuntimeException ex) {
+            assertEquals("assets", ex.getMessage());
+            assertFalse(testLoaded.get());
+        }
+    }
+
+    @Test
+    public void mainServerErrorTakesPrecedence() {
+        LoadModulesCommand command = new LoadModulesCommand() {
+            @Override
+            protected void loadModulesIntoMainServer(CommandContext context, Runnable afterAssetModulesLoaded) {
+                afterAssetModulesLoaded.run();
+                throw new RuntimeException("main");
+            }
+
+            @Override
+            protected void loadModulesIntoTestServer(CommandContext context) {
+                throw new RuntimeException("test");
+            }
+        };
+        try {
+            command.execute(newContext(true));
+            fail("Expected the error from the main server");
+        } catch (RuntimeException ex) {
+            assertEquals("main", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testServerErrorIsThrown() {
+        LoadModulesCommand command = new LoadModulesCommand() {
+            @Override
+            protected void loadModulesIntoMainServer(CommandContext context, Runnable afterAssetModulesLoaded) {
+                afterAssetModulesLoaded.run();
+            }
+
+            @Override
+            protected void loadModulesIntoTestServer(CommandContext context) {
+                throw new RuntimeException("test");
+            }
+        };
+        try {
+            command.execute(newContext(true));
+            fail("Expected the error from the test server");
+        } catch (RuntimeException ex) {
+            assertEquals("test", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void serialWhenNotConcurrent() {
+        final StringBuilder order = new StringBuilder();
+        LoadModulesCommand command = new LoadModulesCommand() {
+            @Override
+            protected void loadModulesIntoMainServer(CommandContext context) {
+                order.append("main,");
+            }
+
+            @Override
+            protected void loadModulesIntoTestServer(CommandContext context) {
+                order.append("test");
+            }
+        };
+        command.execute(newContext(false));
+        assertEquals("main,test", order.toString());
+    }
+
+    private CommandContext newContext(boolean concurrent) {
+        AppConfig config = new AppConfig();
+        config.setTestRestPort(8011);
+        config.setLoadTestModulesConcurrently(concurrent);
+        return new CommandContext(config, null, null);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(5, TimeUnit.SECONDS)) {
+                throw new RuntimeException("Other server load did not start concurrently");
+            }
+        } catch (InterruptedException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
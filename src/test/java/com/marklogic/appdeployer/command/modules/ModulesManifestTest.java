@@ -0,0 +1,104 @@
+package com.marklogic.appdeployer.command.modules;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.FileSystemUtils;
+
+public class ModulesManifestTest extends Assert {
+
+    private File dir = new File("build/modules-manifest-test").getAbsoluteFile();
+    private File rootDir = new File(dir, "root");
+    private File extDir = new File(dir, "ext");
+    private File libModule = new File(rootDir, "lib/lib.xqy");
+    private File extModule = new File(extDir, "ext.sjs");
+
+    @Before
+    public void setup() throws IOException {
+        FileSystemUtils.deleteRecursively(dir);
+        write(libModule, "xquery version '1.0-ml';");
+        write(extModule, "'use strict';");
+    }
+
+    @After
+    public void teardown() {
+        FileSystemUtils.deleteRecursively(dir);
+    }
+
+    @Test
+    public void urisMatchAssetDirectories() {
+        ModulesManifest manifest = build("abc");
+        assertEquals(2, manifest.size());
+        assertEquals(ModulesManifest.toHex(ContentHashModuleManager.hash(libModule)),
+                manifest.getHashes().get("/lib/lib.xqy"));
+        assertTrue(manifest.getHashes().containsKey("/ext/ext.sjs"));
+    }
+
+    @Test
+    public void fileFilterIsApplied() {
+        ModulesManifest manifest = ModulesManifest.build(Arrays.asList(rootDir, extDir), new FileFilter() {
+            @Override
+            public boolean accept(File f) {
+                return !f.getName().endsWith(".sjs");
+            }
+        }, null);
+        assertEquals(1, manifest.size());
+        assertTrue(manifest.getHashes().containsKey("/lib/lib.xqy"));
+    }
+
+    @Test
+    public void findChangedFiles() throws IOException {
+        ModulesManifest stored = ModulesManifest.fromJson(build("abc").toJson());
+        assertEquals("abc", stored.getTokensFingerprint());
+        assertTrue(build("abc").findChangedFiles(stored).isEmpty());
+
+        write(libModule, "xquery version '1.0-ml'; 1");
+        Set<File> changed = build("abc").findChangedFiles(stored);
+        assertEquals(1, changed.size());
+        assertTrue(changed.contains(libModule));
+
+        assertEquals("Every file is changed when there's no stored manifest", 2,
+                build("abc").findChangedFiles(null).size());
+        assertEquals("Every file is changed when the tokens changed", 2, build("def").findChangedFiles(stored).size());
+    }
+
+    @Test
+    public void missingModuleIsChanged() {
+        ModulesManifest stored = build("abc");
+        ModulesManifest storedWithoutExt = new ModulesManifest("abc");
+        storedWithoutExt.put("/lib/lib.xqy", ContentHashModuleManager.hash(libModule), null);
+
+        Set<File> changed = build("abc").findChangedFiles(storedWithoutExt);
+        assertEquals(1, changed.size());
+        assertTrue(changed.contains(extModule));
+        assertTrue(build("abc").findChangedFiles(stored).isEmpty());
+    }
+
+    @Test
+    public void findMissingUris() {
+        ModulesManifest stored = build("abc");
+        extModule.delete();
+        List<String> uris = build("abc").findMissingUris(stored);
+        assertEquals(1, uris.size());
+        assertEquals("/ext/ext.sjs", uris.get(0));
+        assertTrue(build("abc").findMissingUris(null).isEmpty());
+    }
+
+    private ModulesManifest build(String tokensFingerprint) {
+        return ModulesManifest.build(Arrays.asList(rootDir, extDir), null, tokensFingerprint);
+    }
+
+    private void write(File f, String text) throws IOException {
+        f.getParentFile().mkdirs();
+        FileCopyUtils.copy(text.getBytes("UTF-8"), f);
+    }
+}
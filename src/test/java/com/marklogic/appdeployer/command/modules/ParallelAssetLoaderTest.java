@@ -0,0 +1,151 @@
+package com.marklogic.appdeployer.command.modules;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.FileSystemUtils;
+
+import com.marklogic.client.modulesloader.ModulesManager;
+
+public class ParallelAssetLoaderTest extends Assert {
+
+    private File dir = new File("build/parallel-asset-loader-test").getAbsoluteFile();
+    private File rootDir = new File(dir, "root");
+    private File extDir = new File(dir, "ext");
+    private List<String> insertedUris = Collections.synchronizedList(new ArrayList<String>());
+    private Set<String> threadNames = Collections.synchronizedSet(new HashSet<String>());
+    private AtomicInteger batchCount = new AtomicInteger();
+
+    @Before
+    public void setup() throws IOException {
+        FileSystemUtils.deleteRecursively(dir);
+        for (int i = 0; i < 10; i++) {
+            write(new File(rootDir, "app/module" + i + ".js"), "module " + i);
+        }
+        write(new File(extDir, "lib.xqy"), "xquery version '1.0-ml';");
+    }
+
+    @After
+    public void teardown() {
+        FileSystemUtils.deleteRecursively(dir);
+    }
+
+    @Test
+    public void loadInBatches() {
+        ParallelAssetLoader loader = new TestLoader(0);
+        loader.setThreadCount(3);
+        loader.setBatchSize(4);
+
+        Set<File> loaded = loader.loadAssets(Arrays.asList(rootDir, extDir));
+        assertEquals(11, loaded.size());
+        assertEquals(3, batchCount.get());
+        assertEquals(11, insertedUris.size());
+        assertTrue(insertedUris.contains("/app/module0.js"));
+        assertTrue(insertedUris.contains("/ext/lib.xqy"));
+        for (String name : threadNames) {
+            assertTrue(name.startsWith("ml-assets-"));
+        }
+    }
+
+    @Test
+    public void failedBatchIsRetried() {
+        ParallelAssetLoader loader = new TestLoader(1);
+        loader.setBatchSize(100);
+        loader.setRetrySleepTime(1);
+
+        assertEquals(11, loader.loadAssets(Arrays.asList(rootDir, extDir)).size());
+        assertEquals(2, batchCount.get());
+        assertEquals(11, insertedUris.size());
+    }
+
+    @Test
+    public void batchFailsAfterRetries() {
+        ParallelAssetLoader loader = new TestLoader(3);
+        loader.setBatchSize(100);
+        loader.setMaxRetries(2);
+        loader.setRetrySleepTime(1);
+
+        try {
+            loader.loadAssets(Arrays.asList(rootDir, extDir));
+            fail("Expected the batch to fail after 2 retries");
+        } catch (RuntimeException ex) {
+            assertEquals(3, batchCount.get());
+            assertTrue(ex.getMessage().contains("Unable to load 1 of 1 batches"));
+        }
+    }
+
+    @Test
+    public void onlyModifiedFilesAreLoaded() {
+        final Set<File> saved = new HashSet<>();
+        ParallelAssetLoader loader = new TestLoader(0);
+        loader.setModulesManager(new ModulesManager() {
+            private boolean initialized;
+
+            @Override
+            public void initialize() {
+                initialized = true;
+            }
+
+            @Override
+            public boolean hasFileBeenModifiedSinceLastLoaded(File file) {
+                assertTrue("The ModulesManager must be initialized before it's queried", initialized);
+                return file.getName().equals("lib.xqy");
+            }
+
+            @Override
+            public void saveLastLoadedTimestamp(File file, Date date) {
+                saved.add(file);
+            }
+        });
+
+        Set<File> loaded = loader.loadAssets(Arrays.asList(rootDir, extDir));
+        assertEquals(1, loaded.size());
+        assertEquals(Arrays.asList("/ext/lib.xqy"), insertedUris);
+        assertEquals(loaded, saved);
+    }
+
+    private void write(File f, String text) throws IOException {
+        f.getParentFile().mkdirs();
+        FileCopyUtils.copy(text.getBytes("UTF-8"), f);
+    }
+
+    /**
+     * Records batches instead of inserting them, failing the first failureCount attempts.
+     */
+    private class TestLoader extends ParallelAssetLoader {
+
+        private AtomicInteger remainingFailures;
+
+        TestLoader(int failureCount) {
+            this.remainingFailures = new AtomicInteger(failureCount);
+        }
+
+        @Override
+        protected long insertBatch(List<Asset> batch) {
+            batchCount.incrementAndGet();
+            threadNames.add(Thread.currentThread().getName());
+            if (remainingFailures.getAndDecrement() > 0) {
+                throw new RuntimeException("Simulated failure");
+            }
+            long bytes = 0;
+            for (Asset asset : batch) {
+                insertedUris.add(asset.getUri());
+                bytes += asset.getFile().length();
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.marklogic.appdeployer.command.security;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.FileSystemUtils;
+
+import com.marklogic.appdeployer.AppConfig;
+import com.marklogic.appdeployer.command.CommandContext;
+import com.marklogic.mgmt.ParsedPayload;
+import com.marklogic.mgmt.ResourceManager;
+import com.marklogic.mgmt.SaveReceipt;
+import com.marklogic.mgmt.security.RoleManager;
+
+public class DeployRolesCommandTest extends Assert {
+
+    private File dir = new File("build/deploy-roles-command-test").getAbsoluteFile();
+    private List<String> saved = Collections.synchronizedList(new ArrayList<String>());
+
+    @After
+    public void teardown() {
+        FileSystemUtils.deleteRecursively(dir);
+    }
+
+    @Test
+    public void rolesInCycleAndDuplicateRoleFiles() throws IOException {
+        write("a-role1.json", "{\"role-name\":\"role1\", \"role\":[\"role2\"]}");
+        write("b-role2.json", "{\"role-name\":\"role2\", \"role\":[\"role1\"]}");
+        write("c-role1.json", "{\"role-name\":\"role1\", \"description\":\"more\"}");
+
+        DeployRolesCommand command = new DeployRolesCommand() {
+            @Override
+            protected ResourceManager getResourceManager(CommandContext context) {
+                return new RoleManager(null) {
+                    @Override
+                    protected String getResourceName() {
+                        return "role";
+                    }
+
+                    @Override
+                    public boolean exists(String resourceNameOrId, String... resourceUrlParams) {
+                        return false;
+                    }
+
+                    @Override
+                    public SaveReceipt save(ParsedPayload payload) {
+                        saved.add(payload.getPayload().replace("\"", "'"));
+                        return new SaveReceipt(getResourceId(payload), payload, null, null);
+                    }
+                };
+            }
+        };
+        command.processExecuteOnResourceDir(new CommandContext(new AppConfig(), null, null), dir);
+
+        assertEquals(5, saved.size());
+        assertEquals("{'role-name':'role1'}", saved.get(0));
+        assertEquals("{'role-name':'role2'}", saved.get(1));
+        assertTrue(saved.subList(2, 4).contains("{'role-name':'role1', 'role':['role2']}"));
+        assertTrue(saved.subList(2, 4).contains("{'role-name':'role2', 'role':['role1']}"));
+        assertEquals("{'role-name':'role1', 'description':'more'}", saved.get(4));
+    }
+
+    private void write(String filename, String text) throws IOException {
+        dir.mkdirs();
+        FileCopyUtils.copy(text.getBytes("UTF-8"), new File(dir, filename));
+    }
+}
@@ -0,0 +1,193 @@
+package com.marklogic.appdeployer.impl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.marklogic.appdeployer.command.Command;
+import com.marklogic.appdeployer.command.CommandContext;
+import com.marklogic.appdeployer.command.UndoableCommand;
+import com.marklogic.appdeployer.command.appservers.DeployOtherServersCommand;
+import com.marklogic.appdeployer.command.databases.DeploySchemasDatabaseCommand;
+import com.marklogic.appdeployer.command.databases.DeployTriggersDatabaseCommand;
+import com.marklogic.appdeployer.command.restapis.DeployRestApiServersCommand;
+import com.marklogic.appdeployer.command.security.DeployPrivilegesCommand;
+import com.marklogic.appdeployer.command.security.DeployRolesCommand;
+import com.marklogic.appdeployer.command.security.DeployUsersCommand;
+
+public class CommandSchedulerTest extends Assert {
+
+    private CommandScheduler sut = new CommandScheduler(4);
+
+    @Test
+    public void declaredDependencies() {
+        List<Command> commands = new ArrayList<>();
+        commands.add(new DeployPrivilegesCommand());
+        commands.add(new DeployRolesCommand());
+        commands.add(new DeployUsersCommand());
+        commands.add(new DeployTriggersDatabaseCommand());
+        commands.add(new DeploySchemasDatabaseCommand());
+        Collections.sort(commands, new ExecuteComparator());
+
+        List<BitSet> deps = sut.buildExecuteDependencies(commands);
+        assertTrue(deps.get(0).isEmpty());
+        assertEquals(bits(0), deps.get(1));
+        assertEquals(bits(1), deps.get(2));
+        assertTrue("Triggers and schemas databases don't depend on anything", deps.get(3).isEmpty());
+        assertTrue(deps.get(4).isEmpty());
+    }
+
+    @Test
+    public void undeclaredCommandIsBarrier() {
+        List<Command> commands = new ArrayList<>();
+        commands.add(new DeployPrivilegesCommand());
+        commands.add(new TestCommand(15));
+        commands.add(new DeployRolesCommand());
+
+        List<BitSet> deps = sut.buildExecuteDependencies(commands);
+        assertEquals(bits(0), deps.get(1));
+        assertEquals("Roles depends on privileges and on the undeclared command", bits(0, 1), deps.get(2));
+    }
+
+    @Test
+    public void restartBarrierIsExecutedOnItsOwn() {
+        List<Command> commands = new ArrayList<>();
+        commands.add(new DeployPrivilegesCommand());
+        commands.add(new DeployTriggersDatabaseCommand());
+        commands.add(new DeployOtherServersCommand());
+        commands.add(new DeploySchemasDatabaseCommand());
+
+        List<BitSet> deps = sut.buildExecuteDependencies(commands);
+        assertEquals("Saving servers may restart MarkLogic, so it waits for every command before it", bits(0, 1),
+                deps.get(2));
+        assertEquals("The schemas database doesn't declare a dependency on servers, but still waits for them",
+                bits(2), deps.get(3));
+    }
+
+    @Test
+    public void undoDependenciesAreReversed() {
+        DeployPrivilegesCommand privileges = new DeployPrivilegesCommand();
+        DeployRolesCommand roles = new DeployRolesCommand();
+        DeployUsersCommand users = new DeployUsersCommand();
+        DeployTriggersDatabaseCommand triggersDb = new DeployTriggersDatabaseCommand();
+        List<Command> commands = new ArrayList<>();
+        commands.add(privileges);
+        commands.add(roles);
+        commands.add(users);
+        commands.add(triggersDb);
+
+        List<UndoableCommand> undoableCommands = new ArrayList<>();
+        undoableCommands.add(triggersDb);
+        undoableCommands.add(users);
+        undoableCommands.add(roles);
+        undoableCommands.add(privileges);
+
+        List<BitSet> deps = sut.buildUndoDependencies(commands, undoableCommands);
+        assertTrue(deps.get(0).isEmpty());
+        assertTrue("Users don't depend on the triggers database", deps.get(1).isEmpty());
+        assertEquals("Roles are deleted after users", bits(1), deps.get(2));
+        assertEquals("Privileges are deleted after roles, and thus users", bits(1, 2), deps.get(3));
+    }
+
+    @Test
+    public void restartBarrierIsUndoneOnItsOwn() {
+        DeployTriggersDatabaseCommand triggersDb = new DeployTriggersDatabaseCommand();
+        DeployRestApiServersCommand restApiServers = new DeployRestApiServersCommand();
+        DeployUsersCommand users = new DeployUsersCommand();
+        List<Command> commands = new ArrayList<>();
+        commands.add(triggersDb);
+        commands.add(restApiServers);
+        commands.add(users);
+
+        List<UndoableCommand> undoableCommands = new ArrayList<>();
+        undoableCommands.add(users);
+        undoableCommands.add(restApiServers);
+        undoableCommands.add(triggersDb);
+
+        List<BitSet> deps = sut.buildUndoDependencies(commands, undoableCommands);
+        assertEquals("Deleting REST API servers restarts MarkLogic, so it waits for users", bits(0), deps.get(1));
+        assertEquals("The triggers database waits for the restart", bits(1), deps.get(2));
+    }
+
+    @Test
+    public void runInParallel() {
+        final List<Integer> finished = Collections.synchronizedList(new ArrayList<Integer>());
+        List<Command> commands = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            commands.add(new TestCommand(i));
+        }
+        List<BitSet> deps = new ArrayList<>();
+        deps.add(new BitSet());
+        deps.add(new BitSet());
+        deps.add(bits(0, 1));
+        deps.add(bits(2));
+
+        sut.run(commands, deps, new CommandScheduler.CommandRunner<Command>() {
+            @Override
+            public void run(Command command) {
+                finished.add(command.getExecuteSortOrder());
+            }
+        });
+
+        assertEquals(4, finished.size());
+        assertTrue(finished.indexOf(2) > finished.indexOf(0));
+        assertTrue(finished.indexOf(2) > finished.indexOf(1));
+        assertEquals(3, finished.get(3).intValue());
+    }
+
+    @Test
+    public void failureIsRethrown() {
+        final List<Integer> finished = Collections.synchronizedList(new ArrayList<Integer>());
+        List<Command> commands = new ArrayList<>();
+        commands.add(new TestCommand(0));
+        commands.add(new TestCommand(1));
+        List<BitSet> deps = new ArrayList<>();
+        deps.add(new BitSet());
+        deps.add(bits(0));
+
+        try {
+            sut.run(commands, deps, new CommandScheduler.CommandRunner<Command>() {
+                @Override
+                public void run(Command command) {
+                    if (command.getExecuteSortOrder() == 0) {
+                        throw new IllegalStateException("failed");
+                    }
+                    finished.add(command.getExecuteSortOrder());
+                }
+            });
+            fail("Expected the failure to be rethrown");
+        } catch (IllegalStateException ex) {
+            assertEquals("failed", ex.getMessage());
+        }
+        assertTrue("A command that depends on a failed command isn't run", finished.isEmpty());
+    }
+
+    private BitSet bits(int... indexes) {
+        BitSet set = new BitSet();
+        for (int i : indexes) {
+            set.set(i);
+        }
+        return set;
+    }
+
+    private static class TestCommand implements Command {
+        private int sortOrder;
+
+        public TestCommand(int sortOrder) {
+            this.sortOrder = sortOrder;
+        }
+
+        @Override
+        public void execute(CommandContext context) {
+        }
+
+        @Override
+        public Integer getExecuteSortOrder() {
+            return sortOrder;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.marklogic.appdeployer.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.marklogic.appdeployer.AppConfig;
+import com.marklogic.appdeployer.command.DefaultTokenReplacer;
+import com.marklogic.client.modulesloader.tokenreplacer.PropertiesSource;
+
+public class CompiledTokensTest extends Assert {
+
+    @Test
+    public void longestTokenWins() {
+        Map<String, String> tokens = new HashMap<>();
+        tokens.put("%%a%%", "1");
+        tokens.put("%%ab%%", "2");
+        tokens.put("@ml.x", "%%a%%");
+        tokens.put("%%none%%", null);
+        CompiledTokens compiled = new CompiledTokens(tokens);
+
+        assertEquals("1-2-%%a%%-%%none%%-%%abc", compiled.replace("%%a%%-%%ab%%-@ml.x-%%none%%-%%abc"));
+        String text = "no tokens here";
+        assertSame(text, compiled.replace(text));
+    }
+
+    @Test
+    public void defaultAndCustomTokens() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.setName("my-app");
+        appConfig.getCustomTokens().put("%%NAME%%", "ignored");
+        appConfig.getCustomTokens().put("%%custom%%", "value");
+
+        DefaultTokenReplacer replacer = new DefaultTokenReplacer();
+        assertEquals("my-app my-app-content value", replacer.replaceTokens("%%NAME%% %%DATABASE%% %%custom%%",
+                appConfig, false));
+
+        appConfig.getCustomTokens().put("%%resource-id-x%%", "123");
+        assertEquals("Adding a custom token should cause the tokens to be compiled again", "123",
+                replacer.replaceTokens("%%resource-id-x%%", appConfig, false));
+    }
+
+    @Test
+    public void changedCustomTokenValue() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.getCustomTokens().put("%%custom%%", "1");
+        DefaultTokenReplacer replacer = new DefaultTokenReplacer();
+        assertEquals("1", replacer.replaceTokens("%%custom%%", appConfig, false));
+
+        appConfig.addCustomToken("%%custom%%", "2");
+        assertEquals("2", replacer.replaceTokens("%%custom%%", appConfig, false));
+
+        Map<String, String> tokens = new HashMap<>();
+        tokens.put("%%custom%%", "3");
+        appConfig.setCustomTokens(tokens);
+        assertEquals("3", replacer.replaceTokens("%%custom%%", appConfig, false));
+
+        appConfig.setName("other-app");
+        assertEquals("A changed default token value should be replaced too", "other-app",
+                replacer.replaceTokens("%%NAME%%", appConfig, false));
+    }
+
+    @Test
+    public void overriddenReplaceMethod() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.setName("my-app");
+        appConfig.getCustomTokens().put("%%custom%%", "value");
+        DefaultTokenReplacer replacer = new DefaultTokenReplacer() {
+            @Override
+            protected String replaceCustomTokens(String payload, AppConfig appConfig, boolean isTestResource) {
+                return super.replaceCustomTokens(payload, appConfig, isTestResource).toUpperCase();
+            }
+        };
+        assertEquals("MY-APP VALUE", replacer.replaceTokens("%%NAME%% %%custom%%", appConfig, false));
+    }
+
+    @Test
+    public void propertiesSourceWithoutProperties() {
+        CompiledModuleTokenReplacer replacer = new CompiledModuleTokenReplacer();
+        replacer.addPropertiesSource(new PropertiesSource() {
+            @Override
+            public Properties getProperties() {
+                return null;
+            }
+        });
+        assertEquals("text", replacer.replaceTokensInModule("text"));
+    }
+
+    @Test
+    public void moduleTokens() {
+        CompiledModuleTokenReplacer replacer = new CompiledModuleTokenReplacer();
+        replacer.setPropertyPrefix("@ml.");
+        replacer.addPropertiesSource(new PropertiesSource() {
+            @Override
+            public Properties getProperties() {
+                Properties p = new Properties();
+                p.setProperty("app-name", "my-app");
+                return p;
+            }
+        });
+        assertEquals("let $name := 'my-app'", replacer.replaceTokensInModule("let $name := '@ml.app-name'"));
+    }
+}
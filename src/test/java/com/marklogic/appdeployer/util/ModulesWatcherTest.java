@@ -0,0 +1,170 @@
+package com.marklogic.appdeployer.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.FileSystemUtils;
+
+import com.marklogic.appdeployer.AppConfig;
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.modulesloader.ModulesFinder;
+import com.marklogic.client.modulesloader.ModulesLoader;
+
+public class ModulesWatcherTest extends Assert {
+
+    private File modulesDir = new File("build/modules-watcher-test").getAbsoluteFile();
+    private RecordingModulesLoader loader = new RecordingModulesLoader();
+    private ChangedFilesModuleManager manager = new ChangedFilesModuleManager(null);
+    private ModulesWatcher watcher;
+
+    @Before
+    public void setup() throws IOException {
+        FileSystemUtils.deleteRecursively(modulesDir);
+        write("ext/lib.sjs", "1");
+        AppConfig config = new AppConfig();
+        config.setModulePaths(Arrays.asList(modulesDir.getPath()));
+        watcher = new ModulesWatcher(config) {
+            @Override
+            protected DatabaseClient newDatabaseClient() {
+                return null;
+            }
+        };
+        watcher.setModulesLoader(loader);
+        watcher.setModulesManager(manager);
+        watcher.setSleepTime(50);
+        watcher.setDebounceTime(100);
+    }
+
+    @After
+    public void teardown() {
+        watcher.stop();
+    }
+
+    @Test
+    public void changedFilesModuleManager() {
+        assertTrue("With no delegate and no changed files, every file is modified",
+                manager.hasFileBeenModifiedSinceLastLoaded(new File("any.sjs")));
+        manager.setChangedFiles(new HashSet<>(Arrays.asList(new File("a.sjs"))));
+        assertTrue(manager.hasFileBeenModifiedSinceLastLoaded(new File("a.sjs").getAbsoluteFile()));
+        assertFalse(manager.hasFileBeenModifiedSinceLastLoaded(new File("b.sjs")));
+    }
+
+    @Test
+    public void collectChangedFiles() throws IOException {
+        Set<File> changed = new LinkedHashSet<>();
+        assertTrue("Every file is new on the first scan", watcher.collectChangedFiles(changed));
+        changed.clear();
+        assertFalse(watcher.collectChangedFiles(changed));
+
+        File lib = write("ext/lib.sjs", "22");
+        File other = write("ext/other.sjs", "3");
+        assertTrue(watcher.collectChangedFiles(changed));
+        assertEquals(new HashSet<>(Arrays.asList(lib, other)), changed);
+    }
+
+    @Test
+    public void polling() throws Exception {
+        watcher.setPolling(true);
+        verifyChangesAreLoaded();
+    }
+
+    @Test
+    public void watchService() throws Exception {
+        verifyChangesAreLoaded();
+    }
+
+    @Test
+    public void stopWaitsForLoadInProgress() throws Exception {
+        loader.blockLoads = new CountDownLatch(1);
+        watcher.start();
+        awaitLoad();
+
+        Thread stopper = new Thread() {
+            @Override
+            public void run() {
+                watcher.stop();
+            }
+        };
+        stopper.start();
+        stopper.join(200);
+        assertTrue("stop should wait for the load to finish", stopper.isAlive());
+
+        loader.blockLoads.countDown();
+        stopper.join(TimeUnit.SECONDS.toMillis(30));
+        assertFalse(stopper.isAlive());
+        assertFalse("The load should not have been interrupted", loader.interrupted);
+        assertFalse(watcher.isRunning());
+    }
+
+    private void verifyChangesAreLoaded() throws Exception {
+        watcher.start();
+        awaitLoad();
+        assertNull("The initial load leaves it to the ModulesManager to decide what to load", loader.changedFiles
+                .get(0));
+
+        // Module paths are watched before the initial load, so changes can be made right away
+        File lib = write("ext/lib.sjs", "changed");
+        File service = write("services/new-dir/service.sjs", "new");
+
+        // The two files may be seen in separate batches
+        Set<File> changed = new HashSet<>();
+        while (!changed.contains(lib) || !changed.contains(service)) {
+            awaitLoad();
+            Set<File> files = loader.changedFiles.get(loader.changedFiles.size() - 1);
+            assertNotNull(files);
+            changed.addAll(files);
+        }
+
+        // stop waits for the last load to finish
+        watcher.stop();
+        assertFalse(watcher.isRunning());
+        assertNull("Changed files are cleared after each load", manager.getChangedFiles());
+    }
+
+    private void awaitLoad() throws InterruptedException {
+        assertTrue("Timed out waiting for a load", loader.loads.tryAcquire(30, TimeUnit.SECONDS));
+    }
+
+    private File write(String path, String content) throws IOException {
+        File f = new File(modulesDir, path);
+        f.getParentFile().mkdirs();
+        FileCopyUtils.copy(content.getBytes(), f);
+        return f.getAbsoluteFile();
+    }
+
+    private class RecordingModulesLoader implements ModulesLoader {
+        private List<Set<File>> changedFiles = new CopyOnWriteArrayList<>();
+        private Semaphore loads = new Semaphore(0);
+        private volatile CountDownLatch blockLoads;
+        private volatile boolean interrupted;
+
+        @Override
+        public Set<File> loadModules(File baseDir, ModulesFinder modulesFinder, DatabaseClient client) {
+            Set<File> files = manager.getChangedFiles();
+            changedFiles.add(files != null ? new HashSet<>(files) : null);
+            loads.release();
+            if (blockLoads != null) {
+                try {
+                    blockLoads.await();
+                } catch (InterruptedException ie) {
+                    interrupted = true;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.marklogic.mgmt;
+
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+
+import com.marklogic.mgmt.groups.GroupManager;
+
+public class AbstractResourceManagerTest extends Assert {
+
+    private final static String GROUPS_XML = "<group-default-list xmlns='http://marklogic.com/manage/groups'>"
+            + "<list-items><list-item><idref>123</idref><nameref>my-group</nameref></list-item></list-items>"
+            + "</group-default-list>";
+
+    private ManageClient manageClient = new ManageClient(new ManageConfig("localhost", 8002, "admin", "admin"));
+    private GroupManager mgr = new GroupManager(manageClient);
+    private PayloadParser payloadParser = new PayloadParser();
+
+    @Test
+    public void payloadMatchesServer() {
+        MockRestServiceServer server = MockRestServiceServer.createServer(manageClient.getAdminRestTemplate());
+        expectGroups(server);
+        server.expect(requestTo("http://localhost:8002/manage/v2/groups/my-group/properties")).andRespond(
+                withSuccess("{\"group-name\":\"my-group\", \"list-cache-size\":64, \"other\":\"x\"}",
+                        MediaType.APPLICATION_JSON));
+        expectGroups(server);
+        server.expect(requestTo("http://localhost:8002/manage/v2/groups/my-group/properties")).andRespond(
+                withSuccess("{\"group-name\":\"my-group\", \"list-cache-size\":128}", MediaType.APPLICATION_JSON));
+        expectGroups(server);
+
+        String payload = "{\"group-name\":\"my-group\", \"list-cache-size\":64}";
+        assertTrue(mgr.payloadMatchesServer(payloadParser.parse(payload)));
+        assertFalse("A property changed on the server must not match", mgr.payloadMatchesServer(payloadParser
+                .parse(payload)));
+        assertFalse("A resource that doesn't exist must not match", mgr.payloadMatchesServer(payloadParser
+                .parse("{\"group-name\":\"other-group\"}")));
+        server.verify();
+    }
+
+    @Test
+    public void overriddenStringMethodsAreUsedForParsedPayloads() {
+        GroupManager custom = new GroupManager(manageClient) {
+            @Override
+            protected String getResourceName() {
+                return "group";
+            }
+
+            @Override
+            protected String getResourceId(String payload) {
+                return "custom-" + super.getResourceId(payload);
+            }
+
+            @Override
+            public SaveReceipt save(String payload) {
+                return new SaveReceipt(getResourceId(payload), payload, null, null);
+            }
+        };
+        ParsedPayload payload = payloadParser.parse("{\"group-name\":\"my-group\"}");
+        assertEquals("custom-my-group", custom.getResourceId(payload));
+        assertEquals("custom-my-group", custom.save(payload).getResourceId());
+
+        assertEquals("Without overrides, the ID is read from the parsed payload", "my-group", mgr
+                .getResourceId(payload));
+    }
+
+    private void expectGroups(MockRestServiceServer server) {
+        server.expect(requestTo("http://localhost:8002/manage/v2/groups")).andRespond(
+                withSuccess(GROUPS_XML, MediaType.APPLICATION_XML));
+    }
+}
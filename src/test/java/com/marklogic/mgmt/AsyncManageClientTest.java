@@ -0,0 +1,62 @@
+package com.marklogic.mgmt;
+
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.util.concurrent.ListenableFuture;
+
+public class AsyncManageClientTest extends Assert {
+
+    private ManageClient manageClient = new ManageClient(new ManageConfig("localhost", 8002, "admin", "admin"));
+
+    @Test
+    public void submittedTaskDoesNotNeedAnotherPermit() throws Exception {
+        final AsyncManageClient client = manageClient.getAsyncClient();
+        client.setMaxRequestsInFlight(1);
+        ListenableFuture<Boolean> future = client.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return client.acquireRequestPermit();
+            }
+        });
+        assertFalse(future.get(5, TimeUnit.SECONDS));
+        assertTrue("The task's permit should have been released", client.acquireRequestPermit());
+        client.releaseRequestPermit();
+        client.shutdown();
+    }
+
+    @Test
+    public void synchronousRequestsShareTheLimit() throws Exception {
+        MockRestServiceServer server = MockRestServiceServer.createServer(manageClient.getRestTemplate());
+        server.expect(requestTo("http://localhost:8002/manage/v2/databases")).andRespond(
+                withSuccess("{}", MediaType.APPLICATION_JSON));
+
+        AsyncManageClient asyncClient = manageClient.getAsyncClient();
+        asyncClient.setMaxRequestsInFlight(1);
+        assertTrue(asyncClient.acquireRequestPermit());
+
+        final CountDownLatch responded = new CountDownLatch(1);
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                manageClient.getJson("/manage/v2/databases");
+                responded.countDown();
+            }
+        });
+        t.start();
+        assertFalse("The request must wait for the permit held by this thread",
+                responded.await(200, TimeUnit.MILLISECONDS));
+
+        asyncClient.releaseRequestPermit();
+        assertTrue(responded.await(5, TimeUnit.SECONDS));
+        server.verify();
+    }
+}
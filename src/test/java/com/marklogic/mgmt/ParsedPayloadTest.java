@@ -0,0 +1,46 @@
+package com.marklogic.mgmt;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParsedPayloadTest extends Assert {
+
+    private PayloadParser parser = new PayloadParser();
+
+    @Test
+    public void json() {
+        ParsedPayload payload = parser.parse("{\"role-name\":\"r1\", \"description\":\"test\"}");
+        assertTrue(payload.isJson());
+        assertEquals("r1", payload.getFieldValue("role-name"));
+        assertSame("The JSON is only parsed once", payload.getJson(), payload.getJson());
+        assertNull(payload.getOptionalFieldValue("missing"));
+        try {
+            payload.getFieldValue("missing");
+            fail("Expected an error for a missing field");
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getMessage().contains("missing"));
+        }
+    }
+
+    @Test
+    public void xml() {
+        ParsedPayload payload = parser.parse("<role-properties xmlns='http://marklogic.com/manage'>"
+                + "<role-name>r1</role-name></role-properties>");
+        assertFalse(payload.isJson());
+        assertEquals("r1", payload.getFieldValue("role-name"));
+        assertSame(payload.getFragment(), payload.getFragment());
+        assertNull(payload.getOptionalFieldValue("missing"));
+        assertEquals("r1", parser.getPayloadFieldValue(payload.getPayload(), "role-name"));
+    }
+
+    @Test
+    public void receipt() {
+        SaveReceipt receipt = new SaveReceipt("r1", "{\"role-name\":\"r1\"}", null, null);
+        assertEquals("r1", receipt.getParsedPayload().getFieldValue("role-name"));
+
+        ParsedPayload payload = parser.parse("{\"role-name\":\"r2\"}");
+        receipt = new SaveReceipt("r2", payload, null, null);
+        assertSame(payload, receipt.getParsedPayload());
+        assertEquals(payload.getPayload(), receipt.getPayload());
+    }
+}
@@ -0,0 +1,38 @@
+package com.marklogic.mgmt;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+public class PropertiesComparatorTest extends Assert {
+
+    private PayloadParser parser = new PayloadParser();
+    private PropertiesComparator sut = new PropertiesComparator();
+
+    @Test
+    public void changedPropertyNames() {
+        JsonNode current = parser.parseJson("{\"database-name\":\"my-db\", \"triple-index\":true, \"in-memory-limit\":32768, "
+                + "\"range-element-index\":[{\"scalar-type\":\"string\", \"localname\":\"a\", \"collation\":\"x\"}, "
+                + "{\"scalar-type\":\"int\", \"localname\":\"b\", \"collation\":\"\"}]}");
+
+        JsonNode payload = parser.parseJson("{\"database-name\":\"my-db\", \"triple-index\":\"true\", "
+                + "\"range-element-index\":[{\"scalar-type\":\"int\", \"localname\":\"b\"}, "
+                + "{\"scalar-type\":\"string\", \"localname\":\"a\"}]}");
+        assertTrue("Scalars should be compared as text, array order should be ignored, and properties only in the "
+                + "current properties should be ignored", sut.getChangedPropertyNames(payload, current).isEmpty());
+
+        payload = parser.parseJson("{\"database-name\":\"my-db\", \"triple-index\":false, "
+                + "\"range-element-index\":[{\"scalar-type\":\"string\", \"localname\":\"a\"}]}");
+        List<String> names = sut.getChangedPropertyNames(payload, current);
+        assertEquals(2, names.size());
+        assertTrue(names.contains("triple-index"));
+        assertTrue(names.contains("range-element-index"));
+
+        String update = sut.retainProperties(payload, names, "database-name").toString();
+        assertEquals("{\"database-name\":\"my-db\",\"triple-index\":false,"
+                + "\"range-element-index\":[{\"scalar-type\":\"string\",\"localname\":\"a\"}]}", update);
+    }
+}
@@ -0,0 +1,61 @@
+package com.marklogic.mgmt;
+
+import org.jdom2.Namespace;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.marklogic.rest.util.ResourcesFragment;
+
+public class ResourceInventoryTest extends Assert {
+
+    private final static String ROLES_XML = "<role-default-list xmlns='http://marklogic.com/manage/role'>"
+            + "<list-items><list-item><idref>123</idref><nameref>my-role</nameref></list-item></list-items>"
+            + "</role-default-list>";
+
+    private ResourceInventory sut = new ResourceInventory();
+
+    @Test
+    public void listFetchedDuringWriteIsNotCached() {
+        long generation = sut.getGeneration();
+        sut.writeOccurred("/manage/v2/roles");
+        assertFalse(sut.load("/manage/v2/roles", roles(), generation));
+        assertNull("The list may not include what the write created", sut.contains("/manage/v2/roles", "my-role"));
+
+        assertTrue(sut.load("/manage/v2/roles", roles(), sut.getGeneration()));
+        assertTrue(sut.contains("/manage/v2/roles", "my-role"));
+        assertTrue(sut.contains("/manage/v2/roles", "123"));
+    }
+
+    @Test
+    public void updateInvalidatesListOfUpdatedResource() {
+        sut.load("/manage/v2/roles", roles(), sut.getGeneration());
+        sut.load("/manage/v2/servers?group-id=Default", roles(), sut.getGeneration());
+
+        sut.updateOccurred("/manage/v2/servers/my-server/properties?group-id=Default");
+        assertNull(sut.contains("/manage/v2/servers?group-id=Default", "my-role"));
+        assertTrue("Other lists are kept", sut.contains("/manage/v2/roles", "my-role"));
+
+        long generation = sut.getGeneration();
+        sut.updateOccurred("/manage/v2/roles/my-role/properties");
+        assertNull(sut.contains("/manage/v2/roles", "my-role"));
+        assertFalse("A list fetched during an update is not cached", sut.load("/manage/v2/roles", roles(),
+                generation));
+    }
+
+    @Test
+    public void listBeingUpdatedIsKept() {
+        sut.load("/manage/v2/roles", roles(), sut.getGeneration());
+        sut.beginUpdate("/manage/v2/roles");
+        try {
+            sut.updateOccurred("/manage/v2/roles/my-role/properties");
+            sut.writeOccurred("/manage/v2/roles");
+        } finally {
+            sut.endUpdate();
+        }
+        assertTrue(sut.contains("/manage/v2/roles", "my-role"));
+    }
+
+    private ResourcesFragment roles() {
+        return new ResourcesFragment(ROLES_XML, new Namespace[] {});
+    }
+}
@@ -0,0 +1,112 @@
+package com.marklogic.mgmt.admin;
+
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.HttpServerErrorException;
+
+import com.marklogic.mgmt.ManageClient;
+import com.marklogic.mgmt.ManageConfig;
+
+public class AdminManagerTest extends Assert {
+
+    private AtomicInteger waitCount = new AtomicInteger();
+
+    private AdminManager sut = new AdminManager(new AdminConfig("localhost", 1, "admin", "admin")) {
+        @Override
+        protected void waitUntilReady(Map<String, String> timestampsBefore) {
+            waitCount.incrementAndGet();
+        }
+    };
+
+    @Test
+    public void restartBatchOnlyAffectsItsOwnThread() throws Exception {
+        final CountDownLatch batchStarted = new CountDownLatch(1);
+        final AtomicBoolean batchSeenByOtherThread = new AtomicBoolean(true);
+        // Started before the batch, as a thread pool's thread would be
+        Thread other = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    batchStarted.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                batchSeenByOtherThread.set(sut.isRestartBatchInProgress());
+                sut.waitForRestart();
+            }
+        });
+        other.start();
+
+        sut.beginRestartBatch();
+        sut.waitForRestart();
+        assertEquals("The wait is deferred until the batch ends", 0, waitCount.get());
+
+        batchStarted.countDown();
+        other.join();
+        assertFalse(batchSeenByOtherThread.get());
+        assertEquals("A thread outside the batch waits right away", 1, waitCount.get());
+
+        sut.endRestartBatch();
+        assertEquals(2, waitCount.get());
+        assertFalse(sut.isRestartBatchInProgress());
+    }
+
+    @Test
+    public void threadStartedDuringBatchSharesIt() throws Exception {
+        sut.beginRestartBatch();
+        sut.beginRestartBatch();
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sut.waitForRestart();
+            }
+        });
+        t.start();
+        t.join();
+        sut.endRestartBatch();
+        assertEquals("Only the outermost batch waits", 0, waitCount.get());
+        sut.endRestartBatch();
+        assertEquals(1, waitCount.get());
+    }
+
+    @Test
+    public void requestRetriedOncePendingRestartIsWaitedFor() {
+        ManageClient manageClient = new ManageClient(new ManageConfig("localhost", 8002, "admin", "admin"));
+        manageClient.setRestartBatchAdminManager(sut);
+        MockRestServiceServer server = MockRestServiceServer.createServer(manageClient.getRestTemplate());
+        String url = "http://localhost:8002/manage/v2/groups";
+        server.expect(requestTo(url)).andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+        server.expect(requestTo(url)).andRespond(withSuccess("{}", MediaType.APPLICATION_JSON));
+        server.expect(requestTo(url)).andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+
+        sut.beginRestartBatch();
+        sut.waitForRestart();
+        assertTrue(sut.isRestartPending());
+        assertEquals("{}", manageClient.getJson("/manage/v2/groups"));
+        assertEquals("The pending restart is waited for before the request is sent again", 1, waitCount.get());
+        assertFalse(sut.isRestartPending());
+
+        try {
+            manageClient.getJson("/manage/v2/groups");
+            fail("With no restart pending, a 503 should not be retried");
+        } catch (HttpServerErrorException ex) {
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ex.getStatusCode());
+        }
+        sut.endRestartBatch();
+        assertEquals("The batch has nothing left to wait for", 1, waitCount.get());
+        server.verify();
+    }
+}
@@ -0,0 +1,170 @@
+package com.marklogic.mgmt.admin;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ClusterReadinessProbeTest extends Assert {
+
+    private ClusterReadinessProbe sut = new ClusterReadinessProbe(new AdminConfig("localhost", 1, "admin", "admin"));
+
+    @Test
+    public void allHostsRestarted() {
+        Map<String, String> before = new HashMap<>();
+        before.put("host1", "1");
+        before.put("host2", "2");
+
+        Map<String, String> after = new HashMap<>();
+        after.put("host1", "3");
+        after.put("host2", "2");
+        assertFalse(sut.allHostsRestarted(before, after));
+
+        after.put("host2", "4");
+        assertTrue(sut.allHostsRestarted(before, after));
+
+        assertFalse("Without timestamps from before, a restart can't be detected",
+                sut.allHostsRestarted(null, after));
+    }
+
+    @Test
+    public void jitter() {
+        sut.setJitter(0.2);
+        for (int i = 0; i < 100; i++) {
+            long delay = sut.applyJitter(1000);
+            assertTrue(delay >= 800 && delay <= 1200);
+        }
+        sut.setJitter(0);
+        assertEquals(1000, sut.applyJitter(1000));
+    }
+
+    @Test
+    public void keepWaitingWhileOldTimestampIsReported() {
+        final long restartAfter = 1500;
+        final long start = System.currentTimeMillis();
+        ClusterReadinessProbe probe = new StubProbe() {
+            @Override
+            protected String getTimestamp() {
+                return System.currentTimeMillis() - start < restartAfter ? "1" : "2";
+            }
+        };
+        Map<String, String> before = new HashMap<>();
+        before.put("localhost", "1");
+
+        assertTrue(probe.waitUntilReady(before));
+        assertTrue("The grace period must not end the wait while the old timestamp is reported",
+                System.currentTimeMillis() - start >= restartAfter);
+    }
+
+    @Test
+    public void timeoutReachedWhileOldTimestampIsReported() {
+        ClusterReadinessProbe probe = new StubProbe() {
+            @Override
+            protected String getTimestamp() {
+                return "1";
+            }
+        };
+        probe.setTimeout(1500);
+        Map<String, String> before = new HashMap<>();
+        before.put("localhost", "1");
+        assertFalse(probe.waitUntilReady(before));
+    }
+
+    @Test
+    public void gracePeriodWithoutBaseline() {
+        ClusterReadinessProbe probe = new StubProbe() {
+            @Override
+            protected String getTimestamp() {
+                return "1";
+            }
+        };
+        probe.setTimeout(5000);
+        long start = System.currentTimeMillis();
+        assertTrue(probe.waitUntilReady(null));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    public void noRestartWithinDetectionWindow() {
+        ClusterReadinessProbe probe = new StubProbe() {
+            @Override
+            protected String getTimestamp() {
+                return "1";
+            }
+        };
+        probe.setRestartDetectionWindow(300);
+        probe.setTimeout(5000);
+        Map<String, String> before = new HashMap<>();
+        before.put("localhost", "1");
+
+        long start = System.currentTimeMillis();
+        assertTrue("When MarkLogic keeps responding with the same timestamp, it's assumed not to have restarted",
+                probe.waitUntilReady(before));
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue(elapsed >= 300 && elapsed < 5000);
+    }
+
+    @Test
+    public void timestampsSeenByProbeAreReused() {
+        final AtomicInteger fetchCount = new AtomicInteger();
+        ClusterReadinessProbe probe = new StubProbe() {
+            @Override
+            protected String getTimestamp() {
+                fetchCount.incrementAndGet();
+                return "1";
+            }
+        };
+        assertEquals("1", probe.getRestartTimestamps().get("localhost"));
+        assertEquals("1", probe.getRestartTimestamps().get("localhost"));
+        assertEquals(1, fetchCount.get());
+
+        probe.setTimestampReuseTime(0);
+        probe.setHosts(Arrays.asList("localhost"));
+        probe.getRestartTimestamps();
+        assertEquals(2, fetchCount.get());
+    }
+
+    @Test
+    public void timeoutReached() {
+        sut.setInitialDelay(10);
+        sut.setMaxDelay(50);
+        sut.setTimeout(300);
+        assertFalse("Nothing is listening on port 1, so the probe should time out", sut.waitUntilReady(null));
+    }
+
+    /**
+     * Responds on every probe, reporting the timestamp returned by getTimestamp.
+     */
+    private abstract static class StubProbe extends ClusterReadinessProbe {
+
+        StubProbe() {
+            super(new AdminConfig("localhost", 1, "admin", "admin"));
+            setHosts(Arrays.asList("localhost"));
+            setInitialDelay(10);
+            setMaxDelay(50);
+            setJitter(0);
+        }
+
+        protected abstract String getTimestamp();
+
+        @Override
+        protected Map<String, String> probeTimestamps(ExecutorService executor, List<String> hostNames,
+                long timeoutMillis) {
+            Map<String, String> timestamps = new HashMap<>();
+            for (String host : hostNames) {
+                timestamps.put(host, getTimestamp());
+            }
+            return timestamps;
+        }
+
+        @Override
+        protected boolean serversRespond(ExecutorService executor, List<String> hostNames, long timeoutMillis) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.marklogic.mgmt.forests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ForestPlacementPlannerTest extends Assert {
+
+    private List<PlacementHost> hosts = new ArrayList<>();
+
+    @Test
+    public void primariesFillLeastLoadedHostsFirst() {
+        addHost("1", "zone-a", 2);
+        addHost("2", "zone-a", 0);
+        addHost("3", "zone-b", 1);
+
+        ForestPlacementPlanner planner = new ForestPlacementPlanner(hosts);
+        planner.planPrimaries(Arrays.asList("db-1", "db-2", "db-3", "db-4"));
+        assertEquals("{host2=[db-1, db-2], host3=[db-3], host1=[db-4]}",
+                planner.getPlan().getPrimaryForestNamesByHostName().toString());
+    }
+
+    @Test
+    public void weights() {
+        addHost("1", null, 0);
+        addHost("2", null, 0);
+        addHost("3", null, 0);
+
+        ForestPlacementPlanner planner = new ForestPlacementPlanner(hosts);
+        Map<String, Double> weights = new HashMap<>();
+        weights.put("host1", 2.0);
+        weights.put("host3", 0.0);
+        planner.setHostWeights(weights);
+        planner.planPrimaries(Arrays.asList("db-1", "db-2", "db-3"));
+        assertEquals("{host1=[db-1, db-3], host2=[db-2]}",
+                planner.getPlan().getPrimaryForestNamesByHostName().toString());
+    }
+
+    @Test
+    public void replicasPreferOtherZones() {
+        addHost("1", "zone-a", 0);
+        addHost("2", "zone-a", 0);
+        addHost("3", "zone-b", 5);
+        addHost("4", "zone-c", 9);
+
+        ForestPlacementPlanner planner = new ForestPlacementPlanner(hosts);
+        Map<String, String> replicas = planner.planReplicas("f", "1", 3);
+        assertEquals("{f-replica-1=3, f-replica-2=4, f-replica-3=2}", replicas.toString());
+
+        replicas = planner.planReplicas("g", "1", 5);
+        assertEquals("Only three hosts are eligible", 3, replicas.size());
+        assertFalse(replicas.containsValue("1"));
+    }
+
+    @Test
+    public void groupName() {
+        addHost("1", null, 0);
+        addHost("2", null, 0);
+        hosts.get(0).setGroupName("Default");
+        hosts.get(1).setGroupName("Other");
+
+        ForestPlacementPlanner planner = new ForestPlacementPlanner(hosts);
+        planner.setGroupName("Other");
+        planner.planPrimaries(Arrays.asList("db-1", "db-2"));
+        assertEquals("{host2=[db-1, db-2]}", planner.getPlan().getPrimaryForestNamesByHostName().toString());
+    }
+
+    private void addHost(String id, String zone, int forestCount) {
+        PlacementHost host = new PlacementHost(id, "host" + id);
+        host.setZone(zone);
+        host.setForestCount(forestCount);
+        hosts.add(host);
+    }
+}
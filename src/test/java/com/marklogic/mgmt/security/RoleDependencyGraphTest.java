@@ -0,0 +1,59 @@
+package com.marklogic.mgmt.security;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RoleDependencyGraphTest extends Assert {
+
+    private RoleDependencyGraph graph = new RoleDependencyGraph();
+
+    @Test
+    public void levels() {
+        graph.addRole("writer", Arrays.asList("reader", "rest-writer"));
+        graph.addRole("reader", Collections.<String> emptyList());
+        graph.addRole("admin", Arrays.asList("writer"));
+        graph.addRole("other", Arrays.asList("rest-reader"));
+
+        List<List<String>> levels = graph.getLevels();
+        assertEquals(3, levels.size());
+        assertEquals("Roles not in the graph are assumed to exist", Arrays.asList("reader", "other"), levels.get(0));
+        assertEquals(Arrays.asList("writer"), levels.get(1));
+        assertEquals(Arrays.asList("admin"), levels.get(2));
+        assertTrue(graph.getRolesInCycles().isEmpty());
+    }
+
+    @Test
+    public void cycles() {
+        graph.addRole("a", Arrays.asList("b"));
+        graph.addRole("b", Arrays.asList("a"));
+        graph.addRole("c", Arrays.asList("c"));
+        graph.addRole("d", Arrays.asList("a", "c"));
+
+        List<List<String>> levels = graph.getLevels();
+        assertEquals(2, levels.size());
+        assertEquals(Arrays.asList("a", "b", "c"), levels.get(0));
+        assertEquals(Arrays.asList("d"), levels.get(1));
+        assertEquals(3, graph.getRolesInCycles().size());
+        assertFalse(graph.getRolesInCycles().contains("d"));
+    }
+
+    @Test
+    public void referencedRoleNames() {
+        RoleManager mgr = new RoleManager(null);
+        String json = "{\"role-name\":\"r1\", \"role\":[\"r2\"], \"permission\":[{\"role-name\":\"r3\", "
+                + "\"capability\":\"read\"}]}";
+        assertEquals("r1", mgr.getRoleName(json));
+        assertEquals("[r2, r3]", mgr.getReferencedRoleNames(json).toString());
+        assertEquals("{\"role-name\":\"r1\"}", mgr.removeRoleReferences(json));
+
+        String xml = "<role-properties xmlns='http://marklogic.com/manage'><role-name>r1</role-name>"
+                + "<roles><role>r2</role></roles><permissions><permission><role-name>r3</role-name>"
+                + "<capability>read</capability></permission></permissions></role-properties>";
+        assertEquals("[r2, r3]", mgr.getReferencedRoleNames(xml).toString());
+        assertTrue(mgr.getReferencedRoleNames(mgr.removeRoleReferences(xml)).isEmpty());
+    }
+}
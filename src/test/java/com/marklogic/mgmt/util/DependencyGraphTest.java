@@ -0,0 +1,47 @@
+package com.marklogic.mgmt.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DependencyGraphTest extends Assert {
+
+    @Test
+    public void levels() {
+        DependencyGraph graph = new DependencyGraph();
+        graph.add("content", Arrays.asList("triggers", "schemas", "Security"));
+        graph.add("triggers", Collections.<String> emptyList());
+        graph.add("schemas", Arrays.asList("Security"));
+        assertEquals("[[triggers, schemas], [content]]", graph.getLevels().toString());
+        assertTrue(graph.getNamesInCycles().isEmpty());
+    }
+
+    /**
+     * Roles can reference each other via their roles and permissions, so a cycle must neither hang nor drop any of
+     * the roles in it or those that reference it.
+     */
+    @Test
+    public void cycle() {
+        DependencyGraph graph = new DependencyGraph();
+        graph.add("role-a", Arrays.asList("role-b"));
+        graph.add("role-b", Arrays.asList("role-c", "rest-reader"));
+        graph.add("role-c", Arrays.asList("role-a"));
+        graph.add("role-d", Arrays.asList("role-c"));
+        graph.add("role-e", Collections.<String> emptyList());
+        assertEquals("[[role-a, role-b, role-c, role-e], [role-d]]", graph.getLevels().toString());
+        assertEquals(new HashSet<>(Arrays.asList("role-a", "role-b", "role-c")), graph.getNamesInCycles());
+    }
+
+    @Test
+    public void selfReference() {
+        DependencyGraph graph = new DependencyGraph();
+        graph.add("role-a", Arrays.asList("role-a"));
+        graph.add("role-b", Arrays.asList("role-a", "role-b"));
+        graph.add("role-c", Arrays.asList("role-b"));
+        assertEquals("[[role-a], [role-b], [role-c]]", graph.getLevels().toString());
+        assertEquals(new HashSet<>(Arrays.asList("role-a", "role-b")), graph.getNamesInCycles());
+    }
+}
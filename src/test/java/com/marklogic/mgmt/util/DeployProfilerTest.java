@@ -0,0 +1,100 @@
+package com.marklogic.mgmt.util;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.RestTemplate;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class DeployProfilerTest extends Assert {
+
+    private DeployProfiler profiler = new DeployProfiler();
+
+    @Test
+    public void pathTemplates() {
+        assertEquals("/manage/v2/databases/{id}/properties",
+                DeployProfiler.buildPathTemplate("/manage/v2/databases/Documents/properties"));
+        assertEquals("/manage/v2/roles", DeployProfiler.buildPathTemplate("/manage/v2/roles"));
+        assertEquals("/manage/v2/forests/{id}?level={}",
+                DeployProfiler.buildPathTemplate("/manage/v2/forests/forest-1?level=full"));
+        assertEquals("/admin/v1/timestamp", DeployProfiler.buildPathTemplate("/admin/v1/timestamp"));
+    }
+
+    @Test
+    public void reportAndSummary() {
+        profiler.recordCommand("DeployRolesCommand", "execute", 50);
+        profiler.recordCommand("DeployUsersCommand", "execute", 200);
+        profiler.recordResource("/config/users/user1.json", "save", 150);
+        profiler.recordResource("/config/roles/role1.json", "save", 40);
+
+        String previous = profiler.startActivity("/config/users/user1.json");
+        assertNull(previous);
+        profiler.recordRequest("GET", "/manage/v2/users/user1/properties", 200, 100, 30);
+        profiler.recordRequest("PUT", "/manage/v2/users/user1/properties", 204, 0, 90);
+        profiler.restoreActivity(previous);
+        assertNull(profiler.getCurrentActivity());
+        profiler.recordRequest("GET", "/manage/v2/users/user2/properties", 200, 120, 20);
+        profiler.recordRestartWait(3000);
+
+        ObjectNode report = profiler.toJson();
+        assertEquals(3000, report.get("restartWaitMillis").asLong());
+        assertEquals("DeployUsersCommand", report.get("commands").get(0).get("name").asText());
+        assertEquals("/config/users/user1.json", report.get("resources").get(0).get("path").asText());
+        assertEquals(2, report.get("resources").get(0).get("requestCount").asInt());
+        assertEquals(0, report.get("resources").get(1).get("requestCount").asInt());
+
+        ObjectNode slowest = (ObjectNode) report.get("requestsByPathTemplate").get(0);
+        assertEquals("PUT", slowest.get("method").asText());
+        ObjectNode gets = (ObjectNode) report.get("requestsByPathTemplate").get(1);
+        assertEquals("/manage/v2/users/{id}/properties", gets.get("pathTemplate").asText());
+        assertEquals(2, gets.get("count").asInt());
+        assertEquals(50, gets.get("totalMillis").asLong());
+        assertEquals(220, gets.get("bytes").asLong());
+        assertEquals(3, report.get("requests").size());
+
+        String summary = profiler.buildSummary(1);
+        assertTrue(summary, summary.contains("Slowest commands (1 of 2)"));
+        assertTrue(summary, summary.contains("DeployUsersCommand"));
+        assertFalse(summary, summary.contains("DeployRolesCommand"));
+        assertTrue(summary, summary.contains("3000 ms (1 waits)"));
+    }
+
+    @Test
+    public void interceptor() {
+        RestTemplate rt = new RestTemplate(new ClientHttpRequestFactory() {
+            @Override
+            public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+                MockClientHttpRequest request = new MockClientHttpRequest(httpMethod, uri);
+                request.setResponse(new MockClientHttpResponse("hello".getBytes(), HttpStatus.OK));
+                return request;
+            }
+        });
+        rt.setInterceptors(Arrays.<ClientHttpRequestInterceptor> asList(new ProfilingRequestInterceptor(profiler)));
+
+        profiler.startActivity("test");
+        assertEquals("hello", rt.getForObject("http://localhost:8002/manage/v2/databases/db1?format=json",
+                String.class));
+
+        List<DeployProfiler.RequestTiming> timings = profiler.getRequestTimings();
+        assertEquals(1, timings.size());
+        DeployProfiler.RequestTiming timing = timings.get(0);
+        assertEquals("GET", timing.getMethod());
+        assertEquals("/manage/v2/databases/db1?format=json", timing.getPath());
+        assertEquals("/manage/v2/databases/{id}?format={}", timing.getPathTemplate());
+        assertEquals(200, timing.getStatus());
+        assertEquals(5, timing.getBytes());
+        assertEquals("test", timing.getActivity());
+    }
+}
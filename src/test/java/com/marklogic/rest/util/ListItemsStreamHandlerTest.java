@@ -0,0 +1,44 @@
+package com.marklogic.rest.util;
+
+import java.io.StringReader;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+
+import org.jdom2.Element;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ListItemsStreamHandlerTest extends Assert {
+
+    private final static String XML = "<request-default-list xmlns='http://marklogic.com/manage/requests'>"
+            + "<list-items><list-count>3</list-count>"
+            + "<list-item><idref>1</idref><relation-id>A</relation-id></list-item>"
+            + "<list-item><idref>2</idref><relation-id>B</relation-id></list-item>"
+            + "<list-item><idref>3</idref><relation-id>A</relation-id></list-item>"
+            + "</list-items></request-default-list>";
+
+    @Test
+    public void allItems() throws Exception {
+        ListItemsStreamHandler handler = new ListItemsStreamHandler();
+        handler.handleXmlStream(newReader());
+        assertEquals(3, handler.getListItems().size());
+        assertEquals("[1, 2, 3]", handler.getValues("idref").toString());
+    }
+
+    @Test
+    public void filteredAndLimited() throws Exception {
+        ListItemsStreamHandler handler = new ListItemsStreamHandler(1) {
+            @Override
+            protected boolean accept(Element listItem) {
+                return "A".equals(getChildValue(listItem, "relation-id"));
+            }
+        };
+        handler.handleXmlStream(newReader());
+        assertEquals("[1]", handler.getValues("idref").toString());
+    }
+
+    private XMLStreamReader newReader() throws Exception {
+        return XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(XML));
+    }
+}
@@ -0,0 +1,33 @@
+package com.marklogic.rest.util;
+
+import org.jdom2.Namespace;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ResourcesFragmentTest extends Assert {
+
+    private final static String XML = "<task-default-list xmlns='http://marklogic.com/manage/tasks'>"
+            + "<list-items><list-count>2</list-count>"
+            + "<list-item><idref>123</idref><nameref>first</nameref><task-path>/one.xqy</task-path></list-item>"
+            + "<list-item><idref>456</idref><nameref>second</nameref><task-path>/two.xqy</task-path></list-item>"
+            + "</list-items></task-default-list>";
+
+    @Test
+    public void lookups() {
+        ResourcesFragment f = new ResourcesFragment(XML, new Namespace[] {});
+        assertEquals(2, f.getResourceCount());
+        assertTrue(f.resourceExists("first"));
+        assertTrue(f.resourceExists("456"));
+        assertFalse(f.resourceExists("third"));
+
+        assertEquals("123", f.getIdForNameOrId("first"));
+        assertEquals("/two.xqy", f.getListItemValue("second", "task-path"));
+        assertNull(f.getListItemValue("third", "task-path"));
+
+        assertEquals(1, f.getListItemsWithValue("task-path", "/two.xqy").size());
+        assertEquals("456", f.getChildValue(f.getListItemsWithValue("task-path", "/two.xqy").get(0), "idref"));
+
+        assertEquals(2, f.getListItemIdRefs().size());
+        assertEquals("second", f.getListItemNameRefs().get(1));
+    }
+}